@@ -5,28 +5,58 @@ import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.handshake.ServerHandshake;
 
 import com.alerts.AlertManager;
-import com.data_management.DataParser;
+import com.data_management.BackpressurePolicy;
 import com.data_management.DataStorage;
-import com.data_management.Patient;
+import com.data_management.IngestPipeline;
 
 /**
  * Represents a WebSocket client that receives data from a WebSocket server.
+ * Messages are handed to an {@link IngestPipeline}, so the I/O thread only
+ * queues them; storing and alert evaluation happen on the pipeline's worker.
  */
 public class WebSocketClient extends WebSocketClient {
-    private final DataStorage dataStorage;
-    private final AlertManager alertManager;
+    /** Number of messages that can wait for the worker by default. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 65536;
+
+    private final IngestPipeline pipeline;
 
     /**
-     * Creates a WebSocketClient instance.
+     * Creates a WebSocketClient instance that makes the I/O thread wait while
+     * the queue is full.
      * 
      * @param serverUri    the URI of the WebSocket server
      * @param dataStorage  the DataStorage object
      * @param alertManager the AlertManager object
      */
     public WebSocketClient(URI serverUri, DataStorage dataStorage, AlertManager alertManager) {
+        this(serverUri, dataStorage, alertManager, DEFAULT_QUEUE_CAPACITY, BackpressurePolicy.BLOCK);
+    }
+
+    /**
+     * Creates a WebSocketClient instance.
+     * 
+     * @param serverUri          the URI of the WebSocket server
+     * @param dataStorage        the DataStorage object
+     * @param alertManager       the AlertManager object
+     * @param queueCapacity      the number of messages that can wait for the
+     *                           worker
+     * @param backpressurePolicy what to do with messages while the queue is full
+     */
+    public WebSocketClient(URI serverUri, DataStorage dataStorage, AlertManager alertManager, int queueCapacity,
+            BackpressurePolicy backpressurePolicy) {
         super(serverUri);
-        this.dataStorage = dataStorage;
-        this.alertManager = alertManager;
+        this.pipeline = new IngestPipeline(dataStorage, patient -> alertManager.evaluateData(patient, dataStorage),
+                queueCapacity, backpressurePolicy);
+    }
+
+    /**
+     * Returns the pipeline the received messages go through, e.g., to monitor
+     * its queue and drop counts.
+     * 
+     * @return the pipeline
+     */
+    public IngestPipeline getPipeline() {
+        return pipeline;
     }
 
     /**
@@ -39,21 +69,11 @@ public class WebSocketClient extends WebSocketClient {
 
     /**
      * Called when a message is received from the WebSocket server.
-     * Parses the data, stores it, and evaluates it for alerts.
+     * Queues the message for parsing, storage and alert evaluation.
      */
     @Override
     public void onMessage(String message) {
-        DataParser parser = new DataParser();
-        try {
-            System.out.println("Received message: " + message);
-            parser.readData(dataStorage, message);
-            System.out.println("Data parsed and stored successfully.");
-
-            Patient patient = dataStorage.getPatient(message);
-            alertManager.evaluateData(patient, dataStorage);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        pipeline.submit(message);
     }
 
     /**
@@ -0,0 +1,259 @@
+package com.alerts;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+import com.data_management.BackpressurePolicy;
+import com.data_management.BoundedQueue;
+
+/**
+ * Hands alerts to an alert sink in order of priority
+ *
+ * Every priority level has its own lane, a BoundedQueue, and a pool of worker
+ * threads always takes the next alert from the highest lane that has one, so
+ * an urgent alert only waits for the alerts the workers are busy with, however
+ * many less urgent ones are queued. Higher numbers are more urgent, matching
+ * the priorities of PriorityAlertDecorator and the escalation of
+ * AlertRepeatScheduler. The lower lanes are served only while the higher ones
+ * are empty
+ * How long each alert waited in its lane is recorded per priority. What
+ * happens when a lane is full is decided by the BackpressurePolicy
+ */
+public class AlertDispatcher implements Closeable {
+
+    private static final long BLOCKED_WAIT_NANOS = 50_000;
+    private static final long IDLE_WAIT_MILLIS = 10;
+
+    private final List<BoundedQueue<Queued>> lanes = new ArrayList<>();
+    private final List<LatencyRecorder> waitLatencies = new ArrayList<>();
+    private final ToIntFunction<Alert> prioritizer;
+    private final Consumer<Alert> sink;
+    private final BackpressurePolicy backpressurePolicy;
+    private final Semaphore queued = new Semaphore(0); // One permit per alert in the lanes
+    // Permits of dropped alerts that workers took before the alerts were dropped; each covers a later alert
+    private final AtomicInteger heldPermits = new AtomicInteger();
+    private final AtomicInteger activeDispatchers = new AtomicInteger();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    private final AtomicLong droppedAlerts = new AtomicLong();
+    private final AtomicLong dispatchedAlerts = new AtomicLong();
+
+    /**
+     * Starts a dispatcher
+     * @param priorityLevels the number of priorities, from 0 to priorityLevels - 1
+     * @param prioritizer gives the priority of alerts dispatched without one, e.g., by their condition
+     * @param sink receives the alerts, e.g., to notify medical staff; called by several workers at once
+     * @param workerCount the number of worker threads
+     * @param laneCapacity the number of alerts that can wait in each lane
+     * @param backpressurePolicy what to do with alerts while their lane is full
+     * @throws IllegalArgumentException if the number of priorities or workers is not positive
+     */
+    public AlertDispatcher(int priorityLevels, ToIntFunction<Alert> prioritizer, Consumer<Alert> sink,
+            int workerCount, int laneCapacity, BackpressurePolicy backpressurePolicy) {
+        if (priorityLevels <= 0) {
+            throw new IllegalArgumentException("Number of priorities must be positive: " + priorityLevels);
+        }
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("Number of workers must be positive: " + workerCount);
+        }
+        for (int priority = 0; priority < priorityLevels; priority++) {
+            lanes.add(new BoundedQueue<>(laneCapacity));
+            waitLatencies.add(new LatencyRecorder());
+        }
+        this.prioritizer = prioritizer;
+        this.sink = sink;
+        this.backpressurePolicy = backpressurePolicy;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::work, "alert-dispatcher-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Queues an alert at the priority the prioritizer gives it
+     * @param alert the alert
+     * @return false if the alert was dropped because its lane was full or the dispatcher is closed
+     */
+    public boolean dispatch(Alert alert) {
+        return dispatch(alert, prioritizer.applyAsInt(alert));
+    }
+
+    /**
+     * Queues an alert at the given priority. Priorities outside the dispatcher's range count as
+     * the nearest one. Under BackpressurePolicy.BLOCK this waits while the lane is full; under the
+     * other policies it returns at once
+     * @param alert the alert
+     * @param priority the priority, higher is more urgent
+     * @return false if the alert was dropped because its lane was full or the dispatcher is closed
+     */
+    public boolean dispatch(Alert alert, int priority) {
+        // Registered before checking running, so close() cannot end the workers under a queued alert
+        activeDispatchers.incrementAndGet();
+        try {
+            return enqueue(alert, priority);
+        } finally {
+            activeDispatchers.decrementAndGet();
+        }
+    }
+
+    private boolean enqueue(Alert alert, int priority) {
+        if (!running) {
+            droppedAlerts.incrementAndGet();
+            return false;
+        }
+        int lane = Math.max(0, Math.min(lanes.size() - 1, priority));
+        BoundedQueue<Queued> queue = lanes.get(lane);
+        Queued entry = new Queued(alert, lane, System.nanoTime());
+        while (!queue.offer(entry)) {
+            if (backpressurePolicy == BackpressurePolicy.DROP_NEWEST || !running) {
+                droppedAlerts.incrementAndGet();
+                return false;
+            }
+            if (backpressurePolicy == BackpressurePolicy.DROP_OLDEST) {
+                if (queue.poll() != null) {
+                    droppedAlerts.incrementAndGet();
+                    // Take the dropped alert's permit, unless a worker already holds it and waits for the new alert
+                    if (!queued.tryAcquire()) {
+                        heldPermits.incrementAndGet();
+                    }
+                }
+            } else {
+                LockSupport.parkNanos(BLOCKED_WAIT_NANOS);
+            }
+        }
+        if (!takeHeldPermit()) {
+            queued.release();
+        }
+        return true;
+    }
+
+    // Claims a permit a waiting worker already holds for a newly queued alert, if there is one
+    private boolean takeHeldPermit() {
+        int held;
+        while ((held = heldPermits.get()) > 0) {
+            if (heldPermits.compareAndSet(held, held - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets how long the alerts of a priority waited in their lane before a worker took them
+     * @param priority the priority
+     * @return the recorder of the priority's queue-wait latency
+     * @throws IndexOutOfBoundsException if the priority is out of range
+     */
+    public LatencyRecorder getWaitLatency(int priority) {
+        return waitLatencies.get(priority);
+    }
+
+    /**
+     * Gets the number of alerts waiting in a priority's lane
+     * @param priority the priority
+     * @return the number of queued alerts
+     * @throws IndexOutOfBoundsException if the priority is out of range
+     */
+    public int getQueuedCount(int priority) {
+        return lanes.get(priority).size();
+    }
+
+    /**
+     * Gets the number of alerts dropped because their lane was full or the dispatcher was closed
+     * @return the number of dropped alerts
+     */
+    public long getDroppedCount() {
+        return droppedAlerts.get();
+    }
+
+    /**
+     * Gets the number of alerts handed to the sink
+     * @return the number of dispatched alerts
+     */
+    public long getDispatchedCount() {
+        return dispatchedAlerts.get();
+    }
+
+    /**
+     * Stops accepting alerts, lets the workers hand the queued ones to the sink and waits for them
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void work() {
+        while (isAcceptingAlerts() || queued.availablePermits() > 0) {
+            try {
+                if (!queued.tryAcquire(IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            Queued entry = takeMostUrgent();
+            while (entry == null && isAcceptingAlerts()) {
+                // The alert was dropped for a newer one that is not in its lane yet
+                LockSupport.parkNanos(BLOCKED_WAIT_NANOS);
+                entry = takeMostUrgent();
+            }
+            if (entry == null) {
+                continue;
+            }
+            waitLatencies.get(entry.lane).record(System.nanoTime() - entry.queuedNanos);
+            try {
+                sink.accept(entry.alert);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            dispatchedAlerts.incrementAndGet();
+        }
+    }
+
+    // Whether an alert may still be queued, by an open dispatcher or a dispatch that began before close()
+    private boolean isAcceptingAlerts() {
+        return running || activeDispatchers.get() > 0;
+    }
+
+    private Queued takeMostUrgent() {
+        for (int lane = lanes.size() - 1; lane >= 0; lane--) {
+            Queued entry = lanes.get(lane).poll();
+            if (entry != null) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    // An alert waiting in a lane
+    private static final class Queued {
+        final Alert alert;
+        final int lane;
+        final long queuedNanos;
+
+        Queued(Alert alert, int lane, long queuedNanos) {
+            this.alert = alert;
+            this.lane = lane;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+}
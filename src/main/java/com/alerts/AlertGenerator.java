@@ -1,6 +1,16 @@
 package com.alerts;
 
 
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
 import com.data_management.DataStorage;
 import com.data_management.Patient;
 
@@ -9,47 +19,220 @@ import com.data_management.Patient;
  * and generating alerts when certain predefined conditions are met. This class
  * relies on a {@link DataStorage} instance to access patient data and evaluate
  * it against specific health criteria.
+ * The criteria are the registered {@link AlertStrategy} instances.
+ * {@link #evaluateAll()} evaluates every stored patient on a work-stealing
+ * {@link ForkJoinPool}: the patients are split into partitions, and idle
+ * workers take over partitions from busy ones. Each partition collects its
+ * alerts in a list of its own, so workers never wait for each other while
+ * alerts are raised; the lists are joined once the sweep is done.
  */
-public class AlertGenerator {
+public class AlertGenerator implements Closeable {
+    private static final int MIN_PARTITION_PATIENTS = 64;
+    private static final int PARTITIONS_PER_THREAD = 8;
+
     private DataStorage dataStorage;
+    private final List<AlertStrategy> strategies = new CopyOnWriteArrayList<>();
+    private final Consumer<Alert> alertHandler;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<List<Alert>> partitionAlerts = new ThreadLocal<>();
+
+    private final AtomicLong sweeps = new AtomicLong();
+    private final AtomicLong evaluatedPatients = new AtomicLong();
+    private final AtomicLong totalSweepNanos = new AtomicLong();
+    private final AtomicLong maxSweepNanos = new AtomicLong();
 
     /**
      * Constructs an {@code AlertGenerator} with a specified {@code DataStorage}.
      * The {@code DataStorage} is used to retrieve patient data that this class
-     * will monitor and evaluate.
+     * will monitor and evaluate. Alerts are printed to standard output, and
+     * sweeps use one thread per available processor.
      *
      * @param dataStorage the data storage system that provides access to patient
      *                    data
      */
     public AlertGenerator(DataStorage dataStorage) {
+        this(dataStorage, alert -> System.out.println("Alert: " + alert.getCondition() + " for patient "
+                + alert.getPatientId() + " at " + alert.getTimestamp()), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs an {@code AlertGenerator} that hands its alerts to the
+     * specified handler.
+     *
+     * @param dataStorage  the data storage system that provides access to
+     *                     patient data
+     * @param alertHandler receives every triggered alert, e.g., to notify
+     *                     medical staff
+     * @param parallelism  the number of threads that evaluate patients during a
+     *                     sweep
+     * @throws IllegalArgumentException if the parallelism is not positive
+     */
+    public AlertGenerator(DataStorage dataStorage, Consumer<Alert> alertHandler, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
         this.dataStorage = dataStorage;
+        this.alertHandler = alertHandler;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Registers a strategy that every evaluation runs from now on.
+     *
+     * @param strategy the strategy to register
+     */
+    public void addStrategy(AlertStrategy strategy) {
+        strategies.add(strategy);
     }
 
     /**
      * Evaluates the specified patient's data to determine if any alert conditions
-     * are met. If a condition is met, an alert is triggered via the
-     * {@link #triggerAlert}
-     * method. This method should define the specific conditions under which an
-     * alert
-     * will be triggered.
+     * are met. Every registered strategy checks the patient, and the strategies
+     * raise their alerts through {@link #triggerAlert}. A strategy that fails
+     * is reported and does not keep the others from running.
      *
      * @param patient the patient data to evaluate for alert conditions
      */
     public void evaluateData(Patient patient) {
-        // Implementation goes here
+        for (AlertStrategy strategy : strategies) {
+            try {
+                strategy.checkAlert(patient);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
     /**
-     * Triggers an alert for the monitoring system. This method can be extended to
-     * notify medical staff, log the alert, or perform other actions. The method
-     * currently assumes that the alert information is fully formed when passed as
-     * an argument.
+     * Evaluates every patient in the data storage in parallel, then hands the
+     * alerts to the alert handler on the calling thread.
+     *
+     * @return the alerts of the sweep and how long it took
+     */
+    public SweepResult evaluateAll() {
+        long start = System.nanoTime();
+        List<Patient> patients = dataStorage.getAllPatients();
+        int partitionCount = Math.max(1, Math.min(pool.getParallelism() * PARTITIONS_PER_THREAD,
+                patients.size() / MIN_PARTITION_PATIENTS));
+        List<List<Alert>> alertsPerPartition = new ArrayList<>(Collections.nCopies(partitionCount, null));
+        pool.invoke(new SweepTask(patients, alertsPerPartition, 0, partitionCount));
+
+        List<Alert> alerts = new ArrayList<>();
+        for (List<Alert> partition : alertsPerPartition) {
+            alerts.addAll(partition);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        sweeps.incrementAndGet();
+        evaluatedPatients.addAndGet(patients.size());
+        totalSweepNanos.addAndGet(elapsedNanos);
+        maxSweepNanos.accumulateAndGet(elapsedNanos, Math::max);
+
+        for (Alert alert : alerts) {
+            alertHandler.accept(alert);
+        }
+        return new SweepResult(alerts, patients.size(), elapsedNanos);
+    }
+
+    /**
+     * Triggers an alert for the monitoring system. During a sweep the alert is
+     * added to the alerts of the evaluating partition; otherwise it goes to
+     * the alert handler straight away. The method currently assumes that the
+     * alert information is fully formed when passed as an argument.
      *
      * @param alert the alert object containing details about the alert condition
      */
-    private void triggerAlert(Alert alert) {
-        // Implementation might involve logging the alert or notifying staff
+    public void triggerAlert(Alert alert) {
+        List<Alert> partition = partitionAlerts.get();
+        if (partition != null) {
+            partition.add(alert);
+        } else {
+            alertHandler.accept(alert);
+        }
     }
-}
 
+    /**
+     * Returns the number of sweeps completed.
+     *
+     * @return the number of sweeps
+     */
+    public long getSweepCount() {
+        return sweeps.get();
+    }
 
+    /**
+     * Returns the number of patients evaluated over all sweeps.
+     *
+     * @return the number of patient evaluations
+     */
+    public long getEvaluatedPatientCount() {
+        return evaluatedPatients.get();
+    }
+
+    /**
+     * Returns the average duration of a sweep.
+     *
+     * @return the mean sweep duration in nanoseconds, or 0 before the first
+     *         sweep
+     */
+    public long getMeanSweepNanos() {
+        long count = sweeps.get();
+        return count == 0 ? 0 : totalSweepNanos.get() / count;
+    }
+
+    /**
+     * Returns the duration of the slowest sweep.
+     *
+     * @return the longest sweep duration in nanoseconds
+     */
+    public long getMaxSweepNanos() {
+        return maxSweepNanos.get();
+    }
+
+    /**
+     * Stops the threads that evaluate sweeps.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // Splits the partitions in halves until one is left, then evaluates its patients
+    private class SweepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Patient> patients;
+        private final List<List<Alert>> alertsPerPartition;
+        private final int from;
+        private final int to;
+
+        SweepTask(List<Patient> patients, List<List<Alert>> alertsPerPartition, int from, int to) {
+            this.patients = patients;
+            this.alertsPerPartition = alertsPerPartition;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SweepTask(patients, alertsPerPartition, from, middle),
+                        new SweepTask(patients, alertsPerPartition, middle, to));
+                return;
+            }
+            int partitionCount = alertsPerPartition.size();
+            int first = (int) ((long) patients.size() * from / partitionCount);
+            int last = (int) ((long) patients.size() * to / partitionCount);
+            List<Alert> alerts = new ArrayList<>();
+            partitionAlerts.set(alerts);
+            try {
+                for (int i = first; i < last; i++) {
+                    evaluateData(patients.get(i));
+                }
+            } finally {
+                partitionAlerts.remove();
+            }
+            alertsPerPartition.set(from, alerts);
+        }
+    }
+}
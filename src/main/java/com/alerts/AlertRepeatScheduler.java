@@ -0,0 +1,364 @@
+package com.alerts;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Repeats and escalates outstanding alerts from a single thread
+ *
+ * Repeats are kept on a hashed timer wheel: a ring of buckets, one per tick,
+ * where a repeat due further ahead than one turn of the wheel waits for the
+ * remaining number of turns. Scheduling and cancelling only queue or flag the
+ * repeat, so neither blocks, and the wheel thread touches each bucket once per
+ * turn however many alerts are outstanding. Repeats fire within one tick after
+ * they are due; each repeat follows the previous one's due time, so a late tick
+ * does not shift the ones after it
+ * Every repeat can raise the alert's priority by a fixed step, e.g., to update
+ * a PriorityAlertDecorator. How late each repeat fired is recorded as the
+ * scheduler's jitter. Listeners run on the wheel thread and should return
+ * quickly, e.g., by handing the alert to a dispatcher
+ */
+public class AlertRepeatScheduler implements Closeable {
+
+    /** Tick length used by the default constructor, in milliseconds */
+    public static final long DEFAULT_TICK_MILLIS = 10;
+    /** Number of buckets used by the default constructor */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static volatile AlertRepeatScheduler shared;
+
+    private final long tickNanos;
+    private final List<Repeat>[] wheel;
+    private final int mask;
+    private final Queue<Repeat> pending = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<String, Set<Repeat>> repeatsByPatient = new ConcurrentHashMap<>();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final LatencyRecorder jitter = new LatencyRecorder();
+    private final long startNanos;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    /**
+     * Receives the repeats of an alert
+     */
+    public interface RepeatListener {
+
+        /**
+         * Called each time the alert is due again
+         * @param alert the repeated alert
+         * @param repeatNumber the number of this repeat, starting at 1
+         * @param priority the alert's priority after this repeat's escalation
+         */
+        void onRepeat(Alert alert, int repeatNumber, int priority);
+    }
+
+    /**
+     * Creates a scheduler with 10 ms ticks and 512 buckets, so repeats up to about five seconds
+     * ahead are placed without waiting for extra turns
+     */
+    public AlertRepeatScheduler() {
+        this(DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * Creates a scheduler
+     * @param tickMillis the tick length in milliseconds, repeats fire up to one tick late
+     * @param wheelSize the number of buckets, rounded up to a power of two
+     * @throws IllegalArgumentException if the tick length or wheel size is not positive
+     */
+    public AlertRepeatScheduler(long tickMillis, int wheelSize) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick length must be positive: " + tickMillis);
+        }
+        if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("Wheel size must be between 1 and 2^30: " + wheelSize);
+        }
+        int buckets = wheelSize == 1 ? 1 : Integer.highestOneBit(wheelSize - 1) << 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        List<Repeat>[] emptyBuckets = new List[buckets];
+        for (int i = 0; i < buckets; i++) {
+            emptyBuckets[i] = new ArrayList<>();
+        }
+        this.wheel = emptyBuckets;
+        this.mask = buckets - 1;
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::turn, "alert-repeat-scheduler");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Gets the scheduler shared by alerts that are not given one, e.g., RepeatedAlertDecorator
+     * @return the shared scheduler
+     */
+    public static AlertRepeatScheduler getShared() {
+        if (shared == null) {
+            synchronized (AlertRepeatScheduler.class) {
+                if (shared == null) {
+                    shared = new AlertRepeatScheduler();
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Repeats an alert at a fixed interval without escalating it
+     * @param alert the alert to repeat
+     * @param intervalMillis the time between repeats in milliseconds
+     * @param repeats the number of repeats
+     * @param listener receives each repeat
+     * @return the handle to cancel the repeats with
+     * @throws IllegalArgumentException if the interval or number of repeats is not positive
+     */
+    public RepeatHandle schedule(Alert alert, long intervalMillis, int repeats, RepeatListener listener) {
+        return schedule(alert, intervalMillis, repeats, 0, 0, 0, listener);
+    }
+
+    /**
+     * Repeats an alert at a fixed interval, raising its priority on every repeat
+     * @param alert the alert to repeat
+     * @param intervalMillis the time between repeats in milliseconds
+     * @param repeats the number of repeats
+     * @param priority the alert's current priority
+     * @param priorityStep how much each repeat raises the priority
+     * @param maxPriority the priority the escalation stops at
+     * @param listener receives each repeat
+     * @return the handle to cancel the repeats with
+     * @throws IllegalArgumentException if the interval or number of repeats is not positive
+     * @throws IllegalStateException if the scheduler is closed
+     */
+    public RepeatHandle schedule(Alert alert, long intervalMillis, int repeats, int priority, int priorityStep,
+            int maxPriority, RepeatListener listener) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Repeat interval must be positive: " + intervalMillis);
+        }
+        if (repeats <= 0) {
+            throw new IllegalArgumentException("Number of repeats must be positive: " + repeats);
+        }
+        if (!running) {
+            throw new IllegalStateException("The scheduler is closed");
+        }
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        Repeat repeat = new Repeat(alert, intervalNanos, repeats, priority, priorityStep, maxPriority, listener,
+                System.nanoTime() + intervalNanos);
+        outstanding.incrementAndGet();
+        repeatsByPatient.compute(alert.getPatientId(), (id, existing) -> {
+            Set<Repeat> patientRepeats = existing != null ? existing : ConcurrentHashMap.newKeySet();
+            patientRepeats.add(repeat);
+            return patientRepeats;
+        });
+        pending.add(repeat);
+        return repeat.handle;
+    }
+
+    /**
+     * Cancels the outstanding repeats of a patient's alerts with the given condition, e.g., when the
+     * condition resolves
+     * @param patientId the patient ID
+     * @param condition the condition of the alerts to cancel
+     * @return the number of alerts whose repeats were cancelled
+     */
+    public int resolve(String patientId, String condition) {
+        Set<Repeat> repeats = repeatsByPatient.get(patientId);
+        if (repeats == null) {
+            return 0;
+        }
+        int cancelled = 0;
+        for (Repeat repeat : repeats) {
+            if (repeat.alert.getCondition().equals(condition) && repeat.handle.cancel()) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Gets the number of alerts that still have repeats to come
+     * @return the number of outstanding alerts
+     */
+    public int getOutstandingCount() {
+        return outstanding.get();
+    }
+
+    /**
+     * Gets how late the repeats fired compared to when they were due
+     * @return the recorder of the repeats' jitter
+     */
+    public LatencyRecorder getJitter() {
+        return jitter;
+    }
+
+    /**
+     * Stops the wheel thread; outstanding repeats do not fire anymore
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void turn() {
+        long tick = 0;
+        while (running) {
+            tick++;
+            long wakeUpNanos = startNanos + tick * tickNanos;
+            long sleepNanos;
+            while (running && (sleepNanos = wakeUpNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(sleepNanos);
+            }
+            Repeat repeat;
+            while ((repeat = pending.poll()) != null) {
+                place(repeat, tick);
+            }
+            expire(wheel[(int) (tick & mask)]);
+        }
+    }
+
+    // Puts a repeat in the bucket of the first tick at or after its due time
+    private void place(Repeat repeat, long currentTick) {
+        if (repeat.finished.get()) {
+            return;
+        }
+        long dueTick = Math.max(currentTick, -Math.floorDiv(-(repeat.dueNanos - startNanos), tickNanos));
+        repeat.remainingTurns = (dueTick - currentTick) / wheel.length;
+        wheel[(int) (dueTick & mask)].add(repeat);
+    }
+
+    private void expire(List<Repeat> bucket) {
+        int kept = 0;
+        for (int i = 0; i < bucket.size(); i++) {
+            Repeat repeat = bucket.get(i);
+            if (repeat.finished.get()) {
+                continue;
+            }
+            if (repeat.remainingTurns > 0) {
+                repeat.remainingTurns--;
+                bucket.set(kept++, repeat);
+                continue;
+            }
+            fire(repeat);
+        }
+        bucket.subList(kept, bucket.size()).clear();
+    }
+
+    private void fire(Repeat repeat) {
+        jitter.record(System.nanoTime() - repeat.dueNanos);
+        int repeatNumber = repeat.count + 1;
+        repeat.priority = (int) Math.min(repeat.maxPriority, (long) repeat.priority + repeat.priorityStep);
+        repeat.count = repeatNumber;
+        if (repeatNumber == repeat.repeats) {
+            repeat.finish();
+        }
+        try {
+            repeat.listener.onRepeat(repeat.alert, repeatNumber, repeat.priority);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+        if (!repeat.finished.get()) {
+            // Queued rather than placed, so a short interval cannot land in the bucket being expired
+            repeat.dueNanos += repeat.intervalNanos;
+            pending.add(repeat);
+        }
+    }
+
+    /**
+     * Controls the outstanding repeats of one alert
+     */
+    public static final class RepeatHandle {
+
+        private final Repeat repeat;
+
+        private RepeatHandle(Repeat repeat) {
+            this.repeat = repeat;
+        }
+
+        /**
+         * Stops the remaining repeats
+         * @return true if repeats were still outstanding
+         */
+        public boolean cancel() {
+            return repeat.finish();
+        }
+
+        /**
+         * Checks if the alert has no repeats to come, because all of them fired or they were cancelled
+         * @return true if the repeats are over
+         */
+        public boolean isDone() {
+            return repeat.finished.get();
+        }
+
+        /**
+         * Gets the number of repeats that fired so far
+         * @return the number of repeats
+         */
+        public int getRepeatCount() {
+            return repeat.count;
+        }
+
+        /**
+         * Gets the alert's priority after the latest repeat
+         * @return the current priority
+         */
+        public int getPriority() {
+            return repeat.priority;
+        }
+    }
+
+    // One outstanding alert; only the wheel thread changes it, except for finishing
+    private final class Repeat {
+        final Alert alert;
+        final long intervalNanos;
+        final int repeats;
+        final int priorityStep;
+        final int maxPriority;
+        final RepeatListener listener;
+        final RepeatHandle handle = new RepeatHandle(this);
+        final AtomicBoolean finished = new AtomicBoolean();
+        long dueNanos;
+        long remainingTurns;
+        volatile int count;
+        volatile int priority;
+
+        Repeat(Alert alert, long intervalNanos, int repeats, int priority, int priorityStep, int maxPriority,
+                RepeatListener listener, long dueNanos) {
+            this.alert = alert;
+            this.intervalNanos = intervalNanos;
+            this.repeats = repeats;
+            this.priority = priority;
+            this.priorityStep = priorityStep;
+            this.maxPriority = Math.max(priority, maxPriority);
+            this.listener = listener;
+            this.dueNanos = dueNanos;
+        }
+
+        // Marks the repeats as over; returns false if they were over already
+        boolean finish() {
+            if (!finished.compareAndSet(false, true)) {
+                return false;
+            }
+            outstanding.decrementAndGet();
+            repeatsByPatient.computeIfPresent(alert.getPatientId(), (id, patientRepeats) -> {
+                patientRepeats.remove(this);
+                return patientRepeats.isEmpty() ? null : patientRepeats;
+            });
+            return true;
+        }
+    }
+}
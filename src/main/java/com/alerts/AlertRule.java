@@ -0,0 +1,26 @@
+package com.alerts;
+
+import java.util.function.Consumer;
+
+/**
+ * Represents an alert rule that is evaluated one record at a time
+ * 
+ * An instance belongs to a single patient and keeps whatever it needs to
+ * remember about that patient's earlier records, such as the last few
+ * readings or a running counter, so each new record is checked in constant
+ * time instead of rescanning the patient's history
+ * Records of one patient are passed in the order they arrive, one at a time
+ */
+public interface AlertRule {
+
+    /**
+     * Updates the rule with a new record of its patient and triggers alerts if necessary
+     * @param patientId the patient ID
+     * @param recordTypeCode the record type code, see RecordTypeRegistry
+     * @param timestamp the time of the measurement in milliseconds since the Unix epoch
+     * @param measurementValue the measurement value
+     * @param alerts receives the triggered alerts
+     */
+    void onRecord(int patientId, int recordTypeCode, long timestamp, double measurementValue,
+            Consumer<Alert> alerts);
+}
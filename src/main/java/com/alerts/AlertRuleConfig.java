@@ -0,0 +1,155 @@
+package com.alerts;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current alert rules and swaps in new ones without stopping evaluation
+ *
+ * Rules evaluating records read the current AlertRuleTable once per record, so
+ * replacing it is a single atomic write: records being evaluated finish with
+ * the old table and every later record uses the new one. A config loaded from
+ * a file can watch it and recompile it whenever it changes; a file that no
+ * longer compiles is reported and the last good rules stay in effect
+ */
+public class AlertRuleConfig implements Closeable {
+
+    private final Path file;
+    private final AtomicReference<AlertRuleTable> table;
+    private FileTime loadedModifiedTime;
+    private Thread watcher;
+    private volatile boolean running;
+
+    /**
+     * Creates a config holding fixed rules, e.g., the defaults
+     * @param table the rules
+     */
+    public AlertRuleConfig(AlertRuleTable table) {
+        this.file = null;
+        this.table = new AtomicReference<>(table);
+    }
+
+    /**
+     * Creates a config holding the rules of a file
+     * @param file the properties file holding the rules
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a rule is incomplete or malformed
+     */
+    public AlertRuleConfig(Path file) throws IOException {
+        this.file = file;
+        this.loadedModifiedTime = Files.getLastModifiedTime(file);
+        this.table = new AtomicReference<>(AlertRuleTable.load(file));
+    }
+
+    /**
+     * Gets the rules currently in effect
+     * @return the current rules
+     */
+    public AlertRuleTable getTable() {
+        return table.get();
+    }
+
+    /**
+     * Puts new rules into effect
+     * @param rules the new rules
+     */
+    public void setTable(AlertRuleTable rules) {
+        table.set(rules);
+    }
+
+    /**
+     * Creates the rule state of a new patient, e.g., as a rule factory of an IncrementalAlertEngine
+     * @return a rule evaluating this config's rules
+     */
+    public AlertRule newRule() {
+        return new DeclarativeRule(this);
+    }
+
+    /**
+     * Reads and compiles the file again if it changed since it was last loaded
+     * @return true if new rules were put into effect
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a rule is incomplete or malformed, the current rules then stay in effect
+     * @throws IllegalStateException if the config was not loaded from a file
+     */
+    public synchronized boolean reload() throws IOException {
+        if (file == null) {
+            throw new IllegalStateException("The alert rules were not loaded from a file");
+        }
+        FileTime modifiedTime = Files.getLastModifiedTime(file);
+        if (modifiedTime.equals(loadedModifiedTime)) {
+            return false;
+        }
+        AlertRuleTable rules = AlertRuleTable.load(file);
+        loadedModifiedTime = modifiedTime;
+        table.set(rules);
+        return true;
+    }
+
+    /**
+     * Starts a background thread that reloads the file whenever it changes
+     * @param pollIntervalMillis how often the file is checked, in milliseconds
+     * @throws IllegalArgumentException if the poll interval is not positive
+     * @throws IllegalStateException if the config was not loaded from a file or is watched already
+     */
+    public synchronized void watch(long pollIntervalMillis) {
+        if (pollIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Poll interval must be positive: " + pollIntervalMillis);
+        }
+        if (file == null) {
+            throw new IllegalStateException("The alert rules were not loaded from a file");
+        }
+        if (watcher != null) {
+            throw new IllegalStateException("The alert rules are watched already");
+        }
+        running = true;
+        watcher = new Thread(() -> {
+            while (running) {
+                try {
+                    Thread.sleep(pollIntervalMillis);
+                    reload();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException | IllegalArgumentException e) {
+                    e.printStackTrace();
+                    markLoaded(); // Report a broken file once, not on every poll
+                }
+            }
+        }, "alert-rule-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Stops watching the file
+     */
+    @Override
+    public void close() {
+        Thread current;
+        synchronized (this) {
+            running = false;
+            current = watcher;
+            watcher = null;
+        }
+        if (current != null) {
+            current.interrupt();
+            try {
+                current.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private synchronized void markLoaded() {
+        try {
+            loadedModifiedTime = Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            // Missing file: keep reporting until it is back
+        }
+    }
+}
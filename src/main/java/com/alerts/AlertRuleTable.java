@@ -0,0 +1,532 @@
+package com.alerts;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import com.data_management.RecordTypeRegistry;
+
+/**
+ * Alert rules declared in a configuration file, compiled into one decision table per record type
+ *
+ * A rule is a threshold, a trend over a number of consecutive readings, a drop
+ * below the highest reading of a time window, or a conjunction of bounds on the
+ * latest readings of several record types. The file format is described in
+ * alert-rules.properties, which holds the default rules
+ * The table of a record type lists the rules that apply to it in columns of
+ * primitive arrays, so a new record is checked against all of them in a single
+ * pass. A table is immutable; new rules are compiled into a new table
+ */
+public final class AlertRuleTable {
+
+    /** Classpath resource holding the default rules */
+    public static final String DEFAULT_RULES = "/alert-rules.properties";
+
+    private static final int THRESHOLD = 0;
+    private static final int TREND = 1;
+    private static final int DROP = 2;
+    private static final int CONJUNCTION = 3;
+
+    private static final int MAX_RULES_PER_TYPE = Long.SIZE;
+
+    private final TypeTable[] tables; // Indexed by record type code, null where no rule applies
+    private final int ruleCount;
+
+    private AlertRuleTable(TypeTable[] tables, int ruleCount) {
+        this.tables = tables;
+        this.ruleCount = ruleCount;
+    }
+
+    /**
+     * Compiles the rules of a configuration
+     * @param config the rule.name.property entries; other entries are ignored
+     * @return the compiled rules
+     * @throws IllegalArgumentException if a rule is incomplete or malformed
+     */
+    public static AlertRuleTable parse(Properties config) {
+        Map<String, Map<String, String>> rules = new TreeMap<>();
+        for (String key : config.stringPropertyNames()) {
+            if (!key.startsWith("rule.")) {
+                continue;
+            }
+            int dot = key.indexOf('.', 5);
+            if (dot < 0 || dot == 5 || dot == key.length() - 1) {
+                throw new IllegalArgumentException("Malformed rule key: " + key);
+            }
+            rules.computeIfAbsent(key.substring(5, dot), name -> new HashMap<>())
+                    .put(key.substring(dot + 1), config.getProperty(key).trim());
+        }
+
+        Map<Integer, TypeTable> byType = new TreeMap<>();
+        List<String[]> unlessNames = new ArrayList<>(); // Rule name and unless name, resolved once every rule is known
+        for (Map.Entry<String, Map<String, String>> rule : rules.entrySet()) {
+            compileRule(rule.getKey(), rule.getValue(), byType);
+            String unless = rule.getValue().get("unless");
+            if (unless != null) {
+                unlessNames.add(new String[] { rule.getKey(), unless });
+            }
+        }
+        for (String[] names : unlessNames) {
+            if (!rules.containsKey(names[1])) {
+                throw new IllegalArgumentException("Rule " + names[0] + " refers to unknown rule " + names[1]);
+            }
+            for (TypeTable table : byType.values()) {
+                table.resolveUnless(names[0], names[1]);
+            }
+        }
+
+        int size = 0;
+        for (int typeCode : byType.keySet()) {
+            size = Math.max(size, typeCode + 1);
+        }
+        TypeTable[] tables = new TypeTable[size];
+        for (Map.Entry<Integer, TypeTable> entry : byType.entrySet()) {
+            tables[entry.getKey()] = entry.getValue();
+        }
+        return new AlertRuleTable(tables, rules.size());
+    }
+
+    /**
+     * Reads and compiles the rules of a configuration file
+     * @param file the properties file holding the rules
+     * @return the compiled rules
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a rule is incomplete or malformed
+     */
+    public static AlertRuleTable load(Path file) throws IOException {
+        Properties config = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            config.load(in);
+        }
+        return parse(config);
+    }
+
+    /**
+     * Compiles the default rules shipped with the application
+     * @return the compiled default rules
+     * @throws IllegalStateException if the default rules are missing or cannot be read
+     */
+    public static AlertRuleTable loadDefaults() {
+        Properties config = new Properties();
+        try (InputStream in = AlertRuleTable.class.getResourceAsStream(DEFAULT_RULES)) {
+            if (in == null) {
+                throw new IllegalStateException("Default alert rules not found: " + DEFAULT_RULES);
+            }
+            config.load(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read the default alert rules", e);
+        }
+        return parse(config);
+    }
+
+    /**
+     * Gets the default rules shipped with the application, compiled once and shared
+     * @return the default rules
+     * @throws IllegalStateException if the default rules are missing or cannot be read
+     */
+    public static AlertRuleTable getDefaults() {
+        return Defaults.TABLE;
+    }
+
+    /**
+     * Gets the number of rules in the table
+     * @return the number of rules
+     */
+    public int getRuleCount() {
+        return ruleCount;
+    }
+
+    /**
+     * Gets the bound of the first threshold on the measurement values of a record type
+     * @param recordTypeCode the record type code
+     * @param below true for a lower bound, false for an upper bound
+     * @return the bound, or NaN if there is no such threshold
+     */
+    public double getThreshold(int recordTypeCode, boolean below) {
+        return threshold(recordTypeCode, false, below);
+    }
+
+    /**
+     * Gets the bound of the first threshold on the rate, in beats per minute, of a record type
+     * @param recordTypeCode the record type code
+     * @param below true for a lower bound, false for an upper bound
+     * @return the bound, or NaN if there is no such threshold
+     */
+    public double getRateThreshold(int recordTypeCode, boolean below) {
+        return threshold(recordTypeCode, true, below);
+    }
+
+    /**
+     * Gets the step of the first trend on a record type
+     * @param recordTypeCode the record type code
+     * @return the change each reading of the trend exceeds, or NaN if there is no trend
+     */
+    public double getTrendStep(int recordTypeCode) {
+        TypeTable table = tableOf(recordTypeCode);
+        int i = table != null ? table.indexOf(TREND) : -1;
+        return i >= 0 ? table.steps[i] : Double.NaN;
+    }
+
+    /**
+     * Gets the count of the first trend on a record type
+     * @param recordTypeCode the record type code
+     * @return the number of readings in a row the trend spans, or 0 if there is no trend
+     */
+    public int getTrendCount(int recordTypeCode) {
+        TypeTable table = tableOf(recordTypeCode);
+        int i = table != null ? table.indexOf(TREND) : -1;
+        return i >= 0 ? table.counts[i] : 0;
+    }
+
+    /**
+     * Gets the amount of the first drop on a record type
+     * @param recordTypeCode the record type code
+     * @return how far a reading is below the highest of the window, or NaN if there is no drop
+     */
+    public double getDropAmount(int recordTypeCode) {
+        TypeTable table = tableOf(recordTypeCode);
+        int i = table != null ? table.indexOf(DROP) : -1;
+        return i >= 0 ? table.bounds[i] : Double.NaN;
+    }
+
+    /**
+     * Gets the window of the first drop on a record type
+     * @param recordTypeCode the record type code
+     * @return the window in milliseconds, or 0 if there is no drop
+     */
+    public long getDropWindowMillis(int recordTypeCode) {
+        TypeTable table = tableOf(recordTypeCode);
+        int i = table != null ? table.indexOf(DROP) : -1;
+        return i >= 0 ? table.windows[i] : 0;
+    }
+
+    /**
+     * Gets the bound a record type meets in the first conjunction that also bounds another record type
+     * @param recordTypeCode the record type code of the bound
+     * @param otherTypeCode the record type code the conjunction also bounds
+     * @return the bound, or NaN if there is no such conjunction
+     */
+    public double getConjunctionBound(int recordTypeCode, int otherTypeCode) {
+        TypeTable table = tableOf(recordTypeCode);
+        for (int i = 0; table != null && i < table.size; i++) {
+            if (table.kinds[i] == CONJUNCTION) {
+                for (int otherType : table.otherTypes[i]) {
+                    if (otherType == otherTypeCode) {
+                        return table.bounds[i];
+                    }
+                }
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Checks a new record against every rule of its record type, then adds it to the patient's history
+     * @param history the readings the patient's earlier records left behind
+     * @param patientId the patient ID
+     * @param recordTypeCode the record type code
+     * @param timestamp the time of the measurement in milliseconds since the Unix epoch
+     * @param value the measurement value
+     * @param alerts receives the triggered alerts
+     */
+    void evaluate(DeclarativeRule history, int patientId, int recordTypeCode, long timestamp, double value,
+            Consumer<Alert> alerts) {
+        DeclarativeRule.Vital vital = history.vital(recordTypeCode);
+        TypeTable table = tableOf(recordTypeCode);
+        if (table == null) {
+            vital.add(timestamp, value, 0, 0);
+            return;
+        }
+        double rate = vital.hasReadings() && timestamp != vital.latestTimestamp
+                ? 60000.0 / Math.abs(timestamp - vital.latestTimestamp)
+                : Double.NaN;
+
+        long fired = 0;
+        for (int i = 0; i < table.size; i++) {
+            boolean matches;
+            switch (table.kinds[i]) {
+                case THRESHOLD:
+                    matches = meets(table.rate[i] ? rate : value, table.below[i], table.bounds[i]);
+                    break;
+                case TREND:
+                    matches = vital.isTrend(value, table.counts[i] - 1, table.steps[i], table.below[i]);
+                    break;
+                case DROP:
+                    matches = vital.highestSince(timestamp - table.windows[i]) >= value + table.bounds[i];
+                    break;
+                default:
+                    matches = meets(value, table.below[i], table.bounds[i]);
+                    for (int j = 0; matches && j < table.otherTypes[i].length; j++) {
+                        matches = meets(history.latest(table.otherTypes[i][j]), table.otherBelow[i][j],
+                                table.otherBounds[i][j]);
+                    }
+                    break;
+            }
+            if (matches) {
+                fired |= 1L << i;
+            }
+        }
+        for (int i = 0; fired != 0 && i < table.size; i++) {
+            if ((fired & (1L << i)) != 0 && (table.unless[i] < 0 || (fired & (1L << table.unless[i])) == 0)) {
+                alerts.accept(new Alert(Integer.toString(patientId), table.conditions[i], timestamp));
+            }
+        }
+        vital.add(timestamp, value, table.historyLength, table.windowMillis);
+    }
+
+    private TypeTable tableOf(int recordTypeCode) {
+        return recordTypeCode >= 0 && recordTypeCode < tables.length ? tables[recordTypeCode] : null;
+    }
+
+    private double threshold(int recordTypeCode, boolean rate, boolean below) {
+        TypeTable table = tableOf(recordTypeCode);
+        for (int i = 0; table != null && i < table.size; i++) {
+            if (table.kinds[i] == THRESHOLD && table.rate[i] == rate && table.below[i] == below) {
+                return table.bounds[i];
+            }
+        }
+        return Double.NaN;
+    }
+
+    // NaN, i.e. no reading, never meets a bound
+    private static boolean meets(double value, boolean below, double bound) {
+        return below ? value < bound : value > bound;
+    }
+
+    private static void compileRule(String name, Map<String, String> properties, Map<Integer, TypeTable> byType) {
+        String kind = required(name, properties, "type");
+        String condition = required(name, properties, "condition");
+        switch (kind) {
+            case "threshold": {
+                checkProperties(name, properties, "record", "below", "above", "measure");
+                String measure = properties.getOrDefault("measure", "value");
+                if (!measure.equals("value") && !measure.equals("rate")) {
+                    throw new IllegalArgumentException("Rule " + name + " has unknown measure " + measure);
+                }
+                TypeTable table = tableOf(name, properties, byType);
+                int i = table.add(name, THRESHOLD, condition);
+                table.rate[i] = measure.equals("rate");
+                table.below[i] = isBelow(name, properties, "");
+                table.bounds[i] = number(name, properties, table.below[i] ? "below" : "above");
+                break;
+            }
+            case "trend": {
+                checkProperties(name, properties, "record", "direction", "count", "step");
+                String direction = required(name, properties, "direction");
+                if (!direction.equals("increasing") && !direction.equals("decreasing")) {
+                    throw new IllegalArgumentException("Rule " + name + " has unknown direction " + direction);
+                }
+                double count = number(name, properties, "count");
+                if (count < 2 || count > 1000 || count != Math.rint(count)) {
+                    throw new IllegalArgumentException("Rule " + name + " needs a count between 2 and 1000");
+                }
+                TypeTable table = tableOf(name, properties, byType);
+                int i = table.add(name, TREND, condition);
+                table.counts[i] = (int) count;
+                table.below[i] = direction.equals("decreasing");
+                table.steps[i] = number(name, properties, "step");
+                table.historyLength = Math.max(table.historyLength, table.counts[i] - 1);
+                break;
+            }
+            case "drop": {
+                checkProperties(name, properties, "record", "amount", "windowMillis");
+                double windowMillis = number(name, properties, "windowMillis");
+                if (windowMillis <= 0) {
+                    throw new IllegalArgumentException("Rule " + name + " needs a positive windowMillis");
+                }
+                TypeTable table = tableOf(name, properties, byType);
+                int i = table.add(name, DROP, condition);
+                table.bounds[i] = number(name, properties, "amount");
+                table.windows[i] = (long) windowMillis;
+                table.windowMillis = Math.max(table.windowMillis, table.windows[i]);
+                break;
+            }
+            case "conjunction": {
+                List<String> labels = new ArrayList<>();
+                for (String property : properties.keySet()) {
+                    if (property.equals("type") || property.equals("condition") || property.equals("unless")) {
+                        continue;
+                    }
+                    int dot = property.lastIndexOf('.');
+                    String bound = dot < 0 ? "" : property.substring(dot + 1);
+                    if (!bound.equals("below") && !bound.equals("above")) {
+                        throw new IllegalArgumentException("Rule " + name + " has unknown property " + property);
+                    }
+                    String label = property.substring(0, dot);
+                    if (labels.contains(label)) {
+                        throw new IllegalArgumentException("Rule " + name + " has two bounds for " + label);
+                    }
+                    labels.add(label);
+                }
+                if (labels.size() < 2) {
+                    throw new IllegalArgumentException("Rule " + name + " needs bounds for at least two record types");
+                }
+                labels.sort(null);
+                int[] typeCodes = new int[labels.size()];
+                boolean[] below = new boolean[labels.size()];
+                double[] bounds = new double[labels.size()];
+                for (int j = 0; j < typeCodes.length; j++) {
+                    typeCodes[j] = RecordTypeRegistry.codeOf(labels.get(j));
+                    below[j] = isBelow(name, properties, labels.get(j) + ".");
+                    bounds[j] = number(name, properties, labels.get(j) + (below[j] ? ".below" : ".above"));
+                }
+                // The rule is checked whenever any of its record types gets a record
+                for (int j = 0; j < typeCodes.length; j++) {
+                    TypeTable table = byType.computeIfAbsent(typeCodes[j], code -> new TypeTable());
+                    int i = table.add(name, CONJUNCTION, condition);
+                    table.below[i] = below[j];
+                    table.bounds[i] = bounds[j];
+                    table.otherTypes[i] = without(typeCodes, j);
+                    table.otherBelow[i] = without(below, j);
+                    table.otherBounds[i] = without(bounds, j);
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Rule " + name + " has unknown type " + kind);
+        }
+    }
+
+    private static TypeTable tableOf(String name, Map<String, String> properties, Map<Integer, TypeTable> byType) {
+        int typeCode = RecordTypeRegistry.codeOf(required(name, properties, "record"));
+        return byType.computeIfAbsent(typeCode, code -> new TypeTable());
+    }
+
+    // Rejects properties that do not belong to the rule's type, e.g., misspelled ones
+    private static void checkProperties(String name, Map<String, String> properties, String... allowed) {
+        Set<String> known = Set.of(allowed);
+        for (String property : properties.keySet()) {
+            if (!known.contains(property) && !property.equals("type") && !property.equals("condition")
+                    && !property.equals("unless")) {
+                throw new IllegalArgumentException("Rule " + name + " has unknown property " + property);
+            }
+        }
+    }
+
+    private static boolean isBelow(String name, Map<String, String> properties, String prefix) {
+        boolean below = properties.containsKey(prefix + "below");
+        if (below == properties.containsKey(prefix + "above")) {
+            throw new IllegalArgumentException("Rule " + name + " needs either " + prefix + "below or " + prefix
+                    + "above");
+        }
+        return below;
+    }
+
+    private static String required(String name, Map<String, String> properties, String property) {
+        String value = properties.get(property);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Rule " + name + " is missing " + property);
+        }
+        return value;
+    }
+
+    private static double number(String name, Map<String, String> properties, String property) {
+        String value = required(name, properties, property);
+        try {
+            double number = Double.parseDouble(value);
+            if (Double.isNaN(number)) {
+                throw new NumberFormatException();
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Rule " + name + " has an invalid " + property + ": " + value);
+        }
+    }
+
+    private static int[] without(int[] values, int index) {
+        int[] rest = new int[values.length - 1];
+        for (int i = 0, j = 0; i < values.length; i++) {
+            if (i != index) {
+                rest[j++] = values[i];
+            }
+        }
+        return rest;
+    }
+
+    private static boolean[] without(boolean[] values, int index) {
+        boolean[] rest = new boolean[values.length - 1];
+        for (int i = 0, j = 0; i < values.length; i++) {
+            if (i != index) {
+                rest[j++] = values[i];
+            }
+        }
+        return rest;
+    }
+
+    private static double[] without(double[] values, int index) {
+        double[] rest = new double[values.length - 1];
+        for (int i = 0, j = 0; i < values.length; i++) {
+            if (i != index) {
+                rest[j++] = values[i];
+            }
+        }
+        return rest;
+    }
+
+    // The rules of one record type, one column per rule property
+    private static final class TypeTable {
+        int size;
+        String[] names = new String[MAX_RULES_PER_TYPE];
+        int[] kinds = new int[MAX_RULES_PER_TYPE];
+        String[] conditions = new String[MAX_RULES_PER_TYPE];
+        int[] unless = new int[MAX_RULES_PER_TYPE];
+        boolean[] rate = new boolean[MAX_RULES_PER_TYPE];
+        boolean[] below = new boolean[MAX_RULES_PER_TYPE];
+        double[] bounds = new double[MAX_RULES_PER_TYPE];
+        int[] counts = new int[MAX_RULES_PER_TYPE];
+        double[] steps = new double[MAX_RULES_PER_TYPE];
+        long[] windows = new long[MAX_RULES_PER_TYPE];
+        int[][] otherTypes = new int[MAX_RULES_PER_TYPE][];
+        boolean[][] otherBelow = new boolean[MAX_RULES_PER_TYPE][];
+        double[][] otherBounds = new double[MAX_RULES_PER_TYPE][];
+        int historyLength; // Earlier readings the trends look at
+        long windowMillis; // Longest drop window
+
+        int add(String name, int kind, String condition) {
+            if (size == MAX_RULES_PER_TYPE) {
+                throw new IllegalArgumentException("More than " + MAX_RULES_PER_TYPE + " rules for one record type");
+            }
+            names[size] = name;
+            kinds[size] = kind;
+            conditions[size] = condition;
+            unless[size] = -1;
+            return size++;
+        }
+
+        int indexOf(int kind) {
+            for (int i = 0; i < size; i++) {
+                if (kinds[i] == kind) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void resolveUnless(String name, String unlessName) {
+            int rule = Arrays.asList(names).subList(0, size).indexOf(name);
+            if (rule < 0) {
+                return;
+            }
+            unless[rule] = Arrays.asList(names).subList(0, size).indexOf(unlessName);
+            if (unless[rule] < 0) {
+                throw new IllegalArgumentException("Rule " + name + " refers to rule " + unlessName
+                        + ", which does not apply to the same record type");
+            }
+        }
+    }
+
+    // Compiled on first use, so classes that never read the defaults do not load them
+    private static final class Defaults {
+        static final AlertRuleTable TABLE = loadDefaults();
+    }
+}
@@ -1,14 +1,17 @@
 package com.alerts;
 
-import java.util.List; 
+import com.data_management.Patient;
 
 /**
  * Represents an abstract alert strategy
- * @param <PatientRecord>
  */
-public interface AlertStrategy<PatientRecord> {
+public interface AlertStrategy {
 
-    public void checkAlert(double measurement,List<PatientRecord> patientRecords);
+    /**
+     * Checks the patient's latest measurements and triggers alerts if necessary.
+     * Implementations read only the record series they are interested in.
+     * @param patient the patient to evaluate
+     */
+    public void checkAlert(Patient patient);
     
 }
-
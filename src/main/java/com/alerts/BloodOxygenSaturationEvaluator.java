@@ -1,37 +1,35 @@
 package com.alerts;
 
 
-import java.util.List;
-
 import com.alerts.Alert;
-import com.data_management.PatientRecord;
+import com.data_management.Patient;
+import com.data_management.RecordSeries;
+import com.data_management.RecordTypeRegistry;
 
 public class BloodOxygenSaturationEvaluator {
     
-    public static Alert evaluateBloodOxygenSaturation(List<PatientRecord> records) {
-        double lowThreshold = 92.0;
-        double rapidDropThreshold = 5.0;
+    public static Alert evaluateBloodOxygenSaturation(Patient patient) {
+        AlertRuleTable rules = AlertRuleTable.getDefaults();
+        double lowThreshold = rules.getThreshold(RecordTypeRegistry.SATURATION, true);
+        double rapidDropThreshold = rules.getDropAmount(RecordTypeRegistry.SATURATION);
         String lowAlertMessage = "Low Blood Oxygen Saturation Alert";
         String rapidDropAlertMessage = "Rapid Drop in Blood Oxygen Saturation Alert";
 
-        for (PatientRecord record : records) {
-            if (record.getRecordType().equals("BloodSaturation")) {
-                double currentSaturation = record.getMeasurementValue();
+        RecordSeries saturation = patient.getSeries(RecordTypeRegistry.SATURATION, 0, Long.MAX_VALUE);
+        for (int i = 0; i < saturation.size(); i++) {
+            double currentSaturation = saturation.getValue(i);
 
-                // Low Saturation alert
-                if (currentSaturation < lowThreshold) {
-                    return new Alert("Low Blood Oxygen Saturation Alert", lowAlertMessage, record.getTimestamp());
-                }
+            // Low Saturation alert
+            if (currentSaturation < lowThreshold) {
+                return new Alert("Low Blood Oxygen Saturation Alert", lowAlertMessage, saturation.getTimestamp(i));
+            }
 
-                // Rapid Drop alert
-                int currentIndex = records.indexOf(record);
-                if (currentIndex >= 1) {
-                    PatientRecord previousRecord = records.get(currentIndex - 1);
-                    double previousSaturation = previousRecord.getMeasurementValue();
-                    double drop = previousSaturation - currentSaturation;
-                    if (drop >= rapidDropThreshold) {
-                        return new Alert("Rapid Drop in Blood Oxygen Saturation Alert", rapidDropAlertMessage, record.getTimestamp());
-                    }
+            // Rapid Drop alert
+            if (i >= 1) {
+                double previousSaturation = saturation.getValue(i - 1);
+                double drop = previousSaturation - currentSaturation;
+                if (drop >= rapidDropThreshold) {
+                    return new Alert("Rapid Drop in Blood Oxygen Saturation Alert", rapidDropAlertMessage, saturation.getTimestamp(i));
                 }
             }
         }
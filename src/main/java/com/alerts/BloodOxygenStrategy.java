@@ -1,9 +1,11 @@
 package com.alerts.AlertStrategy;
 
 import com.alerts.AlertGenerator;
+import com.alerts.AlertRuleTable;
 import com.alerts.AlertFactory.BloodOxygenAlertConcreteCreator;
-import com.data_management.PatientRecord;
-import java.util.List;
+import com.data_management.Patient;
+import com.data_management.RecordSeries;
+import com.data_management.RecordTypeRegistry;
 
 /**
  * Represents an alert strategy for blood oxygen levels.
@@ -12,69 +14,60 @@ public class BloodOxygenStrategy implements AlertStrategy {
 
     private BloodOxygenAlertConcreteCreator bloodOxygenAlertConcreteCreator;
     private AlertGenerator alertGenerator;
+    private AlertRuleTable rules;
 
     /**
-     * Creates a blood oxygen strategy.
+     * Creates a blood oxygen strategy that uses the thresholds of the default alert rules.
      * @param alertGenerator the alert generator
      */
     public BloodOxygenStrategy(AlertGenerator alertGenerator) {
         this.alertGenerator = alertGenerator;
+        this.rules = AlertRuleTable.getDefaults();
         this.bloodOxygenAlertConcreteCreator = new BloodOxygenAlertConcreteCreator();
     }
 
     /**
-     * Checks if an alert should be triggered based on the given measurement and patient records.
-     * @param measurement the current measurement value
-     * @param patientRecords the list of patient records
+     * Checks if an alert should be triggered based on the patient's latest saturation measurement.
+     * @param patient the patient to evaluate
      */
     @Override
-    public void checkAlert(double measurement, List<PatientRecord> patientRecords) {
-        evaluateSaturation(measurement, patientRecords);
+    public void checkAlert(Patient patient) {
+        evaluateSaturation(patient);
     }
 
     /**
      * Evaluates the saturation level of the patient and triggers alerts if necessary.
-     * @param measurement the current measurement value
-     * @param patientRecords the list of patient records
+     * @param patient the patient to evaluate
      */
-    private void evaluateSaturation(double measurement, List<PatientRecord> patientRecords) {
-        if (patientRecords.isEmpty()) {
+    private void evaluateSaturation(Patient patient) {
+        RecordSeries latestSaturation = patient.getLastRecords(RecordTypeRegistry.SATURATION, 1);
+        if (latestSaturation.size() == 0) {
             return;
         }
 
-        PatientRecord latestRecord = patientRecords.get(patientRecords.size() - 1);
-        String patientId = Integer.toString(latestRecord.getPatientId());
-        long latestTimestamp = latestRecord.getTimestamp();
+        String patientId = Integer.toString(patient.getPatientId());
+        long latestTimestamp = latestSaturation.getTimestamp(0);
+        double measurement = latestSaturation.getValue(0);
 
         // Threshold check for low saturation
-        if (measurement < 92) {
-            checkSystolicPressureAndTriggerAlert(patientRecords, patientId, latestTimestamp, measurement);
+        if (measurement < rules.getThreshold(RecordTypeRegistry.SATURATION, true)) {
+            checkSystolicPressureAndTriggerAlert(patient, patientId, latestTimestamp);
         }
 
         // Check for significant drop in saturation over the last 10 minutes
-        checkForDecreasingTrend(patientRecords, patientId, latestTimestamp, measurement);
+        checkForDecreasingTrend(patient, patientId, latestTimestamp, measurement);
     }
 
     /**
      * Checks the last recorded systolic pressure and triggers an appropriate alert if the saturation is too low.
-     * @param patientRecords the list of patient records
+     * @param patient the patient to evaluate
      * @param patientId the patient ID
      * @param latestTimestamp the timestamp of the latest measurement
-     * @param measurement the current measurement value
      */
-    private void checkSystolicPressureAndTriggerAlert(List<PatientRecord> patientRecords, String patientId, long latestTimestamp, double measurement) {
-        boolean systolicPressureTooLow = false;
-
-        for (int i = patientRecords.size() - 2; i >= 0; i--) {
-            PatientRecord record = patientRecords.get(i);
-            if (record.getRecordType().equals("SystolicPressure")) {
-                double systolicPressure = record.getMeasurementValue();
-                if (systolicPressure < 90) {
-                    systolicPressureTooLow = true;
-                }
-                break;
-            }
-        }
+    private void checkSystolicPressureAndTriggerAlert(Patient patient, String patientId, long latestTimestamp) {
+        RecordSeries latestSystolic = patient.getLastRecords(RecordTypeRegistry.SYSTOLIC_PRESSURE, 1);
+        boolean systolicPressureTooLow = latestSystolic.size() > 0 && latestSystolic.getValue(0)
+                < rules.getConjunctionBound(RecordTypeRegistry.SYSTOLIC_PRESSURE, RecordTypeRegistry.SATURATION);
 
         if (systolicPressureTooLow) {
             alertGenerator.triggerAlert(bloodOxygenAlertConcreteCreator.createAlert(patientId, "Critical Threshold Alert - Hypotensive Hypoxemia Alert", latestTimestamp));
@@ -84,22 +77,22 @@ public class BloodOxygenStrategy implements AlertStrategy {
     }
 
     /**
-     * Checks for a significant drop in saturation over a 10-minute window and triggers an alert if detected.
-     * @param patientRecords the list of patient records
+     * Checks for a significant drop in saturation over the window of the drop rule, 10 minutes by default,
+     * and triggers an alert if detected.
+     * @param patient the patient to evaluate
      * @param patientId the patient ID
      * @param latestTimestamp the timestamp of the latest measurement
      * @param measurement the current measurement value
      */
-    private void checkForDecreasingTrend(List<PatientRecord> patientRecords, String patientId, long latestTimestamp, double measurement) {
-        for (int i = patientRecords.size() - 2; i >= 0; i--) {
-            PatientRecord record = patientRecords.get(i);
-            if (record.getRecordType().equals("Saturation") && record.getTimestamp() >= latestTimestamp - (10 * 60 * 1000)) {
-                if (record.getMeasurementValue() >= measurement + 5) {
-                    alertGenerator.triggerAlert(bloodOxygenAlertConcreteCreator.createAlert(patientId, "Decreasing Trend Alert in Saturation", record.getTimestamp()));
-                    break;
-                }
+    private void checkForDecreasingTrend(Patient patient, String patientId, long latestTimestamp, double measurement) {
+        long windowMillis = rules.getDropWindowMillis(RecordTypeRegistry.SATURATION);
+        double drop = rules.getDropAmount(RecordTypeRegistry.SATURATION);
+        RecordSeries window = patient.getSeries(RecordTypeRegistry.SATURATION, latestTimestamp - windowMillis, latestTimestamp);
+        for (int i = window.size() - 2; i >= 0; i--) {
+            if (window.getValue(i) >= measurement + drop) {
+                alertGenerator.triggerAlert(bloodOxygenAlertConcreteCreator.createAlert(patientId, "Decreasing Trend Alert in Saturation", window.getTimestamp(i)));
+                break;
             }
         }
     }
 }
-
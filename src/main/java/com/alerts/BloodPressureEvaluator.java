@@ -1,44 +1,42 @@
 package com.alerts;
 
-import java.util.List;
-
 import com.alerts.Alert;
-import com.data_management.PatientRecord;
+import com.data_management.Patient;
+import com.data_management.RecordSeries;
+import com.data_management.RecordTypeRegistry;
 
 public class BloodPressureEvaluator {
     
-    public static Alert evaluateBloodPressure(List<PatientRecord> records, String type) {
-        int consecutiveReadings = 3;
-        double thresholdChange = 10.0;
-        double highThreshold = 180.0;
-        double lowThreshold = 90.0;
+    public static Alert evaluateBloodPressure(Patient patient, String type) {
+        // The thresholds of the record type in the default alert rules
+        AlertRuleTable rules = AlertRuleTable.getDefaults();
+        int typeCode = RecordTypeRegistry.codeOf(type);
+        int consecutiveReadings = rules.getTrendCount(typeCode);
+        double thresholdChange = rules.getTrendStep(typeCode);
+        double highThreshold = rules.getThreshold(typeCode, false);
+        double lowThreshold = rules.getThreshold(typeCode, true);
         String highAlertMessage = "High Blood Pressure Alert";
         String lowAlertMessage = "Low Blood Pressure Alert";
 
-        double sum = 0;
-        for (PatientRecord record : records) {
-            if (record.getRecordType().equals(type)) {
-                sum += record.getMeasurementValue();
-            }
-        }
+        RecordSeries records = patient.getLastRecords(typeCode, consecutiveReadings);
 
-        if (records.size() >= consecutiveReadings) {
-            double average = sum / records.size();
-            double lastReading = records.get(records.size() - 1).getMeasurementValue();
-            double previousReading = records.get(records.size() - 2).getMeasurementValue();
-            double secondPreviousReading = records.get(records.size() - 3).getMeasurementValue();
+        if (consecutiveReadings >= 3 && records.size() >= consecutiveReadings) {
+            int last = records.size() - 1;
+            double lastReading = records.getValue(last);
+            double previousReading = records.getValue(last - 1);
+            double secondPreviousReading = records.getValue(last - 2);
 
             // Trend Alert
             if (Math.abs(lastReading - previousReading) > thresholdChange &&
                 Math.abs(previousReading - secondPreviousReading) > thresholdChange) {
-                return new Alert("Trend Alert", "Blood pressure trend detected", records.get(records.size() - 1).getTimestamp());
+                return new Alert("Trend Alert", "Blood pressure trend detected", records.getTimestamp(last));
             }
 
             // High and Low Blood Pressure Alerts
             if (lastReading > highThreshold) {
-                return new Alert("High Blood Pressure Alert", highAlertMessage, records.get(records.size() - 1).getTimestamp());
+                return new Alert("High Blood Pressure Alert", highAlertMessage, records.getTimestamp(last));
             } else if (lastReading < lowThreshold) {
-                return new Alert("Low Blood Pressure Alert", lowAlertMessage, records.get(records.size() - 1).getTimestamp());
+                return new Alert("Low Blood Pressure Alert", lowAlertMessage, records.getTimestamp(last));
             }
         }
         
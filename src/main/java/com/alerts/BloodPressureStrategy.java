@@ -1,92 +1,91 @@
 package com.alerts;
-import com.data_management.PatientRecord;
-import java.util.List; 
+import com.data_management.Patient;
+import com.data_management.RecordSeries;
+import com.data_management.RecordTypeRegistry;
 
 /**
  * Represents an alert strategy for blood pressure
- * @param <PatientRecord>
  */
-public class BloodPressureStrategy<PatientRecord> implements AlertStrategy{
+public class BloodPressureStrategy implements AlertStrategy{
 
     private AlertGenerator alertGenerator;
+    private AlertRuleTable rules;
 
     /**
-     * Create a blood pressure strategy
+     * Create a blood pressure strategy that uses the thresholds of the default alert rules
      * @param alertGenerator alert generator
      */
     public BloodPressureStrategy(AlertGenerator alertGenerator){
         this.alertGenerator = alertGenerator;
+        this.rules = AlertRuleTable.getDefaults();
     }
     
     /**
      * Check if an alert should be triggered
-     * @param measurement measurement value of the alert
-     * @param patientRecord patient record
+     * @param patient the patient to evaluate
      */
     @Override
-    public void checkAlert(double measurement, List<PatientRecord> patientRecord) {
-        evaluateDiastolicPressure(measurement, patientRecord);
-        evaluateDiastolicPressure(measurement, patientRecord);
+    public void checkAlert(Patient patient) {
+        evaluateDiastolicPressure(patient);
     }
 
-    private void evaluateDiastolicPressure(double measurement, List<com.alerts.PatientRecord> patientRecord) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'evaluateDiastolicPressure'");
-    }
     /**
     * Assess the patient's diastolic pressure and generate alerts if the pressure is abnormally low or high,
     * or if there is a consistent decreasing or increasing trend over three successive measurements.
-    * @param measurement the measured value triggering the alert
-    * @param patientRecord the patient's record containing relevant data
+    * @param patient the patient whose diastolic pressure is evaluated
     */
-    public void evaluateDiastolicPressure(Double measurement, List<PatientRecord> patientRecord){
+    public void evaluateDiastolicPressure(Patient patient){
 
-        PatientRecord record = patientRecord.get(patientRecord.size()-1);
-        String patientId = Integer.toString(record.getPatientId());
-        long timeStamp = record.getTimestamp();
+        // The trend check never looks further back than two previous measurements
+        RecordSeries diastolic = patient.getLastRecords(RecordTypeRegistry.DIASTOLIC_PRESSURE, 3);
+        if (diastolic.size() == 0) {
+            return;
+        }
+        int latest = diastolic.size() - 1;
+        double measurement = diastolic.getValue(latest);
+        String patientId = Integer.toString(patient.getPatientId());
+        long timeStamp = diastolic.getTimestamp(latest);
 
         boolean decreaseInDP = false;
         boolean increaseInDP = false;
+        double step = rules.getTrendStep(RecordTypeRegistry.DIASTOLIC_PRESSURE);
 
 
         //Treshold check
-        if (measurement < 60){
+        if (measurement < rules.getThreshold(RecordTypeRegistry.DIASTOLIC_PRESSURE, true)){
             alertGenerator.triggerAlert(new BloodPressureAlert(patientId, "Critical Treshold Alert - Diastolic Pressure too low", timeStamp));
-        } else if(measurement > 120){
+        } else if(measurement > rules.getThreshold(RecordTypeRegistry.DIASTOLIC_PRESSURE, false)){
             alertGenerator.triggerAlert(new BloodPressureAlert(patientId, "Critical Treshold Alert - Diastolic Pressure too high", timeStamp));
         }
         //verify if there is a decrease/increase in the measurements over three consecutive measurements
         //if there already was a decrease/increase reported, then it is considered a trend and an alert is triggered
-        for(int i = patientRecord.size()-2; i >= 0; i--){
+        for(int i = latest - 1; i >= 0; i--){
 
-            if(patientRecord.get(i).getRecordType().equals("DiastolicPressure")){
-
-                PatientRecord previousRecord = patientRecord.get(i);
-                double previousmeasurement = previousRecord.getMeasurementValue();
-                if(measurement < previousmeasurement + 10){
-                    if(increaseInDP){//if there was an increase in the diastolic pressure before the decrease, then there is no decrease/increase trend
-                        return;
-                    } else if(!decreaseInDP){
-                        decreaseInDP = true;
-                    } else {
-                        alertGenerator.triggerAlert(new BloodPressureAlert(patientId, "Decreasing Trend Alert in Diastolic Pressure", timeStamp));
-                        return;
-                    }
+            double previousmeasurement = diastolic.getValue(i);
+            if(measurement < previousmeasurement + step){
+                if(increaseInDP){//if there was an increase in the diastolic pressure before the decrease, then there is no decrease/increase trend
+                    return;
+                } else if(!decreaseInDP){
+                    decreaseInDP = true;
+                } else {
+                    alertGenerator.triggerAlert(new BloodPressureAlert(patientId, "Decreasing Trend Alert in Diastolic Pressure", timeStamp));
+                    return;
                 }
-                else if (measurement > previousmeasurement -10){
-                    if(decreaseInDP){//if there was a decrease in the diastolic pressure before the increase, then there is no decrease/increase trend
-                        return;
-                    }else if(!increaseInDP){
-                        increaseInDP = true;
-                    } else {
-                        alertGenerator.triggerAlert(new BloodPressureAlert(patientId, "Increasing Trend Alert in Diastolic Pressure", timeStamp));
-                        return;
-                    }
-                } else{
+            }
+            else if (measurement > previousmeasurement - step){
+                if(decreaseInDP){//if there was a decrease in the diastolic pressure before the increase, then there is no decrease/increase trend
+                    return;
+                }else if(!increaseInDP){
+                    increaseInDP = true;
+                } else {
+                    alertGenerator.triggerAlert(new BloodPressureAlert(patientId, "Increasing Trend Alert in Diastolic Pressure", timeStamp));
                     return;
                 }
-                measurement = previousmeasurement;
+            } else{
+                return;
             }
+            measurement = previousmeasurement;
         }
         
     }
+}
@@ -1,23 +1,18 @@
 package com.alerts;
 
-import java.util.List;
-
-import com.data_management.PatientRecord;
+import com.data_management.Patient;
+import com.data_management.RecordSeries;
+import com.data_management.RecordTypeRegistry;
 
 public class CombinedAlertEvaluator {
 
     // Evaluate data to trigger Hypotensive Hypoxemia Alert
-    public static String evaluateHypotensiveHypoxemia(List<PatientRecord> records) {
-        boolean lowBloodPressure = false;
-        boolean lowBloodOxygenSaturation = false;
-
-        for (PatientRecord record : records) {
-            if (record.getRecordType().equals("SystolicPressure") && record.getMeasurementValue() < 90) {
-                lowBloodPressure = true;
-            } else if (record.getRecordType().equals("BloodSaturation") && record.getMeasurementValue() < 92) {
-                lowBloodOxygenSaturation = true;
-            }
-        }
+    public static String evaluateHypotensiveHypoxemia(Patient patient) {
+        AlertRuleTable rules = AlertRuleTable.getDefaults();
+        double systolicBound = rules.getConjunctionBound(RecordTypeRegistry.SYSTOLIC_PRESSURE, RecordTypeRegistry.SATURATION);
+        double saturationBound = rules.getConjunctionBound(RecordTypeRegistry.SATURATION, RecordTypeRegistry.SYSTOLIC_PRESSURE);
+        boolean lowBloodPressure = anyBelow(patient.getSeries(RecordTypeRegistry.SYSTOLIC_PRESSURE, 0, Long.MAX_VALUE), systolicBound);
+        boolean lowBloodOxygenSaturation = anyBelow(patient.getSeries(RecordTypeRegistry.SATURATION, 0, Long.MAX_VALUE), saturationBound);
 
         if (lowBloodPressure && lowBloodOxygenSaturation) {
             return "Hypotensive Hypoxemia Alert: Low blood pressure and low blood oxygen saturation";
@@ -25,4 +20,14 @@ public class CombinedAlertEvaluator {
 
         return null;
     }
-}
\ No newline at end of file
+
+    // Check whether any measurement of the series lies below the threshold
+    private static boolean anyBelow(RecordSeries series, double threshold) {
+        for (int i = 0; i < series.size(); i++) {
+            if (series.getValue(i) < threshold) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,165 @@
+package com.alerts;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Evaluates the rules of an AlertRuleConfig for one patient
+ *
+ * Every record is checked against the config's current table, so rules that
+ * are reloaded take effect with the next record. The rule keeps, per record
+ * type, the latest reading, as many earlier readings as the longest trend
+ * needs, and the readings of the longest drop window that may still be the
+ * highest of the window. What a reloaded table needs beyond that builds up as
+ * new records arrive
+ */
+public class DeclarativeRule implements AlertRule {
+
+    private final AlertRuleConfig config;
+    private Vital[] vitals = new Vital[8]; // Indexed by record type code
+
+    /**
+     * Creates a rule for a new patient
+     * @param config the source of the rules to evaluate
+     */
+    public DeclarativeRule(AlertRuleConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Checks a new record against the current rules of its record type and triggers alerts if necessary
+     * @param patientId the patient ID
+     * @param recordTypeCode the record type code
+     * @param timestamp the time of the measurement in milliseconds since the Unix epoch
+     * @param measurementValue the measurement value
+     * @param alerts receives the triggered alerts
+     */
+    @Override
+    public void onRecord(int patientId, int recordTypeCode, long timestamp, double measurementValue,
+            Consumer<Alert> alerts) {
+        if (recordTypeCode >= 0) {
+            config.getTable().evaluate(this, patientId, recordTypeCode, timestamp, measurementValue, alerts);
+        }
+    }
+
+    Vital vital(int recordTypeCode) {
+        if (recordTypeCode >= vitals.length) {
+            vitals = Arrays.copyOf(vitals, Math.max(recordTypeCode + 1, vitals.length * 2));
+        }
+        Vital vital = vitals[recordTypeCode];
+        if (vital == null) {
+            vital = new Vital();
+            vitals[recordTypeCode] = vital;
+        }
+        return vital;
+    }
+
+    // Returns the latest reading of a record type, or NaN if there is none
+    double latest(int recordTypeCode) {
+        Vital vital = recordTypeCode < vitals.length ? vitals[recordTypeCode] : null;
+        return vital != null ? vital.latestValue : Double.NaN;
+    }
+
+    // The readings of one record type that the rules look back at
+    static final class Vital {
+        double latestValue = Double.NaN;
+        long latestTimestamp;
+
+        // Earlier readings for trends, as a ring ending at recentEnd
+        private double[] recent = new double[0];
+        private int recentEnd;
+        private int recentCount;
+
+        // Readings of the drop window that no later reading matches or exceeds, oldest first
+        private long[] windowTimestamps = new long[0];
+        private double[] windowValues = new double[0];
+        private int windowStart;
+        private int windowEnd;
+
+        boolean hasReadings() {
+            return !Double.isNaN(latestValue);
+        }
+
+        // Checks if the value ends a run of steps readings, each more than step above (or below) the one before
+        boolean isTrend(double value, int steps, double step, boolean falling) {
+            if (recentCount < steps) {
+                return false;
+            }
+            double current = value;
+            for (int j = 1; j <= steps; j++) {
+                double previous = recent[Math.floorMod(recentEnd - j, recent.length)];
+                double change = falling ? previous - current : current - previous;
+                if (!(change > step)) {
+                    return false;
+                }
+                current = previous;
+            }
+            return true;
+        }
+
+        // Returns the highest reading at or after the cutoff, or negative infinity
+        double highestSince(long cutoff) {
+            int low = windowStart;
+            int high = windowEnd;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (windowTimestamps[middle] < cutoff) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low < windowEnd ? windowValues[low] : Double.NEGATIVE_INFINITY;
+        }
+
+        void add(long timestamp, double value, int historyLength, long windowMillis) {
+            if (historyLength > 0) {
+                if (recent.length < historyLength) {
+                    double[] grown = new double[historyLength];
+                    for (int j = recentCount; j >= 1; j--) {
+                        grown[recentCount - j] = recent[Math.floorMod(recentEnd - j, recent.length)];
+                    }
+                    recent = grown;
+                    recentEnd = recentCount % grown.length;
+                }
+                recent[recentEnd] = value;
+                recentEnd = (recentEnd + 1) % recent.length;
+                recentCount = Math.min(recentCount + 1, recent.length);
+            } else {
+                recentCount = 0;
+            }
+            if (windowMillis > 0) {
+                while (windowStart < windowEnd && windowTimestamps[windowStart] < timestamp - windowMillis) {
+                    windowStart++;
+                }
+                // Readings this one matches or exceeds can no longer be the highest
+                while (windowEnd > windowStart && windowValues[windowEnd - 1] <= value) {
+                    windowEnd--;
+                }
+                append(timestamp, value);
+            } else {
+                windowStart = 0;
+                windowEnd = 0;
+            }
+            latestValue = value;
+            latestTimestamp = timestamp;
+        }
+
+        private void append(long timestamp, double value) {
+            if (windowEnd == windowTimestamps.length) {
+                int size = windowEnd - windowStart;
+                if (size * 2 >= windowTimestamps.length) {
+                    windowTimestamps = Arrays.copyOf(windowTimestamps, Math.max(8, windowTimestamps.length * 2));
+                    windowValues = Arrays.copyOf(windowValues, windowTimestamps.length);
+                }
+                System.arraycopy(windowTimestamps, windowStart, windowTimestamps, 0, size);
+                System.arraycopy(windowValues, windowStart, windowValues, 0, size);
+                windowStart = 0;
+                windowEnd = size;
+            }
+            windowTimestamps[windowEnd] = timestamp;
+            windowValues[windowEnd] = value;
+            windowEnd++;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.alerts;
+
+import java.util.function.Consumer;
+
+import com.data_management.RecordTypeRegistry;
+
+/**
+ * Incremental version of the abnormal heart rate trend of the ECG strategy
+ * 
+ * Each ECG record is treated as a heart beat, so the interval to the previous
+ * record gives the heart rate. The rule keeps a running count of irregular
+ * rate changes that alerts once five of them have accumulated. Heart rates
+ * that are too low or too high are thresholds of the AlertRuleTable
+ */
+public class ECGRule implements AlertRule {
+
+    private static final double IRREGULAR_CHANGE_BPM = 10;
+    private static final int TREND_CHANGES = 5;
+
+    private boolean hasPrevious;
+    private long previousTimestamp;
+    private double previousBpm = Double.NaN;
+    private int irregularBpmCount;
+
+    /**
+     * Updates the heart rate with a new ECG record and triggers an alert if it keeps changing irregularly
+     * @param patientId the patient ID
+     * @param recordTypeCode the record type code, only ECG records are used
+     * @param timestamp the time of the measurement in milliseconds since the Unix epoch
+     * @param measurementValue the measurement value
+     * @param alerts receives the triggered alerts
+     */
+    @Override
+    public void onRecord(int patientId, int recordTypeCode, long timestamp, double measurementValue,
+            Consumer<Alert> alerts) {
+        if (recordTypeCode != RecordTypeRegistry.ECG) {
+            return;
+        }
+        if (!hasPrevious) {
+            hasPrevious = true;
+            previousTimestamp = timestamp;
+            return;
+        }
+        if (timestamp == previousTimestamp) {
+            // No interval, so no rate; keep the previous beat
+            return;
+        }
+        double bpm = (60.0 / Math.abs(timestamp - previousTimestamp)) * 1000;
+        previousTimestamp = timestamp;
+
+        // Irregular changes push the count up, regular ones let it drain
+        if (!Double.isNaN(previousBpm)) {
+            if (Math.abs(bpm - previousBpm) >= IRREGULAR_CHANGE_BPM) {
+                irregularBpmCount++;
+            } else {
+                irregularBpmCount = Math.max(0, irregularBpmCount - 1);
+            }
+            if (irregularBpmCount >= TREND_CHANGES) {
+                alerts.accept(new Alert(Integer.toString(patientId), "Trend Alert - Abnormal Heart Rate", timestamp));
+                irregularBpmCount = 0;
+            }
+        }
+        previousBpm = bpm;
+    }
+}
@@ -1,9 +1,11 @@
 package com.alerts.AlertStrategy;
 
 import com.alerts.AlertGenerator;
+import com.alerts.AlertRuleTable;
 import com.alerts.AlertFactory.ECGAlertConcreteCreator;
-import com.data_management.PatientRecord;
-import java.util.List;
+import com.data_management.Patient;
+import com.data_management.RecordSeries;
+import com.data_management.RecordTypeRegistry;
 
 /**
  * Represents an ECG alert strategy
@@ -12,57 +14,58 @@ public class ECGStrategy implements AlertStrategy {
 
     private ECGAlertConcreteCreator ecgAlertConcreteCreator;
     private AlertGenerator alertGenerator;
+    private AlertRuleTable rules;
 
     /**
-     * Creates an ECG strategy
+     * Creates an ECG strategy that uses the heart rate thresholds of the default alert rules
      * @param alertGenerator alert generator
      */
     public ECGStrategy(AlertGenerator alertGenerator) {
         this.alertGenerator = alertGenerator;
+        this.rules = AlertRuleTable.getDefaults();
         this.ecgAlertConcreteCreator = new ECGAlertConcreteCreator();
     }
 
     /**
      * Checks if an alert should be triggered
-     * @param measurement measurement value of the alert
-     * @param patientRecords list of patient records
+     * @param patient the patient to evaluate
      */
     @Override
-    public void checkAlert(double measurement, List<PatientRecord> patientRecords) {
-        evaluateECG(patientRecords);
+    public void checkAlert(Patient patient) {
+        evaluateECG(patient.getPatientId(), patient.getSeries(RecordTypeRegistry.ECG, 0, Long.MAX_VALUE));
     }
 
     /**
      * Evaluates the ECG of the patient and triggers alerts if heart rate is too low or too high,
      * or if there is an abnormal trend in the measurements over five consecutive measurements
-     * @param patientRecords list of patient records
+     * @param patientIdentifier the patient ID
+     * @param ecg the patient's ECG measurements in time order
      */
-    private void evaluateECG(List<PatientRecord> patientRecords) {
-        PatientRecord latestRecord = patientRecords.get(patientRecords.size() - 1);
-        String patientId = Integer.toString(latestRecord.getPatientId());
-        int irregularBpmCount = 0;
-
-        for (int k = patientRecords.size() - 2; k >= 0; k--) {
-            PatientRecord previousRecord = patientRecords.get(k);
-
-            if (previousRecord.getRecordType().equals("ECG")) {
-                double bpm = calculateBpm(latestRecord.getTimestamp(), previousRecord.getTimestamp());
-
-                // Threshold checks
-                if (bpm < 50) {
-                    alertGenerator.triggerAlert(ecgAlertConcreteCreator.createAlert(patientId, "Critical Threshold Alert - Heart Rate too low", latestRecord.getTimestamp()));
-                } else if (bpm > 100) {
-                    alertGenerator.triggerAlert(ecgAlertConcreteCreator.createAlert(patientId, "Critical Threshold Alert - Heart Rate too high", latestRecord.getTimestamp()));
-                }
-
-                // Check for abnormal trend over five consecutive measurements
-                if (isAbnormalTrend(patientRecords, k, bpm)) {
-                    alertGenerator.triggerAlert(ecgAlertConcreteCreator.createAlert(patientId, "Trend Alert - Abnormal Heart Rate", previousRecord.getTimestamp()));
-                    return;
-                }
+    private void evaluateECG(int patientIdentifier, RecordSeries ecg) {
+        if (ecg.size() == 0) {
+            return;
+        }
+        String patientId = Integer.toString(patientIdentifier);
+        long latestTimestamp = ecg.getTimestamp(ecg.size() - 1);
+
+        for (int k = ecg.size() - 2; k >= 0; k--) {
+            long previousTimestamp = ecg.getTimestamp(k);
+            double bpm = calculateBpm(latestTimestamp, previousTimestamp);
+
+            // Threshold checks
+            if (bpm < rules.getRateThreshold(RecordTypeRegistry.ECG, true)) {
+                alertGenerator.triggerAlert(ecgAlertConcreteCreator.createAlert(patientId, "Critical Threshold Alert - Heart Rate too low", latestTimestamp));
+            } else if (bpm > rules.getRateThreshold(RecordTypeRegistry.ECG, false)) {
+                alertGenerator.triggerAlert(ecgAlertConcreteCreator.createAlert(patientId, "Critical Threshold Alert - Heart Rate too high", latestTimestamp));
+            }
 
-                latestRecord = previousRecord;
+            // Check for abnormal trend over five consecutive measurements
+            if (isAbnormalTrend(ecg, k, bpm)) {
+                alertGenerator.triggerAlert(ecgAlertConcreteCreator.createAlert(patientId, "Trend Alert - Abnormal Heart Rate", previousTimestamp));
+                return;
             }
+
+            latestTimestamp = previousTimestamp;
         }
     }
 
@@ -78,35 +81,31 @@ public class ECGStrategy implements AlertStrategy {
 
     /**
      * Checks for an abnormal trend in the measurements over five consecutive measurements
-     * @param patientRecords list of patient records
+     * @param ecg the patient's ECG measurements in time order
      * @param startIndex the index to start checking from
      * @param initialBpm the initial bpm to compare against
      * @return true if there is an abnormal trend, false otherwise
      */
-    private boolean isAbnormalTrend(List<PatientRecord> patientRecords, int startIndex, double initialBpm) {
+    private boolean isAbnormalTrend(RecordSeries ecg, int startIndex, double initialBpm) {
         int irregularBpmCount = 0;
         double bpm = initialBpm;
 
         for (int i = startIndex - 1; i >= 0; i--) {
-            PatientRecord record = patientRecords.get(i);
-
-            if (record.getRecordType().equals("ECG")) {
-                double previousBpm = calculateBpm(record.getTimestamp(), patientRecords.get(i + 1).getTimestamp());
+            double previousBpm = calculateBpm(ecg.getTimestamp(i), ecg.getTimestamp(i + 1));
 
-                // Check for irregular bpm
-                if (Math.abs(bpm - previousBpm) >= 10) {
-                    irregularBpmCount++;
-                } else {
-                    irregularBpmCount = Math.max(0, irregularBpmCount - 1);
-                }
-
-                // Trigger alert if there is a trend
-                if (irregularBpmCount >= 5) {
-                    return true;
-                }
+            // Check for irregular bpm
+            if (Math.abs(bpm - previousBpm) >= 10) {
+                irregularBpmCount++;
+            } else {
+                irregularBpmCount = Math.max(0, irregularBpmCount - 1);
+            }
 
-                bpm = previousBpm;
+            // Trigger alert if there is a trend
+            if (irregularBpmCount >= 5) {
+                return true;
             }
+
+            bpm = previousBpm;
         }
 
         return false;
@@ -0,0 +1,85 @@
+package com.alerts;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.data_management.RecordVisitor;
+
+/**
+ * Evaluates alert rules as records arrive instead of rescanning each patient's history
+ * 
+ * Every patient gets its own instance of each rule the first time one of its
+ * records is seen, and each record then updates those instances. The cost of a
+ * record depends on the number of rules, not on how much history the patient
+ * has. The engine is a RecordVisitor, so it can be fed by anything that visits
+ * records, e.g., to catch up on the records already in a DataStorage
+ * Records of different patients may be visited concurrently; records of the
+ * same patient are evaluated one at a time
+ */
+public class IncrementalAlertEngine implements RecordVisitor {
+
+    private final List<Supplier<AlertRule>> ruleFactories;
+    private final Consumer<Alert> alerts;
+    private final ConcurrentHashMap<Integer, AlertRule[]> patientRules = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an engine that evaluates the default alert rules and the ECG rhythm rule
+     * @param alerts receives the triggered alerts
+     */
+    public IncrementalAlertEngine(Consumer<Alert> alerts) {
+        this(List.of(new AlertRuleConfig(AlertRuleTable.loadDefaults())::newRule, ECGRule::new), alerts);
+    }
+
+    /**
+     * Creates an engine that evaluates the given rules
+     * @param ruleFactories create the rule instances of a new patient
+     * @param alerts receives the triggered alerts
+     */
+    public IncrementalAlertEngine(List<Supplier<AlertRule>> ruleFactories, Consumer<Alert> alerts) {
+        this.ruleFactories = List.copyOf(ruleFactories);
+        this.alerts = alerts;
+    }
+
+    /**
+     * Evaluates a new record against the rules of its patient
+     * @param patientId the patient ID
+     * @param recordTypeCode the record type code
+     * @param timestamp the time of the measurement in milliseconds since the Unix epoch
+     * @param measurementValue the measurement value
+     */
+    @Override
+    public void visit(int patientId, int recordTypeCode, long timestamp, double measurementValue) {
+        AlertRule[] rules = patientRules.computeIfAbsent(patientId, id -> newRules());
+        synchronized (rules) {
+            for (AlertRule rule : rules) {
+                rule.onRecord(patientId, recordTypeCode, timestamp, measurementValue, alerts);
+            }
+        }
+    }
+
+    /**
+     * Forgets everything the rules remember about a patient
+     * @param patientId the patient ID
+     */
+    public void resetPatient(int patientId) {
+        patientRules.remove(patientId);
+    }
+
+    /**
+     * Gets the number of patients the engine keeps rule state for
+     * @return the number of patients
+     */
+    public int getPatientCount() {
+        return patientRules.size();
+    }
+
+    private AlertRule[] newRules() {
+        AlertRule[] rules = new AlertRule[ruleFactories.size()];
+        for (int i = 0; i < rules.length; i++) {
+            rules[i] = ruleFactories.get(i).get();
+        }
+        return rules;
+    }
+}
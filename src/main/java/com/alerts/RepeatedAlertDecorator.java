@@ -9,7 +9,7 @@ public class RepeatedAlertDecorator extends AlertDecorator {
 
     private int repeatCheck;
     private long timeInterval;
-    private int repeatCount;
+    private volatile int repeatCount;
 
     /**
      * Creates a repeated alert decorator.
@@ -26,13 +26,35 @@ public class RepeatedAlertDecorator extends AlertDecorator {
 
     /**
      * Repeats the alert for the specified number of times over the given time interval.
+     * The first repeat happens right away and the others are left to the shared
+     * AlertRepeatScheduler, so no thread waits between repeats.
+     * @return the handle to cancel the remaining repeats with, e.g., when the condition resolves,
+     *         or null if the alert is not repeated after the first time
      */
-    public void repeatTheAlert() {
-        for (int i = 0; i < repeatCheck; i++) {
-            repeatAlert();
-            repeatCount++;
-            sleep();
+    public AlertRepeatScheduler.RepeatHandle repeatTheAlert() {
+        return repeatTheAlert(AlertRepeatScheduler.getShared());
+    }
+
+    /**
+     * Repeats the alert for the specified number of times over the given time interval,
+     * leaving every repeat after the first to the specified scheduler.
+     * @param scheduler the scheduler of the remaining repeats
+     * @return the handle to cancel the remaining repeats with, or null if the alert is not
+     *         repeated after the first time
+     */
+    public AlertRepeatScheduler.RepeatHandle repeatTheAlert(AlertRepeatScheduler scheduler) {
+        if (repeatCheck <= 0) {
+            return null;
+        }
+        repeatAlert();
+        repeatCount = 1;
+        if (repeatCheck == 1) {
+            return null;
         }
+        return scheduler.schedule(this, timeInterval, repeatCheck - 1, (alert, repeatNumber, priority) -> {
+            repeatAlert();
+            repeatCount = repeatNumber + 1;
+        });
     }
 
     /**
@@ -49,16 +71,5 @@ public class RepeatedAlertDecorator extends AlertDecorator {
     private void repeatAlert() {
         System.out.println("Repeating Alert: " + getCondition() + " for patient " + getPatientId() + " " + (System.currentTimeMillis() - getTimestamp()) + "ms ago");
     }
-
-    /**
-     * Sleeps for the specified time interval between repeats.
-     */
-    private void sleep() {
-        try {
-            Thread.sleep(timeInterval);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
-    }
 }
 
@@ -0,0 +1,64 @@
+package com.alerts;
+
+import java.util.List;
+
+/**
+ * The outcome of one {@link AlertGenerator#evaluateAll()} sweep: the alerts it
+ * raised and how long it took to evaluate every patient.
+ */
+public class SweepResult {
+    private final List<Alert> alerts;
+    private final int patientCount;
+    private final long elapsedNanos;
+
+    /**
+     * Constructs the result of a sweep.
+     *
+     * @param alerts       the alerts raised during the sweep
+     * @param patientCount the number of patients evaluated
+     * @param elapsedNanos the duration of the sweep in nanoseconds
+     */
+    public SweepResult(List<Alert> alerts, int patientCount, long elapsedNanos) {
+        this.alerts = alerts;
+        this.patientCount = patientCount;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Returns the alerts raised during the sweep, grouped by the partition of
+     * patients that raised them.
+     *
+     * @return the alerts
+     */
+    public List<Alert> getAlerts() {
+        return alerts;
+    }
+
+    /**
+     * Returns the number of patients evaluated.
+     *
+     * @return the number of patients
+     */
+    public int getPatientCount() {
+        return patientCount;
+    }
+
+    /**
+     * Returns how long the sweep took, from listing the patients to collecting
+     * the last alert.
+     *
+     * @return the duration of the sweep in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the number of patients evaluated per second during the sweep.
+     *
+     * @return the sweep's throughput
+     */
+    public double getPatientsPerSecond() {
+        return elapsedNanos == 0 ? 0 : patientCount * 1e9 / elapsedNanos;
+    }
+}
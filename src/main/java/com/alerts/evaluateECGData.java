@@ -1,18 +1,19 @@
 package com.alerts;
 
-import java.util.List;
-
-import com.data_management.PatientRecord;
+import com.data_management.Patient;
+import com.data_management.RecordSeries;
+import com.data_management.RecordTypeRegistry;
 
 
 // Evaluate data to trigger ECG Data Alerts for abnormal peaks
     public class evaluateECGData {
     
-        public static String evaluateECGData(List<PatientRecord> records) {
+        public static String evaluateECGData(Patient patient) {
             double peakThreshold = 150; // Define your threshold for abnormal peaks
     
-            for (PatientRecord record : records) {
-                if (record.getRecordType().equals("ECGData") && record.getMeasurementValue() > peakThreshold) {
+            RecordSeries ecg = patient.getSeries(RecordTypeRegistry.ECG, 0, Long.MAX_VALUE);
+            for (int i = 0; i < ecg.size(); i++) {
+                if (ecg.getValue(i) > peakThreshold) {
                     return "Abnormal ECG Peak Alert: Peak value exceeds threshold";
                 }
             }
@@ -13,6 +13,7 @@ import com.cardio_generator.generators.ECGDataGenerator;
 import com.cardio_generator.outputs.ConsoleOutputStrategy;
 import com.cardio_generator.outputs.FileOutputStrategy;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.TcpBinaryOutputStrategy;
 import com.cardio_generator.outputs.TcpOutputStrategy;
 import com.cardio_generator.outputs.WebSocketOutputStrategy;
 
@@ -103,6 +104,15 @@ public class HealthDataSimulator {
                                 System.err.println(
                                         "Invalid port for WebSocket output. Please specify a valid port number.");
                             }
+                        } else if (outputArg.startsWith("tcp-bin:")) {
+                            try {
+                                int port = Integer.parseInt(outputArg.substring(8));
+                                outputStrategy = new TcpBinaryOutputStrategy(port);
+                                System.out.println("Binary TCP socket output will be on port: " + port);
+                            } catch (NumberFormatException e) {
+                                System.err.println(
+                                        "Invalid port for binary TCP output. Please specify a valid port number.");
+                            }
                         } else if (outputArg.startsWith("tcp:")) {
                             try {
                                 int port = Integer.parseInt(outputArg.substring(4));
@@ -139,7 +149,8 @@ public class HealthDataSimulator {
         System.out.println("                             'console' for console output,");
         System.out.println("                             'file:<directory>' for file output,");
         System.out.println("                             'websocket:<port>' for WebSocket output,");
-        System.out.println("                             'tcp:<port>' for TCP socket output.");
+        System.out.println("                             'tcp:<port>' for TCP socket output,");
+        System.out.println("                             'tcp-bin:<port>' for binary framed TCP socket output.");
         System.out.println("Example:");
         System.out.println("  java HealthDataSimulator --patient-count 100 --output websocket:8080");
         System.out.println(
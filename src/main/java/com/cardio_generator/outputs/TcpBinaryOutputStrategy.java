@@ -0,0 +1,117 @@
+package com.cardio_generator.outputs;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.data_management.BinaryFrameEncoder;
+import com.data_management.RecordLineParser;
+
+/**
+ * Strategy to output data over TCP in binary frames instead of text lines
+ * The records of a short interval are packed into one frame, see
+ * {@link BinaryFrameEncoder}, which takes a fraction of the bytes and none of
+ * the formatting and parsing work of the text format
+ * The class implements the interface OutputStrategy
+ */
+
+public class TcpBinaryOutputStrategy implements OutputStrategy {
+
+    /** How long a record may wait for its frame to be sent, in milliseconds */
+    public static final long FLUSH_INTERVAL_MILLIS = 10;
+    /** Number of records after which a frame is sent without waiting */
+    public static final int MAX_FRAME_RECORDS = 512;
+
+    private ServerSocket serverSocket;
+    private Socket clientSocket;
+    private OutputStream out;
+    private final BinaryFrameEncoder encoder = new BinaryFrameEncoder();
+
+    /**
+     * Constructs a TcpBinaryOutputStrategy that waits for a client on the given port
+     * 
+     * @param port the port number
+     */
+
+    public TcpBinaryOutputStrategy(int port) {
+        try {
+            serverSocket = new ServerSocket(port);
+            System.out.println("Binary TCP Server started on port " + port);
+
+            // Accept clients in a new thread to not block the main thread
+            Executors.newSingleThreadExecutor().submit(() -> {
+                try {
+                    Socket socket = serverSocket.accept();
+                    socket.setTcpNoDelay(true);
+                    synchronized (this) {
+                        clientSocket = socket;
+                        out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+                    }
+                    System.out.println("Client connected: " + socket.getInetAddress());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        // Send partly filled frames, so a quiet stream still arrives promptly
+        ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "tcp-binary-output-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleAtFixedRate(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Outputs the data of the given patient 
+     *
+     * @param patientId identifier (integer) of the patient
+     * @param timestamp timestamp of the data
+     * @param label label of the data
+     * @param data data associated with the patient
+     */
+
+    @Override
+    public synchronized void output(int patientId, long timestamp, String label, String data) {
+        if (out == null) {
+            return;
+        }
+        double value;
+        try {
+            value = RecordLineParser.parseValue(data);
+        } catch (NumberFormatException e) {
+            System.err.println("Cannot send non-numeric data in binary: " + data);
+            return;
+        }
+        encoder.add(patientId, label, timestamp, value);
+        if (encoder.size() >= MAX_FRAME_RECORDS) {
+            flush();
+        }
+    }
+
+    /**
+     * Sends the records collected so far
+     */
+
+    public synchronized void flush() {
+        if (out == null || encoder.size() == 0) {
+            return;
+        }
+        try {
+            encoder.writeTo(out);
+            out.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+            out = null; // The client is gone; stop collecting records for it
+        }
+    }
+}
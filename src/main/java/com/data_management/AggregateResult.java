@@ -0,0 +1,124 @@
+package com.data_management;
+
+/**
+ * Holds summary statistics of the measurements in a time range, as returned by
+ * {@link DataStorage#aggregate(int, String, long, long)}.
+ */
+public class AggregateResult {
+    private final long count;
+    private final double sum;
+    private final double sumOfSquares;
+    private final double min;
+    private final double max;
+
+    /**
+     * Constructs a result from the raw running totals of a set of measurements.
+     *
+     * @param count        the number of measurements
+     * @param sum          the sum of the measurement values
+     * @param sumOfSquares the sum of the squared measurement values
+     * @param min          the smallest measurement value
+     * @param max          the largest measurement value
+     */
+    public AggregateResult(long count, double sum, double sumOfSquares, double min, double max) {
+        this.count = count;
+        this.sum = sum;
+        this.sumOfSquares = sumOfSquares;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Returns the number of measurements in the range.
+     *
+     * @return the number of measurements
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the sum of the measurement values in the range.
+     *
+     * @return the sum, or 0 if the range is empty
+     */
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns the sum of the squared measurement values in the range.
+     *
+     * @return the sum of squares, or 0 if the range is empty
+     */
+    public double getSumOfSquares() {
+        return sumOfSquares;
+    }
+
+    /**
+     * Returns the statistics of this and another set of measurements taken
+     * together, e.g., to combine the results of several patients or nodes.
+     *
+     * @param other the statistics to combine with these
+     * @return the combined statistics
+     */
+    public AggregateResult combine(AggregateResult other) {
+        // Empty results may carry NaN bounds, which would swallow the other side's
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            return other;
+        }
+        return new AggregateResult(count + other.count, sum + other.sum, sumOfSquares + other.sumOfSquares,
+                Math.min(min, other.min), Math.max(max, other.max));
+    }
+
+    /**
+     * Returns the smallest measurement value in the range.
+     *
+     * @return the minimum, or NaN if the range is empty
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * Returns the largest measurement value in the range.
+     *
+     * @return the maximum, or NaN if the range is empty
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * Returns the mean of the measurement values in the range.
+     *
+     * @return the mean, or NaN if the range is empty
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * Returns the population standard deviation of the measurement values in the
+     * range.
+     *
+     * @return the standard deviation, or NaN if the range is empty
+     */
+    public double getStandardDeviation() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double mean = sum / count;
+        // Rounding can make the variance slightly negative for constant values
+        return Math.sqrt(Math.max(0, sumOfSquares / count - mean * mean));
+    }
+
+    @Override
+    public String toString() {
+        return "AggregateResult{count=" + count + ", mean=" + getMean() + ", min=" + getMin() + ", max=" + getMax()
+                + ", stddev=" + getStandardDeviation() + "}";
+    }
+}
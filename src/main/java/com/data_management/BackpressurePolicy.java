@@ -0,0 +1,22 @@
+package com.data_management;
+
+/**
+ * Decides what an {@link IngestPipeline} does with a message that arrives
+ * while its queue is full.
+ */
+public enum BackpressurePolicy {
+    /**
+     * The producer waits until the worker has made room. Nothing is lost, but
+     * a slow worker slows the producer down.
+     */
+    BLOCK,
+    /**
+     * The new message is dropped and counted; the producer never waits.
+     */
+    DROP_NEWEST,
+    /**
+     * The oldest queued message is dropped and counted to make room for the
+     * new one, so the queue favours fresh measurements.
+     */
+    DROP_OLDEST
+}
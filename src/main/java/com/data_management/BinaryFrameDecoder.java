@@ -0,0 +1,129 @@
+package com.data_management;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the binary frames written by {@link BinaryFrameEncoder} back into
+ * {@link RecordBatch}es.
+ * A decoder belongs to a single stream, since it learns the labels as the
+ * stream declares them. Instances are not thread-safe.
+ */
+public class BinaryFrameDecoder {
+    /** Frames larger than this are treated as corrupt. */
+    public static final int MAX_FRAME_BYTES = 64 << 20;
+
+    private final DataInputStream in;
+    private int[] labelCodes = new int[16]; // Record type code of every label ID seen on the stream
+    private int labelCount;
+    private byte[] frame = new byte[4096];
+    private int position;
+    private int limit;
+
+    /**
+     * Constructs a decoder reading from the specified stream.
+     *
+     * @param in the stream the frames arrive on
+     */
+    public BinaryFrameDecoder(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    /**
+     * Reads the next frame and appends its records to the batch.
+     *
+     * @param batch receives the records
+     * @return the number of records read, or -1 if the stream ended between
+     *         two frames
+     * @throws IOException if the stream cannot be read, ends inside a frame,
+     *                     holds a malformed frame or declares a new label while
+     *                     the record type registry is full
+     */
+    public int readFrame(RecordBatch batch) throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return -1;
+        }
+        int payloadBytes = (first << 24) | (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8)
+                | in.readUnsignedByte();
+        if (payloadBytes <= 0 || payloadBytes > MAX_FRAME_BYTES) {
+            throw new IOException("Corrupt binary frame of " + payloadBytes + " bytes");
+        }
+        if (frame.length < payloadBytes) {
+            frame = new byte[Math.max(payloadBytes, frame.length * 2)];
+        }
+        in.readFully(frame, 0, payloadBytes);
+        position = 0;
+        limit = payloadBytes;
+
+        int recordCount = (int) readVarLong();
+        long timestamp = unzigzag(readVarLong());
+        for (int i = 0; i < recordCount; i++) {
+            int patientId = (int) unzigzag(readVarLong());
+            int recordTypeCode = readLabel();
+            timestamp += unzigzag(readVarLong());
+            if (limit - position < Long.BYTES) {
+                throw new EOFException("Binary frame ends inside a record");
+            }
+            long bits = 0;
+            for (int b = 0; b < Long.BYTES; b++) {
+                bits = (bits << 8) | (frame[position++] & 0xFF);
+            }
+            batch.add(patientId, Double.longBitsToDouble(bits), recordTypeCode, timestamp);
+        }
+        if (position != limit) {
+            throw new IOException("Binary frame has " + (limit - position) + " trailing bytes");
+        }
+        return recordCount;
+    }
+
+    private int readLabel() throws IOException {
+        long labelId = readVarLong();
+        if (labelId < labelCount) {
+            return labelCodes[(int) labelId];
+        }
+        if (labelId != labelCount) {
+            throw new IOException("Binary frame uses undeclared label " + labelId);
+        }
+        int textBytes = (int) readVarLong();
+        if (textBytes < 0 || textBytes > limit - position) {
+            throw new EOFException("Binary frame ends inside a label");
+        }
+        String label = new String(frame, position, textBytes, StandardCharsets.UTF_8);
+        position += textBytes;
+        // Labels come from the peer, so they may not grow the registry without bound
+        int code = RecordTypeRegistry.tryCodeOf(label);
+        if (code == RecordTypeRegistry.UNKNOWN) {
+            throw new IOException("Binary frame declares label " + label + " beyond the "
+                    + RecordTypeRegistry.MAX_RECORD_TYPES + " record types the registry holds");
+        }
+        if (labelCount == labelCodes.length) {
+            labelCodes = Arrays.copyOf(labelCodes, labelCount * 2);
+        }
+        labelCodes[labelCount] = code;
+        return labelCodes[labelCount++];
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position == limit) {
+                throw new EOFException("Binary frame ends inside a number");
+            }
+            byte b = frame[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Binary frame holds an overlong number");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,154 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Packs records into the compact binary frames read by
+ * {@link BinaryFrameDecoder}, as an alternative to one text line per record.
+ * A frame starts with its length in bytes (a 4-byte int, not counting
+ * itself), the number of records and the timestamp of the first record. Each
+ * record then holds:
+ * <ul>
+ * <li>the patient ID as a variable-length integer,</li>
+ * <li>the label as a small stream-wide number, followed by the label text the
+ * first time that number is used on the stream,</li>
+ * <li>the difference to the previous record's timestamp as a variable-length
+ * integer, and</li>
+ * <li>the value as an 8-byte double.</li>
+ * </ul>
+ * Variable-length integers use 7 bits per byte and zigzag encoding for signed
+ * numbers, so small IDs and deltas take one or two bytes. Because labels are
+ * only spelled out once, an encoder belongs to a single stream and every frame
+ * it builds must be written to that stream in order.
+ * Instances are not thread-safe.
+ */
+public class BinaryFrameEncoder {
+    private final Map<String, Integer> labelIds = new HashMap<>();
+    private byte[] buffer = new byte[4096];
+    private int length;
+    private int recordCount;
+    private long firstTimestamp;
+    private long previousTimestamp;
+
+    /**
+     * Adds a record to the current frame.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param label            the record type label, e.g., "ECG"
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     * @param measurementValue the measurement value
+     */
+    public void add(int patientId, String label, long timestamp, double measurementValue) {
+        if (recordCount == 0) {
+            firstTimestamp = timestamp;
+            previousTimestamp = timestamp;
+        }
+        writeVarLong(zigzag(patientId));
+        Integer labelId = labelIds.get(label);
+        if (labelId == null) {
+            labelId = labelIds.size();
+            labelIds.put(label, labelId);
+            writeVarLong(labelId);
+            byte[] text = label.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(text.length);
+            ensureCapacity(text.length);
+            System.arraycopy(text, 0, buffer, length, text.length);
+            length += text.length;
+        } else {
+            writeVarLong(labelId);
+        }
+        writeVarLong(zigzag(timestamp - previousTimestamp));
+        previousTimestamp = timestamp;
+        long bits = Double.doubleToRawLongBits(measurementValue);
+        ensureCapacity(Long.BYTES);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[length++] = (byte) (bits >>> shift);
+        }
+        recordCount++;
+    }
+
+    /**
+     * Returns the number of records in the current frame.
+     *
+     * @return the number of records
+     */
+    public int size() {
+        return recordCount;
+    }
+
+    /**
+     * Returns the number of bytes the current frame will take on the stream.
+     *
+     * @return the frame size in bytes
+     */
+    public int getFrameBytes() {
+        return recordCount == 0 ? 0 : Integer.BYTES + headerBytes() + length;
+    }
+
+    /**
+     * Writes the current frame to the stream and starts a new one. Does
+     * nothing if the frame is empty.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        if (recordCount == 0) {
+            return;
+        }
+        byte[] header = new byte[Integer.BYTES + headerBytes()];
+        int payloadBytes = header.length - Integer.BYTES + length;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            header[i] = (byte) (payloadBytes >>> (24 - 8 * i));
+        }
+        int position = putVarLong(header, Integer.BYTES, recordCount);
+        putVarLong(header, position, zigzag(firstTimestamp));
+        out.write(header);
+        out.write(buffer, 0, length);
+        length = 0;
+        recordCount = 0;
+    }
+
+    private int headerBytes() {
+        return varLongBytes(recordCount) + varLongBytes(zigzag(firstTimestamp));
+    }
+
+    private void writeVarLong(long value) {
+        ensureCapacity(10);
+        length = putVarLong(buffer, length, value);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+
+    private static int putVarLong(byte[] target, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            target[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[position++] = (byte) value;
+        return position;
+    }
+
+    private static int varLongBytes(long value) {
+        int bytes = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
@@ -0,0 +1,46 @@
+package com.data_management;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * Reads records from a simulator started with {@code --output tcp-bin:<port>},
+ * which sends them as {@link BinaryFrameDecoder binary frames} instead of text
+ * lines. Every frame is added to the storage as one batch.
+ */
+public class BinaryTcpDataReader implements DataReader {
+    private final String host;
+    private final int port;
+
+    /**
+     * Constructs a reader for the simulator at the specified address.
+     *
+     * @param host the host the simulator runs on
+     * @param port the port of the simulator's binary TCP output
+     */
+    public BinaryTcpDataReader(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Connects to the simulator and stores the records it sends until it
+     * closes the connection.
+     *
+     * @param dataStorage the storage where data will be stored
+     * @throws IOException if the connection fails or a frame is malformed
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        try (Socket socket = new Socket(host, port)) {
+            BinaryFrameDecoder decoder = new BinaryFrameDecoder(
+                    new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+            RecordBatch batch = new RecordBatch(1024);
+            while (decoder.readFrame(batch) >= 0) {
+                dataStorage.addPatientData(batch);
+                batch.clear();
+            }
+        }
+    }
+}
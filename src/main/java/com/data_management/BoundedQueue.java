@@ -0,0 +1,119 @@
+package com.data_management;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for any number of producers and consumers.
+ * The queue is a ring of slots, each with a sequence number that tells
+ * producers and consumers whose turn it is, so a slot is claimed with a single
+ * compare-and-set and nobody ever blocks inside the queue. A full queue
+ * rejects new elements instead of growing.
+ *
+ * @param <E> the type of the elements
+ */
+public class BoundedQueue<E> {
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(); // Position of the next element offered
+    private final AtomicLong head = new AtomicLong(); // Position of the next element polled
+
+    /**
+     * Constructs an empty queue.
+     *
+     * @param capacity the minimum number of elements the queue holds; rounded
+     *                 up to a power of two, at least 2
+     * @throws IllegalArgumentException if the capacity is not positive or too
+     *                                  large
+     */
+    public BoundedQueue(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+        // A single slot could not tell a full slot from one free for the next round
+        int slots = 2;
+        while (slots < capacity) {
+            slots <<= 1;
+        }
+        elements = new AtomicReferenceArray<>(slots);
+        sequences = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            sequences.set(i, i);
+        }
+        mask = slots - 1;
+    }
+
+    /**
+     * Adds an element at the tail of the queue if there is room.
+     *
+     * @param element the element, not null
+     * @return true if the element was added, false if the queue is full
+     */
+    public boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long lag = sequences.get(index) - position;
+            if (lag == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.set(index, element);
+                    sequences.set(index, position + 1); // Hands the slot to the consumer
+                    return true;
+                }
+                position = tail.get();
+            } else if (lag < 0) {
+                return false; // The slot still holds the element of the previous round
+            } else {
+                position = tail.get(); // Another producer took this position
+            }
+        }
+    }
+
+    /**
+     * Removes the element at the head of the queue.
+     *
+     * @return the element, or null if the queue is empty
+     */
+    public E poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) position & mask;
+            long lag = sequences.get(index) - (position + 1);
+            if (lag == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = elements.get(index);
+                    elements.set(index, null);
+                    sequences.set(index, position + mask + 1); // Hands the slot to the next round's producer
+                    return element;
+                }
+                position = head.get();
+            } else if (lag < 0) {
+                return null; // Nothing has been offered at this position yet
+            } else {
+                position = head.get(); // Another consumer took this position
+            }
+        }
+    }
+
+    /**
+     * Returns the number of elements in the queue. While other threads use the
+     * queue, the result is only an estimate.
+     *
+     * @return the number of elements
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, mask + 1));
+    }
+
+    /**
+     * Returns the number of elements the queue holds.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,353 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Immutable file holding older measurements of a single patient, as written by
+ * a {@link ColdTier}.
+ * The file starts with a header that records the time range of the segment,
+ * the oldest segment sequence it has absorbed by compaction and the newest
+ * timestamp of every record type it holds. The measurements follow in three
+ * columns sorted by timestamp: timestamps, values and record type indexes. Only
+ * the header is kept on the heap; the columns are memory-mapped through the
+ * store's bounded cache of mappings, and a range query binary-searches the
+ * timestamp column.
+ */
+public class ColdSegment {
+    /** Number of record types a segment holds at most, as type indexes are stored in one byte. */
+    public static final int MAX_RECORD_TYPES = 256;
+
+    private static final int MAGIC = 0x43444353; // "CDCS"
+    private static final int VERSION = 1;
+    private static final int FIXED_HEADER_BYTES = Integer.BYTES * 5 + Long.BYTES * 2 + Short.BYTES;
+
+    private final ColdStore store;
+    private final Path file;
+    private final int firstSequence; // Oldest sequence merged into this segment
+    private final int patientId;
+    private final int count;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+    private final int[] recordTypeCodes; // Codes of the record types, by type index
+    private final long[] lastTimestampByType; // Newest timestamp of each record type, by type index
+    private final long dataOffset;
+
+    private ColdSegment(ColdStore store, Path file, int firstSequence, int patientId, int count,
+            long firstTimestamp, long lastTimestamp, int[] recordTypeCodes, long[] lastTimestampByType,
+            long dataOffset) {
+        this.store = store;
+        this.file = file;
+        this.firstSequence = firstSequence;
+        this.patientId = patientId;
+        this.count = count;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+        this.recordTypeCodes = recordTypeCodes;
+        this.lastTimestampByType = lastTimestampByType;
+        this.dataOffset = dataOffset;
+    }
+
+    /**
+     * Writes measurements to a new segment file. The file is written under a
+     * temporary name and moved into place once complete, so a crash never
+     * leaves a partial segment behind.
+     *
+     * @param store           the cold storage the segment belongs to
+     * @param file            the segment file
+     * @param firstSequence   the sequence number of the oldest segment whose
+     *                        measurements this one absorbs, or its own sequence
+     *                        number if it absorbs none
+     * @param patientId       the patient the measurements belong to
+     * @param timestamps      the timestamps, sorted in ascending order
+     * @param values          the values belonging to the timestamps
+     * @param recordTypeCodes the record type codes belonging to the timestamps
+     * @param count           the number of measurements to write, at least one
+     * @return the written segment
+     * @throws IOException if the segment cannot be written
+     * @throws IllegalArgumentException if the measurements have more than
+     *                                  {@link #MAX_RECORD_TYPES} record types
+     */
+    public static ColdSegment write(ColdStore store, Path file, int firstSequence, int patientId,
+            long[] timestamps, double[] values, int[] recordTypeCodes, int count) throws IOException {
+        // Map the record type codes to dense indexes, stored as labels in the header
+        int[] indexByCode = new int[RecordTypeRegistry.size()];
+        int[] codes = new int[Math.min(count, MAX_RECORD_TYPES)];
+        long[] lastByType = new long[codes.length];
+        byte[] typeIndexes = new byte[count];
+        int typeCount = 0;
+        for (int i = 0; i < count; i++) {
+            int code = recordTypeCodes[i];
+            if (code >= indexByCode.length) {
+                indexByCode = Arrays.copyOf(indexByCode, RecordTypeRegistry.size());
+            }
+            if (indexByCode[code] == 0) {
+                if (typeCount == codes.length) {
+                    throw new IllegalArgumentException("Too many record types for one segment");
+                }
+                codes[typeCount] = code;
+                lastByType[typeCount] = Long.MIN_VALUE;
+                indexByCode[code] = ++typeCount; // Stored off by one so 0 means unseen
+            }
+            int index = indexByCode[code] - 1;
+            typeIndexes[i] = (byte) index;
+            lastByType[index] = Math.max(lastByType[index], timestamps[i]);
+        }
+
+        byte[][] labels = new byte[typeCount][];
+        int headerBytes = FIXED_HEADER_BYTES;
+        for (int t = 0; t < typeCount; t++) {
+            labels[t] = RecordTypeRegistry.labelOf(codes[t]).getBytes(StandardCharsets.UTF_8);
+            headerBytes += Short.BYTES + labels[t].length + Long.BYTES;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(headerBytes + count * (Long.BYTES + Double.BYTES + 1));
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(firstSequence).putInt(patientId).putInt(count);
+        buffer.putLong(timestamps[0]).putLong(timestamps[count - 1]).putShort((short) typeCount);
+        for (int t = 0; t < typeCount; t++) {
+            buffer.putShort((short) labels[t].length).put(labels[t]).putLong(lastByType[t]);
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putLong(timestamps[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putDouble(values[i]);
+        }
+        buffer.put(typeIndexes);
+        buffer.flip();
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new ColdSegment(store, file, firstSequence, patientId, count, timestamps[0], timestamps[count - 1],
+                Arrays.copyOf(codes, typeCount), Arrays.copyOf(lastByType, typeCount), headerBytes);
+    }
+
+    /**
+     * Opens an existing segment file, reading only its header.
+     *
+     * @param store the cold storage the segment belongs to
+     * @param file  the segment file
+     * @return the segment
+     * @throws IOException if the file cannot be read or is not a segment
+     */
+    public static ColdSegment open(ColdStore store, Path file) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate((int) Math.min(in.size(), 64 * 1024));
+            while (header.hasRemaining() && in.read(header) >= 0) {
+                // Keep reading until the buffer is full or the file ends
+            }
+            header.flip();
+            if (header.remaining() < FIXED_HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a cold storage segment: " + file);
+            }
+            int firstSequence = header.getInt();
+            int patientId = header.getInt();
+            int count = header.getInt();
+            long firstTimestamp = header.getLong();
+            long lastTimestamp = header.getLong();
+            int typeCount = header.getShort();
+            int[] codes = new int[typeCount];
+            long[] lastByType = new long[typeCount];
+            for (int t = 0; t < typeCount; t++) {
+                byte[] label = new byte[header.getShort()];
+                header.get(label);
+                codes[t] = RecordTypeRegistry.codeOf(new String(label, StandardCharsets.UTF_8));
+                lastByType[t] = header.getLong();
+            }
+            long dataOffset = header.position();
+            if (in.size() != dataOffset + (long) count * (Long.BYTES + Double.BYTES + 1)) {
+                throw new IOException("Truncated cold storage segment: " + file);
+            }
+            return new ColdSegment(store, file, firstSequence, patientId, count, firstTimestamp, lastTimestamp,
+                    codes, lastByType, dataOffset);
+        }
+    }
+
+    /**
+     * Returns the file holding this segment.
+     *
+     * @return the segment file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the sequence number of the oldest segment whose measurements were
+     * merged into this one.
+     *
+     * @return the first sequence number covered by this segment
+     */
+    public int getFirstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * Returns the patient whose measurements this segment holds.
+     *
+     * @return the patient ID
+     */
+    public int getPatientId() {
+        return patientId;
+    }
+
+    /**
+     * Returns the number of measurements in this segment.
+     *
+     * @return the number of measurements
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the timestamp of the oldest measurement in this segment.
+     *
+     * @return the timestamp in milliseconds since UNIX epoch
+     */
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    /**
+     * Returns the timestamp of the newest measurement in this segment.
+     *
+     * @return the timestamp in milliseconds since UNIX epoch
+     */
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Returns the codes of the record types this segment holds.
+     *
+     * @return the record type codes, in no particular order
+     */
+    public int[] getRecordTypeCodes() {
+        return recordTypeCodes.clone();
+    }
+
+    /**
+     * Returns the timestamp of the newest measurement of a record type in this
+     * segment.
+     *
+     * @param recordTypeCode the code of the record type
+     * @return the timestamp in milliseconds since UNIX epoch, or
+     *         {@link Long#MIN_VALUE} if the segment holds none of that type
+     */
+    public long getLastTimestamp(int recordTypeCode) {
+        for (int t = 0; t < recordTypeCodes.length; t++) {
+            if (recordTypeCodes[t] == recordTypeCode) {
+                return lastTimestampByType[t];
+            }
+        }
+        return Long.MIN_VALUE;
+    }
+
+    /**
+     * Hands every measurement of this segment within a time range to the
+     * visitor, in time order. Segments whose time range does not overlap the
+     * requested one are skipped without touching the file.
+     *
+     * @param startTime the start of the time range, in milliseconds since UNIX
+     *                  epoch
+     * @param endTime   the end of the time range, inclusive, in milliseconds
+     *                  since UNIX epoch
+     * @param visitor   receives the matching measurements
+     * @return the number of measurements visited
+     * @throws IOException if the segment cannot be mapped
+     */
+    public int visitRange(long startTime, long endTime, RecordVisitor visitor) throws IOException {
+        if (startTime > lastTimestamp || endTime < firstTimestamp) {
+            return 0;
+        }
+        ByteBuffer data = store.map(this);
+        int valuesOffset = count * Long.BYTES;
+        int typesOffset = valuesOffset + count * Double.BYTES;
+        // Binary search for the first timestamp in range
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (data.getLong(mid * Long.BYTES) < startTime) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int visited = 0;
+        for (int i = low; i < count; i++) {
+            long timestamp = data.getLong(i * Long.BYTES);
+            if (timestamp > endTime) {
+                break;
+            }
+            visitor.visit(patientId, recordTypeCodes[data.get(typesOffset + i) & 0xFF], timestamp,
+                    data.getDouble(valuesOffset + i * Double.BYTES));
+            visited++;
+        }
+        return visited;
+    }
+
+    /**
+     * Checks whether this segment holds a measurement.
+     *
+     * @param recordTypeCode the code of the record type
+     * @param timestamp      the timestamp of the measurement
+     * @param value          the measurement value
+     * @return true if the segment holds a measurement with exactly this type,
+     *         timestamp and value
+     * @throws IOException if the segment cannot be mapped
+     */
+    public boolean contains(int recordTypeCode, long timestamp, double value) throws IOException {
+        if (timestamp < firstTimestamp || timestamp > lastTimestamp) {
+            return false;
+        }
+        ByteBuffer data = store.map(this);
+        int valuesOffset = count * Long.BYTES;
+        int typesOffset = valuesOffset + count * Double.BYTES;
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (data.getLong(mid * Long.BYTES) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        long bits = Double.doubleToLongBits(value);
+        for (int i = low; i < count && data.getLong(i * Long.BYTES) == timestamp; i++) {
+            if (recordTypeCodes[data.get(typesOffset + i) & 0xFF] == recordTypeCode
+                    && Double.doubleToLongBits(data.getDouble(valuesOffset + i * Double.BYTES)) == bits) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Maps the columns of this segment into memory. Every call creates a new
+     * mapping; {@link ColdStore#map(ColdSegment)} decides which ones to keep.
+     *
+     * @return the read-only columns, starting with the timestamps
+     * @throws IOException if the file cannot be mapped
+     */
+    ByteBuffer mapColumns() throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            return in.map(FileChannel.MapMode.READ_ONLY, dataOffset, in.size() - dataOffset);
+        }
+    }
+}
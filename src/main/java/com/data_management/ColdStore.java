@@ -0,0 +1,226 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Directory of cold storage segments shared by every patient of a storage.
+ * Segment files are named {@code patient-<id>-<sequence>.cold}. When the store
+ * is opened, the headers of the existing segments are read and grouped by
+ * patient, and each patient's {@link ColdTier} picks up its segments when it is
+ * created.
+ * Only the most recently read segments stay memory-mapped. Mappings of other
+ * segments are dropped and released by the garbage collector, so a monitor
+ * that runs for months never holds more than a fixed number of mappings,
+ * however many segments are on disk.
+ */
+public class ColdStore {
+    private static final String PREFIX = "patient-";
+    private static final String SUFFIX = ".cold";
+    /** Number of segments kept memory-mapped at once. */
+    public static final int MAPPED_SEGMENTS = 64;
+
+    private final Path directory;
+    private final int segmentRecords;
+    private final Map<Integer, List<ColdSegment>> existingSegments = new HashMap<>();
+    // Least recently read first
+    private final LinkedHashMap<ColdSegment, ByteBuffer> mappedSegments = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder recordCount = new LongAdder(); // Measurements held by every tier, on disk or buffered
+    private volatile boolean recovering;
+
+    /**
+     * Opens the cold storage in the specified directory, creating the directory
+     * if needed. Leftovers of interrupted segment writes are deleted, as are
+     * segments whose measurements a later segment has already absorbed when a
+     * compaction was interrupted before removing them.
+     *
+     * @param directory      the directory holding the segment files
+     * @param segmentRecords the number of measurements written per segment
+     * @throws IOException if the directory or a segment cannot be read
+     */
+    public ColdStore(Path directory, int segmentRecords) throws IOException {
+        this.directory = directory;
+        this.segmentRecords = segmentRecords;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(SUFFIX + ".tmp")) {
+                    Files.delete(file);
+                } else if (name.endsWith(SUFFIX)) {
+                    ColdSegment segment = ColdSegment.open(this, file);
+                    existingSegments.computeIfAbsent(segment.getPatientId(), id -> new ArrayList<>()).add(segment);
+                }
+            }
+        }
+        for (List<ColdSegment> segments : existingSegments.values()) {
+            segments.sort(Comparator.comparingInt(segment -> sequenceOf(segment.getFile())));
+            // A segment is obsolete if a newer one has absorbed its sequence
+            int absorbedFrom = Integer.MAX_VALUE;
+            for (int i = segments.size() - 1; i >= 0; i--) {
+                ColdSegment segment = segments.get(i);
+                if (sequenceOf(segment.getFile()) >= absorbedFrom) {
+                    Files.delete(segment.getFile());
+                    segments.remove(i);
+                } else {
+                    absorbedFrom = Math.min(absorbedFrom, segment.getFirstSequence());
+                    recordCount.add(segment.size());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of measurements held by the cold tiers of every
+     * patient, on disk or waiting to be written. The total is maintained as
+     * measurements arrive, so this takes constant time.
+     *
+     * @return the number of measurements
+     */
+    public long getRecordCount() {
+        return recordCount.sum();
+    }
+
+    /**
+     * Counts measurements a cold tier has accepted.
+     *
+     * @param count the number of measurements added
+     */
+    void addRecords(int count) {
+        recordCount.add(count);
+    }
+
+    /**
+     * Returns the IDs of the patients that have segments on disk but no cold
+     * tier yet.
+     *
+     * @return the patient IDs
+     */
+    public synchronized Set<Integer> getStoredPatientIds() {
+        return Set.copyOf(existingSegments.keySet());
+    }
+
+    /**
+     * Creates the cold tier of a patient, handing it the patient's existing
+     * segments.
+     *
+     * @param patientId the unique identifier of the patient
+     * @return the cold tier
+     */
+    public synchronized ColdTier createTier(int patientId) {
+        List<ColdSegment> segments = existingSegments.remove(patientId);
+        if (segments == null) {
+            return new ColdTier(this, patientId, List.of(), 0);
+        }
+        int nextSequence = sequenceOf(segments.get(segments.size() - 1).getFile()) + 1;
+        return new ColdTier(this, patientId, segments, nextSequence);
+    }
+
+    /**
+     * Returns the number of measurements a cold tier buffers before writing
+     * them to a segment.
+     *
+     * @return the number of measurements per segment
+     */
+    public int getSegmentRecords() {
+        return segmentRecords;
+    }
+
+    /**
+     * Returns whether the owning storage is replaying its snapshot and
+     * write-ahead log.
+     *
+     * @return true while recovering
+     */
+    public boolean isRecovering() {
+        return recovering;
+    }
+
+    /**
+     * Marks whether the owning storage is replaying its snapshot and write-ahead
+     * log, during which measurements already on disk are not written again.
+     *
+     * @param recovering true while recovering
+     */
+    public void setRecovering(boolean recovering) {
+        this.recovering = recovering;
+    }
+
+    /**
+     * Returns the memory-mapped columns of a segment, mapping the segment if it
+     * is not among the {@link #MAPPED_SEGMENTS} most recently read ones.
+     *
+     * @param segment the segment to read
+     * @return the read-only columns of the segment
+     * @throws IOException if the segment cannot be mapped
+     */
+    public synchronized ByteBuffer map(ColdSegment segment) throws IOException {
+        ByteBuffer data = mappedSegments.get(segment);
+        if (data == null) {
+            data = segment.mapColumns();
+            mappedSegments.put(segment, data);
+            if (mappedSegments.size() > MAPPED_SEGMENTS) {
+                Iterator<ColdSegment> eldest = mappedSegments.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Deletes a segment whose measurements have moved to another segment,
+     * dropping its mapping.
+     *
+     * @param segment the segment to delete
+     * @throws IOException if the file cannot be deleted
+     */
+    public void delete(ColdSegment segment) throws IOException {
+        release(segment);
+        Files.deleteIfExists(segment.getFile());
+    }
+
+    /**
+     * Drops the mapping of a segment, e.g., because its file has been
+     * replaced.
+     *
+     * @param segment the segment whose mapping is no longer needed
+     */
+    public synchronized void release(ColdSegment segment) {
+        mappedSegments.remove(segment);
+    }
+
+    /**
+     * Returns the file of a patient's segment.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param sequence  the sequence number of the segment
+     * @return the segment file
+     */
+    public Path segmentFile(int patientId, int sequence) {
+        return directory.resolve(PREFIX + patientId + "-" + sequence + SUFFIX);
+    }
+
+    /**
+     * Returns the sequence number of a segment file.
+     *
+     * @param file the segment file
+     * @return the sequence number encoded in the file name
+     */
+    public static int sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(name.lastIndexOf('-') + 1, name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,350 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Holds the measurements a single patient's record series have aged out of
+ * memory, in immutable {@link ColdSegment} files on disk.
+ * The tier is the eviction listener of the patient's series: expired
+ * measurements are collected in a small buffer and written to a new segment
+ * once the buffer is full. Each segment keeps its time range on the heap, so a
+ * range query only maps and searches the segments that overlap it, and the heap
+ * used per patient stays bounded by the buffer size however much history is on
+ * disk.
+ * Segments are compacted as they accumulate: whenever the newest
+ * {@link #MERGE_FACTOR} segments are of similar size, they are merged into one,
+ * up to {@link #MAX_SEGMENT_RECORDS} measurements and
+ * {@link ColdSegment#MAX_RECORD_TYPES} record types per segment. Small segments
+ * written on checkpoints are absorbed this way, and the number of segments
+ * grows with the history only once they reach the maximum size.
+ * Instances are not thread-safe; the owning patient's lock guards them.
+ */
+public class ColdTier implements RecordVisitor {
+    /** Number of similar-sized segments merged into one. */
+    public static final int MERGE_FACTOR = 4;
+    /** Number of measurements beyond which segments are no longer merged. */
+    public static final int MAX_SEGMENT_RECORDS = 1 << 20;
+
+    private final ColdStore store;
+    private final int patientId;
+    private final List<ColdSegment> segments;
+    private int nextSequence;
+    private long[] spilledThrough = new long[0]; // Newest timestamp on disk per record type code
+
+    // Expired measurements not yet written to a segment, in arrival order
+    private long[] pendingTimestamps = new long[16];
+    private double[] pendingValues = new double[16];
+    private int[] pendingCodes = new int[16];
+    private int pendingCount;
+
+    /**
+     * Constructs the cold tier of a patient.
+     *
+     * @param store        the cold storage the segments belong to
+     * @param patientId    the unique identifier of the patient
+     * @param segments     the patient's existing segments, oldest first
+     * @param nextSequence the sequence number of the next segment to write
+     */
+    public ColdTier(ColdStore store, int patientId, List<ColdSegment> segments, int nextSequence) {
+        this.store = store;
+        this.patientId = patientId;
+        this.segments = new ArrayList<>(segments);
+        this.nextSequence = nextSequence;
+        for (ColdSegment segment : segments) {
+            markSpilled(segment);
+        }
+    }
+
+    /**
+     * Accepts a measurement that expired from the patient's series. While the
+     * storage is being recovered, measurements that are already on disk are
+     * ignored, since replaying the write-ahead log expires them a second time.
+     *
+     * @throws UncheckedIOException if the segments cannot be read or a full
+     *                              buffer cannot be written to disk
+     */
+    @Override
+    public void visit(int patientId, int recordTypeCode, long timestamp, double measurementValue) {
+        try {
+            if (store.isRecovering() && isOnDisk(recordTypeCode, timestamp, measurementValue)) {
+                return;
+            }
+            append(recordTypeCode, timestamp, measurementValue);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not access cold storage segment", e);
+        }
+    }
+
+    private void append(int recordTypeCode, long timestamp, double measurementValue) throws IOException {
+        if (pendingCount == pendingTimestamps.length) {
+            int capacity = pendingCount * 2;
+            pendingTimestamps = Arrays.copyOf(pendingTimestamps, capacity);
+            pendingValues = Arrays.copyOf(pendingValues, capacity);
+            pendingCodes = Arrays.copyOf(pendingCodes, capacity);
+        }
+        pendingTimestamps[pendingCount] = timestamp;
+        pendingValues[pendingCount] = measurementValue;
+        pendingCodes[pendingCount] = recordTypeCode;
+        pendingCount++;
+        store.addRecords(1);
+        if (pendingCount >= store.getSegmentRecords()) {
+            flush();
+        }
+    }
+
+    private boolean isOnDisk(int recordTypeCode, long timestamp, double measurementValue) throws IOException {
+        // Anything newer than the newest measurement of its type on disk cannot be there
+        if (recordTypeCode >= spilledThrough.length || timestamp > spilledThrough[recordTypeCode]) {
+            return false;
+        }
+        for (ColdSegment segment : segments) {
+            if (segment.contains(recordTypeCode, timestamp, measurementValue)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the buffered measurements to a new segment, if there are any.
+     *
+     * @throws IOException if the segment cannot be written
+     */
+    public void flush() throws IOException {
+        if (pendingCount == 0) {
+            return;
+        }
+        ColdSegment segment = writeSorted(nextSequence, nextSequence, pendingTimestamps, pendingValues,
+                pendingCodes, pendingCount);
+        segments.add(segment);
+        markSpilled(segment);
+        nextSequence++;
+        pendingCount = 0;
+        if (pendingTimestamps.length > 16) {
+            // Give the buffer back; it refills slowly, at the rate data ages out
+            pendingTimestamps = new long[16];
+            pendingValues = new double[16];
+            pendingCodes = new int[16];
+        }
+        compact();
+    }
+
+    // Merges the newest segments for as long as MERGE_FACTOR of them share a size class
+    private void compact() throws IOException {
+        while (segments.size() >= MERGE_FACTOR) {
+            int from = segments.size() - MERGE_FACTOR;
+            int sizeClass = sizeClassOf(segments.get(from).size());
+            long total = 0;
+            for (int i = from; i < segments.size(); i++) {
+                if (sizeClassOf(segments.get(i).size()) != sizeClass) {
+                    return;
+                }
+                total += segments.get(i).size();
+            }
+            if (total > MAX_SEGMENT_RECORDS || countRecordTypes(from) > ColdSegment.MAX_RECORD_TYPES) {
+                return;
+            }
+            merge(from, (int) total);
+        }
+    }
+
+    // Counts the distinct record types of the segments from the given index on
+    private int countRecordTypes(int from) {
+        boolean[] seen = new boolean[RecordTypeRegistry.size()];
+        int count = 0;
+        for (int i = from; i < segments.size(); i++) {
+            for (int code : segments.get(i).getRecordTypeCodes()) {
+                if (!seen[code]) {
+                    seen[code] = true;
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    // Size classes grow by MERGE_FACTOR, starting with anything up to one full buffer
+    private int sizeClassOf(int size) {
+        int sizeClass = 0;
+        for (long bound = store.getSegmentRecords(); size > bound; bound *= MERGE_FACTOR) {
+            sizeClass++;
+        }
+        return sizeClass;
+    }
+
+    /*
+     * Rewrites the segments from the given index on as one segment. It replaces
+     * the newest of them under the same name and records the oldest sequence it
+     * absorbs, so if the process dies before the others are deleted, the store
+     * recognizes them as obsolete when it is opened again.
+     */
+    private void merge(int from, int total) throws IOException {
+        long[] timestamps = new long[total];
+        double[] values = new double[total];
+        int[] codes = new int[total];
+        int[] count = new int[1];
+        for (int i = from; i < segments.size(); i++) {
+            segments.get(i).visitRange(Long.MIN_VALUE, Long.MAX_VALUE, (id, typeCode, timestamp, value) -> {
+                timestamps[count[0]] = timestamp;
+                values[count[0]] = value;
+                codes[count[0]] = typeCode;
+                count[0]++;
+            });
+        }
+        ColdSegment newest = segments.get(segments.size() - 1);
+        int firstSequence = segments.get(from).getFirstSequence();
+        ColdSegment merged = writeSorted(ColdStore.sequenceOf(newest.getFile()), firstSequence, timestamps, values,
+                codes, total);
+        store.release(newest);
+        for (int i = from; i < segments.size() - 1; i++) {
+            store.delete(segments.get(i));
+        }
+        segments.subList(from, segments.size()).clear();
+        segments.add(merged);
+    }
+
+    // Writes measurements to a new segment, sorting them by timestamp; equal timestamps keep their order
+    private ColdSegment writeSorted(int sequence, int firstSequence, long[] unsortedTimestamps,
+            double[] unsortedValues, int[] unsortedCodes, int count) throws IOException {
+        int[] order = IntStream.range(0, count).boxed()
+                .sorted(Comparator.comparingLong(i -> unsortedTimestamps[i]))
+                .mapToInt(Integer::intValue).toArray();
+        long[] timestamps = new long[count];
+        double[] values = new double[count];
+        int[] codes = new int[count];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = unsortedTimestamps[order[i]];
+            values[i] = unsortedValues[order[i]];
+            codes[i] = unsortedCodes[order[i]];
+        }
+        Path file = store.segmentFile(patientId, sequence);
+        return ColdSegment.write(store, file, firstSequence, patientId, timestamps, values, codes, count);
+    }
+
+    /**
+     * Hands every measurement of this tier within a time range to the visitor.
+     * Segments are visited oldest first, each in time order, followed by the
+     * measurements not yet written to disk.
+     *
+     * @param startTime the start of the time range, in milliseconds since UNIX
+     *                  epoch
+     * @param endTime   the end of the time range, inclusive, in milliseconds
+     *                  since UNIX epoch
+     * @param visitor   receives the matching measurements
+     * @return the number of measurements visited
+     * @throws IOException if a segment cannot be read
+     */
+    public int visitRange(long startTime, long endTime, RecordVisitor visitor) throws IOException {
+        int visited = 0;
+        for (ColdSegment segment : segments) {
+            visited += segment.visitRange(startTime, endTime, visitor);
+        }
+        for (int i = 0; i < pendingCount; i++) {
+            long timestamp = pendingTimestamps[i];
+            if (timestamp >= startTime && timestamp <= endTime) {
+                visitor.visit(patientId, pendingCodes[i], timestamp, pendingValues[i]);
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Computes summary statistics of the measurements of a single record type
+     * in this tier within a time range. Segments that hold no measurement of
+     * the type are skipped; the others are scanned, so the cost is linear in the
+     * number of measurements on disk within the range.
+     *
+     * @param recordTypeCode the code of the record type
+     * @param startTime      the start of the time range, in milliseconds since
+     *                       UNIX epoch
+     * @param endTime        the end of the time range, inclusive, in
+     *                       milliseconds since UNIX epoch
+     * @return the statistics of the matching measurements
+     * @throws IOException if a segment cannot be read
+     */
+    public AggregateResult aggregate(int recordTypeCode, long startTime, long endTime) throws IOException {
+        TypeTotals totals = new TypeTotals(recordTypeCode);
+        for (ColdSegment segment : segments) {
+            if (segment.getLastTimestamp(recordTypeCode) != Long.MIN_VALUE) {
+                segment.visitRange(startTime, endTime, totals);
+            }
+        }
+        for (int i = 0; i < pendingCount; i++) {
+            long timestamp = pendingTimestamps[i];
+            if (timestamp >= startTime && timestamp <= endTime) {
+                totals.visit(patientId, pendingCodes[i], timestamp, pendingValues[i]);
+            }
+        }
+        return new AggregateResult(totals.count, totals.sum, totals.sumOfSquares, totals.min, totals.max);
+    }
+
+    /**
+     * Returns the number of measurements held by this tier, on disk or waiting
+     * to be written.
+     *
+     * @return the number of measurements
+     */
+    public long getRecordCount() {
+        long count = pendingCount;
+        for (ColdSegment segment : segments) {
+            count += segment.size();
+        }
+        return count;
+    }
+
+    /**
+     * Returns an estimate of the heap memory held by this tier, which covers the
+     * write buffer and the per-segment index but none of the data on disk.
+     *
+     * @return the estimated footprint in bytes
+     */
+    public long getResidentBytes() {
+        return (long) pendingTimestamps.length * (Long.BYTES + Double.BYTES + Integer.BYTES)
+                + (long) segments.size() * 128;
+    }
+
+    // Running totals of the measurements of one record type
+    private static class TypeTotals implements RecordVisitor {
+        final int recordTypeCode;
+        long count;
+        double sum;
+        double sumOfSquares;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        TypeTotals(int recordTypeCode) {
+            this.recordTypeCode = recordTypeCode;
+        }
+
+        @Override
+        public void visit(int patientId, int recordTypeCode, long timestamp, double measurementValue) {
+            if (recordTypeCode == this.recordTypeCode) {
+                count++;
+                sum += measurementValue;
+                sumOfSquares += measurementValue * measurementValue;
+                min = Math.min(min, measurementValue);
+                max = Math.max(max, measurementValue);
+            }
+        }
+    }
+
+    private void markSpilled(ColdSegment segment) {
+        int registered = RecordTypeRegistry.size();
+        if (spilledThrough.length < registered) {
+            int length = spilledThrough.length;
+            spilledThrough = Arrays.copyOf(spilledThrough, registered);
+            Arrays.fill(spilledThrough, length, registered, Long.MIN_VALUE);
+        }
+        for (int code = 0; code < spilledThrough.length; code++) {
+            spilledThrough[code] = Math.max(spilledThrough[code], segment.getLastTimestamp(code));
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, compressed run of time-sorted measurements, as used for the
+ * sealed part of a {@link RecordSeries}.
+ * Timestamps are stored as delta-of-deltas and values as the XOR of their bits
+ * with the previous value, following the Gorilla encoding. Samples that arrive
+ * at a regular interval cost a single bit for their timestamp, and slowly
+ * changing vital signs share most of their bits with the previous value, so a
+ * typical measurement takes a few bytes instead of sixteen.
+ * A block can be read by several threads at once; decoding keeps its state in
+ * local variables and allocates nothing.
+ */
+public class CompressedBlock {
+    private static final long OBJECT_OVERHEAD_BYTES = 48;
+
+    private final long[] words;
+    private final int count;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+
+    private CompressedBlock(long[] words, int count, long firstTimestamp, long lastTimestamp) {
+        this.words = words;
+        this.count = count;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+    }
+
+    /**
+     * Compresses a run of measurements.
+     *
+     * @param timestamps the timestamps, sorted in ascending order
+     * @param values     the values belonging to the timestamps
+     * @param count      the number of measurements to compress, at least one
+     * @return the compressed block
+     */
+    public static CompressedBlock encode(long[] timestamps, double[] values, int count) {
+        BitWriter out = new BitWriter(count);
+        long previousTimestamp = timestamps[0];
+        long previousDelta = 0;
+        long previousBits = Double.doubleToRawLongBits(values[0]);
+        int previousLeading = -1; // No XOR window yet
+        int previousTrailing = 0;
+        out.write(previousTimestamp, 64);
+        out.write(previousBits, 64);
+        for (int i = 1; i < count; i++) {
+            long delta = timestamps[i] - previousTimestamp;
+            long deltaOfDelta = delta - previousDelta;
+            if (deltaOfDelta == 0) {
+                out.write(0, 1);
+            } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+                out.write(0b10, 2);
+                out.write(deltaOfDelta + 63, 7);
+            } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+                out.write(0b110, 3);
+                out.write(deltaOfDelta + 255, 9);
+            } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+                out.write(0b1110, 4);
+                out.write(deltaOfDelta + 2047, 12);
+            } else {
+                out.write(0b1111, 4);
+                out.write(deltaOfDelta, 64);
+            }
+            previousTimestamp = timestamps[i];
+            previousDelta = delta;
+
+            long bits = Double.doubleToRawLongBits(values[i]);
+            long xor = bits ^ previousBits;
+            if (xor == 0) {
+                out.write(0, 1);
+            } else {
+                int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+                int trailing = Long.numberOfTrailingZeros(xor);
+                if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                    // The changed bits fit in the previous window
+                    out.write(0b10, 2);
+                    out.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+                } else {
+                    int length = 64 - leading - trailing;
+                    out.write(0b11, 2);
+                    out.write(leading, 5);
+                    out.write(length - 1, 6);
+                    out.write(xor >>> trailing, length);
+                    previousLeading = leading;
+                    previousTrailing = trailing;
+                }
+            }
+            previousBits = bits;
+        }
+        return new CompressedBlock(out.toArray(), count, timestamps[0], timestamps[count - 1]);
+    }
+
+    /**
+     * Returns the number of measurements in this block.
+     *
+     * @return the number of measurements
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the timestamp of the oldest measurement in this block.
+     *
+     * @return the timestamp in milliseconds since UNIX epoch
+     */
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    /**
+     * Returns the timestamp of the newest measurement in this block.
+     *
+     * @return the timestamp in milliseconds since UNIX epoch
+     */
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Returns an estimate of the heap memory held by this block.
+     *
+     * @return the estimated footprint in bytes
+     */
+    public long getResidentBytes() {
+        return OBJECT_OVERHEAD_BYTES + (long) words.length * Long.BYTES;
+    }
+
+    /**
+     * Decodes every measurement into the specified arrays.
+     *
+     * @param timestamps receives the timestamps, starting at {@code offset}
+     * @param values     receives the values, starting at {@code offset}
+     * @param offset     the first array position to fill
+     */
+    public void decode(long[] timestamps, double[] values, int offset) {
+        visit(0, Long.MIN_VALUE, Long.MAX_VALUE, 0, 0, new RecordVisitor() {
+            private int next = offset;
+
+            @Override
+            public void visit(int patientId, int recordTypeCode, long timestamp, double measurementValue) {
+                timestamps[next] = timestamp;
+                values[next] = measurementValue;
+                next++;
+            }
+        });
+    }
+
+    /**
+     * Decodes the measurements of this block that fall within a time range and
+     * hands them to the visitor, in time order.
+     *
+     * @param skip           the number of leading measurements to ignore
+     * @param startTime      the start of the time range, in milliseconds since
+     *                       UNIX epoch
+     * @param endTime        the end of the time range, inclusive, in
+     *                       milliseconds since UNIX epoch
+     * @param patientId      the patient passed on to the visitor
+     * @param recordTypeCode the record type code passed on to the visitor
+     * @param visitor        receives the matching measurements
+     * @return the number of measurements visited
+     */
+    public int visit(int skip, long startTime, long endTime, int patientId, int recordTypeCode,
+            RecordVisitor visitor) {
+        long position = 128;
+        long timestamp = firstTimestamp;
+        long delta = 0;
+        long bits = words[1];
+        int leading = 0;
+        int trailing = 0;
+        int visited = 0;
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                // Timestamp: count the leading ones of the prefix, at most four
+                int prefix = 0;
+                while (prefix < 4 && readBits(words, position, 1) == 1) {
+                    prefix++;
+                    position++;
+                }
+                if (prefix < 4) {
+                    position++; // The terminating zero
+                }
+                switch (prefix) {
+                    case 0:
+                        break;
+                    case 1:
+                        delta += readBits(words, position, 7) - 63;
+                        position += 7;
+                        break;
+                    case 2:
+                        delta += readBits(words, position, 9) - 255;
+                        position += 9;
+                        break;
+                    case 3:
+                        delta += readBits(words, position, 12) - 2047;
+                        position += 12;
+                        break;
+                    default:
+                        delta += readBits(words, position, 64);
+                        position += 64;
+                        break;
+                }
+                timestamp += delta;
+
+                // Value
+                if (readBits(words, position++, 1) == 1) {
+                    if (readBits(words, position++, 1) == 1) {
+                        leading = (int) readBits(words, position, 5);
+                        int length = (int) readBits(words, position + 5, 6) + 1;
+                        position += 11;
+                        trailing = 64 - leading - length;
+                    }
+                    int length = 64 - leading - trailing;
+                    bits ^= readBits(words, position, length) << trailing;
+                    position += length;
+                }
+            }
+            if (timestamp > endTime) {
+                break;
+            }
+            if (i >= skip && timestamp >= startTime) {
+                visitor.visit(patientId, recordTypeCode, timestamp, Double.longBitsToDouble(bits));
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    // Reads 1 to 64 bits starting at the given bit position
+    private static long readBits(long[] words, long position, int length) {
+        int index = (int) (position >>> 6);
+        int offset = (int) (position & 63);
+        long value = words[index] << offset;
+        if (offset + length > 64) {
+            value |= words[index + 1] >>> (64 - offset);
+        }
+        return value >>> (64 - length);
+    }
+
+    // Appends bit fields to a growing array of words, most significant bit first
+    private static class BitWriter {
+        private long[] words;
+        private long position;
+
+        BitWriter(int expectedCount) {
+            // Two words of header plus roughly two bytes per measurement
+            words = new long[2 + expectedCount / 4 + 1];
+        }
+
+        void write(long value, int length) {
+            int index = (int) (position >>> 6);
+            int offset = (int) (position & 63);
+            if (index + 1 >= words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            long aligned = value << (64 - length);
+            words[index] |= aligned >>> offset;
+            if (offset + length > 64) {
+                words[index + 1] |= aligned << (64 - offset);
+            }
+            position += length;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(words, (int) ((position + 63) >>> 6));
+        }
+    }
+}
@@ -1,9 +1,21 @@
 package com.data_management;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import com.alerts.AlertGenerator;
 
 /**
@@ -11,24 +23,108 @@ import com.alerts.AlertGenerator;
  * system.
  * This class serves as a repository for all patient records, organized by
  * patient IDs.
+ * The storage is safe for concurrent use: writers on different patients never
+ * contend, and writes to the same patient are serialized by that patient's
+ * own lock.
+ * When a write-ahead log directory is configured, every added record is also
+ * logged, and the log is replayed when the storage is constructed. A snapshot
+ * file speeds up that startup: it is loaded first, and only the log segments
+ * written after it are replayed.
+ * When a cold storage directory is configured, records that outlive their
+ * retention are moved to segment files on disk rather than discarded, and
+ * range queries read them back from there.
  */
-public class DataStorage {
+public class DataStorage implements Closeable {
+    private static volatile DataStorage instance;
     private Map<Integer, Patient> patientMap; // Stores patient objects indexed by their unique patient ID.
+    private final StorageConfig config;
+    private final LongAdder duplicateRecords = new LongAdder(); // Counts rejected duplicate records
+    private final LongAdder residentRecords = new LongAdder(); // Records held across all patients
+    private final LatestValueIndex latestValues = new LatestValueIndex(); // Latest value of each type per patient
+    private final WriteAheadLog writeAheadLog; // Null for a memory-only storage
+    private final ScheduledExecutorService snapshotScheduler; // Null without periodic snapshots
+    private final ColdStore coldStore; // Null when expired records are discarded
 
     /**
      * Constructs a new instance of DataStorage, initializing the underlying storage
      * structure.
      */
     public DataStorage() {
-        this.patientMap = new HashMap<>();
-        /**
+        this(new StorageConfig());
+    }
+
+    /**
+     * Constructs a new instance of DataStorage with the specified settings.
+     * If the settings name a snapshot file or write-ahead log directory, the
+     * records already stored there are loaded before the constructor returns.
+     *
+     * @param config the settings of the storage
+     * @throws UncheckedIOException if the snapshot, write-ahead log or cold
+     *                              storage cannot be read
+     */
+    public DataStorage(StorageConfig config) {
+        this.config = config;
+        this.patientMap = new ConcurrentHashMap<>();
+        try {
+            if (config.getColdStorageDirectory() == null) {
+                this.coldStore = null;
+            } else {
+                this.coldStore = new ColdStore(config.getColdStorageDirectory(), config.getColdSegmentRecords());
+                coldStore.setRecovering(true);
+                // Patients whose records are all on disk still answer range queries
+                for (int patientId : coldStore.getStoredPatientIds()) {
+                    patientMap.computeIfAbsent(patientId, this::newPatient);
+                }
+            }
+            long firstWalSegment = 0;
+            Path snapshotFile = config.getSnapshotFile();
+            if (snapshotFile != null && Files.exists(snapshotFile)) {
+                firstWalSegment = StorageSnapshot.read(snapshotFile, this::restoreRecord);
+            }
+            if (config.getWalDirectory() == null) {
+                this.writeAheadLog = null;
+            } else {
+                this.writeAheadLog = new WriteAheadLog(config.getWalDirectory(), config.getFsyncPolicy(),
+                        config.getFsyncIntervalMillis());
+                writeAheadLog.replay(this::restoreRecord, firstWalSegment);
+            }
+            if (coldStore != null) {
+                coldStore.setRecovering(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not recover stored records", e);
+        }
+        if (config.getSnapshotFile() == null || config.getSnapshotIntervalMillis() == 0) {
+            this.snapshotScheduler = null;
+        } else {
+            this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "storage-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = config.getSnapshotIntervalMillis();
+            snapshotScheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    writeSnapshot(config.getSnapshotFile());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
      * Returns the singleton instance of the DataStorage class.
      * 
      * @return the singleton instance of the DataStorage class
      */
     public static DataStorage getInstance(){
         if(instance == null){
-            instance = new DataStorage();
+            synchronized (DataStorage.class) {
+                if(instance == null){
+                    instance = new DataStorage();
+                }
+            }
         }
         return instance;
     }
@@ -38,6 +134,9 @@ public class DataStorage {
      * If the patient does not exist, a new Patient object is created and added to
      * the storage.
      * Otherwise, the new data is added to the existing patient's records.
+     * Records that duplicate one added within the dedup window are dropped and
+     * counted, see {@link #getDuplicateRecordCount()}.
+     * In durable mode the record is logged before this method returns.
      *
      * @param patientId        the unique identifier of the patient
      * @param measurementValue the value of the health metric being recorded
@@ -45,23 +144,155 @@ public class DataStorage {
      *                         "BloodPressure"
      * @param timestamp        the time at which the measurement was taken, in
      *                         milliseconds since the Unix epoch
+     * @throws UncheckedIOException if the record cannot be logged
      */
     public void addPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
-        Patient patient = patientMap.get(patientId);
-        if (patient == null) {
-            patient = new Patient(patientId);
-            patientMap.put(patientId, patient);
-        } else {
-            // Check if there exists the record
-            List<PatientRecord> records = patient.getRecords(timestamp, timestamp);
-            for(int i = records.size()-1; i>=0; i--){
-                if(records.get(i).getRecordType().equals(recordType) && records.get(i).getMeasurementValue() == measurementValue){
-                    System.out.println("Record already exists");
-                    return;
-                }
+        addPatientData(patientId, measurementValue, RecordTypeRegistry.codeOf(recordType), timestamp);
+    }
+
+    /**
+     * Adds patient data for an already resolved record type, as
+     * {@link #addPatientData(int, double, String, long)} does.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the health metric being recorded
+     * @param recordTypeCode   the code of the record type, e.g.,
+     *                         {@link RecordTypeRegistry#ECG}
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     * @throws UncheckedIOException if the record cannot be logged
+     */
+    public void addPatientData(int patientId, double measurementValue, int recordTypeCode, long timestamp) {
+        if (!insertRecord(patientId, measurementValue, recordTypeCode, timestamp)) {
+            duplicateRecords.increment();
+            return;
+        }
+        if (writeAheadLog != null) {
+            try {
+                writeAheadLog.append(patientId, RecordTypeRegistry.labelOf(recordTypeCode), timestamp,
+                        measurementValue);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not log record for patient " + patientId, e);
+            }
+        }
+    }
+
+    private Patient newPatient(int patientId) {
+        ColdTier coldTier = coldStore != null ? coldStore.createTier(patientId) : null;
+        return new Patient(patientId, config, residentRecords, latestValues, coldTier);
+    }
+
+    /**
+     * Adds a batch of records, as calling
+     * {@link #addPatientData(int, double, int, long)} for each of them would.
+     * The records are grouped by patient so that each patient is locked once
+     * per batch, and in durable mode the whole batch is logged together, which
+     * makes bulk loads much cheaper than adding records one at a time.
+     *
+     * @param batch the records to add; left unchanged
+     * @throws UncheckedIOException if the records cannot be logged
+     */
+    public void addPatientData(RecordBatch batch) {
+        int size = batch.size();
+        // Sort by patient, keeping the batch order within a patient
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((long) batch.getPatientId(i) << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] indexes = new int[size];
+        for (int i = 0; i < size; i++) {
+            indexes[i] = (int) keys[i];
+        }
+        boolean[] added = new boolean[size];
+        int addedCount = 0;
+        int start = 0;
+        while (start < size) {
+            int patientId = batch.getPatientId(indexes[start]);
+            int end = start + 1;
+            while (end < size && batch.getPatientId(indexes[end]) == patientId) {
+                end++;
             }
-        }    
-        patient.addRecord(measurementValue, recordType, timestamp);
+            Patient patient = patientMap.computeIfAbsent(patientId, this::newPatient);
+            addedCount += patient.addRecordsIfAbsent(batch, indexes, start, end, added);
+            start = end;
+        }
+        duplicateRecords.add(size - addedCount);
+        if (writeAheadLog != null && addedCount > 0) {
+            try {
+                writeAheadLog.appendAll(batch, added);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not log a batch of " + addedCount + " records", e);
+            }
+        }
+    }
+
+    // Adds a record to memory only; returns false if it is a duplicate
+    private boolean insertRecord(int patientId, double measurementValue, int recordTypeCode, long timestamp) {
+        Patient patient = patientMap.computeIfAbsent(patientId, this::newPatient);
+        return patient.addRecordIfAbsent(measurementValue, recordTypeCode, timestamp);
+    }
+
+    private void restoreRecord(int patientId, String recordType, long timestamp, double measurementValue) {
+        insertRecord(patientId, measurementValue, RecordTypeRegistry.codeOf(recordType), timestamp);
+    }
+
+    /**
+     * Writes a snapshot of every stored record to the specified file.
+     * In durable mode the write-ahead log first moves to a new segment; once the
+     * snapshot is complete, the older segments it covers are deleted. Patients
+     * are copied one at a time, so ingestion continues while the snapshot is
+     * written.
+     *
+     * @param file the snapshot file
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        long firstWalSegment = writeAheadLog != null ? writeAheadLog.rollSegment() : 0;
+        StorageSnapshot.write(patientMap.values(), file, firstWalSegment);
+        if (writeAheadLog != null) {
+            writeAheadLog.deleteSegmentsBefore(firstWalSegment);
+        }
+    }
+
+    /**
+     * Stops periodic snapshots, waiting for one that is being written, writes
+     * the records waiting for the cold tier to disk, and flushes and closes the
+     * write-ahead log, if any. Memory-only storages have nothing to close.
+     *
+     * @throws IOException if the log or a cold segment cannot be written, or
+     *                     the thread is interrupted while waiting for a snapshot
+     */
+    @Override
+    public void close() throws IOException {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdown();
+            try {
+                // A running snapshot still rolls and prunes the log
+                snapshotScheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a snapshot to finish");
+            }
+        }
+        if (coldStore != null) {
+            for (Patient patient : patientMap.values()) {
+                patient.flushColdTier();
+            }
+        }
+        if (writeAheadLog != null) {
+            writeAheadLog.close();
+        }
+    }
+
+    /**
+     * Returns how many records were dropped because they duplicated a record
+     * that was already stored.
+     *
+     * @return the number of dropped duplicate records
+     */
+    public long getDuplicateRecordCount() {
+        return duplicateRecords.sum();
     }
 
     /**
@@ -84,6 +315,124 @@ public class DataStorage {
         }
         return new ArrayList<>(); // return an empty list if no patient is found
     }
+
+    /**
+     * Retrieves the measurements of a single record type for a specific patient,
+     * filtered by a time range.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "Saturation"
+     * @param startTime  the start of the time range, in milliseconds since the
+     *                   Unix epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @return a time-sorted series of the matching measurements; empty if no
+     *         patient or record is found
+     */
+    public RecordSeries getSeries(int patientId, String recordType, long startTime, long endTime) {
+        int recordTypeCode = RecordTypeRegistry.codeOf(recordType);
+        Patient patient = patientMap.get(patientId);
+        if (patient != null) {
+            return patient.getSeries(recordTypeCode, startTime, endTime);
+        }
+        return new RecordSeries(recordTypeCode);
+    }
+
+    /**
+     * Computes the count, mean, minimum, maximum and standard deviation of a
+     * single record type for a specific patient over a time range, without
+     * copying the underlying records.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "SystolicPressure"
+     * @param startTime  the start of the time range, in milliseconds since the
+     *                   Unix epoch
+     * @param endTime    the end of the time range, inclusive, in milliseconds
+     *                   since the Unix epoch
+     * @return the statistics of the matching measurements; empty if no patient or
+     *         record is found
+     */
+    public AggregateResult aggregate(int patientId, String recordType, long startTime, long endTime) {
+        Patient patient = patientMap.get(patientId);
+        if (patient != null) {
+            return patient.aggregate(RecordTypeRegistry.codeOf(recordType), startTime, endTime);
+        }
+        return new AggregateResult(0, 0, 0, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * Computes summary statistics of the measurements of a single record type
+     * within a time range, taken over every patient.
+     *
+     * @param recordType the type of record, e.g., "Saturation"
+     * @param startTime  the start of the time range, in milliseconds since the
+     *                   Unix epoch
+     * @param endTime    the end of the time range, inclusive, in milliseconds
+     *                   since the Unix epoch
+     * @return the statistics of the matching measurements of all patients
+     */
+    public AggregateResult aggregate(String recordType, long startTime, long endTime) {
+        int recordTypeCode = RecordTypeRegistry.codeOf(recordType);
+        AggregateResult total = new AggregateResult(0, 0, 0, Double.NaN, Double.NaN);
+        for (Patient patient : patientMap.values()) {
+            total = total.combine(patient.aggregate(recordTypeCode, startTime, endTime));
+        }
+        return total;
+    }
+
+    /**
+     * Returns the value of the most recent measurement of a single record type
+     * for a specific patient.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "Saturation"
+     * @return the latest value, or NaN if no patient or record is found
+     */
+    public double getLatestValue(int patientId, String recordType) {
+        Patient patient = patientMap.get(patientId);
+        if (patient != null) {
+            return patient.getLatestValue(RecordTypeRegistry.codeOf(recordType));
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Finds the patients whose most recent measurement of a record type lies
+     * within a range, e.g., every patient whose latest saturation is below 92.
+     * The latest value of every type is indexed as records are added, so the
+     * cost depends on the number of matching patients rather than on the number
+     * of patients or records held.
+     *
+     * @param recordType the type of record, e.g., "Saturation"
+     * @param min        the smallest matching value, inclusive; use
+     *                   {@link Double#NEGATIVE_INFINITY} for no lower bound
+     * @param max        the largest matching value, exclusive; use
+     *                   {@link Double#POSITIVE_INFINITY} for no upper bound
+     * @return the IDs of the matching patients, ordered by their latest value
+     */
+    public int[] findPatientsInRange(String recordType, double min, double max) {
+        return latestValues.findPatientsInRange(RecordTypeRegistry.codeOf(recordType), min, max);
+    }
+
+    /**
+     * Retrieves the most recent measurements of a single record type for a
+     * specific patient.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "SystolicPressure"
+     * @param count      the maximum number of measurements to return
+     * @return a time-sorted series of at most {@code count} measurements; empty
+     *         if no patient or record is found
+     */
+    public RecordSeries getLastRecords(int patientId, String recordType, int count) {
+        int recordTypeCode = RecordTypeRegistry.codeOf(recordType);
+        Patient patient = patientMap.get(patientId);
+        if (patient != null) {
+            return patient.getLastRecords(recordTypeCode, count);
+        }
+        return new RecordSeries(recordTypeCode);
+    }
+
         public PatientRecord getRecord(int patientId, long timestamp) {
     Patient patient = patientMap.get(patientId);
     if (patient != null) {
@@ -95,18 +444,58 @@ public class DataStorage {
     return null; // return null if no patient or record is found
 }
 
+    /**
+     * Drops every record that has outlived the retention of its record type at
+     * the specified time. Records are also evicted as new data arrives; this
+     * method additionally trims patients that stopped receiving data. Patients
+     * are locked one at a time, so ingestion for other patients continues while
+     * the eviction runs.
+     *
+     * @param now the current time, in milliseconds since the Unix epoch
+     * @return the number of records dropped
+     */
+    public long evictExpired(long now) {
+        long evicted = 0;
+        for (Patient patient : patientMap.values()) {
+            evicted += patient.evictExpired(now);
+        }
+        return evicted;
+    }
+
+    /**
+     * Returns the number of records currently held in memory.
+     *
+     * @return the number of resident records
+     */
+    public long getResidentRecordCount() {
+        return residentRecords.sum();
+    }
+
+    /**
+     * Returns an estimate of the heap memory held by the stored records.
+     *
+     * @return the estimated footprint in bytes
+     */
+    public long getResidentBytes() {
+        long bytes = 0;
+        for (Patient patient : patientMap.values()) {
+            bytes += patient.getResidentBytes();
+        }
+        return bytes;
+    }
+
 /**
- * Calculate the total number of records stored in the data storage
+ * Calculate the total number of records stored in the data storage, including
+ * the records that have moved to cold storage.
+ * The totals are maintained as records are added and evicted, so this takes
+ * constant time.
  * 
  * @return the total number of records
+ * @throws ArithmeticException if the total does not fit in an int
  */
    public int getTotalNumberOfRecords() {
-        int totalCount = 0;
-        for (Patient patient : patientMap.values()) {
-        List<PatientRecord> records = patient.getRecords(0, Long.MAX_VALUE);
-        totalCount += records.size();
-        }
-        return totalCount;
+        long coldRecords = coldStore != null ? coldStore.getRecordCount() : 0;
+        return Math.toIntExact(residentRecords.sum() + coldRecords);
     }
 
 
@@ -119,19 +508,82 @@ public class DataStorage {
         return new ArrayList<>(patientMap.values());
     }
         
+    /**
+     * Hands every record of a specific patient within a time range to the
+     * visitor, without creating lists or record objects.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param startTime the start of the time range, in milliseconds since the
+     *                  Unix epoch
+     * @param endTime   the end of the time range, in milliseconds since the Unix
+     *                  epoch
+     * @param visitor   receives the matching records
+     * @return the number of records visited
+     */
+    public int forEachRecord(int patientId, long startTime, long endTime, RecordVisitor visitor) {
+        Patient patient = patientMap.get(patientId);
+        return patient != null ? patient.forEachRecord(startTime, endTime, visitor) : 0;
+    }
+
+    /**
+     * Hands every record of every patient within a time range to the visitor,
+     * e.g., for exports and audits. Patients are visited one at a time, so
+     * ingestion continues during the scan.
+     *
+     * @param startTime the start of the time range, in milliseconds since the
+     *                  Unix epoch
+     * @param endTime   the end of the time range, in milliseconds since the Unix
+     *                  epoch
+     * @param visitor   receives the matching records
+     * @return the number of records visited
+     */
+    public long forEachRecord(long startTime, long endTime, RecordVisitor visitor) {
+        long visited = 0;
+        for (Patient patient : patientMap.values()) {
+            visited += patient.forEachRecord(startTime, endTime, visitor);
+        }
+        return visited;
+    }
+
+    /**
+     * Hands every stored patient to the action without copying the patient
+     * collection.
+     *
+     * @param action receives each patient
+     */
+    public void forEachPatient(Consumer<Patient> action) {
+        patientMap.values().forEach(action);
+    }
+
+    /**
+     * Returns the patient with the specified ID.
+     *
+     * @param patientId the unique identifier of the patient
+     * @return the patient, or null if no records of the patient are stored
+     */
+    public Patient getPatient(int patientId) {
+        return patientMap.get(patientId);
+    }
+
+    /**
+     * Returns the number of stored patients.
+     *
+     * @return the number of patients
+     */
+    public int getPatientCount() {
+        return patientMap.size();
+    }
+
 /**
  * Displays all patients and their records.
  */
 public void displayAllPatients() {
-    for (Patient patient : patientMap.values()) {
-        for (PatientRecord record : patient.getRecords(0, Long.MAX_VALUE)) {
-            System.out.printf("Patient ID: %d, Type: %s, Data: %.2f, Timestamp: %d%n", 
-                              record.getPatientId(), 
-                              record.getRecordType(), 
-                              record.getMeasurementValue(), 
-                              record.getTimestamp());
-        }
-    }
+    forEachRecord(0, Long.MAX_VALUE, (patientId, recordTypeCode, timestamp, measurementValue) ->
+            System.out.printf("Patient ID: %d, Type: %s, Data: %.2f, Timestamp: %d%n",
+                              patientId,
+                              RecordTypeRegistry.labelOf(recordTypeCode),
+                              measurementValue,
+                              timestamp));
 }
 
 /**
@@ -145,7 +597,7 @@ public Patient retrievePatient(String message) {
     String[] patientInfo = parts[0].split(":");
     int patientId = Integer.parseInt(patientInfo[1].trim());
 
-    return patientMap.computeIfAbsent(patientId, id -> new Patient(id));
+    return patientMap.computeIfAbsent(patientId, this::newPatient);
 }
 
 
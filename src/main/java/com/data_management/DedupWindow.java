@@ -0,0 +1,214 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the records a patient received recently so duplicates can be
+ * detected in constant time.
+ * Records are keyed on their type, timestamp and value and are kept in an
+ * open-addressing hash table. Only records whose timestamp lies within the
+ * configured window of the newest timestamp seen are remembered, so the
+ * memory used does not depend on how long the patient has been monitored.
+ * Records older than the window are not checked and are always accepted.
+ * This class is not thread-safe; the owning patient serializes access.
+ */
+public class DedupWindow {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int EMPTY = -1;
+
+    private final long windowMillis;
+    private long newestTimestamp = Long.MIN_VALUE;
+
+    // Hash table slots; an EMPTY type code marks an empty slot
+    private int[] types;
+    private long[] timestamps;
+    private long[] valueBits;
+    private int count;
+
+    // Insertion order of the remembered records, used for eviction
+    private int[] queueTypes;
+    private long[] queueTimestamps;
+    private long[] queueValueBits;
+    private int queueHead;
+
+    /**
+     * Constructs an empty dedup window.
+     *
+     * @param windowMillis how far behind the newest timestamp records are still
+     *                     remembered, in milliseconds
+     */
+    public DedupWindow(long windowMillis) {
+        this.windowMillis = windowMillis;
+        this.types = newTable(INITIAL_CAPACITY);
+        this.timestamps = new long[INITIAL_CAPACITY];
+        this.valueBits = new long[INITIAL_CAPACITY];
+        this.queueTypes = new int[INITIAL_CAPACITY];
+        this.queueTimestamps = new long[INITIAL_CAPACITY];
+        this.queueValueBits = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Checks whether a record was already seen and remembers it if it was not.
+     *
+     * @param recordTypeCode the code of the record type
+     * @param timestamp      the time at which the measurement was taken, in
+     *                       milliseconds since UNIX epoch
+     * @param value          the measurement value
+     * @return true if the same record is already in the window, false otherwise
+     */
+    public boolean checkAndAdd(int recordTypeCode, long timestamp, double value) {
+        if (timestamp > newestTimestamp) {
+            newestTimestamp = timestamp;
+            evictOlderThan(horizon());
+        } else if (timestamp < horizon()) {
+            return false;
+        }
+        long bits = Double.doubleToLongBits(value);
+        int mask = types.length - 1;
+        int slot = hash(recordTypeCode, timestamp, bits) & mask;
+        while (types[slot] != EMPTY) {
+            if (timestamps[slot] == timestamp && valueBits[slot] == bits && types[slot] == recordTypeCode) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (count + 1 > types.length / 2) {
+            grow();
+            insert(recordTypeCode, timestamp, bits);
+        } else {
+            types[slot] = recordTypeCode;
+            timestamps[slot] = timestamp;
+            valueBits[slot] = bits;
+        }
+        enqueue(recordTypeCode, timestamp, bits);
+        count++;
+        return false;
+    }
+
+    /**
+     * Returns the number of records currently remembered.
+     *
+     * @return the number of remembered records
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns an estimate of the heap memory held by this window.
+     *
+     * @return the estimated footprint in bytes
+     */
+    public long getResidentBytes() {
+        // Each slot holds an int and two longs, in both the table and the queue
+        return 2L * types.length * (Integer.BYTES + Long.BYTES + Long.BYTES);
+    }
+
+    private long horizon() {
+        long horizon = newestTimestamp - windowMillis;
+        // Guard against underflow when the window is very large
+        return horizon > newestTimestamp ? Long.MIN_VALUE : horizon;
+    }
+
+    private void evictOlderThan(long horizon) {
+        while (count > 0) {
+            int head = queueHead & (queueTypes.length - 1);
+            if (queueTimestamps[head] >= horizon) {
+                return;
+            }
+            remove(queueTypes[head], queueTimestamps[head], queueValueBits[head]);
+            queueHead++;
+            count--;
+        }
+    }
+
+    private void enqueue(int recordTypeCode, long timestamp, long bits) {
+        int tail = (queueHead + count) & (queueTypes.length - 1);
+        queueTypes[tail] = recordTypeCode;
+        queueTimestamps[tail] = timestamp;
+        queueValueBits[tail] = bits;
+    }
+
+    private void insert(int recordTypeCode, long timestamp, long bits) {
+        int mask = types.length - 1;
+        int slot = hash(recordTypeCode, timestamp, bits) & mask;
+        while (types[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        types[slot] = recordTypeCode;
+        timestamps[slot] = timestamp;
+        valueBits[slot] = bits;
+    }
+
+    // Linear-probing deletion that shifts later entries back instead of leaving tombstones
+    private void remove(int recordTypeCode, long timestamp, long bits) {
+        int mask = types.length - 1;
+        int slot = hash(recordTypeCode, timestamp, bits) & mask;
+        while (types[slot] != EMPTY) {
+            if (timestamps[slot] == timestamp && valueBits[slot] == bits && types[slot] == recordTypeCode) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (types[slot] == EMPTY) {
+            return;
+        }
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (types[next] != EMPTY) {
+            int home = hash(types[next], timestamps[next], valueBits[next]) & mask;
+            // Move the entry into the gap if its home slot does not lie between the gap and its position
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                types[gap] = types[next];
+                timestamps[gap] = timestamps[next];
+                valueBits[gap] = valueBits[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        types[gap] = EMPTY;
+    }
+
+    private void grow() {
+        int[] oldTypes = types;
+        long[] oldTimestamps = timestamps;
+        long[] oldValueBits = valueBits;
+        int capacity = oldTypes.length * 2;
+        types = newTable(capacity);
+        timestamps = new long[capacity];
+        valueBits = new long[capacity];
+        for (int i = 0; i < oldTypes.length; i++) {
+            if (oldTypes[i] != EMPTY) {
+                insert(oldTypes[i], oldTimestamps[i], oldValueBits[i]);
+            }
+        }
+
+        int[] newQueueTypes = new int[capacity];
+        long[] newQueueTimestamps = new long[capacity];
+        long[] newQueueValueBits = new long[capacity];
+        int oldMask = queueTypes.length - 1;
+        for (int i = 0; i < count; i++) {
+            int from = (queueHead + i) & oldMask;
+            newQueueTypes[i] = queueTypes[from];
+            newQueueTimestamps[i] = queueTimestamps[from];
+            newQueueValueBits[i] = queueValueBits[from];
+        }
+        queueTypes = newQueueTypes;
+        queueTimestamps = newQueueTimestamps;
+        queueValueBits = newQueueValueBits;
+        queueHead = 0;
+    }
+
+    private static int[] newTable(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    private static int hash(int recordTypeCode, long timestamp, long bits) {
+        long h = timestamp * 0x9E3779B97F4A7C15L + bits;
+        h ^= recordTypeCode;
+        h *= 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -1,15 +1,26 @@
 package com.data_management;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class FileDataReader implements DataReader {
+    private static final long MIN_SPLIT_BYTES = 1L << 20;
+    private static final long MAX_SPLIT_BYTES = 16L << 20;
+    private static final int BATCH_SIZE = 4096;
+    private static final long FOLLOW_POLL_MILLIS = 1000;
+    private static final int MAX_LINE_BYTES = 64 * 1024; // Read past the end of a range to finish its last line
+
     private String dataDirectory;
+    private final int parallelism;
 
     /**
      * Constructs a FileDataReader with the specified data directory.
@@ -17,7 +28,27 @@ public class FileDataReader implements DataReader {
      * @param dataDirectory the directory where data files are located
      */
     public FileDataReader(String dataDirectory) {
+        this(dataDirectory, 1);
+    }
+
+    /**
+     * Constructs a FileDataReader that reads the files of the specified data
+     * directory on several threads.
+     * Files are split into byte ranges on line boundaries, so even a single
+     * large file is read in parallel. Records are added in batches, and
+     * records of different ranges may be added in any order.
+     * 
+     * @param dataDirectory the directory where data files are located
+     * @param parallelism   the number of threads to read with; 1 reads
+     *                      everything on the calling thread
+     * @throws IllegalArgumentException if the parallelism is not positive
+     */
+    public FileDataReader(String dataDirectory, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
         this.dataDirectory = dataDirectory;
+        this.parallelism = parallelism;
     }
 
     /**
@@ -30,40 +61,154 @@ public class FileDataReader implements DataReader {
     public void readData(DataStorage dataStorage) throws IOException {
         // List all files in the directory
         List<Path> files = Files.list(Path.of(dataDirectory)).toList();
+        List<FileRange> ranges = splitFiles(files);
 
-        // Iterate through each file
+        if (parallelism == 1) {
+            for (FileRange range : ranges) {
+                processRange(range, dataStorage);
+            }
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new ReadTask(ranges, 0, ranges.size(), dataStorage));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Reads the data files now and keeps reading whatever is appended to them
+     * later, until the returned follower is closed.
+     * 
+     * @param dataStorage the storage where data will be stored
+     * @param offsetFile the file that remembers how far each data file has been
+     *                   read, so a new follower continues where the last one
+     *                   stopped
+     * @return the running follower
+     * @throws IOException if the saved offsets cannot be read
+     */
+    public FileFollower follow(DataStorage dataStorage, Path offsetFile) throws IOException {
+        return new FileFollower(Path.of(dataDirectory), dataStorage, offsetFile, FOLLOW_POLL_MILLIS);
+    }
+
+    // Cuts the files into ranges small enough to keep every thread busy
+    private List<FileRange> splitFiles(List<Path> files) throws IOException {
+        long totalBytes = 0;
+        for (Path file : files) {
+            totalBytes += Files.size(file);
+        }
+        long splitBytes = Math.max(MIN_SPLIT_BYTES, Math.min(MAX_SPLIT_BYTES, totalBytes / (parallelism * 4L)));
+        List<FileRange> ranges = new ArrayList<>();
         for (Path file : files) {
-            // Process each file
-            processDataFile(file, dataStorage);
+            long size = Files.size(file);
+            for (long start = 0; start < size; start += splitBytes) {
+                ranges.add(new FileRange(file, start, Math.min(size, start + splitBytes)));
+            }
         }
+        return ranges;
     }
 
     /**
-     * Processes a single data file and adds its contents to the data storage.
+     * Processes the lines of a data file that start within a byte range and
+     * adds their contents to the data storage.
+     * A line belongs to the range its first byte falls in, so adjacent ranges
+     * together process every line exactly once. The range is memory-mapped and
+     * parsed byte by byte with a {@link RecordLineParser}.
      * 
-     * @param file the path to the data file
+     * @param range the file and byte range to process
      * @param dataStorage the storage where data will be stored
      * @throws IOException if there is an error reading the file
      */
-    private void processDataFile(Path file, DataStorage dataStorage) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(file.toFile()))) {
-            String line;
-            // Read each line of the file
-            while ((line = reader.readLine()) != null) {
-                // Split the line into components
-                String[] parts = line.split(",");
-                if (parts.length == 4) {
-                    // Extract components
-                    int patientId = Integer.parseInt(parts[0]);
-                    long timestamp = Long.parseLong(parts[1]);
-                    String label = parts[2];
-                    String data = parts[3];
-
-                    // Add data to the storage
-                    dataStorage.addPatientData(patientId, Double.parseDouble(data), label, timestamp);
-                } else {
-                    System.err.println("Invalid data format in file: " + file.getFileName());
+    private void processRange(FileRange range, DataStorage dataStorage) throws IOException {
+        RecordBatch batch = new RecordBatch(BATCH_SIZE);
+        RecordLineParser parser = new RecordLineParser();
+        try (FileChannel channel = FileChannel.open(range.file, StandardOpenOption.READ)) {
+            // Start one byte early: if that byte ends a line, the range starts on a line
+            long mapStart = Math.max(0, range.start - 1);
+            long fileSize = channel.size();
+            int mapLength = (int) Math.max(0, Math.min(fileSize - mapStart, range.end - mapStart + MAX_LINE_BYTES));
+            boolean mapsEndOfFile = mapStart + mapLength == fileSize;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapLength);
+            int ownedEnd = (int) Math.min(mapLength, range.end - mapStart);
+
+            int position = 0;
+            if (range.start > 0) {
+                // Skip the rest of the line owned by the previous range
+                position = lineEnd(buffer, 0, mapLength) + 1;
+            }
+            while (position < ownedEnd) {
+                int lineEnd = lineEnd(buffer, position, mapLength);
+                int contentEnd = lineEnd;
+                if (contentEnd > position && buffer.get(contentEnd - 1) == '\r') {
+                    contentEnd--;
+                }
+                boolean complete = lineEnd < mapLength || mapsEndOfFile;
+                if (!complete || !parser.parseLine(buffer, position, contentEnd, batch)) {
+                    System.err.println("Invalid data format in file: " + range.file.getFileName());
+                }
+                if (batch.size() >= BATCH_SIZE) {
+                    dataStorage.addPatientData(batch);
+                    batch.clear();
+                }
+                position = lineEnd + 1;
+            }
+        }
+        dataStorage.addPatientData(batch);
+    }
+
+    // Returns the index of the next line feed, or the limit if there is none
+    private static int lineEnd(MappedByteBuffer buffer, int from, int limit) {
+        int i = from;
+        while (i < limit && buffer.get(i) != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    // Part of a data file, from start inclusive to end exclusive, in bytes
+    private static class FileRange {
+        final Path file;
+        final long start;
+        final long end;
+
+        FileRange(Path file, long start, long end) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    // Processes a slice of the ranges, splitting it in half until a single range is left
+    private class ReadTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<FileRange> ranges;
+        private final int from;
+        private final int to;
+        private final DataStorage dataStorage;
+
+        ReadTask(List<FileRange> ranges, int from, int to, DataStorage dataStorage) {
+            this.ranges = ranges;
+            this.from = from;
+            this.to = to;
+            this.dataStorage = dataStorage;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                try {
+                    processRange(ranges.get(from), dataStorage);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
+            } else if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ReadTask(ranges, from, middle, dataStorage),
+                        new ReadTask(ranges, middle, to, dataStorage));
             }
         }
     }
@@ -0,0 +1,314 @@
+package com.data_management;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a {@link DataStorage} up to date with the data files of a directory
+ * while other processes, such as the simulator's FileOutputStrategy, keep
+ * appending to them.
+ * The follower remembers how many bytes of each file it has ingested and only
+ * reads the bytes appended since, up to the last complete line. It wakes up as
+ * soon as a {@link WatchService} reports a change and also rescans the whole
+ * directory every poll interval, which covers file systems where change events
+ * are slow or missing. A file that shrinks is assumed to have been replaced
+ * and is read again from the start.
+ * The offsets are saved to a properties file, at most once a second and on
+ * close, so a restarted follower continues where the last one stopped. Lines
+ * ingested after the last save are read again after a crash; configure a
+ * dedup window on the storage to drop them.
+ */
+public class FileFollower implements Closeable {
+    private static final int BATCH_SIZE = 4096;
+    private static final int MAP_BYTES = 16 << 20;
+    private static final long SAVE_INTERVAL_MILLIS = 1000;
+
+    private final Path directory;
+    private final DataStorage dataStorage;
+    private final Path offsetFile;
+    private final long pollIntervalMillis;
+    private final Map<String, Long> offsets = new HashMap<>();
+    private final RecordLineParser parser = new RecordLineParser();
+    private final RecordBatch batch = new RecordBatch(BATCH_SIZE);
+    private final WatchService watchService;
+    private final Thread follower;
+    private volatile boolean running = true;
+    private boolean offsetsChanged;
+    private long lastSaveMillis;
+    private long ingestedRecords;
+
+    /**
+     * Starts following the data files of a directory. Files that are already
+     * in the directory are read from their saved offsets, or from the start.
+     *
+     * @param directory          the directory where data files are located
+     * @param dataStorage        the storage where data will be stored
+     * @param offsetFile         the file the ingested byte offsets are saved in
+     * @param pollIntervalMillis how often the directory is rescanned, in
+     *                           milliseconds
+     * @throws IOException if the saved offsets cannot be read
+     * @throws IllegalArgumentException if the poll interval is not positive
+     */
+    public FileFollower(Path directory, DataStorage dataStorage, Path offsetFile, long pollIntervalMillis)
+            throws IOException {
+        if (pollIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Poll interval must be positive: " + pollIntervalMillis);
+        }
+        this.directory = directory;
+        this.dataStorage = dataStorage;
+        this.offsetFile = offsetFile.toAbsolutePath().normalize();
+        this.pollIntervalMillis = pollIntervalMillis;
+        loadOffsets();
+        this.watchService = openWatchService(directory);
+        this.follower = new Thread(this::follow, "file-follower-" + directory.getFileName());
+        follower.setDaemon(true);
+        follower.start();
+    }
+
+    /**
+     * Returns the number of records ingested since this follower was started.
+     *
+     * @return the number of records
+     */
+    public synchronized long getIngestedRecordCount() {
+        return ingestedRecords;
+    }
+
+    /**
+     * Returns how many bytes of a file have been ingested.
+     *
+     * @param fileName the name of the file within the directory
+     * @return the byte offset up to which the file has been read
+     */
+    public synchronized long getOffset(String fileName) {
+        return offsets.getOrDefault(fileName, 0L);
+    }
+
+    /**
+     * Reads everything appended to the directory's files since the last scan.
+     * The background thread does this every poll interval; calling it directly
+     * catches up without waiting.
+     *
+     * @throws IOException if a file cannot be read or the offsets cannot be
+     *                     saved
+     */
+    public synchronized void scan() throws IOException {
+        Set<String> present = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (isDataFile(file)) {
+                    present.add(file.getFileName().toString());
+                    ingest(file);
+                }
+            }
+        }
+        offsetsChanged |= offsets.keySet().retainAll(present);
+        saveOffsets(false);
+    }
+
+    /**
+     * Stops following the directory and saves the offsets.
+     *
+     * @throws IOException if the offsets cannot be saved
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (watchService != null) {
+            watchService.close();
+        }
+        follower.interrupt();
+        try {
+            follower.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            saveOffsets(true);
+        }
+    }
+
+    private void follow() {
+        boolean rescan = true;
+        while (running) {
+            try {
+                if (rescan) {
+                    scan();
+                }
+                rescan = awaitChanges();
+            } catch (IOException e) {
+                if (!running) {
+                    return; // Interrupted by close
+                }
+                e.printStackTrace();
+                rescan = true;
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+        }
+    }
+
+    // Waits for a change event or the poll interval; returns true if the whole directory must be rescanned
+    private boolean awaitChanges() throws IOException, InterruptedException {
+        if (watchService == null) {
+            Thread.sleep(pollIntervalMillis);
+            return true;
+        }
+        WatchKey key = watchService.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+        if (key == null) {
+            return true;
+        }
+        boolean rescan = false;
+        synchronized (this) {
+            for (; key != null; key = watchService.poll()) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        rescan = true;
+                    } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        offsetsChanged |= offsets.remove(event.context().toString()) != null;
+                    } else {
+                        Path file = directory.resolve((Path) event.context());
+                        if (isDataFile(file)) {
+                            ingest(file);
+                        }
+                    }
+                }
+                key.reset();
+            }
+            saveOffsets(false);
+        }
+        return rescan;
+    }
+
+    private boolean isDataFile(Path file) {
+        String name = file.getFileName().toString();
+        return Files.isRegularFile(file) && !name.endsWith(".tmp") && !file.toAbsolutePath().normalize().equals(offsetFile);
+    }
+
+    // Adds the complete lines appended to a file since its saved offset
+    private void ingest(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        long offset = offsets.getOrDefault(name, 0L);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < offset) {
+                offset = 0; // Truncated or replaced: start over
+            }
+            while (offset < size) {
+                int length = (int) Math.min(size - offset, MAP_BYTES);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                int consumed = ingestLines(buffer, length, name);
+                if (consumed == 0) {
+                    if (length < MAP_BYTES) {
+                        break; // The last line is still being written
+                    }
+                    System.err.println("Invalid data format in file: " + name);
+                    consumed = length;
+                }
+                offset += consumed;
+            }
+        } catch (NoSuchFileException e) {
+            return; // Deleted since it was listed
+        } finally {
+            dataStorage.addPatientData(batch);
+            ingestedRecords += batch.size();
+            batch.clear();
+        }
+        Long previous = offsets.put(name, offset);
+        offsetsChanged |= previous == null || previous != offset;
+    }
+
+    // Parses the complete lines of a buffer; returns the number of bytes they span
+    private int ingestLines(MappedByteBuffer buffer, int length, String name) {
+        int position = 0;
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(i) != '\n') {
+                continue;
+            }
+            int contentEnd = i > position && buffer.get(i - 1) == '\r' ? i - 1 : i;
+            if (!parser.parseLine(buffer, position, contentEnd, batch)) {
+                System.err.println("Invalid data format in file: " + name);
+            }
+            if (batch.size() >= BATCH_SIZE) {
+                dataStorage.addPatientData(batch);
+                ingestedRecords += batch.size();
+                batch.clear();
+            }
+            position = i + 1;
+        }
+        return position;
+    }
+
+    private void loadOffsets() throws IOException {
+        if (!Files.exists(offsetFile)) {
+            return;
+        }
+        Properties saved = new Properties();
+        try (InputStream in = Files.newInputStream(offsetFile)) {
+            saved.load(in);
+        }
+        for (String name : saved.stringPropertyNames()) {
+            offsets.put(name, Long.parseLong(saved.getProperty(name)));
+        }
+    }
+
+    // Writes the offsets to a temporary file and moves it over the old one
+    private void saveOffsets(boolean force) throws IOException {
+        long now = System.currentTimeMillis();
+        if (!offsetsChanged || (!force && now - lastSaveMillis < SAVE_INTERVAL_MILLIS)) {
+            return;
+        }
+        Properties saved = new Properties();
+        for (Map.Entry<String, Long> entry : offsets.entrySet()) {
+            saved.setProperty(entry.getKey(), Long.toString(entry.getValue()));
+        }
+        Path temporary = offsetFile.resolveSibling(offsetFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temporary)) {
+            saved.store(out, "Ingested bytes per file of " + directory);
+        }
+        Files.move(temporary, offsetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        offsetsChanged = false;
+        lastSaveMillis = now;
+    }
+
+    // Returns null if the file system cannot watch the directory, leaving polling alone
+    private static WatchService openWatchService(Path directory) {
+        WatchService watchService = null;
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            return watchService;
+        } catch (IOException | UnsupportedOperationException e) {
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException ignored) {
+                    // Nothing to release
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.data_management;
+
+/**
+ * Decides when the write-ahead log forces written records to stable storage,
+ * trading write latency against how much data a crash can lose.
+ */
+public enum FsyncPolicy {
+    /**
+     * Every call to addPatientData returns only after its record was forced to
+     * disk. Concurrent writers share a single fsync (group commit).
+     */
+    PER_BATCH,
+    /**
+     * Records are written and forced to disk on a fixed interval; a crash can
+     * lose the records of the last interval.
+     */
+    INTERVAL,
+    /**
+     * Records are handed to the operating system on a fixed interval but never
+     * forced; only a clean close forces them to disk.
+     */
+    NEVER
+}
@@ -0,0 +1,262 @@
+package com.data_management;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Moves record messages from the threads that receive them, such as a
+ * WebSocket I/O thread, into a {@link DataStorage}.
+ * {@link #submit(String)} only puts the message on a {@link BoundedQueue}. A
+ * single worker thread takes whatever has queued up, parses it with a
+ * {@link RecordLineParser}, adds it to the storage as one batch and then hands
+ * every patient that received records to the evaluator once, however many of
+ * that patient's messages were in the batch. What happens when the queue is
+ * full is decided by the {@link BackpressurePolicy}.
+ */
+public class IngestPipeline implements Closeable {
+    /** Number of messages the worker takes off the queue per batch, at most. */
+    public static final int MAX_BATCH_MESSAGES = 1024;
+
+    private static final long BLOCKED_WAIT_NANOS = 50_000;
+    private static final long IDLE_WAIT_NANOS = 10_000_000;
+
+    private final DataStorage dataStorage;
+    private final Consumer<Patient> evaluator;
+    private final BoundedQueue<String> queue;
+    private final BackpressurePolicy backpressurePolicy;
+    private final Thread worker;
+    private volatile boolean running = true;
+    private volatile boolean workerIdle;
+    // Producers inside submit(); the worker keeps draining until they are gone after close()
+    private final AtomicInteger activeSubmitters = new AtomicInteger();
+
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private final AtomicLong invalidMessages = new AtomicLong();
+    private final AtomicLong processedMessages = new AtomicLong();
+
+    // Worker state
+    private final RecordLineParser parser = new RecordLineParser();
+    private final RecordBatch batch = new RecordBatch(MAX_BATCH_MESSAGES);
+    private ByteBuffer messageBytes = ByteBuffer.allocate(256);
+    private int[] patientIds = new int[MAX_BATCH_MESSAGES];
+
+    /**
+     * Starts a pipeline into the specified storage.
+     *
+     * @param dataStorage        the storage where data will be stored
+     * @param evaluator          receives each patient that got new records,
+     *                           once per batch, e.g., to evaluate alerts
+     * @param capacity           the number of messages that can wait in the
+     *                           queue
+     * @param backpressurePolicy what to do with messages while the queue is
+     *                           full
+     */
+    public IngestPipeline(DataStorage dataStorage, Consumer<Patient> evaluator, int capacity,
+            BackpressurePolicy backpressurePolicy) {
+        this.dataStorage = dataStorage;
+        this.evaluator = evaluator;
+        this.queue = new BoundedQueue<>(capacity);
+        this.backpressurePolicy = backpressurePolicy;
+        this.worker = new Thread(this::work, "ingest-pipeline");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Queues a message for ingestion. The message is a record line in any
+     * format the {@link RecordLineParser} understands.
+     * Under {@link BackpressurePolicy#BLOCK} this waits while the queue is
+     * full; under the other policies it returns at once.
+     *
+     * @param message the message
+     * @return false if the message was dropped because the queue was full or
+     *         the pipeline is closed; true if the worker will process it
+     */
+    public boolean submit(String message) {
+        // Registered before checking running, so close() cannot end the worker under a queued message
+        activeSubmitters.incrementAndGet();
+        try {
+            return enqueue(message);
+        } finally {
+            activeSubmitters.decrementAndGet();
+        }
+    }
+
+    private boolean enqueue(String message) {
+        if (!running) {
+            droppedMessages.incrementAndGet();
+            return false;
+        }
+        boolean queued = queue.offer(message);
+        while (!queued) {
+            if (backpressurePolicy == BackpressurePolicy.DROP_NEWEST || !running) {
+                droppedMessages.incrementAndGet();
+                return false;
+            }
+            if (backpressurePolicy == BackpressurePolicy.DROP_OLDEST) {
+                if (queue.poll() != null) {
+                    droppedMessages.incrementAndGet();
+                }
+            } else {
+                LockSupport.parkNanos(BLOCKED_WAIT_NANOS);
+            }
+            queued = queue.offer(message);
+        }
+        if (workerIdle) {
+            LockSupport.unpark(worker);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of messages waiting in the queue.
+     *
+     * @return the number of queued messages
+     */
+    public int getQueuedMessageCount() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of messages dropped because the queue was full.
+     *
+     * @return the number of dropped messages
+     */
+    public long getDroppedMessageCount() {
+        return droppedMessages.get();
+    }
+
+    /**
+     * Returns the number of messages that were not valid records.
+     *
+     * @return the number of invalid messages
+     */
+    public long getInvalidMessageCount() {
+        return invalidMessages.get();
+    }
+
+    /**
+     * Returns the number of messages the worker has taken off the queue, valid
+     * or not.
+     *
+     * @return the number of processed messages
+     */
+    public long getProcessedMessageCount() {
+        return processedMessages.get();
+    }
+
+    /**
+     * Stops accepting messages, lets the worker process the ones already
+     * queued, including those of submissions still in progress, and waits for
+     * it to finish.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void work() {
+        while (true) {
+            int taken = processBatch();
+            if (taken > 0) {
+                continue;
+            }
+            if (!running && activeSubmitters.get() == 0 && queue.size() == 0) {
+                return;
+            }
+            // Announce the wait before checking the queue again, so a producer cannot miss it
+            workerIdle = true;
+            if (queue.size() == 0 && running) {
+                LockSupport.parkNanos(IDLE_WAIT_NANOS);
+            }
+            workerIdle = false;
+        }
+    }
+
+    // Takes up to a batch of messages off the queue and ingests them; returns how many were taken
+    private int processBatch() {
+        int taken = 0;
+        String message;
+        while (taken < MAX_BATCH_MESSAGES && (message = queue.poll()) != null) {
+            taken++;
+            if (!parse(message)) {
+                invalidMessages.incrementAndGet();
+            }
+        }
+        if (taken == 0) {
+            return 0;
+        }
+        try {
+            dataStorage.addPatientData(batch);
+            evaluatePatients();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            batch.clear();
+            processedMessages.addAndGet(taken);
+        }
+        return taken;
+    }
+
+    private boolean parse(String message) {
+        int length = message.length();
+        if (messageBytes.capacity() < length) {
+            messageBytes = ByteBuffer.allocate(Math.max(length, messageBytes.capacity() * 2));
+        }
+        for (int i = 0; i < length; i++) {
+            char c = message.charAt(i);
+            if (c > 0x7F) {
+                // Not plain ASCII: let the encoder work out the bytes
+                byte[] encoded = message.getBytes(StandardCharsets.UTF_8);
+                return parser.parseLine(ByteBuffer.wrap(encoded), 0, trimLineEnd(encoded, encoded.length), batch);
+            }
+            messageBytes.put(i, (byte) c);
+        }
+        return parser.parseLine(messageBytes, 0, trimLineEnd(messageBytes.array(), length), batch);
+    }
+
+    private static int trimLineEnd(byte[] bytes, int length) {
+        while (length > 0 && (bytes[length - 1] == '\n' || bytes[length - 1] == '\r')) {
+            length--;
+        }
+        return length;
+    }
+
+    // Hands each patient of the batch to the evaluator once
+    private void evaluatePatients() {
+        int size = batch.size();
+        if (patientIds.length < size) {
+            patientIds = new int[size];
+        }
+        for (int i = 0; i < size; i++) {
+            patientIds[i] = batch.getPatientId(i);
+        }
+        Arrays.sort(patientIds, 0, size);
+        for (int i = 0; i < size; i++) {
+            if (i > 0 && patientIds[i] == patientIds[i - 1]) {
+                continue;
+            }
+            Patient patient = dataStorage.getPatient(patientIds[i]);
+            if (patient == null) {
+                continue;
+            }
+            try {
+                evaluator.accept(patient);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
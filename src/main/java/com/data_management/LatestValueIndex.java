@@ -0,0 +1,216 @@
+package com.data_management;
+
+import java.util.Arrays;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the latest measurement of every record type for every patient, with a
+ * sorted index over those values for cross-patient range queries such as
+ * "which patients currently have a saturation below 92".
+ * Every patient is assigned a dense slot when it is registered. For each record
+ * type the latest timestamp and value are kept in primitive arrays indexed by
+ * slot, and a concurrent skip list orders the slots by value. Updates take
+ * logarithmic time; a range query takes time proportional to the number of
+ * matching patients.
+ * Updates for one patient must be serialized by the caller, which the owning
+ * patient's lock does. Queries may run concurrently with updates and see each
+ * patient either before or after its latest update.
+ */
+public class LatestValueIndex {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final long ABSENT = Long.MIN_VALUE;
+
+    private final AtomicInteger nextSlot = new AtomicInteger();
+    private final Chunks slotPatients = new Chunks();
+    private volatile TypeIndex[] types = new TypeIndex[0];
+
+    /**
+     * Assigns an index slot to a patient. Called once when the patient is
+     * created.
+     *
+     * @param patientId the unique identifier of the patient
+     * @return the slot of the patient
+     */
+    public int register(int patientId) {
+        int slot = nextSlot.getAndIncrement();
+        slotPatients.ints(slot)[slot & (CHUNK_SIZE - 1)] = patientId;
+        return slot;
+    }
+
+    /**
+     * Records a measurement as the patient's latest of its type, unless a newer
+     * one is already recorded.
+     *
+     * @param slot           the slot of the patient
+     * @param recordTypeCode the code of the record type
+     * @param timestamp      the time at which the measurement was taken, in
+     *                       milliseconds since UNIX epoch
+     * @param value          the measurement value
+     */
+    public void update(int slot, int recordTypeCode, long timestamp, double value) {
+        TypeIndex type = typeIndex(recordTypeCode);
+        int offset = slot & (CHUNK_SIZE - 1);
+        long[] timestamps = type.chunks.longs(slot);
+        double[] values = type.chunks.doubles(slot);
+        long previous = timestamps[offset];
+        if (timestamp < previous) {
+            return;
+        }
+        if (previous != ABSENT) {
+            type.sorted.remove(key(values[offset], slot));
+        }
+        values[offset] = value;
+        timestamps[offset] = timestamp;
+        if (!Double.isNaN(value)) {
+            type.sorted.add(key(value, slot));
+        }
+    }
+
+    /**
+     * Forgets the latest measurement of a type for a patient, e.g., once every
+     * measurement of that type has expired.
+     *
+     * @param slot           the slot of the patient
+     * @param recordTypeCode the code of the record type
+     */
+    public void remove(int slot, int recordTypeCode) {
+        TypeIndex type = typeIndex(recordTypeCode);
+        int offset = slot & (CHUNK_SIZE - 1);
+        long[] timestamps = type.chunks.longs(slot);
+        if (timestamps[offset] != ABSENT) {
+            type.sorted.remove(key(type.chunks.doubles(slot)[offset], slot));
+            timestamps[offset] = ABSENT;
+        }
+    }
+
+    /**
+     * Finds the patients whose latest value of a type lies within a range.
+     *
+     * @param recordTypeCode the code of the record type
+     * @param min            the smallest matching value, inclusive
+     * @param max            the largest matching value, exclusive
+     * @return the IDs of the matching patients, ordered by their latest value
+     */
+    public int[] findPatientsInRange(int recordTypeCode, double min, double max) {
+        if (!(min < max)) {
+            return new int[0];
+        }
+        TypeIndex type = typeIndex(recordTypeCode);
+        int[] result = new int[16];
+        int count = 0;
+        // Float keys round, so scan the inclusive float range and check the exact values
+        NavigableSet<Long> candidates = type.sorted.subSet(key(min, 0), true, key(max, -1), true);
+        for (long key : candidates) {
+            int slot = (int) key;
+            double value = type.chunks.doubles(slot)[slot & (CHUNK_SIZE - 1)];
+            if (value >= min && value < max) {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, count * 2);
+                }
+                result[count++] = slotPatients.ints(slot)[slot & (CHUNK_SIZE - 1)];
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the number of patients that have a latest value of a type.
+     *
+     * @param recordTypeCode the code of the record type
+     * @return the number of indexed patients
+     */
+    public int size(int recordTypeCode) {
+        return typeIndex(recordTypeCode).sorted.size();
+    }
+
+    private TypeIndex typeIndex(int recordTypeCode) {
+        TypeIndex[] current = types;
+        if (recordTypeCode < current.length) {
+            return current[recordTypeCode];
+        }
+        synchronized (this) {
+            current = types;
+            if (recordTypeCode >= current.length) {
+                TypeIndex[] grown = Arrays.copyOf(current, Math.max(recordTypeCode + 1, RecordTypeRegistry.size()));
+                for (int i = current.length; i < grown.length; i++) {
+                    grown[i] = new TypeIndex();
+                }
+                types = grown;
+                current = grown;
+            }
+            return current[recordTypeCode];
+        }
+    }
+
+    // Orders by value first, using the sortable bits of the value as a float, then by slot
+    private static long key(double value, int slot) {
+        int bits = Float.floatToIntBits((float) value);
+        bits ^= (bits >> 31) & 0x7FFFFFFF;
+        return ((long) bits << 32) | (slot & 0xFFFFFFFFL);
+    }
+
+    private static class TypeIndex {
+        final Chunks chunks = new Chunks();
+        final ConcurrentSkipListSet<Long> sorted = new ConcurrentSkipListSet<>();
+    }
+
+    // Slot-indexed arrays split into fixed-size chunks, so growing never moves existing entries
+    private static class Chunks {
+        private volatile long[][] longChunks = new long[0][];
+        private volatile double[][] doubleChunks = new double[0][];
+        private volatile int[][] intChunks = new int[0][];
+
+        long[] longs(int slot) {
+            int chunk = slot >>> CHUNK_BITS;
+            long[][] current = longChunks;
+            if (chunk < current.length) {
+                return current[chunk];
+            }
+            grow(chunk);
+            return longChunks[chunk];
+        }
+
+        double[] doubles(int slot) {
+            int chunk = slot >>> CHUNK_BITS;
+            double[][] current = doubleChunks;
+            if (chunk < current.length) {
+                return current[chunk];
+            }
+            grow(chunk);
+            return doubleChunks[chunk];
+        }
+
+        int[] ints(int slot) {
+            int chunk = slot >>> CHUNK_BITS;
+            int[][] current = intChunks;
+            if (chunk < current.length) {
+                return current[chunk];
+            }
+            grow(chunk);
+            return intChunks[chunk];
+        }
+
+        private synchronized void grow(int chunk) {
+            int length = longChunks.length;
+            if (chunk < length) {
+                return;
+            }
+            long[][] grownLongs = Arrays.copyOf(longChunks, chunk + 1);
+            double[][] grownDoubles = Arrays.copyOf(doubleChunks, chunk + 1);
+            int[][] grownInts = Arrays.copyOf(intChunks, chunk + 1);
+            for (int i = length; i <= chunk; i++) {
+                grownLongs[i] = new long[CHUNK_SIZE];
+                Arrays.fill(grownLongs[i], ABSENT);
+                grownDoubles[i] = new double[CHUNK_SIZE];
+                grownInts[i] = new int[CHUNK_SIZE];
+            }
+            // Publish the longs last: readers check them before reading the others
+            doubleChunks = grownDoubles;
+            intChunks = grownInts;
+            longChunks = grownLongs;
+        }
+    }
+}
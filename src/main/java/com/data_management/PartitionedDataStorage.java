@@ -0,0 +1,403 @@
+package com.data_management;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side router that spreads patients over several {@link StorageNode}s,
+ * each holding an ordinary {@link DataStorage}.
+ * Every patient ID is hashed to exactly one node, so all records of a patient
+ * live together and per-patient queries go to a single node. Queries that span
+ * patients are sent to every node in parallel and their answers combined.
+ * Records are streamed to the nodes without waiting for a response and are
+ * flushed every few milliseconds; {@link #flush()} waits until every record sent
+ * so far is stored. A query always sees the records added before it on the same
+ * router.
+ * The router is safe for concurrent use; requests to different nodes proceed
+ * in parallel.
+ */
+public class PartitionedDataStorage implements Closeable {
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final long FLUSH_INTERVAL_MILLIS = 5;
+
+    private final NodeConnection[] nodes;
+    private final ScheduledExecutorService flusher;
+    private final ExecutorService scatterExecutor; // Waits for the nodes of cross-node queries
+
+    /**
+     * Connects to the specified storage nodes. Every router must list the same
+     * nodes in the same order, since the order decides where each patient lives.
+     *
+     * @param nodeAddresses the addresses of the storage nodes
+     * @throws IOException if a node cannot be reached
+     */
+    public PartitionedDataStorage(List<InetSocketAddress> nodeAddresses) throws IOException {
+        if (nodeAddresses.isEmpty()) {
+            throw new IllegalArgumentException("At least one storage node is required");
+        }
+        nodes = new NodeConnection[nodeAddresses.size()];
+        try {
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = new NodeConnection(nodeAddresses.get(i));
+            }
+        } catch (IOException e) {
+            closeNodes();
+            throw e;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "partition-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            for (NodeConnection node : nodes) {
+                node.flushOutput();
+            }
+        }, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        scatterExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "partition-scatter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the number of storage nodes.
+     *
+     * @return the number of nodes
+     */
+    public int getNodeCount() {
+        return nodes.length;
+    }
+
+    /**
+     * Returns the index of the node that holds a patient's records.
+     *
+     * @param patientId the unique identifier of the patient
+     * @return the node index, between 0 and {@link #getNodeCount()} - 1
+     */
+    public int nodeOf(int patientId) {
+        // Mix the bits so that IDs following a pattern still spread evenly
+        int hash = patientId * 0x9E3779B9;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, nodes.length);
+    }
+
+    /**
+     * Adds patient data on the node that holds the patient, as
+     * {@link DataStorage#addPatientData(int, double, String, long)} does.
+     * The record is sent without waiting for the node; see {@link #flush()}.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the health metric being recorded
+     * @param recordType       the type of record, e.g., "HeartRate",
+     *                         "BloodPressure"
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     * @throws UncheckedIOException if the node cannot be reached
+     */
+    public void addPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
+        nodes[nodeOf(patientId)].add(patientId, measurementValue, recordType, timestamp);
+    }
+
+    /**
+     * Waits until every record added so far is stored on its node.
+     *
+     * @throws UncheckedIOException if a node cannot be reached or rejected
+     *                              records
+     */
+    public void flush() {
+        long rejected = scatter(NodeConnection::sync).stream().mapToLong(Long::longValue).sum();
+        if (rejected > 0) {
+            throw new UncheckedIOException(new IOException(rejected + " records were rejected by the nodes"));
+        }
+    }
+
+    /**
+     * Retrieves the records of a patient within a time range, as
+     * {@link DataStorage#getRecords(int, long, long)} does.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param startTime the start of the time range, in milliseconds since the
+     *                  Unix epoch
+     * @param endTime   the end of the time range, in milliseconds since the Unix
+     *                  epoch
+     * @return the records of the patient in the range, ordered by timestamp
+     * @throws UncheckedIOException if the node cannot be reached or fails
+     */
+    public List<PatientRecord> getRecords(int patientId, long startTime, long endTime) {
+        return nodes[nodeOf(patientId)].request(StorageProtocol.GET_RECORDS, out -> {
+            out.writeInt(patientId);
+            out.writeLong(startTime);
+            out.writeLong(endTime);
+        }, in -> StorageProtocol.readRecords(in, patientId));
+    }
+
+    /**
+     * Computes summary statistics of a patient's measurements, as
+     * {@link DataStorage#aggregate(int, String, long, long)} does.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "SystolicPressure"
+     * @param startTime  the start of the time range, in milliseconds since the
+     *                   Unix epoch
+     * @param endTime    the end of the time range, inclusive, in milliseconds
+     *                   since the Unix epoch
+     * @return the statistics of the matching measurements
+     * @throws UncheckedIOException if the node cannot be reached or fails
+     */
+    public AggregateResult aggregate(int patientId, String recordType, long startTime, long endTime) {
+        return nodes[nodeOf(patientId)].request(StorageProtocol.AGGREGATE, out -> {
+            out.writeInt(patientId);
+            out.writeUTF(recordType);
+            out.writeLong(startTime);
+            out.writeLong(endTime);
+        }, StorageProtocol::readAggregate);
+    }
+
+    /**
+     * Computes summary statistics of one record type over every patient on
+     * every node.
+     *
+     * @param recordType the type of record, e.g., "Saturation"
+     * @param startTime  the start of the time range, in milliseconds since the
+     *                   Unix epoch
+     * @param endTime    the end of the time range, inclusive, in milliseconds
+     *                   since the Unix epoch
+     * @return the combined statistics of the matching measurements
+     * @throws UncheckedIOException if a node cannot be reached or fails
+     */
+    public AggregateResult aggregate(String recordType, long startTime, long endTime) {
+        List<AggregateResult> results = scatter(node -> node.request(StorageProtocol.AGGREGATE_ALL, out -> {
+            out.writeUTF(recordType);
+            out.writeLong(startTime);
+            out.writeLong(endTime);
+        }, StorageProtocol::readAggregate));
+        AggregateResult total = new AggregateResult(0, 0, 0, Double.NaN, Double.NaN);
+        for (AggregateResult result : results) {
+            total = total.combine(result);
+        }
+        return total;
+    }
+
+    /**
+     * Finds the patients on every node whose latest measurement of a record
+     * type lies within a range, as
+     * {@link DataStorage#findPatientsInRange(String, double, double)} does.
+     *
+     * @param recordType the type of record, e.g., "Saturation"
+     * @param min        the smallest matching value, inclusive
+     * @param max        the largest matching value, exclusive
+     * @return the IDs of the matching patients, grouped by node
+     * @throws UncheckedIOException if a node cannot be reached or fails
+     */
+    public int[] findPatientsInRange(String recordType, double min, double max) {
+        return concat(scatter(node -> node.request(StorageProtocol.FIND_IN_RANGE, out -> {
+            out.writeUTF(recordType);
+            out.writeDouble(min);
+            out.writeDouble(max);
+        }, StorageProtocol::readIds)));
+    }
+
+    /**
+     * Returns the IDs of every patient on every node.
+     *
+     * @return the patient IDs, grouped by node
+     * @throws UncheckedIOException if a node cannot be reached or fails
+     */
+    public int[] getPatientIds() {
+        return concat(scatter(node -> node.request(StorageProtocol.PATIENT_IDS, out -> {
+        }, StorageProtocol::readIds)));
+    }
+
+    /**
+     * Retrieves every patient on every node, as
+     * {@link DataStorage#getAllPatients()} does. The patients are local copies
+     * rebuilt from all of their records, so this transfers the whole data set
+     * and is meant for exports and tests rather than regular queries.
+     *
+     * @return copies of all patients
+     * @throws UncheckedIOException if a node cannot be reached or fails
+     */
+    public List<Patient> getAllPatients() {
+        List<List<Patient>> perNode = scatter(node -> node.request(StorageProtocol.ALL_RECORDS, out -> {
+        }, in -> {
+            int patientCount = in.readInt();
+            List<Patient> patients = new ArrayList<>(patientCount);
+            for (int p = 0; p < patientCount; p++) {
+                Patient patient = new Patient(in.readInt());
+                for (PatientRecord record : StorageProtocol.readRecords(in, patient.getPatientId())) {
+                    patient.addRecord(record.getMeasurementValue(), record.getRecordTypeCode(),
+                            record.getTimestamp());
+                }
+                patients.add(patient);
+            }
+            return patients;
+        }));
+        List<Patient> patients = new ArrayList<>();
+        perNode.forEach(patients::addAll);
+        return patients;
+    }
+
+    /**
+     * Returns the number of records held by all nodes together.
+     *
+     * @return the number of records
+     * @throws UncheckedIOException if a node cannot be reached or fails
+     */
+    public long getResidentRecordCount() {
+        return scatter(node -> node.request(StorageProtocol.RECORD_COUNT, out -> {
+        }, DataInputStream::readLong)).stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Sends the remaining records and disconnects from every node. The nodes
+     * keep running.
+     *
+     * @throws IOException if a connection cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        scatterExecutor.shutdown();
+        closeNodes();
+    }
+
+    private void closeNodes() throws IOException {
+        IOException failure = null;
+        for (NodeConnection node : nodes) {
+            if (node == null) {
+                continue;
+            }
+            try {
+                node.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Runs a request on every node in parallel and collects the answers in node order
+    private <T> List<T> scatter(NodeRequest<T> request) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(nodes.length);
+        for (NodeConnection node : nodes) {
+            futures.add(CompletableFuture.supplyAsync(() -> request.send(node), scatterExecutor));
+        }
+        List<T> results = new ArrayList<>(nodes.length);
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    private static int[] concat(List<int[]> parts) {
+        int[] result = new int[parts.stream().mapToInt(part -> part.length).sum()];
+        int offset = 0;
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+
+    private interface NodeRequest<T> {
+        T send(NodeConnection node);
+    }
+
+    private interface RequestWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private interface ResponseReader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    // One connection to a node; requests on it are serialized
+    private static class NodeConnection implements Closeable {
+        private final InetSocketAddress address;
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        NodeConnection(InetSocketAddress address) throws IOException {
+            this.address = address;
+            this.socket = new Socket(address.getAddress(), address.getPort());
+            socket.setTcpNoDelay(true);
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_BYTES));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_BYTES));
+        }
+
+        synchronized void add(int patientId, double measurementValue, String recordType, long timestamp) {
+            try {
+                out.writeByte(StorageProtocol.ADD);
+                out.writeInt(patientId);
+                out.writeDouble(measurementValue);
+                out.writeUTF(recordType);
+                out.writeLong(timestamp);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not send record to storage node " + address, e);
+            }
+        }
+
+        synchronized long sync() {
+            return request(StorageProtocol.SYNC, output -> {
+            }, DataInputStream::readLong);
+        }
+
+        synchronized <T> T request(byte operation, RequestWriter writer, ResponseReader<T> reader) {
+            try {
+                out.writeByte(operation);
+                writer.write(out);
+                out.flush();
+                if (in.readByte() != StorageProtocol.OK) {
+                    throw new IOException("Storage node " + address + " failed: " + in.readUTF());
+                }
+                return reader.read(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Request to storage node " + address + " failed", e);
+            }
+        }
+
+        synchronized void flushOutput() {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                // Reported by the next request on this connection
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            try {
+                out.flush();
+            } finally {
+                socket.close();
+            }
+        }
+    }
+}
@@ -1,33 +1,128 @@
 package com.data_management;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Represents a patient and manages their medical records.
  * This class stores patient-specific data, allowing for the addition and
  * retrieval
  * of medical records based on specified criteria.
+ * Writes to the same patient are serialized by a per-patient lock, while
+ * readers share the lock and always receive copies, so they see a consistent
+ * snapshot of the records.
  */
 public class Patient {
     private int patientId;
-    private List<PatientRecord> patientRecords;
+    private RecordSeries[] seriesByType; // One time-sorted series per record type code; null until used
+    private RollupSeries[] rollupsByType; // Pre-aggregated statistics of each series, indexed the same way
+    private DedupWindow dedupWindow; // Recently added records, used to reject duplicates
+    private StorageConfig config;
+    private int recordCount; // Records currently held across all series
+    private final LongAdder storageRecordCount; // Shared total of the owning storage; null if standalone
+    private final LatestValueIndex latestValues; // Cross-patient index of the owning storage; null if standalone
+    private final int indexSlot; // This patient's slot in latestValues
+    private final ColdTier coldTier; // Receives expired measurements; null discards them
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
     /**
      * Constructs a new Patient with a specified ID.
-     * Initializes an empty list of patient records.
+     * Initializes an empty set of record series.
      *
      * @param patientId the unique identifier for the patient
      */
     public Patient(int patientId) {
+        this(patientId, new StorageConfig());
+    }
+
+    /**
+     * Constructs a new Patient with a specified ID, using the settings of the
+     * storage that holds it.
+     *
+     * @param patientId the unique identifier for the patient
+     * @param config    the settings of the owning storage
+     */
+    public Patient(int patientId, StorageConfig config) {
+        this(patientId, config, null);
+    }
+
+    /**
+     * Constructs a new Patient with a specified ID that also keeps the record
+     * total of its storage up to date.
+     *
+     * @param patientId          the unique identifier for the patient
+     * @param config             the settings of the owning storage
+     * @param storageRecordCount the number of records held by the owning
+     *                           storage, adjusted whenever this patient gains
+     *                           or drops records; may be null
+     */
+    public Patient(int patientId, StorageConfig config, LongAdder storageRecordCount) {
+        this(patientId, config, storageRecordCount, null);
+    }
+
+    /**
+     * Constructs a new Patient with a specified ID that also keeps the record
+     * total and the latest-value index of its storage up to date.
+     *
+     * @param patientId          the unique identifier for the patient
+     * @param config             the settings of the owning storage
+     * @param storageRecordCount the number of records held by the owning
+     *                           storage; may be null
+     * @param latestValues       the index of the latest value of every record
+     *                           type, updated whenever this patient gains a
+     *                           newer measurement; may be null
+     */
+    public Patient(int patientId, StorageConfig config, LongAdder storageRecordCount,
+            LatestValueIndex latestValues) {
+        this(patientId, config, storageRecordCount, latestValues, null);
+    }
+
+    /**
+     * Constructs a new Patient with a specified ID whose expired measurements
+     * move to a cold tier on disk instead of being discarded.
+     *
+     * @param patientId          the unique identifier for the patient
+     * @param config             the settings of the owning storage
+     * @param storageRecordCount the number of records held by the owning
+     *                           storage; may be null
+     * @param latestValues       the index of the latest value of every record
+     *                           type; may be null
+     * @param coldTier           the cold tier of this patient, which also serves
+     *                           its older measurements to range queries; may be
+     *                           null
+     */
+    public Patient(int patientId, StorageConfig config, LongAdder storageRecordCount,
+            LatestValueIndex latestValues, ColdTier coldTier) {
         this.patientId = patientId;
-        this.patientRecords = new ArrayList<>();
+        this.storageRecordCount = storageRecordCount;
+        this.latestValues = latestValues;
+        this.coldTier = coldTier;
+        this.indexSlot = latestValues != null ? latestValues.register(patientId) : -1;
+        this.config = config;
+        this.seriesByType = new RecordSeries[RecordTypeRegistry.size()];
+        this.rollupsByType = new RollupSeries[seriesByType.length];
+        this.dedupWindow = new DedupWindow(config.getDedupWindowMillis());
+    }
+
+    /**
+     * Returns the unique identifier of this patient.
+     *
+     * @return the patient ID
+     */
+    public int getPatientId() {
+        return patientId;
     }
 
     /**
-     * Adds a new record to this patient's list of medical records.
-     * The record is created with the specified measurement value, record type, and
-     * timestamp.
+     * Adds a new record to this patient's medical records.
+     * The measurement is stored in the time-sorted series of its record type;
+     * measurements of that type that outlived their retention are dropped.
      *
      * @param measurementValue the measurement value to store in the record
      * @param recordType       the type of record, e.g., "HeartRate",
@@ -36,14 +131,196 @@ public class Patient {
      *                         milliseconds since UNIX epoch
      */
     public void addRecord(double measurementValue, String recordType, long timestamp) {
-        PatientRecord record = new PatientRecord(this.patientId, measurementValue, recordType, timestamp);
-        this.patientRecords.add(record);
+        addRecord(measurementValue, RecordTypeRegistry.codeOf(recordType), timestamp);
+    }
+
+    /**
+     * Adds a new record to this patient's medical records, as
+     * {@link #addRecord(double, String, long)} does, for an already resolved
+     * record type.
+     *
+     * @param measurementValue the measurement value to store in the record
+     * @param recordTypeCode   the code of the record type, e.g.,
+     *                         {@link RecordTypeRegistry#ECG}
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since UNIX epoch
+     */
+    public void addRecord(double measurementValue, int recordTypeCode, long timestamp) {
+        lock.writeLock().lock();
+        try {
+            append(recordTypeCode, timestamp, measurementValue);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a new record unless a record with the same type, timestamp and value
+     * was already added within the dedup window.
+     * The check and the insertion happen under the same lock, so concurrent
+     * writers cannot both add the same record. The check takes constant time
+     * regardless of how many records the patient has.
+     *
+     * @param measurementValue the measurement value to store in the record
+     * @param recordType       the type of record, e.g., "HeartRate",
+     *                         "BloodPressure"
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since UNIX epoch
+     * @return true if the record was added, false if it is a duplicate
+     */
+    public boolean addRecordIfAbsent(double measurementValue, String recordType, long timestamp) {
+        return addRecordIfAbsent(measurementValue, RecordTypeRegistry.codeOf(recordType), timestamp);
+    }
+
+    /**
+     * Adds a new record unless it is a duplicate, as
+     * {@link #addRecordIfAbsent(double, String, long)} does, for an already
+     * resolved record type.
+     *
+     * @param measurementValue the measurement value to store in the record
+     * @param recordTypeCode   the code of the record type, e.g.,
+     *                         {@link RecordTypeRegistry#ECG}
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since UNIX epoch
+     * @return true if the record was added, false if it is a duplicate
+     */
+    public boolean addRecordIfAbsent(double measurementValue, int recordTypeCode, long timestamp) {
+        lock.writeLock().lock();
+        try {
+            if (dedupWindow.checkAndAdd(recordTypeCode, timestamp, measurementValue)) {
+                return false;
+            }
+            append(recordTypeCode, timestamp, measurementValue);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds several records of this patient under a single acquisition of the
+     * lock, skipping duplicates as {@link #addRecordIfAbsent(double, int, long)}
+     * does.
+     *
+     * @param batch   the batch holding the records
+     * @param indexes the positions of this patient's records in the batch
+     * @param from    the first entry of {@code indexes} to add, inclusive
+     * @param to      the last entry of {@code indexes} to add, exclusive
+     * @param added   receives, at each added record's batch position, whether
+     *                the record was added rather than dropped as a duplicate
+     * @return the number of records added
+     */
+    public int addRecordsIfAbsent(RecordBatch batch, int[] indexes, int from, int to, boolean[] added) {
+        int count = 0;
+        lock.writeLock().lock();
+        try {
+            for (int i = from; i < to; i++) {
+                int index = indexes[i];
+                int recordTypeCode = batch.getRecordTypeCode(index);
+                long timestamp = batch.getTimestamp(index);
+                double value = batch.getValue(index);
+                added[index] = !dedupWindow.checkAndAdd(recordTypeCode, timestamp, value);
+                if (added[index]) {
+                    append(recordTypeCode, timestamp, value);
+                    count++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return count;
+    }
+
+    /**
+     * Drops every measurement that has outlived the retention of its record type
+     * at the specified time. Only this patient is locked while evicting.
+     *
+     * @param now the current time, in milliseconds since UNIX epoch
+     * @return the number of records dropped
+     */
+    public int evictExpired(long now) {
+        lock.writeLock().lock();
+        try {
+            int evicted = 0;
+            for (int code = 0; code < seriesByType.length; code++) {
+                if (seriesByType[code] != null) {
+                    evicted += seriesByType[code].evictExpired(now);
+                    rollupsByType[code].evictExpired(now);
+                    if (latestValues != null && seriesByType[code].size() == 0) {
+                        latestValues.remove(indexSlot, code);
+                    }
+                }
+            }
+            adjustRecordCount(-evicted);
+            return evicted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the measurements waiting for the cold tier to disk, if there is a
+     * cold tier.
+     *
+     * @throws IOException if a segment cannot be written
+     */
+    public void flushColdTier() throws IOException {
+        if (coldTier == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            coldTier.flush();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of records this patient currently holds in memory.
+     *
+     * @return the number of resident records
+     */
+    public int getRecordCount() {
+        lock.readLock().lock();
+        try {
+            return recordCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns an estimate of the heap memory held by this patient's records and
+     * dedup window.
+     *
+     * @return the estimated footprint in bytes
+     */
+    public long getResidentBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = dedupWindow.getResidentBytes();
+            if (coldTier != null) {
+                bytes += coldTier.getResidentBytes();
+            }
+            for (int code = 0; code < seriesByType.length; code++) {
+                if (seriesByType[code] != null) {
+                    bytes += seriesByType[code].getResidentBytes() + rollupsByType[code].getResidentBytes();
+                }
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
      * Retrieves a list of PatientRecord objects for this patient that fall within a
      * specified time range.
-     * The method filters records based on the start and end times provided.
+     * The range of every record series is located with a binary search, and the
+     * matching measurements are merged so the result is ordered by timestamp.
+     * Measurements that have moved to the cold tier are read from the segments
+     * that overlap the range.
      *
      * @param startTime the start of the time range, in milliseconds since UNIX
      *                  epoch
@@ -53,12 +330,348 @@ public class Patient {
      */
     public List<PatientRecord> getRecords(long startTime, long endTime) {
         List<PatientRecord> filteredRecords = new ArrayList<>();
-        for (PatientRecord record : patientRecords) {
-            if (record.getTimestamp() >= startTime && record.getTimestamp() <= endTime) {
-                filteredRecords.add(record);
+        if (startTime > endTime) {
+            return filteredRecords;
+        }
+        List<PatientRecord> coldRecords = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (coldTier != null) {
+                coldTier.visitRange(startTime, endTime, (id, typeCode, timestamp, value) -> coldRecords
+                        .add(new PatientRecord(id, value, typeCode, timestamp)));
+            }
+            collectRecords(startTime, endTime, filteredRecords);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read cold storage", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (coldRecords.isEmpty()) {
+            return filteredRecords;
+        }
+        coldRecords.sort(Comparator.comparingLong(PatientRecord::getTimestamp));
+        return mergeByTimestamp(coldRecords, filteredRecords);
+    }
+
+    private static List<PatientRecord> mergeByTimestamp(List<PatientRecord> first, List<PatientRecord> second) {
+        List<PatientRecord> merged = new ArrayList<>(first.size() + second.size());
+        int i = 0;
+        int j = 0;
+        while (i < first.size() && j < second.size()) {
+            if (second.get(j).getTimestamp() < first.get(i).getTimestamp()) {
+                merged.add(second.get(j++));
+            } else {
+                merged.add(first.get(i++));
+            }
+        }
+        merged.addAll(first.subList(i, first.size()));
+        merged.addAll(second.subList(j, second.size()));
+        return merged;
+    }
+
+    private void collectRecords(long startTime, long endTime, List<PatientRecord> filteredRecords) {
+        int seriesCount = seriesByType.length;
+        RecordSeries[] series = new RecordSeries[seriesCount];
+        int[] next = new int[seriesCount];
+        int[] end = new int[seriesCount];
+        int active = 0;
+        for (RecordSeries candidate : seriesByType) {
+            if (candidate == null) {
+                continue;
+            }
+            int from = candidate.lowerBound(startTime);
+            int to = candidate.upperBound(endTime);
+            if (from < to) {
+                if (candidate.getSealedSize() > from) {
+                    // Decode the compressed part once instead of on every access
+                    candidate = candidate.copyRange(from, to);
+                    to -= from;
+                    from = 0;
+                }
+                series[active] = candidate;
+                next[active] = from;
+                end[active] = to;
+                active++;
+            }
+        }
+        // Merge the per-type ranges; the number of record types is small, so a
+        // linear pick of the earliest head is cheaper than a heap
+        while (active > 0) {
+            int earliest = 0;
+            for (int i = 1; i < active; i++) {
+                if (series[i].getTimestamp(next[i]) < series[earliest].getTimestamp(next[earliest])) {
+                    earliest = i;
+                }
+            }
+            RecordSeries source = series[earliest];
+            int index = next[earliest]++;
+            filteredRecords.add(new PatientRecord(patientId, source.getValue(index), source.getRecordTypeCode(),
+                    source.getTimestamp(index)));
+            if (next[earliest] == end[earliest]) {
+                active--;
+                series[earliest] = series[active];
+                next[earliest] = next[active];
+                end[earliest] = end[active];
+            }
+        }
+    }
+
+    /**
+     * Hands every record within a specified time range to the visitor without
+     * creating any objects.
+     * Records are visited one record type at a time, each type in time order,
+     * after the records of the cold tier.
+     * Use {@link #getRecords(long, long)} for a single time-ordered list.
+     *
+     * @param startTime the start of the time range, in milliseconds since UNIX
+     *                  epoch
+     * @param endTime   the end of the time range, in milliseconds since UNIX epoch
+     * @param visitor   receives the matching records
+     * @return the number of records visited
+     */
+    public int forEachRecord(long startTime, long endTime, RecordVisitor visitor) {
+        int visited = 0;
+        lock.readLock().lock();
+        try {
+            if (coldTier != null) {
+                visited += coldTier.visitRange(startTime, endTime, visitor);
+            }
+            for (RecordSeries series : seriesByType) {
+                if (series == null) {
+                    continue;
+                }
+                visited += series.visitRange(startTime, endTime, patientId, visitor);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read cold storage", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return visited;
+    }
+
+    /**
+     * Retrieves the measurements of a single record type that fall within a
+     * specified time range.
+     * Only the series of the requested type is searched, so the cost does not
+     * depend on how many records of other types the patient has.
+     *
+     * @param recordType the type of record, e.g., "Saturation"
+     * @param startTime  the start of the time range, in milliseconds since UNIX
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX
+     *                   epoch
+     * @return a time-sorted copy of the matching measurements; empty if there are
+     *         none
+     */
+    public RecordSeries getSeries(String recordType, long startTime, long endTime) {
+        return getSeries(RecordTypeRegistry.codeOf(recordType), startTime, endTime);
+    }
+
+    /**
+     * Retrieves the measurements of a single record type that fall within a
+     * specified time range, as {@link #getSeries(String, long, long)} does.
+     *
+     * @param recordTypeCode the code of the record type, e.g.,
+     *                       {@link RecordTypeRegistry#SATURATION}
+     * @param startTime      the start of the time range, in milliseconds since
+     *                       UNIX epoch
+     * @param endTime        the end of the time range, in milliseconds since UNIX
+     *                       epoch
+     * @return a time-sorted copy of the matching measurements; empty if there are
+     *         none
+     */
+    public RecordSeries getSeries(int recordTypeCode, long startTime, long endTime) {
+        lock.readLock().lock();
+        try {
+            RecordSeries series = seriesOf(recordTypeCode);
+            if (series == null || startTime > endTime) {
+                return new RecordSeries(recordTypeCode);
+            }
+            return series.copyRange(series.lowerBound(startTime), series.upperBound(endTime));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the most recent measurements of a single record type.
+     *
+     * @param recordType the type of record, e.g., "SystolicPressure"
+     * @param count      the maximum number of measurements to return
+     * @return a time-sorted copy of at most {@code count} measurements, the
+     *         latest being last; empty if there are none
+     */
+    public RecordSeries getLastRecords(String recordType, int count) {
+        return getLastRecords(RecordTypeRegistry.codeOf(recordType), count);
+    }
+
+    /**
+     * Retrieves the most recent measurements of a single record type, as
+     * {@link #getLastRecords(String, int)} does.
+     *
+     * @param recordTypeCode the code of the record type, e.g.,
+     *                       {@link RecordTypeRegistry#SYSTOLIC_PRESSURE}
+     * @param count          the maximum number of measurements to return
+     * @return a time-sorted copy of at most {@code count} measurements, the
+     *         latest being last; empty if there are none
+     */
+    public RecordSeries getLastRecords(int recordTypeCode, int count) {
+        lock.readLock().lock();
+        try {
+            RecordSeries series = seriesOf(recordTypeCode);
+            if (series == null || count <= 0) {
+                return new RecordSeries(recordTypeCode);
+            }
+            return series.copyRange(Math.max(0, series.size() - count), series.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the value of the most recent measurement of a single record type.
+     *
+     * @param recordTypeCode the code of the record type, e.g.,
+     *                       {@link RecordTypeRegistry#SATURATION}
+     * @return the latest value, or NaN if there is none
+     */
+    public double getLatestValue(int recordTypeCode) {
+        lock.readLock().lock();
+        try {
+            RecordSeries series = seriesOf(recordTypeCode);
+            if (series == null || series.size() == 0) {
+                return Double.NaN;
+            }
+            return series.getValue(series.size() - 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Computes summary statistics of the measurements of a single record type
+     * within a specified time range.
+     * The statistics of the measurements in memory are combined from
+     * pre-aggregated minute, hour and day buckets, so no measurements are copied
+     * and the cost depends on the number of buckets the range spans rather than
+     * on the number of measurements. Measurements that have moved to the cold
+     * tier are read from the segments that overlap the range.
+     *
+     * @param recordTypeCode the code of the record type, e.g.,
+     *                       {@link RecordTypeRegistry#SYSTOLIC_PRESSURE}
+     * @param startTime      the start of the time range, in milliseconds since
+     *                       UNIX epoch
+     * @param endTime        the end of the time range, inclusive, in milliseconds
+     *                       since UNIX epoch
+     * @return the statistics of the matching measurements
+     */
+    public AggregateResult aggregate(int recordTypeCode, long startTime, long endTime) {
+        lock.readLock().lock();
+        try {
+            RecordSeries series = seriesOf(recordTypeCode);
+            if (coldTier == null) {
+                if (series == null) {
+                    return new AggregateResult(0, 0, 0, Double.NaN, Double.NaN);
+                }
+                return rollupsByType[recordTypeCode].aggregate(series, startTime, endTime);
+            }
+            // Every measurement the series has expired is older than the ones it
+            // still holds, so the range splits cleanly between the two tiers
+            if (series == null || series.size() == 0) {
+                return coldTier.aggregate(recordTypeCode, startTime, endTime);
+            }
+            long residentFrom = series.getTimestamp(0);
+            AggregateResult resident = new AggregateResult(0, 0, 0, Double.NaN, Double.NaN);
+            if (endTime >= residentFrom) {
+                resident = rollupsByType[recordTypeCode].aggregate(series, Math.max(startTime, residentFrom), endTime);
+            }
+            if (startTime >= residentFrom) {
+                return resident;
+            }
+            return coldTier.aggregate(recordTypeCode, startTime, Math.min(endTime, residentFrom - 1))
+                    .combine(resident);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read cold storage", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves a copy of every record series of this patient. All copies are
+     * taken under one lock, so they form a consistent snapshot.
+     *
+     * @return a list with one time-sorted series per record type
+     */
+    public List<RecordSeries> getAllSeries() {
+        lock.readLock().lock();
+        try {
+            return copyAllSeries();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the measurements waiting for the cold tier to disk and retrieves a
+     * copy of every record series, under one lock. Every record of this patient
+     * is then either on disk or in the copies, which is what a snapshot needs.
+     *
+     * @return a list with one time-sorted series per record type
+     * @throws IOException if a cold segment cannot be written
+     */
+    public List<RecordSeries> checkpoint() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (coldTier != null) {
+                coldTier.flush();
             }
+            return copyAllSeries();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private List<RecordSeries> copyAllSeries() {
+        List<RecordSeries> copies = new ArrayList<>();
+        for (RecordSeries series : seriesByType) {
+            if (series != null) {
+                copies.add(series.copyRange(0, series.size()));
+            }
+        }
+        return copies;
+    }
+
+    private void adjustRecordCount(int delta) {
+        recordCount += delta;
+        if (storageRecordCount != null && delta != 0) {
+            storageRecordCount.add(delta);
+        }
+    }
+
+    private RecordSeries seriesOf(int recordTypeCode) {
+        return recordTypeCode < seriesByType.length ? seriesByType[recordTypeCode] : null;
+    }
+
+    // Adds a measurement to the series of its type, creating it on first use; callers hold the write lock
+    private void append(int recordTypeCode, long timestamp, double measurementValue) {
+        if (recordTypeCode >= seriesByType.length) {
+            seriesByType = Arrays.copyOf(seriesByType, RecordTypeRegistry.size());
+            rollupsByType = Arrays.copyOf(rollupsByType, seriesByType.length);
+        }
+        RecordSeries series = seriesByType[recordTypeCode];
+        if (series == null) {
+            long retentionMillis = config.getRetentionMillis(recordTypeCode);
+            series = new RecordSeries(recordTypeCode, retentionMillis, config.getCompressionBlockSize());
+            series.setEvictionListener(coldTier);
+            seriesByType[recordTypeCode] = series;
+            rollupsByType[recordTypeCode] = new RollupSeries(retentionMillis);
+        }
+        adjustRecordCount(1 - series.add(timestamp, measurementValue));
+        rollupsByType[recordTypeCode].add(timestamp, measurementValue);
+        if (latestValues != null) {
+            latestValues.update(indexSlot, recordTypeCode, timestamp, measurementValue);
         }
-        return filteredRecords;
     }
-    
 }
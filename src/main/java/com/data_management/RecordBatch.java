@@ -0,0 +1,112 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * Growable batch of records in parallel primitive arrays, used to hand many
+ * records to {@link DataStorage#addPatientData(RecordBatch)} at once.
+ * A batch is meant to be filled and flushed by a single thread and reused
+ * after {@link #clear()}.
+ */
+public class RecordBatch {
+    private int[] patientIds;
+    private int[] recordTypeCodes;
+    private long[] timestamps;
+    private double[] values;
+    private int size;
+
+    /**
+     * Constructs an empty batch.
+     *
+     * @param initialCapacity the number of records the batch holds before it
+     *                        grows
+     */
+    public RecordBatch(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        patientIds = new int[capacity];
+        recordTypeCodes = new int[capacity];
+        timestamps = new long[capacity];
+        values = new double[capacity];
+    }
+
+    /**
+     * Appends a record to the batch.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the measurement value
+     * @param recordTypeCode   the code of the record type, e.g.,
+     *                         {@link RecordTypeRegistry#ECG}
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     */
+    public void add(int patientId, double measurementValue, int recordTypeCode, long timestamp) {
+        if (size == patientIds.length) {
+            int capacity = size * 2;
+            patientIds = Arrays.copyOf(patientIds, capacity);
+            recordTypeCodes = Arrays.copyOf(recordTypeCodes, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        patientIds[size] = patientId;
+        recordTypeCodes[size] = recordTypeCode;
+        timestamps[size] = timestamp;
+        values[size] = measurementValue;
+        size++;
+    }
+
+    /**
+     * Returns the number of records in the batch.
+     *
+     * @return the number of records
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every record, keeping the allocated capacity.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns the patient of a record.
+     *
+     * @param index the position of the record in the batch
+     * @return the patient ID
+     */
+    public int getPatientId(int index) {
+        return patientIds[index];
+    }
+
+    /**
+     * Returns the record type code of a record.
+     *
+     * @param index the position of the record in the batch
+     * @return the record type code
+     */
+    public int getRecordTypeCode(int index) {
+        return recordTypeCodes[index];
+    }
+
+    /**
+     * Returns the timestamp of a record.
+     *
+     * @param index the position of the record in the batch
+     * @return the timestamp in milliseconds since the Unix epoch
+     */
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    /**
+     * Returns the measurement value of a record.
+     *
+     * @param index the position of the record in the batch
+     * @return the measurement value
+     */
+    public double getValue(int index) {
+        return values[index];
+    }
+}
@@ -0,0 +1,18 @@
+package com.data_management;
+
+/**
+ * Receives patient records one at a time, e.g., while a log or snapshot is
+ * being read back.
+ */
+public interface RecordConsumer {
+    /**
+     * Accepts a single record.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param recordType       the type of record, e.g., "ECG"
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     * @param measurementValue the measurement value
+     */
+    void accept(int patientId, String recordType, long timestamp, double measurementValue);
+}
@@ -0,0 +1,368 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses record lines straight from the bytes of a buffer into a
+ * {@link RecordBatch}, without decoding them into strings first.
+ * Two line formats are understood:
+ * <ul>
+ * <li>CSV: {@code 1,1714376789050,Saturation,97.0}</li>
+ * <li>the files written by the simulator's FileOutputStrategy:
+ * {@code Patient ID: 1, Timestamp: 1714376789050, Label: Saturation, Data: 97.0%}</li>
+ * </ul>
+ * A trailing "%" on a value is dropped, and the alert values "triggered" and
+ * "resolved" are stored as {@link #TRIGGERED} and {@link #RESOLVED}.
+ * Labels are looked up in a small hash table of the labels this parser has
+ * seen before, and plain decimal values of up to 15 significant digits are
+ * converted directly, so the common line allocates nothing. Other values fall
+ * back to {@link Double#parseDouble}, which rounds them exactly as before.
+ * A new label is only resolved once the whole line has parsed, and is
+ * registered through {@link RecordTypeRegistry#tryCodeOf(String)}, so invalid
+ * lines never add record types and lines with new labels are rejected once the
+ * registry is full.
+ * Instances keep a small label cache and are not thread-safe; use one per
+ * thread.
+ */
+public class RecordLineParser {
+    /** Value stored for an alert that was triggered. */
+    public static final double TRIGGERED = 1.0;
+    /** Value stored for an alert that was resolved. */
+    public static final double RESOLVED = 0.0;
+
+    private static final byte[] PATIENT_ID = ascii("Patient ID:");
+    private static final byte[] TIMESTAMP = ascii("Timestamp:");
+    private static final byte[] LABEL = ascii("Label:");
+    private static final byte[] DATA = ascii("Data:");
+    private static final byte[] TRIGGERED_TEXT = ascii("triggered");
+    private static final byte[] RESOLVED_TEXT = ascii("resolved");
+
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = new double[23]; // All exactly representable
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    // Open-addressing hash table of the labels seen so far; the capacity is a power of two
+    private byte[][] labels = new byte[16][];
+    private int[] labelHashes = new int[16];
+    private int[] labelCodes = new int[16];
+    private int labelCount;
+
+    // Scanner state of the line being parsed
+    private ByteBuffer buffer;
+    private int position;
+    private int end;
+    private boolean failed;
+    private int labelStart;
+    private int labelLength;
+    private int labelHash;
+
+    /**
+     * Parses one line and adds its record to the batch.
+     *
+     * @param buffer the buffer holding the line
+     * @param start  the index of the first byte of the line
+     * @param end    the index just past the last byte of the line, excluding
+     *               the line terminator
+     * @param batch  receives the record
+     * @return true if the line held a record, false if its format is invalid
+     */
+    public boolean parseLine(ByteBuffer buffer, int start, int end, RecordBatch batch) {
+        this.buffer = buffer;
+        this.position = start;
+        this.end = end;
+        this.failed = false;
+
+        boolean annotated = start < end && buffer.get(start) == 'P';
+        int patientId;
+        long timestamp;
+        if (annotated) {
+            expect(PATIENT_ID);
+            patientId = parseInt();
+            expectSeparator(TIMESTAMP);
+            timestamp = parseLong();
+            expectSeparator(LABEL);
+            parseLabel();
+            expectSeparator(DATA);
+        } else {
+            patientId = parseInt();
+            expect(',');
+            timestamp = parseLong();
+            expect(',');
+            parseLabel();
+            expect(',');
+        }
+        if (failed) {
+            return false;
+        }
+        double value = parseValue();
+        if (failed) {
+            return false;
+        }
+        int recordTypeCode = resolveLabel();
+        if (recordTypeCode == RecordTypeRegistry.UNKNOWN) {
+            return false;
+        }
+        batch.add(patientId, value, recordTypeCode, timestamp);
+        return true;
+    }
+
+    /**
+     * Converts the value text of a record the same way {@link #parseLine}
+     * does, for producers that hold values as strings.
+     *
+     * @param text the value, e.g., "97.0%" or "triggered"
+     * @return the measurement value
+     * @throws NumberFormatException if the text is not a value
+     */
+    public static double parseValue(String text) {
+        String value = text.trim();
+        if (value.endsWith("%")) {
+            value = value.substring(0, value.length() - 1);
+        }
+        if (value.equals("triggered")) {
+            return TRIGGERED;
+        }
+        if (value.equals("resolved")) {
+            return RESOLVED;
+        }
+        return Double.parseDouble(value);
+    }
+
+    private void expect(char expected) {
+        if (!failed && position < end && buffer.get(position) == expected) {
+            position++;
+        } else {
+            failed = true;
+        }
+    }
+
+    private void expect(byte[] literal) {
+        if (failed || end - position < literal.length) {
+            failed = true;
+            return;
+        }
+        for (int i = 0; i < literal.length; i++) {
+            if (buffer.get(position + i) != literal[i]) {
+                failed = true;
+                return;
+            }
+        }
+        position += literal.length;
+        skipSpaces();
+    }
+
+    // Expects the ", Name:" between two fields of the annotated format
+    private void expectSeparator(byte[] name) {
+        expect(',');
+        skipSpaces();
+        expect(name);
+    }
+
+    private void skipSpaces() {
+        while (position < end && buffer.get(position) == ' ') {
+            position++;
+        }
+    }
+
+    private int parseInt() {
+        long value = parseLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            failed = true;
+        }
+        return (int) value;
+    }
+
+    private long parseLong() {
+        if (failed) {
+            return 0;
+        }
+        boolean negative = false;
+        if (position < end && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+            negative = buffer.get(position) == '-';
+            position++;
+        }
+        int first = position;
+        long value = 0;
+        while (position < end) {
+            int digit = buffer.get(position) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                failed = true;
+                return 0;
+            }
+            value = value * 10 + digit;
+            position++;
+        }
+        if (position == first) {
+            failed = true;
+        }
+        return negative ? -value : value;
+    }
+
+    // Reads the label up to the next comma, remembering where it is and its hash
+    private void parseLabel() {
+        if (failed) {
+            return;
+        }
+        int start = position;
+        int hash = 0;
+        while (position < end) {
+            byte b = buffer.get(position);
+            if (b == ',') {
+                break;
+            }
+            hash = 31 * hash + b;
+            position++;
+        }
+        labelStart = start;
+        labelLength = position - start;
+        labelHash = hash;
+    }
+
+    // Returns the record type code of the label of a fully parsed line, or UNKNOWN if it cannot be registered
+    private int resolveLabel() {
+        int mask = labels.length - 1;
+        int slot = labelHash & mask;
+        while (labels[slot] != null) {
+            if (labelHashes[slot] == labelHash && matches(labels[slot], labelStart, labelLength)) {
+                return labelCodes[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        byte[] label = new byte[labelLength];
+        for (int i = 0; i < labelLength; i++) {
+            label[i] = buffer.get(labelStart + i);
+        }
+        int code = RecordTypeRegistry.tryCodeOf(new String(label, StandardCharsets.UTF_8));
+        if (code == RecordTypeRegistry.UNKNOWN) {
+            return code;
+        }
+        labels[slot] = label;
+        labelHashes[slot] = labelHash;
+        labelCodes[slot] = code;
+        if (++labelCount * 2 > labels.length) {
+            growLabels();
+        }
+        return code;
+    }
+
+    // Doubles the label table, keeping it at most half full
+    private void growLabels() {
+        byte[][] oldLabels = labels;
+        int[] oldHashes = labelHashes;
+        int[] oldCodes = labelCodes;
+        labels = new byte[oldLabels.length * 2][];
+        labelHashes = new int[labels.length];
+        labelCodes = new int[labels.length];
+        int mask = labels.length - 1;
+        for (int i = 0; i < oldLabels.length; i++) {
+            if (oldLabels[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (labels[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                labels[slot] = oldLabels[i];
+                labelHashes[slot] = oldHashes[i];
+                labelCodes[slot] = oldCodes[i];
+            }
+        }
+    }
+
+    private boolean matches(byte[] text, int start, int length) {
+        if (text.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(start + i) != text[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Reads the rest of the line as a measurement value
+    private double parseValue() {
+        int start = position;
+        int stop = end;
+        while (stop > start && buffer.get(stop - 1) == ' ') {
+            stop--;
+        }
+        if (stop > start && buffer.get(stop - 1) == '%') {
+            stop--;
+        }
+        if (matches(TRIGGERED_TEXT, start, stop - start)) {
+            return TRIGGERED;
+        }
+        if (matches(RESOLVED_TEXT, start, stop - start)) {
+            return RESOLVED;
+        }
+        double value = parseDecimal(start, stop);
+        return Double.isNaN(value) ? parseSlowly(start, stop) : value;
+    }
+
+    // Converts a plain decimal such as -12.345 whose digits fit in a double exactly.
+    // Dividing by an exact power of ten then rounds once, just like Double.parseDouble.
+    // Returns NaN for anything else.
+    private double parseDecimal(int start, int stop) {
+        int i = start;
+        boolean negative = false;
+        if (i < stop && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean fraction = false;
+        for (; i < stop; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && !fraction) {
+                fraction = true;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9) {
+                return Double.NaN;
+            }
+            mantissa = mantissa * 10 + digit;
+            digits++;
+            if (mantissa > MAX_EXACT_MANTISSA) {
+                return Double.NaN;
+            }
+            if (fraction) {
+                exponent--;
+            }
+        }
+        if (digits == 0 || -exponent >= POWERS_OF_TEN.length) {
+            return Double.NaN;
+        }
+        double value = exponent == 0 ? mantissa : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    private double parseSlowly(int start, int stop) {
+        byte[] text = new byte[stop - start];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = buffer.get(start + i);
+        }
+        try {
+            return Double.parseDouble(new String(text, StandardCharsets.UTF_8));
+        } catch (NumberFormatException e) {
+            failed = true;
+            return 0;
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
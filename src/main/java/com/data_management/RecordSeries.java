@@ -0,0 +1,530 @@
+package com.data_management;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores the measurements of a single record type for a single patient in a
+ * columnar layout.
+ * Timestamps and values are kept in two primitive arrays that are sorted by
+ * timestamp, so range lookups can be answered with a binary search instead of
+ * a scan over every record.
+ * The arrays are used as a ring buffer: measurements older than the retention
+ * period are dropped from the front as new ones arrive, so once the buffer has
+ * grown to the steady-state size, adding measurements allocates nothing.
+ * When a block size is set, older measurements are sealed into immutable
+ * {@link CompressedBlock}s of that many measurements, and only the newest ones
+ * stay in the ring buffer. Sealed measurements are decoded transparently by
+ * every read method.
+ * Expired measurements are discarded unless an eviction listener is set, which
+ * receives them instead, e.g., to move them to a slower storage tier.
+ */
+public class RecordSeries {
+    private static final int INITIAL_CAPACITY = 16;
+    // Rough per-object and per-array header sizes used by the footprint estimate
+    private static final long OBJECT_OVERHEAD_BYTES = 40;
+    private static final long ARRAY_OVERHEAD_BYTES = 16;
+
+    private final int recordTypeCode;
+    private final long retentionMillis;
+    private final int blockSize; // 0 keeps every measurement uncompressed
+
+    // Ring buffer of the newest, uncompressed measurements
+    private long[] timestamps;
+    private double[] values;
+    private int head; // Physical position of the oldest measurement
+    private int tailSize;
+
+    // Sealed measurements, all older than or as old as the ring buffer
+    private final List<CompressedBlock> blocks = new ArrayList<>();
+    private int sealedSize; // Live measurements in the blocks
+    private long sealedBytes;
+    private int frontSkip; // Measurements of the first block that already expired
+    private long[] frontTimestamps; // Decoded timestamps of the first block, used by eviction
+
+    private RecordVisitor evictionListener; // Receives expired measurements; null discards them
+
+    /**
+     * Constructs an empty series for the specified record type that keeps every
+     * measurement.
+     *
+     * @param recordTypeCode the code of the record type stored in this series,
+     *                       e.g., {@link RecordTypeRegistry#ECG}
+     */
+    public RecordSeries(int recordTypeCode) {
+        this(recordTypeCode, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructs an empty, uncompressed series for the specified record type.
+     *
+     * @param recordTypeCode  the code of the record type stored in this series,
+     *                        e.g., {@link RecordTypeRegistry#ECG}
+     * @param retentionMillis how long measurements are kept behind the newest
+     *                        one, in milliseconds
+     */
+    public RecordSeries(int recordTypeCode, long retentionMillis) {
+        this(recordTypeCode, retentionMillis, 0);
+    }
+
+    /**
+     * Constructs an empty series for the specified record type.
+     *
+     * @param recordTypeCode  the code of the record type stored in this series,
+     *                        e.g., {@link RecordTypeRegistry#ECG}
+     * @param retentionMillis how long measurements are kept behind the newest
+     *                        one, in milliseconds
+     * @param blockSize       the number of measurements per compressed block, or
+     *                        0 to keep every measurement uncompressed
+     */
+    public RecordSeries(int recordTypeCode, long retentionMillis, int blockSize) {
+        this.recordTypeCode = recordTypeCode;
+        this.retentionMillis = retentionMillis;
+        this.blockSize = blockSize;
+        this.timestamps = new long[INITIAL_CAPACITY];
+        this.values = new double[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Adds a measurement to the series, keeping the series sorted by timestamp.
+     * Measurements that arrive in time order are appended at the end; late
+     * measurements are inserted at their sorted position after any existing
+     * measurements with the same timestamp. Measurements that fall out of the
+     * retention period are then dropped from the front.
+     * Once enough measurements are buffered, the oldest ones are sealed into a
+     * compressed block. A late measurement that belongs in a sealed block causes
+     * that block to be re-encoded.
+     *
+     * @param timestamp the time at which the measurement was taken, in
+     *                  milliseconds since UNIX epoch
+     * @param value     the measurement value
+     * @return the number of measurements dropped because they expired
+     */
+    public int add(long timestamp, double value) {
+        if (!blocks.isEmpty() && timestamp < blocks.get(blocks.size() - 1).getLastTimestamp()) {
+            return addSealed(timestamp, value);
+        }
+        if (tailSize == timestamps.length) {
+            grow();
+        }
+        int mask = timestamps.length - 1;
+        int index = tailSize;
+        if (tailSize > 0 && tailTimestamp(tailSize - 1) > timestamp) {
+            index = tailBound(timestamp, true);
+            if (index < tailSize / 2) {
+                // Shift the older part one slot towards the front
+                head = (head - 1) & mask;
+                for (int i = 0; i < index; i++) {
+                    move((head + i + 1) & mask, (head + i) & mask);
+                }
+            } else {
+                for (int i = tailSize; i > index; i--) {
+                    move((head + i - 1) & mask, (head + i) & mask);
+                }
+            }
+        }
+        int slot = (head + index) & mask;
+        timestamps[slot] = timestamp;
+        values[slot] = value;
+        tailSize++;
+        if (blockSize > 0 && tailSize >= 2 * blockSize) {
+            // Keep the newest block uncompressed, where late measurements usually land
+            sealOldest();
+        }
+        return evictBefore(horizon(tailTimestamp(tailSize - 1)));
+    }
+
+    /**
+     * Sets the listener that receives every measurement this series drops
+     * because it expired, in time order per eviction. The patient ID passed to
+     * the listener is always 0.
+     *
+     * @param evictionListener the listener, or null to discard expired
+     *                         measurements
+     */
+    public void setEvictionListener(RecordVisitor evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * Drops every measurement taken before the specified time.
+     *
+     * @param timestamp the oldest time to keep, in milliseconds since UNIX epoch
+     * @return the number of measurements dropped
+     */
+    public int evictBefore(long timestamp) {
+        int evicted = 0;
+        while (!blocks.isEmpty()) {
+            CompressedBlock front = blocks.get(0);
+            if (front.getLastTimestamp() < timestamp) {
+                if (evictionListener != null) {
+                    front.visit(frontSkip, Long.MIN_VALUE, Long.MAX_VALUE, 0, recordTypeCode, evictionListener);
+                }
+                evicted += front.size() - frontSkip;
+                removeFrontBlock();
+                continue;
+            }
+            if (front.getFirstTimestamp() < timestamp) {
+                if (frontTimestamps == null) {
+                    frontTimestamps = new long[front.size()];
+                    front.decode(frontTimestamps, new double[front.size()], 0);
+                }
+                if (evictionListener != null) {
+                    front.visit(frontSkip, Long.MIN_VALUE, timestamp - 1, 0, recordTypeCode, evictionListener);
+                }
+                while (frontTimestamps[frontSkip] < timestamp) {
+                    frontSkip++;
+                    sealedSize--;
+                    evicted++;
+                }
+            }
+            // The ring buffer only holds measurements at or after the sealed ones
+            return evicted;
+        }
+        int mask = timestamps.length - 1;
+        while (tailSize > 0 && timestamps[head] < timestamp) {
+            if (evictionListener != null) {
+                evictionListener.visit(0, recordTypeCode, timestamps[head], values[head]);
+            }
+            head = (head + 1) & mask;
+            tailSize--;
+            evicted++;
+        }
+        return evicted;
+    }
+
+    /**
+     * Drops every measurement that has outlived the retention period at the
+     * specified time.
+     *
+     * @param now the current time, in milliseconds since UNIX epoch
+     * @return the number of measurements dropped
+     */
+    public int evictExpired(long now) {
+        return evictBefore(horizon(now));
+    }
+
+    /**
+     * Returns the index of the first measurement whose timestamp is greater than
+     * or equal to the specified time.
+     *
+     * @param timestamp the time to search for
+     * @return the index of the first matching measurement, or {@link #size()} if
+     *         every measurement is earlier
+     */
+    public int lowerBound(long timestamp) {
+        return bound(timestamp, false);
+    }
+
+    /**
+     * Returns the index of the first measurement whose timestamp is strictly
+     * greater than the specified time.
+     *
+     * @param timestamp the time to search for
+     * @return the index of the first later measurement, or {@link #size()} if
+     *         there is none
+     */
+    public int upperBound(long timestamp) {
+        return bound(timestamp, true);
+    }
+
+    /**
+     * Returns the label of the record type stored in this series.
+     *
+     * @return the record type
+     */
+    public String getRecordType() {
+        return RecordTypeRegistry.labelOf(recordTypeCode);
+    }
+
+    /**
+     * Returns the code of the record type stored in this series.
+     *
+     * @return the record type code
+     */
+    public int getRecordTypeCode() {
+        return recordTypeCode;
+    }
+
+    /**
+     * Returns the number of measurements in this series.
+     *
+     * @return the number of measurements
+     */
+    public int size() {
+        return sealedSize + tailSize;
+    }
+
+    /**
+     * Returns the number of measurements held in compressed blocks. These come
+     * first in time order; random access to them through
+     * {@link #getTimestamp(int)} and {@link #getValue(int)} decodes a block per
+     * call, so readers should prefer {@link #visitRange} or
+     * {@link #copyRange(int, int)}.
+     *
+     * @return the number of sealed measurements
+     */
+    public int getSealedSize() {
+        return sealedSize;
+    }
+
+    /**
+     * Returns the timestamp of the measurement at the specified position.
+     *
+     * @param index the position of the measurement, in time order
+     * @return the timestamp in milliseconds since UNIX epoch
+     */
+    public long getTimestamp(int index) {
+        if (index < sealedSize) {
+            return copyRange(index, index + 1).getTimestamp(0);
+        }
+        return tailTimestamp(index - sealedSize);
+    }
+
+    /**
+     * Returns the value of the measurement at the specified position.
+     *
+     * @param index the position of the measurement, in time order
+     * @return the measurement value
+     */
+    public double getValue(int index) {
+        if (index < sealedSize) {
+            return copyRange(index, index + 1).getValue(0);
+        }
+        return values[(head + index - sealedSize) & (values.length - 1)];
+    }
+
+    /**
+     * Hands every measurement within a time range to the visitor, in time
+     * order, decoding sealed blocks on the fly without allocating.
+     *
+     * @param startTime the start of the time range, in milliseconds since UNIX
+     *                  epoch
+     * @param endTime   the end of the time range, inclusive, in milliseconds
+     *                  since UNIX epoch
+     * @param patientId the patient passed on to the visitor
+     * @param visitor   receives the matching measurements
+     * @return the number of measurements visited
+     */
+    public int visitRange(long startTime, long endTime, int patientId, RecordVisitor visitor) {
+        int visited = 0;
+        for (int b = 0; b < blocks.size(); b++) {
+            CompressedBlock block = blocks.get(b);
+            if (block.getFirstTimestamp() > endTime) {
+                return visited;
+            }
+            if (block.getLastTimestamp() >= startTime) {
+                visited += block.visit(b == 0 ? frontSkip : 0, startTime, endTime, patientId, recordTypeCode,
+                        visitor);
+            }
+        }
+        int end = tailBound(endTime, true);
+        for (int i = tailBound(startTime, false); i < end; i++) {
+            int slot = (head + i) & (timestamps.length - 1);
+            visitor.visit(patientId, recordTypeCode, timestamps[slot], values[slot]);
+            visited++;
+        }
+        return visited;
+    }
+
+    /**
+     * Returns an estimate of the heap memory held by this series, including
+     * unused ring buffer capacity and compressed blocks.
+     *
+     * @return the estimated footprint in bytes
+     */
+    public long getResidentBytes() {
+        long bytes = OBJECT_OVERHEAD_BYTES + 2 * ARRAY_OVERHEAD_BYTES
+                + (long) timestamps.length * (Long.BYTES + Double.BYTES) + sealedBytes;
+        if (frontTimestamps != null) {
+            bytes += ARRAY_OVERHEAD_BYTES + (long) frontTimestamps.length * Long.BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns an independent, uncompressed copy of the measurements between two
+     * positions. The copy does not change when this series receives new
+     * measurements.
+     *
+     * @param from the position of the first measurement to copy, inclusive
+     * @param to   the position after the last measurement to copy, exclusive
+     * @return a new series holding the copied measurements
+     */
+    public RecordSeries copyRange(int from, int to) {
+        RecordSeries copy = new RecordSeries(recordTypeCode, retentionMillis);
+        int length = to - from;
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < length) {
+            capacity <<= 1;
+        }
+        copy.timestamps = new long[capacity];
+        copy.values = new double[capacity];
+        int copied = 0;
+        if (from < sealedSize) {
+            // Decode only the blocks that overlap the requested positions
+            int blockStart = -frontSkip;
+            for (CompressedBlock block : blocks) {
+                int blockEnd = blockStart + block.size();
+                if (blockEnd > from && blockStart < to) {
+                    long[] blockTimestamps = new long[block.size()];
+                    double[] blockValues = new double[block.size()];
+                    block.decode(blockTimestamps, blockValues, 0);
+                    int first = Math.max(from, blockStart);
+                    int last = Math.min(to, blockEnd);
+                    System.arraycopy(blockTimestamps, first - blockStart, copy.timestamps, copied, last - first);
+                    System.arraycopy(blockValues, first - blockStart, copy.values, copied, last - first);
+                    copied += last - first;
+                }
+                if (blockEnd >= to) {
+                    break;
+                }
+                blockStart = blockEnd;
+            }
+        }
+        if (to > sealedSize) {
+            int tailFrom = Math.max(from, sealedSize) - sealedSize;
+            copyTo(tailFrom, to - sealedSize - tailFrom, copy.timestamps, copy.values, copied);
+        }
+        copy.tailSize = length;
+        return copy;
+    }
+
+    private long horizon(long newest) {
+        long horizon = newest - retentionMillis;
+        // Guard against underflow for unbounded retention
+        return horizon > newest ? Long.MIN_VALUE : horizon;
+    }
+
+    private long tailTimestamp(int index) {
+        return timestamps[(head + index) & (timestamps.length - 1)];
+    }
+
+    // Index of the first measurement at or after (or, if upper, strictly after) the timestamp
+    private int bound(long timestamp, boolean upper) {
+        int index = 0;
+        for (int b = 0; b < blocks.size(); b++) {
+            CompressedBlock block = blocks.get(b);
+            int skip = b == 0 ? frontSkip : 0;
+            long last = block.getLastTimestamp();
+            if (upper ? last <= timestamp : last < timestamp) {
+                index += block.size() - skip;
+                continue;
+            }
+            long first = block.getFirstTimestamp();
+            if (upper ? first > timestamp : first >= timestamp) {
+                return index;
+            }
+            long[] blockTimestamps = new long[block.size()];
+            block.decode(blockTimestamps, new double[block.size()], 0);
+            int position = skip;
+            while (upper ? blockTimestamps[position] <= timestamp : blockTimestamps[position] < timestamp) {
+                position++;
+            }
+            return index + position - skip;
+        }
+        return index + tailBound(timestamp, upper);
+    }
+
+    // Binary search over the ring buffer only
+    private int tailBound(long timestamp, boolean upper) {
+        int low = 0;
+        int high = tailSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            long candidate = tailTimestamp(mid);
+            if (upper ? candidate <= timestamp : candidate < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Inserts a late measurement into the sealed block covering its timestamp
+    private int addSealed(long timestamp, double value) {
+        long newest = tailTimestamp(tailSize - 1);
+        if (timestamp < horizon(newest)) {
+            if (evictionListener != null) {
+                evictionListener.visit(0, recordTypeCode, timestamp, value);
+            }
+            return 1; // Already expired
+        }
+        int b = 0;
+        while (blocks.get(b).getLastTimestamp() <= timestamp) {
+            b++;
+        }
+        CompressedBlock block = blocks.get(b);
+        long[] blockTimestamps = new long[block.size() + 1];
+        double[] blockValues = new double[block.size() + 1];
+        block.decode(blockTimestamps, blockValues, 0);
+        // Expired measurements of the first block are left out of the new encoding
+        int skip = b == 0 ? frontSkip : 0;
+        int count = block.size() - skip;
+        System.arraycopy(blockTimestamps, skip, blockTimestamps, 0, count);
+        System.arraycopy(blockValues, skip, blockValues, 0, count);
+        int position = count;
+        while (position > 0 && blockTimestamps[position - 1] > timestamp) {
+            blockTimestamps[position] = blockTimestamps[position - 1];
+            blockValues[position] = blockValues[position - 1];
+            position--;
+        }
+        blockTimestamps[position] = timestamp;
+        blockValues[position] = value;
+        CompressedBlock replacement = CompressedBlock.encode(blockTimestamps, blockValues, count + 1);
+        blocks.set(b, replacement);
+        sealedBytes += replacement.getResidentBytes() - block.getResidentBytes();
+        sealedSize++;
+        if (b == 0) {
+            frontSkip = 0;
+            frontTimestamps = null;
+        }
+        return evictBefore(horizon(newest));
+    }
+
+    private void sealOldest() {
+        long[] blockTimestamps = new long[blockSize];
+        double[] blockValues = new double[blockSize];
+        copyTo(0, blockSize, blockTimestamps, blockValues, 0);
+        CompressedBlock block = CompressedBlock.encode(blockTimestamps, blockValues, blockSize);
+        blocks.add(block);
+        sealedBytes += block.getResidentBytes();
+        sealedSize += blockSize;
+        head = (head + blockSize) & (timestamps.length - 1);
+        tailSize -= blockSize;
+    }
+
+    private void removeFrontBlock() {
+        CompressedBlock front = blocks.remove(0);
+        sealedSize -= front.size() - frontSkip;
+        sealedBytes -= front.getResidentBytes();
+        frontSkip = 0;
+        frontTimestamps = null;
+    }
+
+    private void move(int from, int to) {
+        timestamps[to] = timestamps[from];
+        values[to] = values[from];
+    }
+
+    // Copies ring buffer measurements in time order into the target arrays, starting at the given offset
+    private void copyTo(int from, int length, long[] targetTimestamps, double[] targetValues, int offset) {
+        int start = (head + from) & (timestamps.length - 1);
+        int firstPart = Math.min(length, timestamps.length - start);
+        System.arraycopy(timestamps, start, targetTimestamps, offset, firstPart);
+        System.arraycopy(values, start, targetValues, offset, firstPart);
+        System.arraycopy(timestamps, 0, targetTimestamps, offset + firstPart, length - firstPart);
+        System.arraycopy(values, 0, targetValues, offset + firstPart, length - firstPart);
+    }
+
+    private void grow() {
+        int capacity = timestamps.length * 2;
+        long[] grownTimestamps = new long[capacity];
+        double[] grownValues = new double[capacity];
+        copyTo(0, tailSize, grownTimestamps, grownValues, 0);
+        timestamps = grownTimestamps;
+        values = grownValues;
+        head = 0;
+    }
+}
@@ -0,0 +1,157 @@
+package com.data_management;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps record type labels to compact integer codes shared by the whole
+ * application.
+ * Labels are resolved to a code once at ingest, so storage, indexes and alert
+ * strategies compare ints instead of strings. Alternative spellings used by
+ * some producers and consumers are registered as aliases of the same code.
+ * Labels that are not known yet are registered on first use. Codes are dense,
+ * starting at 0, and never change while the application runs.
+ */
+public class RecordTypeRegistry {
+    /** Code of "ECG" measurements. */
+    public static final int ECG = 0;
+    /** Code of "Saturation" measurements. */
+    public static final int SATURATION = 1;
+    /** Code of "SystolicPressure" measurements. */
+    public static final int SYSTOLIC_PRESSURE = 2;
+    /** Code of "DiastolicPressure" measurements. */
+    public static final int DIASTOLIC_PRESSURE = 3;
+    /** Code of "Cholesterol" measurements. */
+    public static final int CHOLESTEROL = 4;
+    /** Code of "WhiteBloodCells" measurements. */
+    public static final int WHITE_BLOOD_CELLS = 5;
+    /** Code of "RedBloodCells" measurements. */
+    public static final int RED_BLOOD_CELLS = 6;
+    /** Code of "Alert" button events. */
+    public static final int ALERT = 7;
+
+    /** Returned by {@link #lookup(String)} for labels that are not registered. */
+    public static final int UNKNOWN = -1;
+
+    /** Number of record types beyond which {@link #tryCodeOf(String)} registers no more labels. */
+    public static final int MAX_RECORD_TYPES = 256;
+
+    private static final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private static volatile String[] labels = new String[0]; // Canonical label of every code
+
+    static {
+        register("ECG");
+        register("Saturation");
+        register("SystolicPressure");
+        register("DiastolicPressure");
+        register("Cholesterol");
+        register("WhiteBloodCells");
+        register("RedBloodCells");
+        register("Alert");
+        registerAlias("BloodSaturation", SATURATION);
+        registerAlias("ECGData", ECG);
+    }
+
+    private RecordTypeRegistry() {
+    }
+
+    /**
+     * Returns the code of the specified label, registering the label if it is
+     * not known yet.
+     *
+     * @param label the record type label or one of its aliases
+     * @return the code of the record type
+     */
+    public static int codeOf(String label) {
+        Integer code = codes.get(label);
+        return code != null ? code : register(label);
+    }
+
+    /**
+     * Returns the code of the specified label without registering it.
+     *
+     * @param label the record type label or one of its aliases
+     * @return the code of the record type, or {@link #UNKNOWN} if the label is
+     *         not registered
+     */
+    public static int lookup(String label) {
+        Integer code = codes.get(label);
+        return code != null ? code : UNKNOWN;
+    }
+
+    /**
+     * Returns the code of the specified label, registering the label only while
+     * fewer than {@link #MAX_RECORD_TYPES} record types are registered. Meant
+     * for labels read from untrusted input, so that a stream of junk labels
+     * cannot grow the registry, and with it every patient's per-type arrays,
+     * without bound.
+     *
+     * @param label the record type label or one of its aliases
+     * @return the code of the record type, or {@link #UNKNOWN} if the label is
+     *         not registered and the registry is full
+     */
+    public static int tryCodeOf(String label) {
+        Integer code = codes.get(label);
+        if (code != null) {
+            return code;
+        }
+        synchronized (RecordTypeRegistry.class) {
+            return labels.length < MAX_RECORD_TYPES ? register(label) : lookup(label);
+        }
+    }
+
+    /**
+     * Returns the canonical label of the specified code.
+     *
+     * @param code the code of the record type
+     * @return the canonical label
+     * @throws IllegalArgumentException if the code is not registered
+     */
+    public static String labelOf(int code) {
+        String[] current = labels;
+        if (code < 0 || code >= current.length) {
+            throw new IllegalArgumentException("Unknown record type code: " + code);
+        }
+        return current[code];
+    }
+
+    /**
+     * Returns the number of registered record types. Every code is smaller than
+     * this number.
+     *
+     * @return the number of record types
+     */
+    public static int size() {
+        return labels.length;
+    }
+
+    /**
+     * Registers an alternative spelling of an existing record type.
+     *
+     * @param alias the alternative label
+     * @param code  the code of the record type it stands for
+     * @throws IllegalArgumentException if the code is not registered or the alias
+     *                                  already stands for another record type
+     */
+    public static synchronized void registerAlias(String alias, int code) {
+        labelOf(code);
+        Integer existing = codes.putIfAbsent(alias, code);
+        if (existing != null && existing != code) {
+            throw new IllegalArgumentException(
+                    "Label " + alias + " is already registered for " + labelOf(existing));
+        }
+    }
+
+    private static synchronized int register(String label) {
+        Integer existing = codes.get(label);
+        if (existing != null) {
+            return existing;
+        }
+        String[] grown = Arrays.copyOf(labels, labels.length + 1);
+        int code = labels.length;
+        grown[code] = label;
+        labels = grown;
+        codes.put(label, code);
+        return code;
+    }
+}
@@ -0,0 +1,21 @@
+package com.data_management;
+
+/**
+ * Receives stored records as primitive values while a range is walked, so a
+ * scan creates no list or {@link PatientRecord} objects.
+ * The visitor is called while the visited patient is locked for reading; it
+ * must not add records to the storage it is walking.
+ */
+public interface RecordVisitor {
+    /**
+     * Visits a single record.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param recordTypeCode   the code of the record type, see
+     *                         {@link RecordTypeRegistry}
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     * @param measurementValue the measurement value
+     */
+    void visit(int patientId, int recordTypeCode, long timestamp, double measurementValue);
+}
@@ -0,0 +1,335 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * Maintains pre-aggregated statistics of a single record series at three
+ * resolutions: one minute, one hour and one day.
+ * Every bucket holds the count, sum, sum of squares, minimum and maximum of the
+ * measurements taken within it, and is updated in constant time when a
+ * measurement is added. A range query is answered by the coarsest buckets that
+ * fit entirely inside the range, falling back to finer buckets towards its
+ * edges and to the raw measurements for the partial minutes at either end.
+ * Each resolution also keeps a segment tree over its buckets, so the buckets
+ * spanned at one level are summed in time logarithmic in their number, and a
+ * query over months of history costs about as much as one over a few days.
+ * Buckets are dropped once they lie entirely outside the retention period, so
+ * aggregates over a range that reaches past the retention horizon may still
+ * include measurements already evicted from the raw series.
+ */
+public class RollupSeries {
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+    private static final long[] BUCKET_MILLIS = { MINUTE, HOUR, DAY };
+
+    private final long retentionMillis;
+    private final Level[] levels;
+    private long newestTimestamp = Long.MIN_VALUE;
+
+    /**
+     * Constructs empty rollups for a series with the specified retention.
+     *
+     * @param retentionMillis how long measurements are kept behind the newest
+     *                        one, in milliseconds
+     */
+    public RollupSeries(long retentionMillis) {
+        this.retentionMillis = retentionMillis;
+        this.levels = new Level[BUCKET_MILLIS.length];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = new Level(BUCKET_MILLIS[i]);
+        }
+    }
+
+    /**
+     * Adds a measurement to the bucket that contains it at every resolution.
+     *
+     * @param timestamp the time at which the measurement was taken, in
+     *                  milliseconds since UNIX epoch
+     * @param value     the measurement value
+     */
+    public void add(long timestamp, double value) {
+        for (Level level : levels) {
+            level.add(timestamp, value);
+        }
+        if (timestamp > newestTimestamp) {
+            newestTimestamp = timestamp;
+            evictBefore(horizon(timestamp));
+        }
+    }
+
+    /**
+     * Drops every bucket that has entirely outlived the retention period at the
+     * specified time.
+     *
+     * @param now the current time, in milliseconds since UNIX epoch
+     */
+    public void evictExpired(long now) {
+        evictBefore(horizon(now));
+    }
+
+    /**
+     * Computes summary statistics of the measurements within a time range.
+     *
+     * @param raw       the raw measurements these rollups were built from, used
+     *                  for the partial minutes at the edges of the range
+     * @param startTime the start of the time range, in milliseconds since UNIX
+     *                  epoch
+     * @param endTime   the end of the time range, inclusive, in milliseconds
+     *                  since UNIX epoch
+     * @return the statistics of the measurements in the range
+     */
+    public AggregateResult aggregate(RecordSeries raw, long startTime, long endTime) {
+        Totals totals = new Totals();
+        Level finest = levels[0];
+        if (finest.size > 0 && startTime <= endTime) {
+            // Clamp to the data so bucket alignment cannot overflow
+            long low = Math.max(startTime, finest.starts[finest.head]);
+            long high = Math.min(endTime, newestTimestamp) + 1;
+            cover(raw, low, high, levels.length - 1, totals);
+        }
+        return new AggregateResult(totals.count, totals.sum, totals.sumOfSquares, totals.min, totals.max);
+    }
+
+    /**
+     * Returns an estimate of the heap memory held by these rollups.
+     *
+     * @return the estimated footprint in bytes
+     */
+    public long getResidentBytes() {
+        long bytes = 0;
+        for (Level level : levels) {
+            bytes += (long) level.starts.length * Level.BYTES_PER_BUCKET;
+        }
+        return bytes;
+    }
+
+    // Adds the measurements in [low, high) using buckets of the given level and finer
+    private void cover(RecordSeries raw, long low, long high, int level, Totals totals) {
+        if (low >= high) {
+            return;
+        }
+        if (level < 0) {
+            raw.visitRange(low, high - 1, 0, totals);
+            return;
+        }
+        long bucketMillis = BUCKET_MILLIS[level];
+        long first = -Math.floorDiv(-low, bucketMillis) * bucketMillis;
+        long last = Math.floorDiv(high, bucketMillis) * bucketMillis;
+        if (first >= last) {
+            cover(raw, low, high, level - 1, totals);
+            return;
+        }
+        cover(raw, low, first, level - 1, totals);
+        levels[level].sumRange(first, last, totals);
+        cover(raw, last, high, level - 1, totals);
+    }
+
+    private long horizon(long newest) {
+        long horizon = newest - retentionMillis;
+        // Guard against underflow for unbounded retention
+        return horizon > newest ? Long.MIN_VALUE : horizon;
+    }
+
+    private void evictBefore(long timestamp) {
+        for (Level level : levels) {
+            level.evictEndingBefore(timestamp);
+        }
+    }
+
+    // Running totals of a query; also visits the raw measurements at the edges
+    private static class Totals implements RecordVisitor {
+        long count;
+        double sum;
+        double sumOfSquares;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        void add(double value) {
+            count++;
+            sum += value;
+            sumOfSquares += value * value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        @Override
+        public void visit(int patientId, int recordTypeCode, long timestamp, double measurementValue) {
+            add(measurementValue);
+        }
+    }
+
+    // Time-sorted buckets of one resolution in parallel arrays; live buckets are [head, head + size)
+    private static class Level {
+        // Each bucket also owns two nodes of the segment tree
+        static final int BYTES_PER_BUCKET = Long.BYTES * 2 + Double.BYTES * 4 + 2 * (Long.BYTES + Double.BYTES * 4);
+
+        final long bucketMillis;
+        long[] starts = new long[8];
+        long[] counts = new long[8];
+        double[] sums = new double[8];
+        double[] sumsOfSquares = new double[8];
+        double[] mins = new double[8];
+        double[] maxs = new double[8];
+        int head;
+        int size;
+        // Bottom-up segment tree over the bucket arrays; bucket i is leaf starts.length + i
+        long[] treeCounts = new long[16];
+        double[] treeSums = new double[16];
+        double[] treeSumsOfSquares = new double[16];
+        double[] treeMins = new double[16];
+        double[] treeMaxs = new double[16];
+
+        Level(long bucketMillis) {
+            this.bucketMillis = bucketMillis;
+        }
+
+        void add(long timestamp, double value) {
+            long start = Math.floorDiv(timestamp, bucketMillis) * bucketMillis;
+            int index;
+            if (size > 0 && starts[head + size - 1] == start) {
+                index = head + size - 1;
+            } else {
+                index = search(start);
+                if (index == head + size || starts[index] != start) {
+                    index = insert(index, start);
+                }
+            }
+            counts[index]++;
+            sums[index] += value;
+            sumsOfSquares[index] += value * value;
+            mins[index] = Math.min(mins[index], value);
+            maxs[index] = Math.max(maxs[index], value);
+            updateTree(index);
+        }
+
+        void sumRange(long from, long to, Totals totals) {
+            int low = search(from) + starts.length;
+            int high = search(to) + starts.length;
+            while (low < high) {
+                if ((low & 1) == 1) {
+                    addNode(low++, totals);
+                }
+                if ((high & 1) == 1) {
+                    addNode(--high, totals);
+                }
+                low >>>= 1;
+                high >>>= 1;
+            }
+        }
+
+        void addNode(int node, Totals totals) {
+            totals.count += treeCounts[node];
+            totals.sum += treeSums[node];
+            totals.sumOfSquares += treeSumsOfSquares[node];
+            totals.min = Math.min(totals.min, treeMins[node]);
+            totals.max = Math.max(totals.max, treeMaxs[node]);
+        }
+
+        // Copies a bucket into its leaf and recomputes the nodes above it
+        void updateTree(int index) {
+            int node = index + starts.length;
+            treeCounts[node] = counts[index];
+            treeSums[node] = sums[index];
+            treeSumsOfSquares[node] = sumsOfSquares[index];
+            treeMins[node] = mins[index];
+            treeMaxs[node] = maxs[index];
+            for (node >>>= 1; node > 0; node >>>= 1) {
+                combineChildren(node);
+            }
+        }
+
+        // Rebuilds the whole tree after buckets have moved within the arrays
+        void rebuildTree() {
+            int capacity = starts.length;
+            if (treeCounts.length != capacity * 2) {
+                treeCounts = new long[capacity * 2];
+                treeSums = new double[capacity * 2];
+                treeSumsOfSquares = new double[capacity * 2];
+                treeMins = new double[capacity * 2];
+                treeMaxs = new double[capacity * 2];
+            }
+            System.arraycopy(counts, 0, treeCounts, capacity, capacity);
+            System.arraycopy(sums, 0, treeSums, capacity, capacity);
+            System.arraycopy(sumsOfSquares, 0, treeSumsOfSquares, capacity, capacity);
+            System.arraycopy(mins, 0, treeMins, capacity, capacity);
+            System.arraycopy(maxs, 0, treeMaxs, capacity, capacity);
+            for (int node = capacity - 1; node > 0; node--) {
+                combineChildren(node);
+            }
+        }
+
+        void combineChildren(int node) {
+            int left = node << 1;
+            int right = left + 1;
+            treeCounts[node] = treeCounts[left] + treeCounts[right];
+            treeSums[node] = treeSums[left] + treeSums[right];
+            treeSumsOfSquares[node] = treeSumsOfSquares[left] + treeSumsOfSquares[right];
+            treeMins[node] = Math.min(treeMins[left], treeMins[right]);
+            treeMaxs[node] = Math.max(treeMaxs[left], treeMaxs[right]);
+        }
+
+        void evictEndingBefore(long timestamp) {
+            while (size > 0 && starts[head] + bucketMillis <= timestamp) {
+                head++;
+                size--;
+            }
+        }
+
+        // Returns the array index of the first bucket starting at or after the given time
+        int search(long start) {
+            int low = head;
+            int high = head + size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid] < start) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // Opens an empty bucket at the given array index and returns its new index
+        int insert(int index, long start) {
+            if (head + size == starts.length) {
+                int offset = index - head;
+                compactOrGrow();
+                index = head + offset;
+            }
+            int end = head + size;
+            System.arraycopy(starts, index, starts, index + 1, end - index);
+            System.arraycopy(counts, index, counts, index + 1, end - index);
+            System.arraycopy(sums, index, sums, index + 1, end - index);
+            System.arraycopy(sumsOfSquares, index, sumsOfSquares, index + 1, end - index);
+            System.arraycopy(mins, index, mins, index + 1, end - index);
+            System.arraycopy(maxs, index, maxs, index + 1, end - index);
+            starts[index] = start;
+            counts[index] = 0;
+            sums[index] = 0;
+            sumsOfSquares[index] = 0;
+            mins[index] = Double.POSITIVE_INFINITY;
+            maxs[index] = Double.NEGATIVE_INFINITY;
+            size++;
+            if (index < end) {
+                // Later buckets shifted one slot to the right
+                rebuildTree();
+            }
+            return index;
+        }
+
+        // Moves the live buckets to the front, doubling the arrays if they are more than half full
+        void compactOrGrow() {
+            int capacity = size >= starts.length / 2 ? starts.length * 2 : starts.length;
+            starts = Arrays.copyOf(Arrays.copyOfRange(starts, head, head + size), capacity);
+            counts = Arrays.copyOf(Arrays.copyOfRange(counts, head, head + size), capacity);
+            sums = Arrays.copyOf(Arrays.copyOfRange(sums, head, head + size), capacity);
+            sumsOfSquares = Arrays.copyOf(Arrays.copyOfRange(sumsOfSquares, head, head + size), capacity);
+            mins = Arrays.copyOf(Arrays.copyOfRange(mins, head, head + size), capacity);
+            maxs = Arrays.copyOf(Arrays.copyOfRange(maxs, head, head + size), capacity);
+            head = 0;
+            rebuildTree();
+        }
+    }
+}
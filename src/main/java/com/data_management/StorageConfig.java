@@ -0,0 +1,289 @@
+package com.data_management;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Holds the settings of a {@link DataStorage}.
+ * A configuration is read when the storage is constructed; changing it
+ * afterwards has no effect on existing storages.
+ */
+public class StorageConfig {
+    /** Default dedup window: one minute of data per patient. */
+    public static final long DEFAULT_DEDUP_WINDOW_MILLIS = 60_000L;
+
+    /** Retention that keeps measurements forever. */
+    public static final long UNBOUNDED_RETENTION = Long.MAX_VALUE;
+
+    /** Default number of records per cold storage segment. */
+    public static final int DEFAULT_COLD_SEGMENT_RECORDS = 4096;
+
+    private long dedupWindowMillis = DEFAULT_DEDUP_WINDOW_MILLIS;
+    private long defaultRetentionMillis = UNBOUNDED_RETENTION;
+    private Map<Integer, Long> retentionByType = new HashMap<>(); // Keyed on record type code
+    private Path walDirectory; // No write-ahead log when null
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.INTERVAL;
+    private long fsyncIntervalMillis = 100;
+    private Path snapshotFile; // No snapshots when null
+    private long snapshotIntervalMillis; // No periodic snapshots when 0
+    private int compressionBlockSize; // Records are kept uncompressed when 0
+    private Path coldStorageDirectory; // Expired records are discarded when null
+    private int coldSegmentRecords = DEFAULT_COLD_SEGMENT_RECORDS;
+
+    /**
+     * Returns how far behind a patient's newest record duplicates are still
+     * detected.
+     *
+     * @return the dedup window in milliseconds
+     */
+    public long getDedupWindowMillis() {
+        return dedupWindowMillis;
+    }
+
+    /**
+     * Sets how far behind a patient's newest record duplicates are still
+     * detected. Records older than the window are accepted without a check.
+     *
+     * @param dedupWindowMillis the dedup window in milliseconds
+     * @throws IllegalArgumentException if the window is negative
+     */
+    public void setDedupWindowMillis(long dedupWindowMillis) {
+        if (dedupWindowMillis < 0) {
+            throw new IllegalArgumentException("Dedup window must not be negative: " + dedupWindowMillis);
+        }
+        this.dedupWindowMillis = dedupWindowMillis;
+    }
+
+    /**
+     * Returns how long measurements of the specified type are kept in memory.
+     *
+     * @param recordType the type of record, e.g., "ECG"
+     * @return the retention in milliseconds
+     */
+    public long getRetentionMillis(String recordType) {
+        return getRetentionMillis(RecordTypeRegistry.codeOf(recordType));
+    }
+
+    /**
+     * Returns how long measurements of the specified type are kept in memory.
+     *
+     * @param recordTypeCode the code of the record type, e.g.,
+     *                       {@link RecordTypeRegistry#ECG}
+     * @return the retention in milliseconds
+     */
+    public long getRetentionMillis(int recordTypeCode) {
+        return retentionByType.getOrDefault(recordTypeCode, defaultRetentionMillis);
+    }
+
+    /**
+     * Sets how long measurements of the specified type are kept in memory, e.g.,
+     * 24 hours for "ECG" and 7 days for "Cholesterol".
+     *
+     * @param recordType      the type of record
+     * @param retentionMillis the retention in milliseconds
+     * @throws IllegalArgumentException if the retention is negative
+     */
+    public void setRetentionMillis(String recordType, long retentionMillis) {
+        checkRetention(retentionMillis);
+        retentionByType.put(RecordTypeRegistry.codeOf(recordType), retentionMillis);
+    }
+
+    /**
+     * Sets how long measurements are kept in memory for record types without an
+     * explicit retention. Defaults to {@link #UNBOUNDED_RETENTION}.
+     *
+     * @param retentionMillis the retention in milliseconds
+     * @throws IllegalArgumentException if the retention is negative
+     */
+    public void setDefaultRetentionMillis(long retentionMillis) {
+        checkRetention(retentionMillis);
+        this.defaultRetentionMillis = retentionMillis;
+    }
+
+    private static void checkRetention(long retentionMillis) {
+        if (retentionMillis < 0) {
+            throw new IllegalArgumentException("Retention must not be negative: " + retentionMillis);
+        }
+    }
+
+    /**
+     * Returns the directory of the write-ahead log.
+     *
+     * @return the log directory, or null if the storage is memory-only
+     */
+    public Path getWalDirectory() {
+        return walDirectory;
+    }
+
+    /**
+     * Makes the storage durable by logging every added record to the specified
+     * directory and replaying the log when a storage is constructed.
+     *
+     * @param walDirectory the log directory, or null for a memory-only storage
+     */
+    public void setWalDirectory(Path walDirectory) {
+        this.walDirectory = walDirectory;
+    }
+
+    /**
+     * Returns when logged records are forced to disk.
+     *
+     * @return the fsync policy
+     */
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    /**
+     * Sets when logged records are forced to disk. Defaults to
+     * {@link FsyncPolicy#INTERVAL}.
+     *
+     * @param fsyncPolicy the fsync policy
+     */
+    public void setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+        this.fsyncPolicy = fsyncPolicy;
+    }
+
+    /**
+     * Returns the flush interval used by the INTERVAL and NEVER policies.
+     *
+     * @return the interval in milliseconds
+     */
+    public long getFsyncIntervalMillis() {
+        return fsyncIntervalMillis;
+    }
+
+    /**
+     * Sets the flush interval used by the INTERVAL and NEVER policies.
+     *
+     * @param fsyncIntervalMillis the interval in milliseconds
+     * @throws IllegalArgumentException if the interval is not positive
+     */
+    public void setFsyncIntervalMillis(long fsyncIntervalMillis) {
+        if (fsyncIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Fsync interval must be positive: " + fsyncIntervalMillis);
+        }
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+    }
+
+    /**
+     * Returns the snapshot file loaded at startup and written by periodic
+     * snapshots.
+     *
+     * @return the snapshot file, or null if snapshots are not used
+     */
+    public Path getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * Sets the snapshot file. If the file exists when a storage is constructed,
+     * it is loaded before the write-ahead log is replayed.
+     *
+     * @param snapshotFile the snapshot file, or null to not use snapshots
+     */
+    public void setSnapshotFile(Path snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Returns how often a snapshot is written to the snapshot file.
+     *
+     * @return the interval in milliseconds, or 0 if no periodic snapshots are
+     *         written
+     */
+    public long getSnapshotIntervalMillis() {
+        return snapshotIntervalMillis;
+    }
+
+    /**
+     * Sets how often a snapshot is written to the snapshot file. Each snapshot
+     * lets the storage delete the write-ahead log segments it covers.
+     *
+     * @param snapshotIntervalMillis the interval in milliseconds, or 0 to only
+     *                               write snapshots on request
+     * @throws IllegalArgumentException if the interval is negative
+     */
+    public void setSnapshotIntervalMillis(long snapshotIntervalMillis) {
+        if (snapshotIntervalMillis < 0) {
+            throw new IllegalArgumentException("Snapshot interval must not be negative: " + snapshotIntervalMillis);
+        }
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+    }
+
+    /**
+     * Returns how many measurements of a series are sealed together into one
+     * compressed block.
+     *
+     * @return the block size, or 0 if measurements are kept uncompressed
+     */
+    public int getCompressionBlockSize() {
+        return compressionBlockSize;
+    }
+
+    /**
+     * Enables compression of older measurements. Each series keeps its newest
+     * measurements uncompressed and seals older ones into compressed blocks of
+     * the specified size, which cuts their memory use several times at the
+     * cost of decoding them on read. Defaults to 0, which disables compression.
+     *
+     * @param compressionBlockSize the number of measurements per block, or 0 to
+     *                             keep measurements uncompressed
+     * @throws IllegalArgumentException if the block size is negative
+     */
+    public void setCompressionBlockSize(int compressionBlockSize) {
+        if (compressionBlockSize < 0) {
+            throw new IllegalArgumentException("Compression block size must not be negative: " + compressionBlockSize);
+        }
+        this.compressionBlockSize = compressionBlockSize;
+    }
+
+    /**
+     * Returns the directory that records are moved to once they outlive their
+     * retention.
+     *
+     * @return the cold storage directory, or null if expired records are
+     *         discarded
+     */
+    public Path getColdStorageDirectory() {
+        return coldStorageDirectory;
+    }
+
+    /**
+     * Enables tiered storage. The retention of each record type then bounds how
+     * long records stay in memory; older records are written to segment files
+     * in the specified directory and remain available to range queries.
+     *
+     * @param coldStorageDirectory the cold storage directory, or null to discard
+     *                             expired records
+     */
+    public void setColdStorageDirectory(Path coldStorageDirectory) {
+        this.coldStorageDirectory = coldStorageDirectory;
+    }
+
+    /**
+     * Returns how many expired records of a patient are collected before they
+     * are written to a new cold storage segment.
+     *
+     * @return the number of records per segment
+     */
+    public int getColdSegmentRecords() {
+        return coldSegmentRecords;
+    }
+
+    /**
+     * Sets how many expired records of a patient are collected before they are
+     * written to a new cold storage segment. Larger segments mean fewer files,
+     * but more heap per patient for the records waiting to be written.
+     *
+     * @param coldSegmentRecords the number of records per segment
+     * @throws IllegalArgumentException if the number is not positive
+     */
+    public void setColdSegmentRecords(int coldSegmentRecords) {
+        if (coldSegmentRecords <= 0) {
+            throw new IllegalArgumentException("Cold segment size must be positive: " + coldSegmentRecords);
+        }
+        this.coldSegmentRecords = coldSegmentRecords;
+    }
+}
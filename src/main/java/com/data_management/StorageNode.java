@@ -0,0 +1,222 @@
+package com.data_management;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves an ordinary {@link DataStorage} to {@link PartitionedDataStorage}
+ * clients over TCP, using the {@link StorageProtocol}.
+ * Each client connection is handled by its own thread, which executes the
+ * requests of that connection in order.
+ */
+public class StorageNode implements Closeable {
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final DataStorage storage;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Starts serving a storage on the specified port of the loopback and all
+     * other local addresses.
+     *
+     * @param storage the storage to serve
+     * @param port    the port to listen on, or 0 to pick a free one
+     * @throws IOException if the port cannot be opened
+     */
+    public StorageNode(DataStorage storage, int port) throws IOException {
+        this(storage, port, null);
+    }
+
+    /**
+     * Starts serving a storage on the specified address and port.
+     *
+     * @param storage     the storage to serve
+     * @param port        the port to listen on, or 0 to pick a free one
+     * @param bindAddress the local address to listen on, or null for all
+     * @throws IOException if the port cannot be opened
+     */
+    public StorageNode(DataStorage storage, int port, InetAddress bindAddress) throws IOException {
+        this.storage = storage;
+        this.serverSocket = new ServerSocket(port, 50, bindAddress);
+        Thread acceptor = new Thread(this::acceptConnections, "storage-node-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Returns the port this node listens on.
+     *
+     * @return the port number
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns the storage this node serves.
+     *
+     * @return the storage
+     */
+    public DataStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones. The storage itself
+     * is left open.
+     *
+     * @throws IOException if the server socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket connection : connections) {
+            connection.close();
+        }
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket connection = serverSocket.accept();
+                connection.setTcpNoDelay(true);
+                connections.add(connection);
+                Thread handler = new Thread(() -> serve(connection), "storage-node-connection");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void serve(Socket connection) {
+        try (connection;
+                DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(connection.getInputStream(), BUFFER_BYTES));
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(connection.getOutputStream(), BUFFER_BYTES))) {
+            long rejected = 0; // Records that could not be added since the last SYNC
+            while (true) {
+                byte operation = in.readByte();
+                if (operation == StorageProtocol.ADD) {
+                    int patientId = in.readInt();
+                    double value = in.readDouble();
+                    String recordType = in.readUTF();
+                    long timestamp = in.readLong();
+                    // Labels come from the client, so they may not grow the registry without bound
+                    int recordTypeCode = RecordTypeRegistry.tryCodeOf(recordType);
+                    if (recordTypeCode == RecordTypeRegistry.UNKNOWN) {
+                        rejected++;
+                        continue;
+                    }
+                    try {
+                        storage.addPatientData(patientId, value, recordTypeCode, timestamp);
+                    } catch (RuntimeException e) {
+                        rejected++;
+                    }
+                    continue;
+                }
+                try {
+                    if (operation == StorageProtocol.SYNC) {
+                        out.writeByte(StorageProtocol.OK);
+                        out.writeLong(rejected);
+                        rejected = 0;
+                    } else {
+                        answer(operation, in, out);
+                    }
+                } catch (RuntimeException e) {
+                    out.writeByte(StorageProtocol.ERROR);
+                    out.writeUTF(String.valueOf(e.getMessage()));
+                }
+                out.flush();
+            }
+        } catch (EOFException | SocketException e) {
+            // The client went away or the node is closing
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+    // Reads the arguments of a query and writes its response
+    private void answer(byte operation, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (operation) {
+            case StorageProtocol.GET_RECORDS: {
+                int patientId = in.readInt();
+                List<PatientRecord> records = storage.getRecords(patientId, in.readLong(), in.readLong());
+                out.writeByte(StorageProtocol.OK);
+                StorageProtocol.writeRecords(out, records);
+                break;
+            }
+            case StorageProtocol.AGGREGATE: {
+                int patientId = in.readInt();
+                String recordType = in.readUTF();
+                AggregateResult result = storage.aggregate(patientId, recordType, in.readLong(), in.readLong());
+                out.writeByte(StorageProtocol.OK);
+                StorageProtocol.writeAggregate(out, result);
+                break;
+            }
+            case StorageProtocol.AGGREGATE_ALL: {
+                String recordType = in.readUTF();
+                AggregateResult result = storage.aggregate(recordType, in.readLong(), in.readLong());
+                out.writeByte(StorageProtocol.OK);
+                StorageProtocol.writeAggregate(out, result);
+                break;
+            }
+            case StorageProtocol.FIND_IN_RANGE: {
+                String recordType = in.readUTF();
+                int[] patientIds = storage.findPatientsInRange(recordType, in.readDouble(), in.readDouble());
+                out.writeByte(StorageProtocol.OK);
+                StorageProtocol.writeIds(out, patientIds);
+                break;
+            }
+            case StorageProtocol.PATIENT_IDS: {
+                List<Integer> patientIds = new ArrayList<>();
+                storage.forEachPatient(patient -> patientIds.add(patient.getPatientId()));
+                out.writeByte(StorageProtocol.OK);
+                StorageProtocol.writeIds(out, patientIds.stream().mapToInt(Integer::intValue).toArray());
+                break;
+            }
+            case StorageProtocol.RECORD_COUNT: {
+                out.writeByte(StorageProtocol.OK);
+                out.writeLong(storage.getResidentRecordCount());
+                break;
+            }
+            case StorageProtocol.ALL_RECORDS: {
+                // Read everything before answering, so a failure cannot leave a partial response
+                List<Patient> patients = storage.getAllPatients();
+                List<List<PatientRecord>> records = new ArrayList<>(patients.size());
+                for (Patient patient : patients) {
+                    records.add(patient.getRecords(Long.MIN_VALUE, Long.MAX_VALUE));
+                }
+                out.writeByte(StorageProtocol.OK);
+                out.writeInt(patients.size());
+                for (int i = 0; i < patients.size(); i++) {
+                    out.writeInt(patients.get(i).getPatientId());
+                    StorageProtocol.writeRecords(out, records.get(i));
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unknown storage operation: " + operation);
+        }
+    }
+}
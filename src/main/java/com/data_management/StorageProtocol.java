@@ -0,0 +1,136 @@
+package com.data_management;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary request/response protocol spoken between a
+ * {@link PartitionedDataStorage} and its {@link StorageNode}s.
+ * Every request starts with a one-byte operation code followed by its
+ * arguments. Records are added without a response, so the client can stream
+ * them; every other request is answered by a status byte, followed either by
+ * the result or by an error message. Requests on one connection are handled in
+ * order, so a response also confirms every record sent before its request.
+ */
+public class StorageProtocol {
+    /** Adds a record: patient ID, value, record type, timestamp. No response. */
+    public static final byte ADD = 1;
+    /** Confirms the records sent so far; answered with the number rejected. */
+    public static final byte SYNC = 2;
+    /** Range query of one patient: patient ID, start, end; answered with records. */
+    public static final byte GET_RECORDS = 3;
+    /** Statistics of one patient: patient ID, record type, start, end. */
+    public static final byte AGGREGATE = 4;
+    /** Statistics over every patient of the node: record type, start, end. */
+    public static final byte AGGREGATE_ALL = 5;
+    /** Patients by latest value: record type, min, max; answered with IDs. */
+    public static final byte FIND_IN_RANGE = 6;
+    /** IDs of every patient of the node. */
+    public static final byte PATIENT_IDS = 7;
+    /** Number of records held by the node. */
+    public static final byte RECORD_COUNT = 8;
+    /** Every record of every patient of the node, grouped by patient. */
+    public static final byte ALL_RECORDS = 9;
+
+    /** Status of a successful response. */
+    public static final byte OK = 0;
+    /** Status of a failed request, followed by an error message. */
+    public static final byte ERROR = 1;
+
+    private StorageProtocol() {
+    }
+
+    /**
+     * Writes a list of records of one patient.
+     *
+     * @param out     the stream to write to
+     * @param records the records
+     * @throws IOException if the stream cannot be written
+     */
+    public static void writeRecords(DataOutputStream out, List<PatientRecord> records) throws IOException {
+        out.writeInt(records.size());
+        for (PatientRecord record : records) {
+            out.writeUTF(record.getRecordType());
+            out.writeLong(record.getTimestamp());
+            out.writeDouble(record.getMeasurementValue());
+        }
+    }
+
+    /**
+     * Reads a list of records written by {@link #writeRecords}.
+     *
+     * @param in        the stream to read from
+     * @param patientId the patient the records belong to
+     * @return the records
+     * @throws IOException if the stream cannot be read
+     */
+    public static List<PatientRecord> readRecords(DataInputStream in, int patientId) throws IOException {
+        int count = in.readInt();
+        List<PatientRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int recordTypeCode = RecordTypeRegistry.codeOf(in.readUTF());
+            long timestamp = in.readLong();
+            records.add(new PatientRecord(patientId, in.readDouble(), recordTypeCode, timestamp));
+        }
+        return records;
+    }
+
+    /**
+     * Writes summary statistics.
+     *
+     * @param out    the stream to write to
+     * @param result the statistics
+     * @throws IOException if the stream cannot be written
+     */
+    public static void writeAggregate(DataOutputStream out, AggregateResult result) throws IOException {
+        out.writeLong(result.getCount());
+        out.writeDouble(result.getSum());
+        out.writeDouble(result.getSumOfSquares());
+        out.writeDouble(result.getMin());
+        out.writeDouble(result.getMax());
+    }
+
+    /**
+     * Reads summary statistics written by {@link #writeAggregate}.
+     *
+     * @param in the stream to read from
+     * @return the statistics
+     * @throws IOException if the stream cannot be read
+     */
+    public static AggregateResult readAggregate(DataInputStream in) throws IOException {
+        return new AggregateResult(in.readLong(), in.readDouble(), in.readDouble(), in.readDouble(),
+                in.readDouble());
+    }
+
+    /**
+     * Writes a list of patient IDs.
+     *
+     * @param out        the stream to write to
+     * @param patientIds the patient IDs
+     * @throws IOException if the stream cannot be written
+     */
+    public static void writeIds(DataOutputStream out, int[] patientIds) throws IOException {
+        out.writeInt(patientIds.length);
+        for (int patientId : patientIds) {
+            out.writeInt(patientId);
+        }
+    }
+
+    /**
+     * Reads a list of patient IDs written by {@link #writeIds}.
+     *
+     * @param in the stream to read from
+     * @return the patient IDs
+     * @throws IOException if the stream cannot be read
+     */
+    public static int[] readIds(DataInputStream in) throws IOException {
+        int[] patientIds = new int[in.readInt()];
+        for (int i = 0; i < patientIds.length; i++) {
+            patientIds[i] = in.readInt();
+        }
+        return patientIds;
+    }
+}
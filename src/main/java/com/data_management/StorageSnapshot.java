@@ -0,0 +1,277 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Reads and writes point-in-time copies of a storage in a compact columnar
+ * binary format.
+ * The file starts with a header, followed by one block per patient and an
+ * index of block positions at the end. Within a block every record series is
+ * stored as a column of delta-encoded timestamps (zig-zag varints) followed by
+ * a column of raw double values. Because blocks are independent and indexed,
+ * a snapshot is loaded by memory-mapping groups of blocks and decoding them in
+ * parallel.
+ */
+public class StorageSnapshot {
+    private static final int MAGIC = 0x43445350; // "CDSP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = Integer.BYTES * 3 + Long.BYTES * 2;
+    private static final int INDEX_ENTRY_BYTES = Long.BYTES + Integer.BYTES;
+    private static final long MAX_MAPPED_BYTES = 256L << 20;
+
+    private StorageSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of the specified patients. The file is written under a
+     * temporary name and moved into place once complete, so a crash never
+     * leaves a partial snapshot behind. Records waiting for a patient's cold
+     * tier are written to disk as the patient is copied, since the snapshot only
+     * covers the records held in memory.
+     *
+     * @param patients   the patients to write
+     * @param file       the snapshot file
+     * @param walSegment the first write-ahead log segment that is not covered by
+     *                   this snapshot, or 0 if there is no log
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void write(Collection<Patient> patients, Path file, long walSegment) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        List<Long> offsets = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+            long position = HEADER_BYTES;
+            out.position(position);
+            for (Patient patient : patients) {
+                buffer.clear();
+                buffer = encodePatient(patient.getPatientId(), patient.checkpoint(), buffer);
+                buffer.flip();
+                offsets.add(position);
+                lengths.add(buffer.remaining());
+                position += buffer.remaining();
+                writeFully(out, buffer);
+            }
+
+            long indexOffset = position;
+            ByteBuffer index = ByteBuffer.allocate(offsets.size() * INDEX_ENTRY_BYTES);
+            for (int i = 0; i < offsets.size(); i++) {
+                index.putLong(offsets.get(i)).putInt(lengths.get(i));
+            }
+            index.flip();
+            writeFully(out, index);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(offsets.size()).putLong(indexOffset).putLong(walSegment);
+            header.flip();
+            out.position(0);
+            writeFully(out, header);
+            out.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot and hands every record to the consumer. Blocks are
+     * decoded in parallel, so the consumer must be thread-safe; records of one
+     * patient are always delivered by a single thread in time order per type.
+     *
+     * @param file     the snapshot file
+     * @param consumer receives the records
+     * @return the first write-ahead log segment not covered by the snapshot
+     * @throws IOException if the snapshot cannot be read or is not a snapshot
+     */
+    public static long read(Path file, RecordConsumer consumer) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(in, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a storage snapshot: " + file);
+            }
+            int patientCount = header.getInt();
+            long indexOffset = header.getLong();
+            long walSegment = header.getLong();
+
+            ByteBuffer index = ByteBuffer.allocate(patientCount * INDEX_ENTRY_BYTES);
+            readFully(in, index, indexOffset);
+            index.flip();
+            long[] offsets = new long[patientCount];
+            int[] lengths = new int[patientCount];
+            for (int i = 0; i < patientCount; i++) {
+                offsets[i] = index.getLong();
+                lengths[i] = index.getInt();
+            }
+
+            int[] groupStarts = groupBlocks(offsets, lengths);
+            IntStream.range(0, groupStarts.length - 1).parallel().forEach(group -> {
+                int first = groupStarts[group];
+                int last = groupStarts[group + 1];
+                long start = offsets[first];
+                long end = offsets[last - 1] + lengths[last - 1];
+                try {
+                    MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                    Map<String, String> canonicalTypes = new HashMap<>();
+                    for (int block = first; block < last; block++) {
+                        mapped.position((int) (offsets[block] - start));
+                        decodePatient(mapped, consumer, canonicalTypes);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return walSegment;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Splits the blocks into groups small enough to map and numerous enough to spread over all cores
+    private static int[] groupBlocks(long[] offsets, int[] lengths) {
+        long total = 0;
+        for (int length : lengths) {
+            total += length;
+        }
+        int parallelism = Runtime.getRuntime().availableProcessors() * 4;
+        long target = Math.max(1, Math.min(MAX_MAPPED_BYTES, total / parallelism + 1));
+        List<Integer> starts = new ArrayList<>();
+        long groupBytes = 0;
+        for (int block = 0; block < offsets.length; block++) {
+            if (block == 0 || groupBytes >= target) {
+                starts.add(block);
+                groupBytes = 0;
+            }
+            groupBytes += lengths[block];
+        }
+        starts.add(offsets.length);
+        if (offsets.length == 0) {
+            return new int[] { 0 };
+        }
+        int[] result = new int[starts.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = starts.get(i);
+        }
+        return result;
+    }
+
+    private static ByteBuffer encodePatient(int patientId, List<RecordSeries> allSeries, ByteBuffer buffer) {
+        List<RecordSeries> seriesList = new ArrayList<>();
+        for (RecordSeries series : allSeries) {
+            if (series.size() > 0) {
+                seriesList.add(series);
+            }
+        }
+        buffer = ensureCapacity(buffer, Integer.BYTES + Short.BYTES);
+        buffer.putInt(patientId).putShort((short) seriesList.size());
+        for (RecordSeries series : seriesList) {
+            byte[] label = series.getRecordType().getBytes(StandardCharsets.UTF_8);
+            int count = series.size();
+            // Worst case: 10 bytes per varint delta plus 8 bytes per value
+            buffer = ensureCapacity(buffer, Short.BYTES + label.length + Integer.BYTES + Long.BYTES + count * 18);
+            buffer.putShort((short) label.length).put(label).putInt(count);
+            long previous = series.getTimestamp(0);
+            buffer.putLong(previous);
+            for (int i = 1; i < count; i++) {
+                long timestamp = series.getTimestamp(i);
+                putVarLong(buffer, zigZag(timestamp - previous));
+                previous = timestamp;
+            }
+            for (int i = 0; i < count; i++) {
+                buffer.putDouble(series.getValue(i));
+            }
+        }
+        return buffer;
+    }
+
+    private static void decodePatient(ByteBuffer buffer, RecordConsumer consumer, Map<String, String> canonicalTypes) {
+        int patientId = buffer.getInt();
+        int seriesCount = buffer.getShort();
+        long[] timestamps = new long[0];
+        for (int s = 0; s < seriesCount; s++) {
+            byte[] label = new byte[buffer.getShort()];
+            buffer.get(label);
+            String recordType = canonicalTypes.computeIfAbsent(new String(label, StandardCharsets.UTF_8), t -> t);
+            int count = buffer.getInt();
+            if (timestamps.length < count) {
+                timestamps = new long[count];
+            }
+            long timestamp = buffer.getLong();
+            timestamps[0] = timestamp;
+            for (int i = 1; i < count; i++) {
+                timestamp += unZigZag(getVarLong(buffer));
+                timestamps[i] = timestamp;
+            }
+            for (int i = 0; i < count; i++) {
+                consumer.accept(patientId, recordType, timestamps[i], buffer.getDouble());
+            }
+        }
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of snapshot");
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.data_management;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Reads the line-delimited records sent by any number of simulators started
+ * with {@code --output tcp:<port>}.
+ * One thread serves every connection through a single non-blocking
+ * {@link Selector}. Each connection reads into its own direct buffer, and
+ * complete lines are parsed straight out of that buffer by a
+ * {@link RecordLineParser}, so no strings are created per line. The records
+ * read in one round of the selector are added to the storage as one batch.
+ */
+public class TcpDataReader implements DataReader, Closeable {
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final int BATCH_SIZE = 4096;
+
+    private final List<InetSocketAddress> simulators;
+    private final RecordLineParser parser = new RecordLineParser();
+    private final RecordBatch batch = new RecordBatch(BATCH_SIZE);
+    private volatile boolean running = true;
+    private volatile Selector selector;
+    private long invalidLines;
+
+    /**
+     * Constructs a reader for the specified simulators.
+     *
+     * @param simulators the addresses of the simulators' TCP outputs
+     */
+    public TcpDataReader(List<InetSocketAddress> simulators) {
+        this.simulators = List.copyOf(simulators);
+    }
+
+    /**
+     * Connects to every simulator and stores the records they send, until
+     * every connection has been closed or this reader is closed. A simulator
+     * that cannot be reached is reported and skipped.
+     *
+     * @param dataStorage the storage where data will be stored
+     * @throws IOException if the selector fails
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        try (Selector selector = Selector.open()) {
+            this.selector = selector;
+            int open = 0;
+            for (InetSocketAddress simulator : simulators) {
+                SocketChannel channel = SocketChannel.open();
+                try {
+                    channel.configureBlocking(false);
+                    Connection connection = new Connection(simulator);
+                    int interest = channel.connect(simulator) ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT;
+                    channel.register(selector, interest, connection);
+                    open++;
+                } catch (IOException e) {
+                    System.err.println("Could not connect to simulator at " + simulator + ": " + e.getMessage());
+                    channel.close();
+                }
+            }
+            while (running && open > 0) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!handle(key, dataStorage)) {
+                        key.channel().close();
+                        open--;
+                    }
+                }
+                dataStorage.addPatientData(batch);
+                batch.clear();
+            }
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+        } finally {
+            selector = null;
+        }
+    }
+
+    /**
+     * Returns the number of received lines that were not valid records.
+     *
+     * @return the number of invalid lines
+     */
+    public synchronized long getInvalidLineCount() {
+        return invalidLines;
+    }
+
+    /**
+     * Makes a running {@link #readData} close its connections and return.
+     */
+    @Override
+    public void close() {
+        running = false;
+        Selector current = selector;
+        if (current != null) {
+            current.wakeup();
+        }
+    }
+
+    // Finishes a connect or reads what arrived; returns false once the connection is done
+    private boolean handle(SelectionKey key, DataStorage dataStorage) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        if (key.isConnectable()) {
+            try {
+                channel.finishConnect();
+                key.interestOps(SelectionKey.OP_READ);
+                return true;
+            } catch (IOException e) {
+                System.err.println("Could not connect to simulator at " + connection.address + ": " + e.getMessage());
+                return false;
+            }
+        }
+        try {
+            int read;
+            while ((read = channel.read(connection.buffer)) > 0) {
+                parseLines(connection, dataStorage);
+            }
+            int remaining = connection.buffer.position();
+            if (read < 0 && remaining > 0 && !connection.discarding) {
+                // The simulator closed the connection after a line without a line feed
+                int contentEnd = connection.buffer.get(remaining - 1) == '\r' ? remaining - 1 : remaining;
+                if (!parser.parseLine(connection.buffer, 0, contentEnd, batch)) {
+                    reportInvalid(connection);
+                }
+            }
+            return read >= 0;
+        } catch (IOException e) {
+            System.err.println("Lost connection to simulator at " + connection.address + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Parses the complete lines in the connection's buffer and keeps the partial one for the next read
+    private void parseLines(Connection connection, DataStorage dataStorage) {
+        ByteBuffer buffer = connection.buffer;
+        int limit = buffer.position();
+        int lineStart = 0;
+        int i = connection.scanned;
+        if (connection.discarding) {
+            // Drop the rest of an overlong line, already reported, up to its line feed
+            while (i < limit && buffer.get(i) != '\n') {
+                i++;
+            }
+            if (i == limit) {
+                buffer.clear();
+                connection.scanned = 0;
+                return;
+            }
+            connection.discarding = false;
+            lineStart = i + 1;
+            i = lineStart;
+        }
+        for (; i < limit; i++) {
+            if (buffer.get(i) != '\n') {
+                continue;
+            }
+            int contentEnd = i > lineStart && buffer.get(i - 1) == '\r' ? i - 1 : i;
+            if (!parser.parseLine(buffer, lineStart, contentEnd, batch)) {
+                reportInvalid(connection);
+            }
+            if (batch.size() >= BATCH_SIZE) {
+                dataStorage.addPatientData(batch);
+                batch.clear();
+            }
+            lineStart = i + 1;
+        }
+        if (lineStart == 0 && limit == buffer.capacity()) {
+            // A line longer than the buffer cannot be a record
+            reportInvalid(connection);
+            buffer.clear();
+            connection.scanned = 0;
+            connection.discarding = true;
+            return;
+        }
+        buffer.limit(limit).position(lineStart);
+        buffer.compact();
+        connection.scanned = buffer.position();
+    }
+
+    private synchronized void reportInvalid(Connection connection) {
+        invalidLines++;
+        System.err.println("Invalid data format from simulator at " + connection.address);
+    }
+
+    // Read state of one simulator connection
+    private static class Connection {
+        final InetSocketAddress address;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        int scanned; // Bytes at the start of the buffer already known to hold no line feed
+        boolean discarding; // Skipping the rest of a line longer than the buffer
+
+        Connection(InetSocketAddress address) {
+            this.address = address;
+        }
+    }
+}
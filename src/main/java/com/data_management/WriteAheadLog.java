@@ -0,0 +1,404 @@
+package com.data_management;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of every record added to a {@link DataStorage}, used
+ * to rebuild the storage after a restart.
+ * Records are encoded into an in-memory batch and written to the current
+ * segment file with a single {@link FileChannel} write. Each batch is framed
+ * with its length and a CRC32 checksum and carries its own record type
+ * dictionary, so every batch can be decoded on its own and a batch torn by a
+ * crash is detected and skipped on replay. Segments are rolled once they
+ * exceed a fixed size.
+ */
+public class WriteAheadLog implements Closeable {
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final long SEGMENT_BYTES = 64L << 20;
+    private static final int BATCH_BYTES = 64 << 10;
+    private static final int FRAME_HEADER_BYTES = Integer.BYTES * 2;
+    private static final byte RECORD = 0;
+    private static final byte DEFINE_TYPE = 1;
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final Object flushLock = new Object(); // Held by the single thread writing a batch
+    private final ScheduledExecutorService flusher;
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER_BYTES);
+
+    // Guarded by this
+    private ByteBuffer pending;
+    private ByteBuffer spare;
+    private final Map<String, Integer> batchTypeCodes = new HashMap<>();
+    private long appendedSequence;
+    private boolean closed;
+
+    // Guarded by flushLock
+    private FileChannel channel;
+    private long segmentNumber;
+    private long segmentSize;
+    private long writtenSequence;
+    private volatile long durableSequence;
+
+    /**
+     * Opens the log in the specified directory. Existing segments are kept for
+     * {@link #replay(RecordConsumer)}; new records go to a fresh segment.
+     *
+     * @param directory           the directory holding the segment files
+     * @param fsyncPolicy         when written records are forced to disk
+     * @param fsyncIntervalMillis the flush interval for the INTERVAL and NEVER
+     *                            policies, in milliseconds
+     * @throws IOException if the directory or segment cannot be created
+     */
+    public WriteAheadLog(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.pending = ByteBuffer.allocate(BATCH_BYTES * 2);
+        this.spare = ByteBuffer.allocate(BATCH_BYTES * 2);
+        Files.createDirectories(directory);
+        List<Path> segments = listSegments();
+        this.segmentNumber = segments.isEmpty() ? 0 : segmentNumber(segments.get(segments.size() - 1));
+        openNextSegment();
+        if (fsyncPolicy == FsyncPolicy.PER_BATCH) {
+            this.flusher = null;
+        } else {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            boolean force = fsyncPolicy == FsyncPolicy.INTERVAL;
+            flusher.scheduleWithFixedDelay(() -> {
+                try {
+                    flush(force);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Appends a record to the log. With the PER_BATCH policy this method
+     * returns only once the record is on disk; otherwise it returns as soon as
+     * the record is buffered.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param recordType       the type of record
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     * @param measurementValue the measurement value
+     * @throws IOException if the log cannot be written
+     */
+    public void append(int patientId, String recordType, long timestamp, double measurementValue)
+            throws IOException {
+        long sequence;
+        boolean batchFull;
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("Write-ahead log is closed");
+            }
+            encode(patientId, recordType, timestamp, measurementValue);
+            sequence = appendedSequence;
+            batchFull = pending.position() >= BATCH_BYTES;
+        }
+        if (fsyncPolicy == FsyncPolicy.PER_BATCH) {
+            awaitDurable(sequence);
+        } else if (batchFull) {
+            flush(false);
+        }
+    }
+
+    /**
+     * Appends several records to the log at once, as
+     * {@link #append(int, String, long, double)} does for one. With the
+     * PER_BATCH policy this method waits for a single fsync covering all of
+     * them.
+     *
+     * @param batch    the records
+     * @param included which records of the batch to log; records whose flag is
+     *                 false are skipped
+     * @throws IOException if the log cannot be written
+     */
+    public void appendAll(RecordBatch batch, boolean[] included) throws IOException {
+        long sequence;
+        boolean batchFull;
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("Write-ahead log is closed");
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                if (included[i]) {
+                    encode(batch.getPatientId(i), RecordTypeRegistry.labelOf(batch.getRecordTypeCode(i)),
+                            batch.getTimestamp(i), batch.getValue(i));
+                }
+            }
+            sequence = appendedSequence;
+            batchFull = pending.position() >= BATCH_BYTES;
+        }
+        if (fsyncPolicy == FsyncPolicy.PER_BATCH) {
+            awaitDurable(sequence);
+        } else if (batchFull) {
+            flush(false);
+        }
+    }
+
+    // Adds one record frame to the pending batch; callers hold this log's lock
+    private void encode(int patientId, String recordType, long timestamp, double measurementValue) {
+        Integer code = batchTypeCodes.get(recordType);
+        if (code == null) {
+            code = batchTypeCodes.size();
+            batchTypeCodes.put(recordType, code);
+            byte[] label = recordType.getBytes(StandardCharsets.UTF_8);
+            ensureCapacity(1 + Short.BYTES * 2 + label.length);
+            pending.put(DEFINE_TYPE).putShort(code.shortValue()).putShort((short) label.length).put(label);
+        }
+        ensureCapacity(1 + Short.BYTES + Integer.BYTES + Long.BYTES + Double.BYTES);
+        pending.put(RECORD).putShort(code.shortValue()).putInt(patientId).putLong(timestamp)
+                .putDouble(measurementValue);
+        appendedSequence++;
+    }
+
+    /**
+     * Writes every buffered record to the current segment.
+     *
+     * @param force whether to also force the segment to disk
+     * @throws IOException if the log cannot be written
+     */
+    public void flush(boolean force) throws IOException {
+        synchronized (flushLock) {
+            writeBatch();
+            if (force && durableSequence < writtenSequence) {
+                channel.force(false);
+                durableSequence = writtenSequence;
+            }
+        }
+    }
+
+    /**
+     * Writes and forces every buffered record, then starts a new segment.
+     * Records appended afterwards go to the new segment.
+     *
+     * @return the number of the new segment
+     * @throws IOException if the log cannot be written or is closed
+     */
+    public long rollSegment() throws IOException {
+        synchronized (flushLock) {
+            synchronized (this) {
+                if (closed) {
+                    throw new IOException("Write-ahead log is closed");
+                }
+            }
+            flush(true);
+            channel.close();
+            openNextSegment();
+            return segmentNumber;
+        }
+    }
+
+    /**
+     * Deletes every segment older than the specified one, e.g., once a snapshot
+     * covers their records.
+     *
+     * @param firstKept the number of the oldest segment to keep
+     * @throws IOException if a segment cannot be deleted
+     */
+    public void deleteSegmentsBefore(long firstKept) throws IOException {
+        for (Path segment : listSegments()) {
+            if (segmentNumber(segment) < firstKept) {
+                Files.delete(segment);
+            }
+        }
+    }
+
+    /**
+     * Reads every record in the log, oldest segment first, and hands it to the
+     * consumer. Segments are memory-mapped, and decoding stops at the first
+     * batch of a segment whose checksum does not match, which is where a crash
+     * interrupted a write.
+     *
+     * @param consumer receives the logged records
+     * @return the number of records read
+     * @throws IOException if a segment cannot be read
+     */
+    public long replay(RecordConsumer consumer) throws IOException {
+        return replay(consumer, 0);
+    }
+
+    /**
+     * Reads the records of every segment from the specified one onwards and
+     * hands them to the consumer, as {@link #replay(RecordConsumer)} does.
+     *
+     * @param consumer     receives the logged records
+     * @param firstSegment the number of the oldest segment to read
+     * @return the number of records read
+     * @throws IOException if a segment cannot be read
+     */
+    public long replay(RecordConsumer consumer, long firstSegment) throws IOException {
+        long count = 0;
+        Map<String, String> canonicalTypes = new HashMap<>();
+        CRC32 checksum = new CRC32();
+        for (Path segment : listSegments()) {
+            long number = segmentNumber(segment);
+            if (number < firstSegment || number >= segmentNumber) {
+                continue;
+            }
+            try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                List<String> types = new ArrayList<>();
+                while (buffer.remaining() >= FRAME_HEADER_BYTES) {
+                    int length = buffer.getInt();
+                    int expected = buffer.getInt();
+                    if (length <= 0 || length > buffer.remaining()) {
+                        break;
+                    }
+                    ByteBuffer batch = buffer.slice();
+                    batch.limit(length);
+                    checksum.reset();
+                    checksum.update(batch.duplicate());
+                    if ((int) checksum.getValue() != expected) {
+                        System.err.println("Skipping corrupt tail of write-ahead log segment " + segment.getFileName());
+                        break;
+                    }
+                    types.clear();
+                    while (batch.hasRemaining()) {
+                        byte kind = batch.get();
+                        int code = batch.getShort();
+                        if (kind == DEFINE_TYPE) {
+                            byte[] label = new byte[batch.getShort()];
+                            batch.get(label);
+                            String type = new String(label, StandardCharsets.UTF_8);
+                            types.add(canonicalTypes.computeIfAbsent(type, t -> t));
+                        } else {
+                            consumer.accept(batch.getInt(), types.get(code), batch.getLong(), batch.getDouble());
+                            count++;
+                        }
+                    }
+                    buffer.position(buffer.position() + length);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Flushes and forces the remaining records, then closes the log.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        synchronized (flushLock) {
+            flush(true);
+            channel.close();
+        }
+    }
+
+    // Group commit: the first waiter writes and forces everything buffered so far for all waiters
+    private void awaitDurable(long sequence) throws IOException {
+        if (durableSequence >= sequence) {
+            return;
+        }
+        synchronized (flushLock) {
+            if (durableSequence < sequence) {
+                flush(true);
+            }
+        }
+    }
+
+    // Swaps the buffers and writes the filled one as one framed batch; callers hold flushLock
+    private void writeBatch() throws IOException {
+        ByteBuffer batch;
+        long sequence;
+        synchronized (this) {
+            if (pending.position() == 0) {
+                return;
+            }
+            batch = pending;
+            pending = spare;
+            pending.clear();
+            spare = batch;
+            sequence = appendedSequence;
+            batchTypeCodes.clear();
+        }
+        batch.flip();
+        crc.reset();
+        crc.update(batch.duplicate());
+        frameHeader.clear();
+        frameHeader.putInt(batch.remaining()).putInt((int) crc.getValue()).flip();
+        long bytes = FRAME_HEADER_BYTES + batch.remaining();
+        ByteBuffer[] frame = { frameHeader, batch };
+        while (batch.hasRemaining()) {
+            channel.write(frame);
+        }
+        segmentSize += bytes;
+        writtenSequence = sequence;
+        if (segmentSize >= SEGMENT_BYTES) {
+            // Everything in the full segment must be durable before moving on
+            channel.force(false);
+            durableSequence = writtenSequence;
+            channel.close();
+            openNextSegment();
+        }
+    }
+
+    private void openNextSegment() throws IOException {
+        segmentNumber++;
+        channel = FileChannel.open(directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, segmentNumber,
+                SEGMENT_SUFFIX)), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentSize = channel.size();
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (pending.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = new ArrayList<>();
+            files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().forEach(segments::add);
+            return segments;
+        }
+    }
+
+    private static long segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
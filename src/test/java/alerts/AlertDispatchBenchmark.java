@@ -0,0 +1,77 @@
+package alerts;
+
+import java.util.concurrent.TimeUnit;
+
+import com.alerts.Alert;
+import com.alerts.AlertDispatcher;
+import com.alerts.LatencyRecorder;
+import com.data_management.BackpressurePolicy;
+
+/**
+ * Standalone benchmark that floods an AlertDispatcher with low-priority trend
+ * alerts while a few critical alerts arrive, and reports the queue wait of both,
+ * with separate priority lanes and with everything in a single lane.
+ * Run with: java -cp target/classes:target/test-classes alerts.AlertDispatchBenchmark
+ */
+public class AlertDispatchBenchmark {
+
+    private static final int WORKERS = 2;
+    private static final long SINK_NANOS = 20_000; // Time a sink spends per alert, e.g., to notify staff
+    private static final long RUN_MILLIS = 5_000;
+    private static final String CRITICAL = "Critical Threshold Alert - Hypotensive Hypoxemia Alert";
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int priorityLevels : new int[] { 1, 3 }) {
+            AlertDispatcher dispatcher = new AlertDispatcher(priorityLevels,
+                    alert -> alert.getCondition().equals(CRITICAL) ? 2 : 0,
+                    alert -> busyWait(SINK_NANOS), WORKERS, 4096, BackpressurePolicy.DROP_NEWEST);
+
+            // Two producers keep the low lane full, far beyond what the sink can take
+            Thread[] flooders = new Thread[2];
+            for (int i = 0; i < flooders.length; i++) {
+                flooders[i] = new Thread(() -> {
+                    Alert trend = new Alert("1", "Trend Alert - Abnormal Heart Rate", 0L);
+                    while (!Thread.currentThread().isInterrupted()) {
+                        dispatcher.dispatch(trend);
+                    }
+                }, "flooder-" + i);
+                flooders[i].setDaemon(true);
+                flooders[i].start();
+            }
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+            Alert critical = new Alert("2", CRITICAL, 0L);
+            while (System.nanoTime() < end) {
+                dispatcher.dispatch(critical);
+                Thread.sleep(5);
+            }
+            for (Thread flooder : flooders) {
+                flooder.interrupt();
+                flooder.join();
+            }
+            dispatcher.close();
+
+            LatencyRecorder low = dispatcher.getWaitLatency(0);
+            LatencyRecorder high = dispatcher.getWaitLatency(priorityLevels - 1);
+            System.out.printf("lanes=%d  dispatched=%,d  dropped=%,d%n", priorityLevels,
+                    dispatcher.getDispatchedCount(), dispatcher.getDroppedCount());
+            if (priorityLevels > 1) {
+                print("critical", high);
+                print("trend", low);
+            } else {
+                print("all", low);
+            }
+        }
+    }
+
+    private static void print(String name, LatencyRecorder wait) {
+        System.out.printf("  %-8s wait p50=%,9d us  p99=%,9d us  max=%,9d us  (%,d alerts)%n", name,
+                wait.getPercentileMicros(50), wait.getPercentileMicros(99), wait.getMaxMicros(), wait.getCount());
+    }
+
+    private static void busyWait(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+}
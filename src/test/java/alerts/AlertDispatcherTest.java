@@ -0,0 +1,130 @@
+package alerts;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.alerts.Alert;
+import com.alerts.AlertDispatcher;
+import com.data_management.BackpressurePolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AlertDispatcherTest {
+
+    @Test
+    public void testUrgentAlertsOvertakeQueuedOnes() throws InterruptedException {
+        List<String> handled = new CopyOnWriteArrayList<>();
+        CountDownLatch busy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AlertDispatcher dispatcher = new AlertDispatcher(3,
+                alert -> alert.getCondition().contains("Hypotensive Hypoxemia") ? 2 : 0,
+                alert -> {
+                    if (handled.isEmpty()) {
+                        busy.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    handled.add(alert.getCondition());
+                }, 1, 16, BackpressurePolicy.DROP_NEWEST);
+
+        // Keep the only worker busy while the other alerts queue up
+        dispatcher.dispatch(new Alert("1", "first", 1000L));
+        assertTrue(busy.await(5, TimeUnit.SECONDS));
+        dispatcher.dispatch(new Alert("1", "Decreasing Trend Alert in Saturation", 2000L));
+        dispatcher.dispatch(new Alert("2", "Trend Alert - Abnormal Heart Rate", 2000L), 1);
+        dispatcher.dispatch(new Alert("3", "Critical Threshold Alert - Hypotensive Hypoxemia Alert", 3000L));
+        assertEquals(1, dispatcher.getQueuedCount(2));
+        release.countDown();
+        dispatcher.close();
+
+        assertEquals(List.of("first", "Critical Threshold Alert - Hypotensive Hypoxemia Alert",
+                "Trend Alert - Abnormal Heart Rate", "Decreasing Trend Alert in Saturation"), handled);
+        assertEquals(4, dispatcher.getDispatchedCount());
+        assertEquals(2, dispatcher.getWaitLatency(0).getCount());
+        assertEquals(1, dispatcher.getWaitLatency(2).getCount());
+        assertFalse(dispatcher.dispatch(new Alert("1", "late", 4000L)), "A closed dispatcher takes no alerts");
+        assertEquals(1, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void testDroppingAnAlertAWorkerWaitsForLeavesNoSpareWakeUp() throws InterruptedException {
+        // Tiny lanes under DROP_OLDEST keep replacing alerts that workers are about to take
+        AlertDispatcher dispatcher = new AlertDispatcher(1, alert -> 0, alert -> { }, 4, 1,
+                BackpressurePolicy.DROP_OLDEST);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    dispatcher.dispatch(new Alert("1", "alert", i));
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        Thread.sleep(100);
+
+        // An idle worker waits on the semaphore; one holding a spare permit polls the empty lanes
+        for (int sample = 0; sample < 50; sample++) {
+            for (Map.Entry<Thread, StackTraceElement[]> thread : Thread.getAllStackTraces().entrySet()) {
+                if (thread.getKey().getName().startsWith("alert-dispatcher-")) {
+                    assertFalse(isPollingEmptyLanes(thread.getValue()), "A worker spins without an alert");
+                }
+            }
+            Thread.sleep(2);
+        }
+        dispatcher.close();
+        assertEquals(200_000, dispatcher.getDispatchedCount() + dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void testEveryAcceptedAlertIsDispatchedWhenClosedUnderLoad() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            AlertDispatcher dispatcher = new AlertDispatcher(3, alert -> 0, alert -> { }, 2, 16,
+                    BackpressurePolicy.BLOCK);
+            AtomicInteger accepted = new AtomicInteger();
+            List<Thread> producers = new ArrayList<>();
+            for (int p = 0; p < 4; p++) {
+                int priority = p % 3;
+                Thread producer = new Thread(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        if (dispatcher.dispatch(new Alert("1", "alert", i), priority)) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                });
+                producers.add(producer);
+                producer.start();
+            }
+            Thread.sleep(1);
+            dispatcher.close();
+            for (Thread producer : producers) {
+                producer.join();
+            }
+
+            assertEquals(accepted.get(), dispatcher.getDispatchedCount());
+            assertEquals(8000 - accepted.get(), dispatcher.getDroppedCount());
+        }
+    }
+
+    private static boolean isPollingEmptyLanes(StackTraceElement[] stack) {
+        for (int i = 0; i + 1 < stack.length; i++) {
+            if (stack[i].getMethodName().equals("parkNanos") && stack[i + 1].getClassName().equals(
+                    AlertDispatcher.class.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
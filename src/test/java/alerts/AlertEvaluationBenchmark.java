@@ -0,0 +1,87 @@
+package alerts;
+
+import java.util.Random;
+
+import com.alerts.IncrementalAlertEngine;
+import com.data_management.RecordTypeRegistry;
+
+/**
+ * Standalone benchmark comparing the cost of evaluating one new record as the
+ * patient's history grows: rescanning the history the way ECGStrategy does,
+ * against updating the IncrementalAlertEngine's per-patient rule state.
+ * Run with: java -cp target/classes:target/test-classes alerts.AlertEvaluationBenchmark
+ */
+public class AlertEvaluationBenchmark {
+
+    private static final int[] HISTORY_SIZES = { 250, 1000, 4000, 16000 };
+    private static final int ENGINE_RECORDS = 1_000_000;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        for (int round = 0; round < 2; round++) {
+            for (int historySize : HISTORY_SIZES) {
+                long[] timestamps = new long[historySize];
+                long timestamp = 1714376789000L;
+                for (int i = 0; i < historySize; i++) {
+                    timestamp += 750 + random.nextInt(100); // 70-80 bpm, never alerts, so every scan runs to the end
+                    timestamps[i] = timestamp;
+                }
+                int evaluations = Math.max(1, 2_000_000 / historySize / historySize * 4);
+                long begin = System.nanoTime();
+                long checksum = 0;
+                for (int i = 0; i < evaluations; i++) {
+                    checksum += rescanECG(timestamps, historySize);
+                }
+                double rescanNanos = (double) (System.nanoTime() - begin) / evaluations;
+
+                // Feed the same history first, then time new records on top of it
+                IncrementalAlertEngine engine = new IncrementalAlertEngine(alert -> { });
+                for (int i = 0; i < historySize; i++) {
+                    engine.visit(1, RecordTypeRegistry.ECG, timestamps[i], 0.5);
+                }
+                begin = System.nanoTime();
+                for (int i = 0; i < ENGINE_RECORDS; i++) {
+                    timestamp += 750 + (i & 63);
+                    engine.visit(1, i % 4 == 0 ? RecordTypeRegistry.SATURATION : RecordTypeRegistry.ECG, timestamp,
+                            96 + (i & 3));
+                }
+                double engineNanos = (double) (System.nanoTime() - begin) / ENGINE_RECORDS;
+
+                System.out.printf("round %d  history=%,6d  rescan=%,14.0f ns/record  incremental=%,6.1f ns/record  (%d)%n",
+                        round, historySize, rescanNanos, engineNanos, checksum);
+            }
+        }
+    }
+
+    // The ECG strategy's evaluation of the latest record, over plain timestamps; returns the number of alerts
+    private static int rescanECG(long[] timestamps, int size) {
+        int alerts = 0;
+        long latestTimestamp = timestamps[size - 1];
+        for (int k = size - 2; k >= 0; k--) {
+            double bpm = bpm(latestTimestamp, timestamps[k]);
+            if (bpm < 50 || bpm > 100) {
+                alerts++;
+            }
+            int irregularBpmCount = 0;
+            double trendBpm = bpm;
+            for (int i = k - 1; i >= 0; i--) {
+                double previousBpm = bpm(timestamps[i], timestamps[i + 1]);
+                if (Math.abs(trendBpm - previousBpm) >= 10) {
+                    irregularBpmCount++;
+                } else {
+                    irregularBpmCount = Math.max(0, irregularBpmCount - 1);
+                }
+                if (irregularBpmCount >= 5) {
+                    return alerts + 1;
+                }
+                trendBpm = previousBpm;
+            }
+            latestTimestamp = timestamps[k];
+        }
+        return alerts;
+    }
+
+    private static double bpm(long timestamp1, long timestamp2) {
+        return (60.0 / Math.abs(timestamp1 - timestamp2)) * 1000;
+    }
+}
@@ -0,0 +1,53 @@
+package alerts;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.alerts.Alert;
+import com.alerts.AlertGenerator;
+import com.alerts.SweepResult;
+import com.data_management.DataStorage;
+import com.data_management.RecordTypeRegistry;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class AlertGeneratorTest {
+
+    @Test
+    public void testSweepEvaluatesEveryPatientOnceAndCollectsTheirAlerts() {
+        DataStorage storage = new DataStorage();
+        for (int patientId = 1; patientId <= 1000; patientId++) {
+            storage.addPatientData(patientId, patientId % 10 == 0 ? 90 : 97, RecordTypeRegistry.SATURATION, 1000L);
+        }
+        List<Alert> handled = new ArrayList<>();
+        try (AlertGenerator generator = new AlertGenerator(storage, handled::add, 4)) {
+            generator.addStrategy(patient -> {
+                if (patient.getLatestValue(RecordTypeRegistry.SATURATION) < 92) {
+                    generator.triggerAlert(new Alert(Integer.toString(patient.getPatientId()),
+                            "Critical Threshold Alert - Saturation too low", 1000L));
+                }
+            });
+
+            SweepResult result = generator.evaluateAll();
+            assertEquals(1000, result.getPatientCount());
+            assertEquals(100, result.getAlerts().size());
+            Set<String> alerted = new HashSet<>();
+            for (Alert alert : result.getAlerts()) {
+                assertTrue(alerted.add(alert.getPatientId()), "Each patient is evaluated once");
+                assertEquals(0, Integer.parseInt(alert.getPatientId()) % 10);
+            }
+            assertEquals(result.getAlerts(), handled, "The sweep's alerts reach the handler");
+
+            // Outside a sweep alerts go to the handler at once
+            handled.clear();
+            generator.evaluateData(storage.getPatient(10));
+            assertEquals(1, handled.size());
+            assertEquals(1, generator.getSweepCount());
+            assertEquals(1000, generator.getEvaluatedPatientCount());
+            assertEquals(result.getElapsedNanos(), generator.getMaxSweepNanos());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package alerts;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alerts.Alert;
+import com.alerts.AlertRepeatScheduler;
+import com.alerts.LatencyRecorder;
+
+/**
+ * Standalone benchmark that keeps many alerts repeating on one AlertRepeatScheduler
+ * and reports how late the repeats fire, while other threads keep scheduling and
+ * resolving alerts.
+ * Run with: java -cp target/classes:target/test-classes alerts.AlertRepeatBenchmark
+ */
+public class AlertRepeatBenchmark {
+
+    private static final int[] OUTSTANDING_ALERTS = { 1_000, 10_000, 100_000 };
+    private static final long RUN_MILLIS = 5_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int outstanding : OUTSTANDING_ALERTS) {
+            try (AlertRepeatScheduler scheduler = new AlertRepeatScheduler()) {
+                AtomicLong repeats = new AtomicLong();
+                AlertRepeatScheduler.RepeatListener listener = (alert, repeatNumber, priority) -> repeats.incrementAndGet();
+                Random random = new Random(42);
+                for (int i = 0; i < outstanding; i++) {
+                    scheduler.schedule(new Alert(Integer.toString(i), "Trend Alert - Abnormal Heart Rate", 0L),
+                            100 + random.nextInt(900), Integer.MAX_VALUE, 1, 1, 10, listener);
+                }
+
+                // Churn: alerts resolve and new ones open while the wheel turns
+                Thread churn = new Thread(() -> {
+                    Random churnRandom = new Random(7);
+                    while (!Thread.currentThread().isInterrupted()) {
+                        String patientId = Integer.toString(churnRandom.nextInt(outstanding));
+                        if (scheduler.resolve(patientId, "Trend Alert - Abnormal Heart Rate") > 0) {
+                            scheduler.schedule(new Alert(patientId, "Trend Alert - Abnormal Heart Rate", 0L),
+                                    100 + churnRandom.nextInt(900), Integer.MAX_VALUE, listener);
+                        }
+                        try {
+                            Thread.sleep(0, 100_000);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }, "churn");
+                churn.setDaemon(true);
+                churn.start();
+
+                Thread.sleep(1000); // Warm-up
+                LatencyRecorder jitter = scheduler.getJitter();
+                jitter.reset();
+                long before = repeats.get();
+                Thread.sleep(RUN_MILLIS);
+                long fired = repeats.get() - before;
+                churn.interrupt();
+                churn.join();
+
+                System.out.printf("outstanding=%,7d  repeats/s=%,9.0f  jitter p50=%,6d us  p99=%,6d us  p99.9=%,6d us  max=%,6d us%n",
+                        scheduler.getOutstandingCount(), fired * 1000.0 / RUN_MILLIS, jitter.getPercentileMicros(50),
+                        jitter.getPercentileMicros(99), jitter.getPercentileMicros(99.9), jitter.getMaxMicros());
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package alerts;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.alerts.Alert;
+import com.alerts.AlertRepeatScheduler;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AlertRepeatSchedulerTest {
+
+    @Test
+    public void testRepeatsEscalateAndStopWhenResolved() throws InterruptedException {
+        try (AlertRepeatScheduler scheduler = new AlertRepeatScheduler(1, 64)) {
+            List<Integer> priorities = new CopyOnWriteArrayList<>();
+            CountDownLatch lastRepeat = new CountDownLatch(1);
+            AlertRepeatScheduler.RepeatHandle escalating = scheduler.schedule(
+                    new Alert("1", "Critical Threshold Alert - Saturation too low", 1000L), 5, 4, 1, 1, 3,
+                    (alert, repeatNumber, priority) -> {
+                        priorities.add(priority);
+                        if (repeatNumber == 4) {
+                            lastRepeat.countDown();
+                        }
+                    });
+
+            CountDownLatch firstRepeat = new CountDownLatch(1);
+            AlertRepeatScheduler.RepeatHandle resolved = scheduler.schedule(
+                    new Alert("2", "Decreasing Trend Alert in Saturation", 1000L), 20, 100,
+                    (alert, repeatNumber, priority) -> firstRepeat.countDown());
+            assertEquals(2, scheduler.getOutstandingCount());
+
+            assertTrue(lastRepeat.await(5, TimeUnit.SECONDS));
+            assertEquals(List.of(2, 3, 3, 3), priorities, "The priority rises by one per repeat, up to 3");
+            assertTrue(escalating.isDone());
+            assertEquals(4, escalating.getRepeatCount());
+
+            assertTrue(firstRepeat.await(5, TimeUnit.SECONDS));
+            assertEquals(0, scheduler.resolve("2", "Critical Threshold Alert - Saturation too low"));
+            assertEquals(1, scheduler.resolve("2", "Decreasing Trend Alert in Saturation"));
+            int repeatsWhenResolved = resolved.getRepeatCount();
+            Thread.sleep(100);
+            assertTrue(resolved.getRepeatCount() <= repeatsWhenResolved + 1, "No repeats after the one in flight");
+            assertEquals(0, scheduler.getOutstandingCount());
+            assertTrue(scheduler.getJitter().getCount() >= 5);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package alerts;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.alerts.Alert;
+import com.alerts.AlertRuleConfig;
+import com.alerts.AlertRuleTable;
+import com.alerts.IncrementalAlertEngine;
+import com.data_management.RecordTypeRegistry;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AlertRuleTableTest {
+
+    @Test
+    public void testDefaultRulesCoverThresholdsTrendsAndConjunctions() {
+        List<String> conditions = new ArrayList<>();
+        AlertRuleConfig config = new AlertRuleConfig(AlertRuleTable.loadDefaults());
+        IncrementalAlertEngine engine = new IncrementalAlertEngine(List.of(config::newRule),
+                alert -> conditions.add(alert.getCondition()));
+
+        engine.visit(1, RecordTypeRegistry.DIASTOLIC_PRESSURE, 1000L, 80);
+        engine.visit(1, RecordTypeRegistry.DIASTOLIC_PRESSURE, 2000L, 69);
+        assertTrue(conditions.isEmpty());
+        engine.visit(1, RecordTypeRegistry.DIASTOLIC_PRESSURE, 3000L, 58);
+        assertEquals(List.of("Decreasing Trend Alert in Diastolic Pressure",
+                "Critical Threshold Alert - Diastolic Pressure too low"), conditions);
+
+        // Low saturation with low systolic pressure is hypotensive hypoxemia, not plain low saturation
+        conditions.clear();
+        engine.visit(1, RecordTypeRegistry.SATURATION, 4000L, 97);
+        engine.visit(1, RecordTypeRegistry.SYSTOLIC_PRESSURE, 5000L, 85);
+        engine.visit(1, RecordTypeRegistry.SATURATION, 6000L, 91);
+        assertEquals(List.of("Critical Threshold Alert - Systolic Pressure too low",
+                "Critical Threshold Alert - Hypotensive Hypoxemia Alert",
+                "Decreasing Trend Alert in Saturation"), conditions);
+    }
+
+    @Test
+    public void testDefaultThresholdsAreReadFromTheTable() {
+        AlertRuleTable rules = AlertRuleTable.getDefaults();
+        assertEquals(60, rules.getThreshold(RecordTypeRegistry.DIASTOLIC_PRESSURE, true));
+        assertEquals(120, rules.getThreshold(RecordTypeRegistry.DIASTOLIC_PRESSURE, false));
+        assertEquals(90, rules.getThreshold(RecordTypeRegistry.SYSTOLIC_PRESSURE, true));
+        assertEquals(180, rules.getThreshold(RecordTypeRegistry.SYSTOLIC_PRESSURE, false));
+        assertEquals(10, rules.getTrendStep(RecordTypeRegistry.DIASTOLIC_PRESSURE));
+        assertEquals(3, rules.getTrendCount(RecordTypeRegistry.DIASTOLIC_PRESSURE));
+        assertEquals(50, rules.getRateThreshold(RecordTypeRegistry.ECG, true));
+        assertEquals(100, rules.getRateThreshold(RecordTypeRegistry.ECG, false));
+        assertEquals(5, rules.getDropAmount(RecordTypeRegistry.SATURATION));
+        assertEquals(600_000, rules.getDropWindowMillis(RecordTypeRegistry.SATURATION));
+        assertEquals(92, rules.getConjunctionBound(RecordTypeRegistry.SATURATION,
+                RecordTypeRegistry.SYSTOLIC_PRESSURE));
+        assertTrue(Double.isNaN(rules.getThreshold(RecordTypeRegistry.CHOLESTEROL, false)));
+    }
+
+    @Test
+    public void testReloadSwapsRulesAndKeepsThemWhenTheFileIsBroken(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("rules.properties");
+        Files.writeString(file, "rule.high.type=threshold\nrule.high.record=Cholesterol\nrule.high.above=240\n"
+                + "rule.high.condition=High cholesterol\n");
+        List<Alert> alerts = new ArrayList<>();
+        try (AlertRuleConfig config = new AlertRuleConfig(file)) {
+            IncrementalAlertEngine engine = new IncrementalAlertEngine(List.of(config::newRule), alerts::add);
+            engine.visit(1, RecordTypeRegistry.CHOLESTEROL, 1000L, 220);
+            assertTrue(alerts.isEmpty());
+
+            Files.writeString(file, "rule.high.type=threshold\nrule.high.record=Cholesterol\nrule.high.above=200\n"
+                    + "rule.high.condition=High cholesterol\n");
+            Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+            assertTrue(config.reload());
+            assertFalse(config.reload(), "An unchanged file is not compiled again");
+            engine.visit(1, RecordTypeRegistry.CHOLESTEROL, 2000L, 220);
+            assertEquals(1, alerts.size());
+            assertEquals("High cholesterol", alerts.get(0).getCondition());
+
+            Files.writeString(file, "rule.high.type=threshold\nrule.high.record=Cholesterol\nrule.high.abve=200\n"
+                    + "rule.high.condition=High cholesterol\n");
+            Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+            assertThrows(IllegalArgumentException.class, config::reload);
+            engine.visit(1, RecordTypeRegistry.CHOLESTEROL, 3000L, 220);
+            assertEquals(2, alerts.size(), "The last good rules stay in effect");
+        }
+    }
+}
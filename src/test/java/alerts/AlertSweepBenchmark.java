@@ -0,0 +1,62 @@
+package alerts;
+
+import java.util.Random;
+
+import com.alerts.Alert;
+import com.alerts.AlertGenerator;
+import com.alerts.BloodPressureEvaluator;
+import com.alerts.SweepResult;
+import com.data_management.DataStorage;
+import com.data_management.RecordTypeRegistry;
+
+/**
+ * Standalone benchmark that sweeps 50,000 patients with AlertGenerator,
+ * single-threaded and on one thread per processor, and reports the sweep
+ * latency and throughput.
+ * Run with: java -cp target/classes:target/test-classes alerts.AlertSweepBenchmark
+ */
+public class AlertSweepBenchmark {
+
+    private static final int PATIENTS = 50_000;
+    private static final int RECORDS_PER_TYPE = 60;
+    private static final int SWEEPS = 20;
+
+    public static void main(String[] args) {
+        DataStorage storage = new DataStorage();
+        Random random = new Random(42);
+        long start = 1714376789000L;
+        for (int patientId = 1; patientId <= PATIENTS; patientId++) {
+            for (int i = 0; i < RECORDS_PER_TYPE; i++) {
+                long timestamp = start + i * 1000L;
+                storage.addPatientData(patientId, 90 + random.nextInt(10), RecordTypeRegistry.SATURATION, timestamp);
+                storage.addPatientData(patientId, 60 + random.nextInt(40), RecordTypeRegistry.DIASTOLIC_PRESSURE, timestamp);
+            }
+        }
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int parallelism : new int[] { 1, processors }) {
+            try (AlertGenerator generator = new AlertGenerator(storage, alert -> { }, parallelism)) {
+                generator.addStrategy(patient -> {
+                    Alert alert = BloodPressureEvaluator.evaluateBloodPressure(patient, "DiastolicPressure");
+                    if (alert != null) {
+                        generator.triggerAlert(alert);
+                    }
+                });
+                generator.addStrategy(patient -> {
+                    if (patient.getLatestValue(RecordTypeRegistry.SATURATION) < 92) {
+                        generator.triggerAlert(new Alert(Integer.toString(patient.getPatientId()),
+                                "Critical Threshold Alert - Saturation too low", start));
+                    }
+                });
+                long alerts = 0;
+                for (int i = 0; i < SWEEPS; i++) {
+                    SweepResult result = generator.evaluateAll();
+                    alerts += result.getAlerts().size();
+                }
+                System.out.printf("threads=%d  mean sweep=%6.1f ms  max sweep=%6.1f ms  %,.0f patients/s  (%d alerts)%n",
+                        parallelism, generator.getMeanSweepNanos() / 1e6, generator.getMaxSweepNanos() / 1e6,
+                        PATIENTS * 1e9 / generator.getMeanSweepNanos(), alerts);
+            }
+        }
+    }
+}
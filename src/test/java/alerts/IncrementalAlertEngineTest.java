@@ -0,0 +1,81 @@
+package alerts;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.alerts.Alert;
+import com.alerts.IncrementalAlertEngine;
+import com.data_management.RecordTypeRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class IncrementalAlertEngineTest {
+
+    @Test
+    public void testSaturationAlertsUseEachPatientsOwnState() {
+        List<Alert> alerts = new ArrayList<>();
+        IncrementalAlertEngine engine = new IncrementalAlertEngine(alerts::add);
+        long start = 1714376789000L;
+
+        engine.visit(1, RecordTypeRegistry.SYSTOLIC_PRESSURE, start, 85);
+        assertEquals(1, alerts.size());
+        assertEquals("Critical Threshold Alert - Systolic Pressure too low", alerts.get(0).getCondition());
+        alerts.clear();
+        engine.visit(1, RecordTypeRegistry.SATURATION, start, 98);
+        engine.visit(1, RecordTypeRegistry.SATURATION, start + 60_000, 95);
+        engine.visit(2, RecordTypeRegistry.SATURATION, start + 60_000, 97);
+        assertTrue(alerts.isEmpty(), "No alert before the saturation drops");
+
+        engine.visit(1, RecordTypeRegistry.SATURATION, start + 120_000, 91);
+        assertEquals(2, alerts.size());
+        assertEquals("Critical Threshold Alert - Hypotensive Hypoxemia Alert", alerts.get(0).getCondition());
+        assertEquals(start + 120_000, alerts.get(0).getTimestamp());
+        assertEquals("Decreasing Trend Alert in Saturation", alerts.get(1).getCondition());
+        assertEquals(start + 120_000, alerts.get(1).getTimestamp());
+
+        // Patient 2 has no low systolic pressure and no reading 5% higher in the window
+        alerts.clear();
+        engine.visit(2, RecordTypeRegistry.SATURATION, start + 20 * 60_000, 91);
+        assertEquals(1, alerts.size());
+        assertEquals("2", alerts.get(0).getPatientId());
+        assertEquals("Critical Threshold Alert - Saturation too low", alerts.get(0).getCondition());
+        assertEquals(2, engine.getPatientCount());
+    }
+
+    @Test
+    public void testDiastolicAlertsComeFromTheLatestReadings() {
+        List<Alert> alerts = new ArrayList<>();
+        IncrementalAlertEngine engine = new IncrementalAlertEngine(alerts::add);
+        long start = 1714376789000L;
+
+        engine.visit(1, RecordTypeRegistry.DIASTOLIC_PRESSURE, start, 125);
+        assertEquals(1, alerts.size());
+        assertEquals("Critical Threshold Alert - Diastolic Pressure too high", alerts.get(0).getCondition());
+
+        engine.resetPatient(1);
+        alerts.clear();
+        engine.visit(1, RecordTypeRegistry.DIASTOLIC_PRESSURE, start + 1000, 85);
+        engine.visit(1, RecordTypeRegistry.DIASTOLIC_PRESSURE, start + 2000, 74);
+        engine.visit(1, RecordTypeRegistry.DIASTOLIC_PRESSURE, start + 3000, 63);
+        assertEquals(1, alerts.size());
+        assertEquals("Decreasing Trend Alert in Diastolic Pressure", alerts.get(0).getCondition());
+        assertEquals(start + 3000, alerts.get(0).getTimestamp());
+    }
+
+    @Test
+    public void testEcgRecordsWithEqualTimestampsGiveNoRate() {
+        List<Alert> alerts = new ArrayList<>();
+        IncrementalAlertEngine engine = new IncrementalAlertEngine(alerts::add);
+        long start = 1714376789000L;
+
+        // 75 bpm throughout, with a duplicate beat that must not count as an infinite rate
+        engine.visit(1, RecordTypeRegistry.ECG, start, 0.5);
+        engine.visit(1, RecordTypeRegistry.ECG, start + 800, 0.5);
+        engine.visit(1, RecordTypeRegistry.ECG, start + 800, 0.6);
+        for (int i = 2; i < 10; i++) {
+            engine.visit(1, RecordTypeRegistry.ECG, start + i * 800, 0.5);
+        }
+        assertTrue(alerts.isEmpty(), "A steady heart rate raises no alert");
+    }
+}
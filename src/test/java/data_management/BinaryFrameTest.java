@@ -0,0 +1,54 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.data_management.BinaryFrameDecoder;
+import com.data_management.BinaryFrameEncoder;
+import com.data_management.RecordBatch;
+import com.data_management.RecordTypeRegistry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+class BinaryFrameTest {
+
+    @Test
+    void testFramesRoundTripAcrossLabelsAndTimestamps() throws IOException {
+        BinaryFrameEncoder encoder = new BinaryFrameEncoder();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        encoder.add(1, "ECG", 1714376789050L, 0.25);
+        encoder.add(-7, "Saturation", 1714376789040L, 97.0); // negative ID, timestamp going back
+        encoder.writeTo(stream);
+        encoder.add(1, "Saturation", Long.MAX_VALUE, Double.NaN);
+        encoder.writeTo(stream);
+
+        BinaryFrameDecoder decoder = new BinaryFrameDecoder(new ByteArrayInputStream(stream.toByteArray()));
+        RecordBatch batch = new RecordBatch(4);
+        assertEquals(2, decoder.readFrame(batch));
+        assertEquals(1, decoder.readFrame(batch));
+        assertEquals(-1, decoder.readFrame(batch));
+
+        assertEquals(-7, batch.getPatientId(1));
+        assertEquals(1714376789040L, batch.getTimestamp(1));
+        assertEquals(RecordTypeRegistry.SATURATION, batch.getRecordTypeCode(2));
+        assertEquals(Long.MAX_VALUE, batch.getTimestamp(2));
+        assertTrue(Double.isNaN(batch.getValue(2)));
+        assertEquals(0.25, batch.getValue(0));
+    }
+
+    @Test
+    void testTruncatedFrameIsRejected() throws IOException {
+        BinaryFrameEncoder encoder = new BinaryFrameEncoder();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        encoder.add(1, "ECG", 1714376789050L, 0.25);
+        encoder.writeTo(stream);
+        byte[] truncated = Arrays.copyOf(stream.toByteArray(), stream.size() - 1);
+
+        BinaryFrameDecoder decoder = new BinaryFrameDecoder(new ByteArrayInputStream(truncated));
+        assertThrows(EOFException.class, () -> decoder.readFrame(new RecordBatch(1)));
+    }
+}
@@ -0,0 +1,109 @@
+package data_management;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import com.data_management.BinaryFrameDecoder;
+import com.data_management.BinaryFrameEncoder;
+import com.data_management.RecordBatch;
+import com.data_management.RecordLineParser;
+
+/**
+ * Standalone benchmark comparing the text lines sent by TcpOutputStrategy with
+ * the binary frames sent by TcpBinaryOutputStrategy: bytes on the wire per
+ * record, and the CPU time per record to encode and to decode a simulator-like
+ * stream of records.
+ * Run with: java -cp target/classes:target/test-classes data_management.BinaryWireBenchmark
+ */
+public class BinaryWireBenchmark {
+
+    private static final int PATIENTS = 50;
+    private static final int RECORDS = 2_000_000;
+    private static final int FRAME_RECORDS = 512;
+    private static final String[] LABELS = { "ECG", "Saturation", "SystolicPressure", "DiastolicPressure" };
+
+    public static void main(String[] args) throws IOException {
+        int[] patientIds = new int[RECORDS];
+        long[] timestamps = new long[RECORDS];
+        String[] labels = new String[RECORDS];
+        String[] data = new String[RECORDS];
+        Random random = new Random(42);
+        for (int i = 0; i < RECORDS; i++) {
+            patientIds[i] = random.nextInt(PATIENTS) + 1;
+            timestamps[i] = 1714376789000L + i / 10;
+            labels[i] = LABELS[i % LABELS.length];
+            data[i] = i % 4 == 1 ? (95 + random.nextInt(6)) + ".0%" : Double.toString(random.nextGaussian() * 20 + 80);
+        }
+
+        for (int round = 0; round < 3; round++) {
+            long begin = System.nanoTime();
+            ByteArrayOutputStream text = new ByteArrayOutputStream();
+            for (int i = 0; i < RECORDS; i++) {
+                String message = String.format("%d,%d,%s,%s%n", patientIds[i], timestamps[i], labels[i], data[i]);
+                text.write(message.getBytes(StandardCharsets.UTF_8));
+            }
+            long textEncodeNanos = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            ByteArrayOutputStream binary = new ByteArrayOutputStream();
+            BinaryFrameEncoder encoder = new BinaryFrameEncoder();
+            for (int i = 0; i < RECORDS; i++) {
+                encoder.add(patientIds[i], labels[i], timestamps[i], RecordLineParser.parseValue(data[i]));
+                if (encoder.size() == FRAME_RECORDS) {
+                    encoder.writeTo(binary);
+                }
+            }
+            encoder.writeTo(binary);
+            long binaryEncodeNanos = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            long textRecords = decodeText(text.toByteArray());
+            long textDecodeNanos = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            long binaryRecords = decodeBinary(binary.toByteArray());
+            long binaryDecodeNanos = System.nanoTime() - begin;
+
+            System.out.printf("round %d  text: %5.1f B/rec  encode %4.0f ns/rec  decode %4.0f ns/rec  (%d)%n", round,
+                    (double) text.size() / RECORDS, (double) textEncodeNanos / RECORDS,
+                    (double) textDecodeNanos / RECORDS, textRecords);
+            System.out.printf("         binary: %5.1f B/rec  encode %4.0f ns/rec  decode %4.0f ns/rec  (%d)%n",
+                    (double) binary.size() / RECORDS, (double) binaryEncodeNanos / RECORDS,
+                    (double) binaryDecodeNanos / RECORDS, binaryRecords);
+        }
+    }
+
+    private static long decodeText(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        RecordLineParser parser = new RecordLineParser();
+        RecordBatch batch = new RecordBatch(FRAME_RECORDS);
+        long records = 0;
+        int position = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                parser.parseLine(buffer, position, i, batch);
+                position = i + 1;
+                if (batch.size() == FRAME_RECORDS) {
+                    records += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        return records + batch.size();
+    }
+
+    private static long decodeBinary(byte[] bytes) throws IOException {
+        BinaryFrameDecoder decoder = new BinaryFrameDecoder(new ByteArrayInputStream(bytes));
+        RecordBatch batch = new RecordBatch(FRAME_RECORDS);
+        long records = 0;
+        while (decoder.readFrame(batch) >= 0) {
+            records += batch.size();
+            batch.clear();
+        }
+        return records;
+    }
+}
@@ -0,0 +1,24 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.data_management.BoundedQueue;
+
+class BoundedQueueTest {
+
+    @Test
+    void testFullQueueKeepsItsElements() {
+        BoundedQueue<String> queue = new BoundedQueue<>(1);
+        int capacity = queue.capacity();
+        for (int i = 0; i < capacity; i++) {
+            assertTrue(queue.offer("element " + i));
+        }
+        assertFalse(queue.offer("overflow"), "A full queue rejects new elements");
+
+        for (int i = 0; i < capacity; i++) {
+            assertEquals("element " + i, queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+}
@@ -0,0 +1,74 @@
+package data_management;
+
+import java.util.Random;
+
+import com.data_management.DataStorage;
+import com.data_management.RecordVisitor;
+import com.data_management.StorageConfig;
+
+/**
+ * Standalone benchmark comparing the memory use and read speed of uncompressed
+ * series with series sealed into compressed blocks.
+ * Every patient reports four vital signs once per second with a little timing
+ * jitter, and values that drift by a step or two between samples.
+ * Run with: java -cp target/classes:target/test-classes data_management.CompressionBenchmark
+ */
+public class CompressionBenchmark {
+
+    private static final int PATIENTS = 10;
+    private static final int SECONDS = 24 * 60 * 60;
+    private static final String[] RECORD_TYPES = { "Saturation", "SystolicPressure", "DiastolicPressure", "ECG" };
+    private static final double[] BASELINES = { 97, 120, 80, 0.2 };
+    private static final long START = 1700000000000L;
+
+    public static void main(String[] args) {
+        for (int blockSize : new int[] { 0, 256, 1024 }) {
+            StorageConfig config = new StorageConfig();
+            config.setCompressionBlockSize(blockSize);
+            DataStorage storage = new DataStorage(config);
+            fill(storage);
+
+            long records = storage.getResidentRecordCount();
+            double bytesPerRecord = (double) storage.getResidentBytes() / records;
+
+            double[] checksum = new double[1];
+            RecordVisitor visitor = (patientId, recordTypeCode, timestamp, value) -> checksum[0] += value;
+            storage.forEachRecord(0, Long.MAX_VALUE, visitor); // Warm up
+            long begin = System.nanoTime();
+            long visited = storage.forEachRecord(0, Long.MAX_VALUE, visitor);
+            double scanSeconds = (System.nanoTime() - begin) / 1e9;
+
+            begin = System.nanoTime();
+            int windows = 0;
+            for (int patientId = 0; patientId < PATIENTS; patientId++) {
+                for (long hour = 0; hour < 24; hour++) {
+                    long from = START + hour * 3_600_000L;
+                    windows += storage.getRecords(patientId, from, from + 3_599_999L).size();
+                }
+            }
+            double windowSeconds = (System.nanoTime() - begin) / 1e9;
+
+            System.out.printf("block=%4d  %6.2f bytes/record  scan %,12.0f records/s  getRecords %,12.0f records/s"
+                    + "  (%d, %d, %.0f)%n", blockSize, bytesPerRecord, visited / scanSeconds,
+                    windows / windowSeconds, visited, windows, checksum[0]);
+        }
+    }
+
+    private static void fill(DataStorage storage) {
+        Random random = new Random(42);
+        for (int patientId = 0; patientId < PATIENTS; patientId++) {
+            double[] current = BASELINES.clone();
+            for (int second = 0; second < SECONDS; second++) {
+                long timestamp = START + second * 1000L + random.nextInt(3);
+                for (int type = 0; type < RECORD_TYPES.length; type++) {
+                    if (type == 3) {
+                        current[type] = Math.round(random.nextGaussian() * 100) / 100.0;
+                    } else {
+                        current[type] += random.nextInt(5) - 2;
+                    }
+                    storage.addPatientData(patientId, current[type], RECORD_TYPES[type], timestamp);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package data_management;
+
+import java.util.concurrent.CountDownLatch;
+
+import com.data_management.DataStorage;
+
+/**
+ * Standalone benchmark measuring how DataStorage ingest throughput scales with
+ * the number of writer threads.
+ * Every thread writes to its own set of patients, which is how the WebSocket
+ * client and file readers share the storage in practice.
+ * Run with: java -cp target/classes:target/test-classes data_management.ConcurrentIngestBenchmark
+ */
+public class ConcurrentIngestBenchmark {
+
+    private static final int PATIENTS = 4096;
+    private static final int RECORDS_PER_PATIENT = 500;
+    private static final String[] RECORD_TYPES = { "ECG", "Saturation", "SystolicPressure", "DiastolicPressure" };
+
+    public static void main(String[] args) throws InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        // Warm up the JIT before measuring
+        runIngest(cores);
+
+        double baseline = 0;
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            double throughput = runIngest(threads);
+            if (threads == 1) {
+                baseline = throughput;
+            }
+            System.out.printf("threads=%2d  %,14.0f records/s  speedup=%.2fx%n", threads, throughput,
+                    throughput / baseline);
+        }
+    }
+
+    /**
+     * Ingests the full data set into a fresh storage using the given number of
+     * writer threads.
+     *
+     * @param threads the number of writer threads
+     * @return the measured throughput in records per second
+     * @throws InterruptedException if the benchmark is interrupted
+     */
+    private static double runIngest(int threads) throws InterruptedException {
+        DataStorage storage = new DataStorage();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int first = t * PATIENTS / threads;
+            int last = (t + 1) * PATIENTS / threads;
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int record = 0; record < RECORDS_PER_PATIENT; record++) {
+                        long timestamp = 1700000000000L + record * 1000L;
+                        for (int patientId = first; patientId < last; patientId++) {
+                            String type = RECORD_TYPES[record % RECORD_TYPES.length];
+                            storage.addPatientData(patientId, 90 + (record % 10), type, timestamp);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        return (double) PATIENTS * RECORDS_PER_PATIENT / (elapsed / 1e9);
+    }
+}
@@ -2,11 +2,24 @@ package data_management;
 
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import com.data_management.AggregateResult;
+import com.data_management.ColdSegment;
+import com.data_management.ColdTier;
 import com.data_management.DataStorage;
+import com.data_management.FsyncPolicy;
 import com.data_management.PatientRecord;
+import com.data_management.RecordBatch;
+import com.data_management.RecordTypeRegistry;
+import com.data_management.StorageConfig;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 class DataStorageTest {
 
@@ -22,4 +35,310 @@ class DataStorageTest {
         assertEquals(2, records.size()); // Check if two records are retrieved
         assertEquals(100.0, records.get(0).getMeasurementValue()); // Validate first record
     }
+
+    @Test
+    void testConcurrentWritesToSamePatient() throws InterruptedException {
+        DataStorage storage = new DataStorage();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    storage.addPatientData(1, i, "Saturation", i * 4L + offset);
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        List<PatientRecord> records = storage.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(4000, records.size()); // No write may be lost
+        for (int i = 1; i < records.size(); i++) {
+            assertTrue(records.get(i - 1).getTimestamp() <= records.get(i).getTimestamp());
+        }
+    }
+
+    @Test
+    void testDuplicateRecordsAreCountedAndDropped() {
+        StorageConfig config = new StorageConfig();
+        config.setDedupWindowMillis(1000);
+        DataStorage storage = new DataStorage(config);
+        storage.addPatientData(1, 98.0, "Saturation", 1714376789050L);
+        storage.addPatientData(1, 98.0, "Saturation", 1714376789050L); // duplicate
+        storage.addPatientData(1, 97.0, "Saturation", 1714376789050L); // different value
+        storage.addPatientData(1, 98.0, "ECG", 1714376789050L); // different type
+
+        assertEquals(3, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+        assertEquals(1, storage.getDuplicateRecordCount());
+    }
+
+    @Test
+    void testRetentionEvictsOldRecordsPerType() {
+        StorageConfig config = new StorageConfig();
+        config.setRetentionMillis("ECG", 10_000);
+        DataStorage storage = new DataStorage(config);
+        for (int i = 0; i < 60; i++) {
+            storage.addPatientData(1, i, "ECG", i * 1000L);
+            storage.addPatientData(1, i, "Cholesterol", i * 1000L);
+        }
+
+        assertEquals(11, storage.getSeries(1, "ECG", 0, Long.MAX_VALUE).size()); // 49s..59s
+        assertEquals(60, storage.getSeries(1, "Cholesterol", 0, Long.MAX_VALUE).size()); // unbounded
+        assertEquals(71, storage.getResidentRecordCount());
+        assertTrue(storage.getResidentBytes() > 0);
+
+        assertEquals(11, storage.evictExpired(100_000L)); // the patient stopped sending ECG data
+        assertEquals(60, storage.getResidentRecordCount());
+    }
+
+    @Test
+    void testWriteAheadLogRestoresRecordsAfterRestart(@TempDir Path walDirectory) throws IOException {
+        StorageConfig config = new StorageConfig();
+        config.setWalDirectory(walDirectory);
+        config.setFsyncPolicy(FsyncPolicy.PER_BATCH);
+        try (DataStorage storage = new DataStorage(config)) {
+            storage.addPatientData(1, 98.0, "Saturation", 1714376789050L);
+            storage.addPatientData(1, 120.0, "SystolicPressure", 1714376789051L);
+            storage.addPatientData(2, 0.5, "ECG", 1714376789052L);
+        }
+
+        try (DataStorage restarted = new DataStorage(config)) {
+            List<PatientRecord> records = restarted.getRecords(1, 0, Long.MAX_VALUE);
+            assertEquals(2, records.size());
+            assertEquals("SystolicPressure", records.get(1).getRecordType());
+            assertEquals(120.0, records.get(1).getMeasurementValue());
+            assertEquals(1, restarted.getRecords(2, 0, Long.MAX_VALUE).size());
+        }
+    }
+
+    @Test
+    void testSnapshotCoversRecordsAndLogHoldsTheRest(@TempDir Path directory) throws IOException {
+        StorageConfig config = new StorageConfig();
+        config.setWalDirectory(directory.resolve("wal"));
+        config.setSnapshotFile(directory.resolve("storage.snap"));
+        try (DataStorage storage = new DataStorage(config)) {
+            storage.addPatientData(1, 98.0, "Saturation", 1714376789050L);
+            storage.addPatientData(1, 97.0, "Saturation", 1714376789150L);
+            storage.writeSnapshot(config.getSnapshotFile());
+            storage.addPatientData(1, 96.0, "Saturation", 1714376789250L);
+        }
+
+        try (DataStorage restarted = new DataStorage(config)) {
+            List<PatientRecord> records = restarted.getRecords(1, 0, Long.MAX_VALUE);
+            assertEquals(3, records.size());
+            assertEquals(96.0, records.get(2).getMeasurementValue());
+            assertEquals(0, restarted.getDuplicateRecordCount());
+        }
+    }
+
+    @Test
+    void testSnapshotAfterCloseLeavesTheLogAlone(@TempDir Path directory) throws IOException {
+        StorageConfig config = new StorageConfig();
+        config.setWalDirectory(directory.resolve("wal"));
+        DataStorage storage = new DataStorage(config);
+        storage.addPatientData(1, 98.0, "Saturation", 1714376789050L);
+        storage.close();
+
+        long segments;
+        try (Stream<Path> files = Files.list(directory.resolve("wal"))) {
+            segments = files.count();
+        }
+        assertThrows(IOException.class, () -> storage.writeSnapshot(directory.resolve("storage.snap")));
+        try (Stream<Path> files = Files.list(directory.resolve("wal"))) {
+            assertEquals(segments, files.count(), "A closed log starts no new segment");
+        }
+    }
+
+    @Test
+    void testAggregateCombinesBucketsAndRawEdges() {
+        DataStorage storage = new DataStorage();
+        long start = 1714348800000L; // midnight UTC
+        // One reading every 10 minutes for two days
+        for (int i = 0; i < 288; i++) {
+            storage.addPatientData(1, 100 + i % 8, "SystolicPressure", start + i * 600_000L);
+        }
+
+        AggregateResult all = storage.aggregate(1, "SystolicPressure", 0, Long.MAX_VALUE);
+        assertEquals(288, all.getCount());
+        assertEquals(103.5, all.getMean(), 1e-9);
+        assertEquals(100.0, all.getMin());
+        assertEquals(107.0, all.getMax());
+
+        // Starts and ends mid-hour, so hour and minute buckets and raw records are combined
+        AggregateResult window = storage.aggregate(1, "SystolicPressure", start + 1_500_000L, start + 90_000_000L);
+        assertEquals(148, window.getCount());
+        assertEquals(0, storage.aggregate(2, "SystolicPressure", 0, Long.MAX_VALUE).getCount());
+    }
+
+    @Test
+    void testVisitorWalksRecordsAndTotalsStayCurrent() {
+        StorageConfig config = new StorageConfig();
+        config.setRetentionMillis("ECG", 1_000L);
+        DataStorage storage = new DataStorage(config);
+        for (int i = 0; i < 10; i++) {
+            storage.addPatientData(i % 2, 0.5, "ECG", 1714376789000L + i * 500L);
+            storage.addPatientData(i % 2, 97.0, "Saturation", 1714376789000L + i * 500L);
+        }
+        assertEquals(14, storage.getTotalNumberOfRecords()); // older ECG readings expired
+
+        double[] saturationSum = new double[1];
+        long visited = storage.forEachRecord(0, Long.MAX_VALUE, (patientId, typeCode, timestamp, value) -> {
+            if (typeCode == RecordTypeRegistry.SATURATION) {
+                saturationSum[0] += value;
+            }
+        });
+        assertEquals(14, visited);
+        assertEquals(970.0, saturationSum[0]);
+        assertEquals(7, storage.forEachRecord(1, 0, Long.MAX_VALUE, (patientId, typeCode, timestamp, value) -> {
+        }));
+    }
+
+    @Test
+    void testFindPatientsByLatestValue() {
+        DataStorage storage = new DataStorage();
+        storage.addPatientData(1, 90.0, "Saturation", 1714376789000L);
+        storage.addPatientData(1, 97.0, "Saturation", 1714376790000L); // recovered
+        storage.addPatientData(2, 91.5, "Saturation", 1714376790000L);
+        storage.addPatientData(2, 99.0, "Saturation", 1714376780000L); // late, older reading
+        storage.addPatientData(3, 92.0, "Saturation", 1714376790000L);
+        storage.addPatientData(4, 85.0, "SystolicPressure", 1714376790000L);
+
+        assertArrayEquals(new int[] { 2 }, storage.findPatientsInRange("Saturation", Double.NEGATIVE_INFINITY, 92));
+        assertArrayEquals(new int[] { 3, 1 }, storage.findPatientsInRange("Saturation", 92, 100));
+        assertArrayEquals(new int[] { 4 }, storage.findPatientsInRange("SystolicPressure", 0, 90));
+        assertEquals(91.5, storage.getLatestValue(2, "Saturation"));
+        assertTrue(Double.isNaN(storage.getLatestValue(4, "Saturation")));
+    }
+
+    @Test
+    void testExpiredRecordsMoveToColdStorage(@TempDir Path directory) throws IOException {
+        StorageConfig config = new StorageConfig();
+        config.setRetentionMillis("ECG", 60_000L);
+        config.setColdStorageDirectory(directory.resolve("cold"));
+        config.setColdSegmentRecords(100);
+        DataStorage storage = new DataStorage(config);
+        for (int i = 0; i < 600; i++) {
+            storage.addPatientData(1, i, "ECG", 1714376789000L + i * 1000L);
+        }
+        assertEquals(61, storage.getResidentRecordCount()); // the last minute stays in memory
+
+        List<PatientRecord> records = storage.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(600, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(i, records.get(i).getMeasurementValue());
+        }
+        assertEquals(11, storage.getRecords(1, 1714376789000L + 100_000L, 1714376789000L + 110_000L).size());
+        assertEquals(600, storage.getTotalNumberOfRecords());
+        AggregateResult all = storage.aggregate(1, "ECG", 0, Long.MAX_VALUE);
+        assertEquals(600, all.getCount());
+        assertEquals(599 * 600 / 2, all.getSum());
+        assertEquals(0, all.getMin());
+        assertEquals(599, all.getMax());
+        assertEquals(100, storage.aggregate(1, "ECG", 1714376789000L + 500_000L, Long.MAX_VALUE).getCount());
+        storage.close();
+
+        // Only the segments are left: reopening finds the patient and its history
+        StorageConfig coldOnly = new StorageConfig();
+        coldOnly.setColdStorageDirectory(directory.resolve("cold"));
+        DataStorage reopened = new DataStorage(coldOnly);
+        assertEquals(539, reopened.getRecords(1, 0, Long.MAX_VALUE).size());
+        assertEquals(539, reopened.getTotalNumberOfRecords());
+        assertEquals(539, reopened.aggregate(1, "ECG", 0, Long.MAX_VALUE).getCount());
+    }
+
+    @Test
+    void testColdSegmentsAreCompacted(@TempDir Path directory) throws IOException {
+        StorageConfig config = new StorageConfig();
+        config.setRetentionMillis("ECG", 60_000L);
+        config.setColdStorageDirectory(directory.resolve("cold"));
+        config.setColdSegmentRecords(10);
+        DataStorage storage = new DataStorage(config);
+        for (int i = 0; i < 2000; i++) {
+            storage.addPatientData(1, i, "ECG", 1714376789000L + i * 1000L);
+        }
+        storage.close();
+
+        // 193 full buffers were written, but merging keeps only a handful of segments
+        try (Stream<Path> files = Files.list(directory.resolve("cold"))) {
+            assertTrue(files.count() <= 3 * ColdTier.MERGE_FACTOR);
+        }
+        StorageConfig coldOnly = new StorageConfig();
+        coldOnly.setColdStorageDirectory(directory.resolve("cold"));
+        List<PatientRecord> records = new DataStorage(coldOnly).getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(1939, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(i, records.get(i).getMeasurementValue());
+        }
+    }
+
+    @Test
+    void testColdSegmentWithManyRecordTypes(@TempDir Path directory) throws IOException {
+        StorageConfig config = new StorageConfig();
+        config.setColdStorageDirectory(directory.resolve("cold"));
+        config.setDefaultRetentionMillis(0);
+        config.setColdSegmentRecords(200);
+        DataStorage storage = new DataStorage(config);
+        for (int i = 0; i < 200; i++) {
+            // The second record of each type pushes the first one to disk
+            storage.addPatientData(1, i, "ColdType" + i, 1714376789000L + i);
+            storage.addPatientData(1, i, "ColdType" + i, 1714376790000L + i);
+        }
+        storage.close();
+
+        StorageConfig coldOnly = new StorageConfig();
+        coldOnly.setColdStorageDirectory(directory.resolve("cold"));
+        List<PatientRecord> records = new DataStorage(coldOnly).getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(200, records.size());
+        assertEquals("ColdType150", records.get(150).getRecordType());
+    }
+
+    @Test
+    void testColdSegmentsWithTooManyRecordTypesTogetherAreNotMerged(@TempDir Path directory) throws IOException {
+        int types = ColdSegment.MAX_RECORD_TYPES + ColdTier.MERGE_FACTOR;
+        StorageConfig config = new StorageConfig();
+        config.setColdStorageDirectory(directory.resolve("cold"));
+        config.setDefaultRetentionMillis(0);
+        config.setColdSegmentRecords(types / ColdTier.MERGE_FACTOR);
+        DataStorage storage = new DataStorage(config);
+        for (int i = 0; i < types; i++) {
+            // Every segment fits, but the segments of one merge hold more types than one segment can
+            storage.addPatientData(1, i, "ColdType" + i, 1714376789000L + i);
+            storage.addPatientData(1, i, "ColdType" + i, 1714376790000L + i);
+        }
+        storage.close();
+
+        try (Stream<Path> files = Files.list(directory.resolve("cold"))) {
+            assertEquals(ColdTier.MERGE_FACTOR, files.count());
+        }
+        StorageConfig coldOnly = new StorageConfig();
+        coldOnly.setColdStorageDirectory(directory.resolve("cold"));
+        DataStorage reopened = new DataStorage(coldOnly);
+        List<PatientRecord> records = reopened.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(types, records.size());
+        assertEquals("ColdType" + (types - 1), records.get(types - 1).getRecordType());
+    }
+
+    @Test
+    void testBatchInsertGroupsByPatientAndDropsDuplicates() {
+        StorageConfig config = new StorageConfig();
+        config.setDedupWindowMillis(1000);
+        DataStorage storage = new DataStorage(config);
+        storage.addPatientData(2, 95.0, "Saturation", 1714376789000L);
+
+        RecordBatch batch = new RecordBatch(2);
+        int saturation = RecordTypeRegistry.codeOf("Saturation");
+        for (int i = 0; i < 10; i++) {
+            batch.add(i % 3 + 1, 90.0 + i, saturation, 1714376789001L + i);
+        }
+        batch.add(2, 95.0, saturation, 1714376789000L); // duplicate of the earlier record
+        storage.addPatientData(batch);
+
+        assertEquals(4, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+        assertEquals(4, storage.getRecords(2, 0, Long.MAX_VALUE).size());
+        assertEquals(3, storage.getRecords(3, 0, Long.MAX_VALUE).size());
+        assertEquals(1, storage.getDuplicateRecordCount());
+    }
 }
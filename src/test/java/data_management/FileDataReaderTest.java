@@ -0,0 +1,97 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.data_management.DataStorage;
+import com.data_management.FileDataReader;
+import com.data_management.FileFollower;
+import com.data_management.PatientRecord;
+import com.data_management.RecordBatch;
+import com.data_management.RecordLineParser;
+import com.data_management.RecordTypeRegistry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+class FileDataReaderTest {
+
+    @Test
+    void testReadsCsvAndSimulatorOutput(@TempDir Path directory) throws IOException {
+        Files.writeString(directory.resolve("records.csv"),
+                "1,1714376789050,ECG,0.25\r\n"
+                        + "not a record\n"
+                        + "1,1714376789051,Saturation,97.5%\n");
+        Files.writeString(directory.resolve("Alert.txt"),
+                "Patient ID: 1, Timestamp: 1714376789052, Label: Alert, Data: triggered\n"
+                        + "Patient ID: 1, Timestamp: 1714376789053, Label: Alert, Data: resolved");
+        DataStorage storage = new DataStorage();
+        new FileDataReader(directory.toString()).readData(storage);
+
+        List<PatientRecord> records = storage.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(4, records.size()); // the invalid line is skipped
+        assertEquals(0.25, records.get(0).getMeasurementValue());
+        assertEquals(97.5, records.get(1).getMeasurementValue());
+        assertEquals("Alert", records.get(2).getRecordType());
+        assertEquals(RecordLineParser.TRIGGERED, records.get(2).getMeasurementValue());
+        assertEquals(RecordLineParser.RESOLVED, records.get(3).getMeasurementValue());
+    }
+
+    @Test
+    void testParserRegistersLabelsOnlyForValidLines() {
+        RecordLineParser parser = new RecordLineParser();
+        RecordBatch batch = new RecordBatch(64);
+        ByteBuffer junk = ByteBuffer.wrap("1,2,ParserJunkLabel,abc".getBytes(StandardCharsets.US_ASCII));
+        assertFalse(parser.parseLine(junk, 0, junk.limit(), batch));
+        assertEquals(RecordTypeRegistry.UNKNOWN, RecordTypeRegistry.lookup("ParserJunkLabel"));
+
+        // Enough labels to grow the parser's label table, each resolved again from it. They are
+        // registered up front, as other tests may have filled the registry up to its limit
+        for (int i = 0; i < 20; i++) {
+            RecordTypeRegistry.codeOf("ParserLabel" + i);
+        }
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 20; i++) {
+                ByteBuffer line = ByteBuffer.wrap(("1,2,ParserLabel" + i + "," + i).getBytes(StandardCharsets.US_ASCII));
+                assertTrue(parser.parseLine(line, 0, line.limit(), batch));
+            }
+        }
+        assertEquals(40, batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals("ParserLabel" + (i % 20), RecordTypeRegistry.labelOf(batch.getRecordTypeCode(i)));
+            assertEquals(i % 20, batch.getValue(i));
+        }
+    }
+
+    @Test
+    void testFollowReadsAppendedLinesAndResumesFromSavedOffsets(@TempDir Path directory) throws IOException {
+        Path dataDirectory = Files.createDirectory(directory.resolve("data"));
+        Path offsetFile = directory.resolve("offsets.properties");
+        Path file = dataDirectory.resolve("ECG.txt");
+        Files.writeString(file, "1,1714376789050,ECG,0.5\n1,1714376789051,EC");
+        DataStorage storage = new DataStorage();
+        FileDataReader reader = new FileDataReader(dataDirectory.toString());
+
+        try (FileFollower follower = reader.follow(storage, offsetFile)) {
+            follower.scan();
+            assertEquals(1, storage.getRecords(1, 0, Long.MAX_VALUE).size()); // the partial line waits
+            Files.writeString(file, "G,0.6\n", StandardOpenOption.APPEND);
+            follower.scan();
+            assertEquals(2, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+        }
+
+        Files.writeString(file, "1,1714376789052,ECG,0.7\n", StandardOpenOption.APPEND);
+        try (FileFollower follower = reader.follow(storage, offsetFile)) {
+            follower.scan();
+            assertEquals(1, follower.getIngestedRecordCount()); // only the line appended since
+            assertEquals(Files.size(file), follower.getOffset("ECG.txt"));
+        }
+        assertEquals(3, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+    }
+}
@@ -0,0 +1,102 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.data_management.BackpressurePolicy;
+import com.data_management.DataStorage;
+import com.data_management.IngestPipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class IngestPipelineTest {
+
+    @Test
+    void testQueuedMessagesAreEvaluatedOncePerPatient() throws InterruptedException {
+        DataStorage storage = new DataStorage();
+        List<Integer> evaluated = new ArrayList<>();
+        CountDownLatch firstEvaluation = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IngestPipeline pipeline = new IngestPipeline(storage, patient -> {
+            evaluated.add(patient.getPatientId());
+            firstEvaluation.countDown();
+            try {
+                release.await(); // keep the worker busy while the queue fills
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 1024, BackpressurePolicy.BLOCK);
+
+        pipeline.submit("1,1714376789000,Saturation,97.0%");
+        firstEvaluation.await();
+        for (int i = 1; i < 900; i++) {
+            pipeline.submit((i % 3 + 1) + "," + (1714376789000L + i) + ",Saturation,97.0%");
+        }
+        pipeline.submit("not a record");
+        release.countDown();
+        pipeline.close();
+
+        assertEquals(900, storage.getResidentRecordCount());
+        assertEquals(1, pipeline.getInvalidMessageCount());
+        assertEquals(List.of(1, 1, 2, 3), evaluated); // one evaluation per patient of the second batch
+    }
+
+    @Test
+    void testFullQueueDropsNewestMessages() {
+        DataStorage storage = new DataStorage();
+        CountDownLatch release = new CountDownLatch(1);
+        IngestPipeline pipeline = new IngestPipeline(storage, patient -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 4, BackpressurePolicy.DROP_NEWEST);
+
+        int accepted = 0;
+        for (int i = 0; i < 100; i++) {
+            if (pipeline.submit("1," + (1714376789000L + i) + ",ECG,0.5")) {
+                accepted++;
+            }
+        }
+        release.countDown();
+        pipeline.close();
+
+        assertEquals(100 - accepted, pipeline.getDroppedMessageCount());
+        assertEquals(accepted, storage.getResidentRecordCount());
+    }
+
+    @Test
+    void testEveryAcceptedMessageIsProcessedWhenClosedUnderLoad() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            DataStorage storage = new DataStorage();
+            IngestPipeline pipeline = new IngestPipeline(storage, patient -> { }, 64, BackpressurePolicy.BLOCK);
+            AtomicInteger accepted = new AtomicInteger();
+            List<Thread> producers = new ArrayList<>();
+            for (int p = 0; p < 4; p++) {
+                int patientId = p;
+                Thread producer = new Thread(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        if (pipeline.submit(patientId + "," + (1714376789000L + i) + ",ECG,0.5")) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                });
+                producers.add(producer);
+                producer.start();
+            }
+            Thread.sleep(1);
+            pipeline.close();
+            for (Thread producer : producers) {
+                producer.join();
+            }
+
+            assertEquals(accepted.get(), pipeline.getProcessedMessageCount());
+            assertEquals(accepted.get(), storage.getResidentRecordCount());
+            assertEquals(8000 - accepted.get(), pipeline.getDroppedMessageCount());
+        }
+    }
+}
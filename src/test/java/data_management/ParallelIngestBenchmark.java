@@ -0,0 +1,64 @@
+package data_management;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import com.data_management.DataStorage;
+import com.data_management.FileDataReader;
+
+/**
+ * Standalone benchmark comparing sequential CSV ingestion with the parallel
+ * mode of FileDataReader at increasing thread counts. One of the files is much
+ * larger than the others, so it is only spread over the threads by byte range.
+ * Run with: java -cp target/classes:target/test-classes data_management.ParallelIngestBenchmark
+ */
+public class ParallelIngestBenchmark {
+
+    private static final int PATIENTS = 1000;
+    private static final int[] RECORDS_PER_FILE = { 2_000_000, 250_000, 250_000, 250_000 };
+    private static final String[] RECORD_TYPES = { "ECG", "Saturation", "SystolicPressure", "DiastolicPressure" };
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("parallel-ingest-benchmark");
+        try {
+            for (int file = 0; file < RECORDS_PER_FILE.length; file++) {
+                writeCsv(directory.resolve("records-" + file + ".csv"), file, RECORDS_PER_FILE[file]);
+            }
+            int cores = Runtime.getRuntime().availableProcessors();
+            System.out.printf("cores=%d%n", cores);
+            for (int round = 0; round < 3; round++) {
+                for (int threads = 1; threads <= Math.max(2, cores); threads *= 2) {
+                    DataStorage storage = new DataStorage();
+                    long begin = System.nanoTime();
+                    new FileDataReader(directory.toString(), threads).readData(storage);
+                    long nanos = System.nanoTime() - begin;
+                    System.out.printf("round %d  threads=%2d  records=%,d  %,6d ms  %,.0f records/s%n", round, threads,
+                            storage.getResidentRecordCount(), nanos / 1_000_000,
+                            storage.getResidentRecordCount() * 1e9 / nanos);
+                }
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    private static void writeCsv(Path file, int fileIndex, int records) throws IOException {
+        long firstTimestamp = 1700000000000L + fileIndex * 10_000_000_000L;
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int record = 0; record < records; record++) {
+                int patientId = record % PATIENTS + 1;
+                long timestamp = firstTimestamp + record / PATIENTS * 1000L;
+                String type = RECORD_TYPES[record / PATIENTS % RECORD_TYPES.length];
+                double value = 60 + (patientId * 31 + record * 7) % 80 + 0.25;
+                writer.write(patientId + "," + timestamp + "," + type + "," + value);
+                writer.newLine();
+            }
+        }
+    }
+}
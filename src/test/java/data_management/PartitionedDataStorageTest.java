@@ -0,0 +1,59 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.data_management.DataStorage;
+import com.data_management.PartitionedDataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.StorageNode;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class PartitionedDataStorageTest {
+
+    @Test
+    void testRoutesPatientsAndGathersAcrossNodes() throws IOException {
+        List<StorageNode> nodes = new ArrayList<>();
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            StorageNode node = new StorageNode(new DataStorage(), 0, InetAddress.getLoopbackAddress());
+            nodes.add(node);
+            addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), node.getPort()));
+        }
+        try (PartitionedDataStorage storage = new PartitionedDataStorage(addresses)) {
+            for (int patientId = 1; patientId <= 30; patientId++) {
+                storage.addPatientData(patientId, 90 + patientId % 10, "Saturation", 1714376789000L);
+                storage.addPatientData(patientId, 95, "Saturation", 1714376788000L);
+            }
+            storage.flush();
+
+            List<PatientRecord> records = storage.getRecords(7, 0, Long.MAX_VALUE);
+            assertEquals(2, records.size());
+            assertEquals(97.0, records.get(1).getMeasurementValue());
+            assertEquals(60, storage.getResidentRecordCount());
+            assertEquals(30, storage.getAllPatients().size());
+            assertEquals(60, storage.aggregate("Saturation", 0, Long.MAX_VALUE).getCount());
+
+            int[] low = storage.findPatientsInRange("Saturation", 0, 92);
+            Arrays.sort(low);
+            assertArrayEquals(new int[] { 1, 10, 11, 20, 21, 30 }, low);
+            // Every patient lives on exactly one node
+            int stored = 0;
+            for (StorageNode node : nodes) {
+                stored += node.getStorage().getPatientCount();
+                assertTrue(node.getStorage().getPatientCount() > 0);
+            }
+            assertEquals(30, stored);
+        } finally {
+            for (StorageNode node : nodes) {
+                node.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package data_management;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.data_management.DataStorage;
+import com.data_management.PartitionedDataStorage;
+import com.data_management.StorageNode;
+
+/**
+ * Standalone benchmark of ingest throughput through a partitioned storage, for
+ * an increasing number of storage nodes on localhost.
+ * Each node runs in this JVM behind its own TCP port, and several writer
+ * threads share one router, so the gain from more nodes comes from spreading
+ * the connections and the per-node ingestion over more cores.
+ * Run with: java -cp target/classes:target/test-classes data_management.PartitionedStorageBenchmark
+ */
+public class PartitionedStorageBenchmark {
+
+    private static final int WRITERS = 8;
+    private static final int RECORDS_PER_WRITER = 250_000;
+    private static final int PATIENTS = 10_000;
+    private static final String[] RECORD_TYPES = { "Saturation", "SystolicPressure", "DiastolicPressure", "ECG" };
+    private static final long START = 1700000000000L;
+
+    public static void main(String[] args) throws Exception {
+        for (int nodeCount : new int[] { 1, 2, 4 }) {
+            List<StorageNode> nodes = new ArrayList<>();
+            List<InetSocketAddress> addresses = new ArrayList<>();
+            for (int i = 0; i < nodeCount; i++) {
+                StorageNode node = new StorageNode(new DataStorage(), 0, InetAddress.getLoopbackAddress());
+                nodes.add(node);
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), node.getPort()));
+            }
+            try (PartitionedDataStorage storage = new PartitionedDataStorage(addresses)) {
+                long begin = System.nanoTime();
+                Thread[] writers = new Thread[WRITERS];
+                for (int w = 0; w < WRITERS; w++) {
+                    int writer = w;
+                    writers[w] = new Thread(() -> {
+                        for (int i = 0; i < RECORDS_PER_WRITER; i++) {
+                            int patientId = (writer * RECORDS_PER_WRITER + i) % PATIENTS;
+                            long timestamp = START + (long) i * 1000 + writer;
+                            storage.addPatientData(patientId, 90 + i % 10, RECORD_TYPES[i % RECORD_TYPES.length],
+                                    timestamp);
+                        }
+                    });
+                    writers[w].start();
+                }
+                for (Thread writer : writers) {
+                    writer.join();
+                }
+                storage.flush();
+                double seconds = (System.nanoTime() - begin) / 1e9;
+                long stored = storage.getResidentRecordCount();
+                System.out.printf("nodes=%d  %,12.0f records/s  (%,d stored)%n", nodeCount,
+                        WRITERS * (double) RECORDS_PER_WRITER / seconds, stored);
+            } finally {
+                for (StorageNode node : nodes) {
+                    node.close();
+                }
+            }
+        }
+    }
+}
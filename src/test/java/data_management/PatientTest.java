@@ -6,6 +6,9 @@ import org.junit.jupiter.api.Test;
 
 import com.data_management.Patient;
 import com.data_management.PatientRecord;
+import com.data_management.RecordSeries;
+import com.data_management.RecordTypeRegistry;
+import com.data_management.StorageConfig;
 
 import java.util.List;
 
@@ -38,4 +41,62 @@ public class PatientTest {
         List<PatientRecord> records = patient.getRecords(1609545600000L, 1609632000000L); // 2021-01-02 to 2021-01-03
         assertEquals(2, records.size(), "Should return 2 records");
     }
+
+    @Test
+    public void testGetRecordsMergesTypesInTimeOrder() {
+        patient.addRecord(95, "Saturation", 1609502400000L); // 2021-01-01 12:00:00 UTC
+        patient.addRecord(110, "BloodPressure", 1609488000000L); // 2021-01-01 08:00:00 UTC, arrives late
+        List<PatientRecord> records = patient.getRecords(1609459200000L, 1609545600000L);
+        assertEquals(4, records.size(), "Should return 4 records");
+        assertEquals(1609459200000L, records.get(0).getTimestamp());
+        assertEquals(110, records.get(1).getMeasurementValue());
+        assertEquals("Saturation", records.get(2).getRecordType());
+        assertEquals(1609545600000L, records.get(3).getTimestamp());
+    }
+
+    @Test
+    public void testSeriesViewsOnlyContainRequestedType() {
+        patient.addRecord(97, "Saturation", 1609459260000L);
+        patient.addRecord(95, "Saturation", 1609459320000L);
+        patient.addRecord(93, "Saturation", 1609459380000L);
+
+        RecordSeries lastTwo = patient.getLastRecords("Saturation", 2);
+        assertEquals(2, lastTwo.size(), "Should return the 2 latest saturation values");
+        assertEquals(95, lastTwo.getValue(0));
+        assertEquals(93, lastTwo.getValue(1));
+
+        RecordSeries window = patient.getSeries("BloodPressure", 1609459200000L, 1609545600000L);
+        assertEquals(2, window.size(), "Should return 2 blood pressure values");
+        assertEquals(0, patient.getSeries("ECG", 0, Long.MAX_VALUE).size(), "Should return no ECG values");
+    }
+
+    @Test
+    public void testAliasedRecordTypesShareOneSeries() {
+        patient.addRecord(97, "Saturation", 1609459260000L);
+        patient.addRecord(91, "BloodSaturation", 1609459320000L);
+
+        RecordSeries saturation = patient.getSeries(RecordTypeRegistry.SATURATION, 0, Long.MAX_VALUE);
+        assertEquals(2, saturation.size(), "Aliases should resolve to the same record type");
+        assertEquals("Saturation", saturation.getRecordType());
+        assertEquals(RecordTypeRegistry.ECG, RecordTypeRegistry.codeOf("ECGData"));
+    }
+
+    @Test
+    public void testCompressedRecordsAreReadBackTransparently() {
+        StorageConfig config = new StorageConfig();
+        config.setCompressionBlockSize(16);
+        Patient compressed = new Patient(2, config);
+        for (int i = 0; i < 100; i++) {
+            compressed.addRecord(95 + i % 3, "Saturation", 1609459200000L + i * 1000L);
+        }
+        compressed.addRecord(80, "Saturation", 1609459200500L); // late, lands in a sealed block
+
+        RecordSeries saturation = compressed.getSeries(RecordTypeRegistry.SATURATION, 0, Long.MAX_VALUE);
+        assertEquals(101, saturation.size());
+        assertEquals(80, saturation.getValue(1));
+        assertEquals(1609459299000L, saturation.getTimestamp(100));
+        List<PatientRecord> records = compressed.getRecords(1609459210000L, 1609459219000L);
+        assertEquals(10, records.size());
+        assertEquals(96, records.get(0).getMeasurementValue());
+    }
 }
@@ -0,0 +1,126 @@
+package data_management;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.data_management.DataStorage;
+import com.data_management.FileDataReader;
+import com.data_management.RecordBatch;
+import com.data_management.RecordLineParser;
+import com.data_management.RecordTypeRegistry;
+
+/**
+ * Standalone benchmark comparing the throughput of parsing record lines with
+ * BufferedReader, String.split and Double.parseDouble against the byte-level
+ * RecordLineParser over a memory-mapped file, followed by a full
+ * FileDataReader load of the same file.
+ * Run with: java -cp target/classes:target/test-classes data_management.RecordParserBenchmark
+ */
+public class RecordParserBenchmark {
+
+    private static final int PATIENTS = 1000;
+    private static final int RECORDS = 4_000_000;
+    private static final String[] RECORD_TYPES = { "ECG", "Saturation", "SystolicPressure", "DiastolicPressure" };
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("record-parser-benchmark");
+        Path file = directory.resolve("records.txt");
+        try {
+            writeRecords(file);
+            long bytes = Files.size(file);
+            System.out.printf("records=%,d  file=%,d bytes%n", RECORDS, bytes);
+            for (int round = 0; round < 3; round++) {
+                long begin = System.nanoTime();
+                long checksum = parseWithStrings(file);
+                long stringNanos = System.nanoTime() - begin;
+
+                begin = System.nanoTime();
+                checksum -= parseWithBytes(file);
+                long byteNanos = System.nanoTime() - begin;
+
+                begin = System.nanoTime();
+                new FileDataReader(directory.toString()).readData(new DataStorage());
+                long loadNanos = System.nanoTime() - begin;
+
+                System.out.printf("round %d  strings=%,6.0f MB/s  bytes=%,6.0f MB/s  load=%,6.0f MB/s  (checksum %d)%n",
+                        round, megabytesPerSecond(bytes, stringNanos), megabytesPerSecond(bytes, byteNanos),
+                        megabytesPerSecond(bytes, loadNanos), checksum);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static long parseWithStrings(Path file) throws IOException {
+        long checksum = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                int patientId = Integer.parseInt(parts[0]);
+                long timestamp = Long.parseLong(parts[1]);
+                int recordTypeCode = RecordTypeRegistry.codeOf(parts[2]);
+                double value = Double.parseDouble(parts[3]);
+                checksum += patientId + timestamp + recordTypeCode + (long) value;
+            }
+        }
+        return checksum;
+    }
+
+    private static long parseWithBytes(Path file) throws IOException {
+        long checksum = 0;
+        RecordLineParser parser = new RecordLineParser();
+        RecordBatch batch = new RecordBatch(4096);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int size = (int) channel.size();
+            int position = 0;
+            while (position < size) {
+                int lineEnd = position;
+                while (lineEnd < size && buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                parser.parseLine(buffer, position, lineEnd, batch);
+                if (batch.size() == 4096) {
+                    checksum += sum(batch);
+                    batch.clear();
+                }
+                position = lineEnd + 1;
+            }
+        }
+        return checksum + sum(batch);
+    }
+
+    private static long sum(RecordBatch batch) {
+        long checksum = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            checksum += batch.getPatientId(i) + batch.getTimestamp(i) + batch.getRecordTypeCode(i)
+                    + (long) batch.getValue(i);
+        }
+        return checksum;
+    }
+
+    private static double megabytesPerSecond(long bytes, long nanos) {
+        return bytes / 1e6 / (nanos / 1e9);
+    }
+
+    private static void writeRecords(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int record = 0; record < RECORDS; record++) {
+                int patientId = record % PATIENTS + 1;
+                long timestamp = 1700000000000L + record / PATIENTS * 1000L;
+                String type = RECORD_TYPES[record / PATIENTS % RECORD_TYPES.length];
+                double value = 60 + (patientId * 31 + record * 7) % 80 + (record % 100) / 100.0;
+                writer.write(patientId + "," + timestamp + "," + type + "," + value);
+                writer.newLine();
+            }
+        }
+    }
+}
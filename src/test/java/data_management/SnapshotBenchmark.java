@@ -0,0 +1,72 @@
+package data_management;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import com.data_management.DataStorage;
+import com.data_management.FileDataReader;
+import com.data_management.StorageConfig;
+
+/**
+ * Standalone benchmark comparing a cold start from a snapshot with re-ingesting
+ * the same records from CSV files through FileDataReader.
+ * Run with: java -cp target/classes:target/test-classes data_management.SnapshotBenchmark
+ */
+public class SnapshotBenchmark {
+
+    private static final int PATIENTS = 1000;
+    private static final int RECORDS_PER_PATIENT = 2000;
+    private static final String[] RECORD_TYPES = { "ECG", "Saturation", "SystolicPressure", "DiastolicPressure" };
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("snapshot-benchmark");
+        try {
+            Path csvDirectory = Files.createDirectory(directory.resolve("csv"));
+            Path snapshotFile = directory.resolve("storage.snap");
+            writeCsv(csvDirectory.resolve("records.csv"));
+
+            DataStorage source = new DataStorage();
+            new FileDataReader(csvDirectory.toString()).readData(source);
+            source.writeSnapshot(snapshotFile);
+            System.out.printf("records=%,d  csv=%,d bytes  snapshot=%,d bytes%n", source.getResidentRecordCount(),
+                    Files.size(csvDirectory.resolve("records.csv")), Files.size(snapshotFile));
+
+            StorageConfig config = new StorageConfig();
+            config.setSnapshotFile(snapshotFile);
+            for (int round = 0; round < 3; round++) {
+                long begin = System.nanoTime();
+                new FileDataReader(csvDirectory.toString()).readData(new DataStorage());
+                long csvNanos = System.nanoTime() - begin;
+
+                begin = System.nanoTime();
+                new DataStorage(config);
+                long snapshotNanos = System.nanoTime() - begin;
+
+                System.out.printf("round %d  csv=%,6d ms  snapshot=%,6d ms  speedup=%.1fx%n", round,
+                        csvNanos / 1_000_000, snapshotNanos / 1_000_000, (double) csvNanos / snapshotNanos);
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    private static void writeCsv(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int record = 0; record < RECORDS_PER_PATIENT; record++) {
+                long timestamp = 1700000000000L + record * 1000L;
+                String type = RECORD_TYPES[record % RECORD_TYPES.length];
+                for (int patientId = 1; patientId <= PATIENTS; patientId++) {
+                    double value = 60 + (patientId * 31 + record * 7) % 80 + 0.25;
+                    writer.write(patientId + "," + timestamp + "," + type + "," + value);
+                    writer.newLine();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.data_management.DataStorage;
+import com.data_management.TcpDataReader;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+class TcpDataReaderTest {
+
+    @Test
+    void testReadsEverySimulatorUntilTheyClose() throws IOException, InterruptedException {
+        List<InetSocketAddress> simulators = new ArrayList<>();
+        List<Thread> senders = new ArrayList<>();
+        for (int shard = 0; shard < 3; shard++) {
+            ServerSocket server = new ServerSocket(0);
+            simulators.add(new InetSocketAddress("localhost", server.getLocalPort()));
+            int patientId = shard + 1;
+            Thread sender = new Thread(() -> {
+                try (server; Socket socket = server.accept(); OutputStream out = socket.getOutputStream()) {
+                    for (int i = 0; i < 1000; i++) {
+                        String line = patientId + "," + (1714376789000L + i) + ",Saturation,97.0%\n";
+                        byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+                        out.write(bytes, 0, 5); // split lines across reads
+                        out.write(bytes, 5, bytes.length - 5);
+                    }
+                    out.write("not a record\n".getBytes(StandardCharsets.US_ASCII));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            sender.start();
+            senders.add(sender);
+        }
+
+        DataStorage storage = new DataStorage();
+        TcpDataReader reader = new TcpDataReader(simulators);
+        reader.readData(storage); // returns once every simulator has closed its connection
+        for (Thread sender : senders) {
+            sender.join();
+        }
+
+        assertEquals(3000, storage.getResidentRecordCount());
+        assertEquals(1000, storage.getRecords(2, 0, Long.MAX_VALUE).size());
+        assertEquals(3, reader.getInvalidLineCount());
+    }
+
+    @Test
+    void testOverlongLineIsDroppedAsOneInvalidLine() throws IOException, InterruptedException {
+        ServerSocket server = new ServerSocket(0);
+        Thread sender = new Thread(() -> {
+            try (server; Socket socket = server.accept(); OutputStream out = socket.getOutputStream()) {
+                out.write("1,1714376789000,Saturation,97.0%\n".getBytes(StandardCharsets.US_ASCII));
+                // Fills the reader's 64 KiB buffer exactly; the rest would parse as a record on its own
+                StringBuilder line = new StringBuilder();
+                while (line.length() < 64 * 1024) {
+                    line.append("x");
+                }
+                line.append("2,1714376789001,Saturation,50.0\n");
+                out.write(line.toString().getBytes(StandardCharsets.US_ASCII));
+                out.write("1,1714376789002,Saturation,96.0%\n".getBytes(StandardCharsets.US_ASCII));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        sender.start();
+
+        DataStorage storage = new DataStorage();
+        TcpDataReader reader = new TcpDataReader(List.of(new InetSocketAddress("localhost", server.getLocalPort())));
+        reader.readData(storage);
+        sender.join();
+
+        assertEquals(2, storage.getResidentRecordCount());
+        assertEquals(0, storage.getRecords(2, 0, Long.MAX_VALUE).size());
+        assertEquals(1, reader.getInvalidLineCount());
+    }
+}
@@ -0,0 +1,65 @@
+package data_management;
+
+import java.util.Random;
+
+import com.data_management.DataStorage;
+
+/**
+ * Standalone benchmark of ward-level triage queries, comparing the latest-value
+ * index with a scan over every patient.
+ * Each patient reports a handful of saturation and systolic pressure readings;
+ * a few percent of them end up below the alert thresholds.
+ * Run with: java -cp target/classes:target/test-classes data_management.TriageQueryBenchmark
+ */
+public class TriageQueryBenchmark {
+
+    private static final int PATIENTS = 100_000;
+    private static final int READINGS = 5;
+    private static final int QUERIES = 1_000;
+    private static final long START = 1700000000000L;
+
+    public static void main(String[] args) {
+        DataStorage storage = new DataStorage();
+        Random random = new Random(42);
+        long begin = System.nanoTime();
+        for (int patientId = 0; patientId < PATIENTS; patientId++) {
+            for (int i = 0; i < READINGS; i++) {
+                long timestamp = START + i * 1000L;
+                storage.addPatientData(patientId, 97 + random.nextGaussian() * 2, "Saturation", timestamp);
+                storage.addPatientData(patientId, 120 + random.nextGaussian() * 12, "SystolicPressure", timestamp);
+            }
+        }
+        double insertSeconds = (System.nanoTime() - begin) / 1e9;
+        System.out.printf("inserted %,d records in %.2f s%n", storage.getResidentRecordCount(), insertSeconds);
+
+        int matches = 0;
+        for (int round = 0; round < 2; round++) { // The first round warms up
+            begin = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                matches = storage.findPatientsInRange("Saturation", Double.NEGATIVE_INFINITY, 92).length
+                        + storage.findPatientsInRange("SystolicPressure", Double.NEGATIVE_INFINITY, 90).length;
+            }
+        }
+        double indexMicros = (System.nanoTime() - begin) / 1e3 / QUERIES;
+
+        int scanned = 0;
+        for (int round = 0; round < 2; round++) {
+            begin = System.nanoTime();
+            for (int i = 0; i < QUERIES / 100; i++) {
+                scanned = 0;
+                for (int patientId = 0; patientId < PATIENTS; patientId++) {
+                    if (storage.getLatestValue(patientId, "Saturation") < 92) {
+                        scanned++;
+                    }
+                    if (storage.getLatestValue(patientId, "SystolicPressure") < 90) {
+                        scanned++;
+                    }
+                }
+            }
+        }
+        double scanMicros = (System.nanoTime() - begin) / 1e3 / (QUERIES / 100);
+
+        System.out.printf("index %,10.1f us/query  scan %,10.1f us/query  (%d, %d matches)%n", indexMicros,
+                scanMicros, matches, scanned);
+    }
+}